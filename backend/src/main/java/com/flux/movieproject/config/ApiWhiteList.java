@@ -22,6 +22,7 @@ public class ApiWhiteList {
         "/api/payment/ecpay/result", // 綠界金流支付
         "/api/announcements/**", // 公告列表
         "/api/events/**", // 活動列表
+        "/api/images/**", // 海報、活動與公告圖片
         "/api/coupons/List" /* 前台優惠券清單（未登入也能看） */
         // --- 請團隊成員在此處加入新的公開 API 路徑 ---
         
@@ -0,0 +1,50 @@
+package com.flux.movieproject.controller.admin.admin;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.flux.movieproject.service.cache.CatalogCacheManager;
+import com.flux.movieproject.service.cache.ReadThroughCache.Stats;
+
+/**
+ * 目錄快取管理： 1. 查看各快取的命中率與筆數: GET /api/admin/caches 2. 手動清除某個快取: DELETE
+ * /api/admin/caches/{name}
+ */
+@RestController
+@RequestMapping("/api/admin/caches")
+public class AdminCacheController {
+
+	@Autowired
+	private CatalogCacheManager catalogCacheManager;
+
+	/**
+	 * 取得所有快取的統計數據
+	 *
+	 * @return 各快取的命中、未命中、淘汰次數與目前筆數
+	 */
+	@GetMapping
+	public ResponseEntity<List<Stats>> getCacheStats() {
+		return ResponseEntity.ok(catalogCacheManager.stats());
+	}
+
+	/**
+	 * 清除指定的快取
+	 *
+	 * @param name 快取名稱
+	 * @return 找不到快取時回傳 404
+	 */
+	@DeleteMapping("/{name}")
+	public ResponseEntity<Void> invalidateCache(@PathVariable String name) {
+		if (!catalogCacheManager.invalidate(name)) {
+			return ResponseEntity.notFound().build();
+		}
+		return ResponseEntity.noContent().build();
+	}
+}
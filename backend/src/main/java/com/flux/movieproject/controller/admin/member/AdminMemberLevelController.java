@@ -1,6 +1,8 @@
 package com.flux.movieproject.controller.admin.member;
 
 import com.flux.movieproject.model.dto.member.MemberLevelDTO;
+import com.flux.movieproject.repository.member.MemberLevelEvaluationJdbcRepository.JobRow;
+import com.flux.movieproject.service.member.MemberLevelEvaluationEngine;
 import com.flux.movieproject.service.member.MemberLevelService;
 
 import org.springframework.http.MediaType;
@@ -15,9 +17,12 @@ import java.util.List;
 public class AdminMemberLevelController {
 
 	private final MemberLevelService memberLevelService;
+	private final MemberLevelEvaluationEngine memberLevelEvaluationEngine;
 
-	public AdminMemberLevelController(MemberLevelService memberLevelService) {
+	public AdminMemberLevelController(MemberLevelService memberLevelService,
+			MemberLevelEvaluationEngine memberLevelEvaluationEngine) {
 		this.memberLevelService = memberLevelService;
+		this.memberLevelEvaluationEngine = memberLevelEvaluationEngine;
 	}
 
 	@GetMapping
@@ -45,4 +50,23 @@ public class AdminMemberLevelController {
 		memberLevelService.deleteLevel(id);
 		return ResponseEntity.noContent().build();
 	}
-}
\ No newline at end of file
+
+	/**
+	 * 重新評估全體會員的等級 (背景執行)
+	 *
+	 * @return 評估 ID
+	 */
+	@PostMapping("/evaluations")
+	public ResponseEntity<Long> startEvaluation() {
+		return ResponseEntity.accepted().body(memberLevelEvaluationEngine.startFullEvaluation("管理員要求"));
+	}
+
+	/**
+	 * 最近一次全體評估的進度
+	 */
+	@GetMapping("/evaluations/latest")
+	public ResponseEntity<JobRow> getLatestEvaluation() {
+		return memberLevelEvaluationEngine.findLatestJob().map(ResponseEntity::ok)
+				.orElse(ResponseEntity.notFound().build());
+	}
+}
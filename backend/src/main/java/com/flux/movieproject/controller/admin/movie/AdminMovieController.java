@@ -1,5 +1,6 @@
 package com.flux.movieproject.controller.admin.movie;
 
+import java.net.URI;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
@@ -8,7 +9,6 @@ import java.util.Optional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -32,6 +32,8 @@ import com.flux.movieproject.model.entity.movie.Director;
 import com.flux.movieproject.model.entity.movie.Genre;
 import com.flux.movieproject.model.entity.movie.Movie;
 import com.flux.movieproject.repository.movie.MovieRepository;
+import com.flux.movieproject.service.image.ImageService;
+import com.flux.movieproject.service.image.ImageType;
 import com.flux.movieproject.service.movie.MovieService;
 
 import jakarta.persistence.EntityNotFoundException;
@@ -44,10 +46,12 @@ public class AdminMovieController {
 	@Autowired
 	private final MovieRepository movieRepository;
 	private MovieService movieService;
+	private ImageService imageService;
 	
-	public AdminMovieController( MovieRepository movieRepository,MovieService movieService) {
+	public AdminMovieController( MovieRepository movieRepository,MovieService movieService, ImageService imageService) {
 		this.movieRepository = movieRepository; // 初始化 MovieRepository
 		this.movieService = movieService;
+		this.imageService = imageService;
 	}
 	// 為了方便，我們把接收資料的 DTO 直接定義在這裡
 	// 您也可以把它獨立成一個 .java 檔案
@@ -233,29 +237,21 @@ public class AdminMovieController {
     }
 
     /**
-     * 根據電影 ID 取得海報圖片
+     * 根據電影 ID 取得海報圖片 (轉址到帶內容雜湊的圖片 API，由瀏覽器長期快取)
      * @param id 電影 ID
-     * @return 海報圖片的二進位資料
+     * @return 302 轉址到海報圖片網址
      */
     @GetMapping("/movies/{id}/poster") // 新增端點：獲取電影海報
-    public ResponseEntity<byte[]> getMoviePoster(@PathVariable Integer id) {
+    public ResponseEntity<Void> getMoviePoster(@PathVariable Integer id) {
         try {
-            Optional<Movie> movieOptional = movieRepository.findById(id);
-            if (movieOptional.isPresent()) {
-                Movie movie = movieOptional.get();
-                if (movie.getPosterImage() != null) {
-                    return ResponseEntity.ok()
-                            .contentType(MediaType.IMAGE_JPEG) // 假設圖片是 JPEG 格式
-                            .body(movie.getPosterImage());
-                } else {
-                    return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null); // 沒有海報圖片
-                }
-            } else {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null); // 找不到電影
+            String posterUrl = imageService.getImageUrl(ImageType.MOVIE_POSTER, id);
+            if (posterUrl == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build(); // 找不到電影或沒有海報圖片
             }
+            return ResponseEntity.status(HttpStatus.FOUND).location(URI.create(posterUrl)).build();
         } catch (Exception e) {
             System.err.println("取得電影海報 ID: " + id + " 時發生錯誤：" + e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
     
@@ -16,6 +16,7 @@ import com.flux.movieproject.model.dto.movie.TMDBMovieSearchResponseDTO;
 import com.flux.movieproject.model.entity.movie.TMDBMovie;
 import com.flux.movieproject.repository.movie.TMDBMovieRepository;
 import com.flux.movieproject.service.movie.TMDBDataImportService;
+import com.flux.movieproject.service.movie.TMDBDataImportService.LocalImportReport;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.http.HttpStatus; // <-- 確保導入這個
 
@@ -124,8 +125,8 @@ public class TMDBImportController {
     @PostMapping("/import-all-to-local")
     public ResponseEntity<String> importAllTmdbMoviesToLocal() {
         try {
-            tmdbDataImportService.importAllTmdbMoviesToLocal();
-            return ResponseEntity.ok("所有 TMDBMovie 資料已成功匯入到本地 Movie 表。");
+            LocalImportReport report = tmdbDataImportService.importAllTmdbMoviesToLocal();
+            return ResponseEntity.ok("所有 TMDBMovie 資料已成功匯入到本地 Movie 表。" + summarize(report));
         } catch (Exception e) {
             System.err.println("批量匯入所有 TMDBMovie 資料到本地 Movie 表時發生錯誤：" + e.getMessage());
             return ResponseEntity.status(500).body("批量匯入所有 TMDBMovie 資料到本地 Movie 表時發生錯誤：" + e.getMessage());
@@ -160,8 +161,8 @@ public class TMDBImportController {
     @PostMapping("/import-selected-to-local") // 新增端點：匯入選定的 TMDBMovie
     public ResponseEntity<String> importSelectedTmdbMovies(@RequestBody List<Integer> tmdbMovieIds) {
         try {
-            tmdbDataImportService.importSelectedTmdbMovies(tmdbMovieIds); // 呼叫 Service
-            return ResponseEntity.ok("選定的 TMDBMovie 資料已成功匯入到本地 Movie 表。");
+            LocalImportReport report = tmdbDataImportService.importSelectedTmdbMovies(tmdbMovieIds); // 呼叫 Service
+            return ResponseEntity.ok("選定的 TMDBMovie 資料已成功匯入到本地 Movie 表。" + summarize(report));
         } catch (Exception e) {
             System.err.println("匯入選定 TMDBMovie 資料時發生錯誤：" + e.getMessage());
             return ResponseEntity.status(500).body("匯入選定 TMDBMovie 資料時發生錯誤：" + e.getMessage());
@@ -189,4 +190,14 @@ public class TMDBImportController {
     }
 
 	
+	/**
+	 * 將批次匯入結果轉成提示文字
+	 */
+	private static String summarize(LocalImportReport report) {
+		String summary = String.format("新增 %d 部，略過 %d 部 (已存在)", report.imported(), report.skipped());
+		if (!report.errors().isEmpty()) {
+			summary += String.format("，%d 部無法匯入：%s", report.errors().size(), String.join("; ", report.errors()));
+		}
+		return summary;
+	}
 }
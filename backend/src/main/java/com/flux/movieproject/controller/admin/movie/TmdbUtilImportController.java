@@ -1,5 +1,8 @@
 package com.flux.movieproject.controller.admin.movie;
 
+import com.flux.movieproject.service.movie.TmdbIncrementalSyncService;
+import com.flux.movieproject.service.movie.TmdbIncrementalSyncService.SyncReport;
+import com.flux.movieproject.service.movie.TmdbIngestionEngine.IngestionReport;
 import com.flux.movieproject.service.movie.TmdbUtilImportService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -15,6 +18,8 @@ import java.time.LocalDate;
 public class TmdbUtilImportController {
 	@Autowired
 	private TmdbUtilImportService tmdbUtilImportService;
+	@Autowired
+	private TmdbIncrementalSyncService tmdbIncrementalSyncService;
 
 	/**
 	 * API 端點，用來觸發後端批次匯入電影資料。
@@ -28,10 +33,12 @@ public class TmdbUtilImportController {
 		// 使用 try-catch 區塊來捕捉服務層可能拋出的任何例外，確保 API 的穩定性
 		try {
 			// 將請求參數直接傳遞給 Service 層的核心方法執行
-			tmdbUtilImportService.importMoviesUsingUtility(startDate, endDate);
+			IngestionReport report = tmdbUtilImportService.importMoviesUsingUtility(startDate, endDate);
 
 			// 如果 Service 成功執行完畢，回傳一個成功的訊息和 HTTP 200 OK 狀態碼
-			String message = String.format("已成功觸發後端任務(使用工具類)：匯入 %s 到 %s 之間的所有台灣電影。", startDate, endDate);
+			String message = String.format("已成功觸發後端任務(使用工具類)：匯入 %s 到 %s 之間的所有台灣電影。共 %d 頁，本次寫入 %d 部，先前已完成 %d 部，失敗 %d 筆%s。",
+					startDate, endDate, report.totalPages(), report.imported(), report.resumed(), report.failed(),
+					report.failed() > 0 ? " (重新執行相同區間即可重試)" : "");
 			return ResponseEntity.ok(message);
 		} catch (Exception e) {
 			// 如果 Service 執行過程中發生錯誤
@@ -40,4 +47,23 @@ public class TmdbUtilImportController {
 			return ResponseEntity.status(500).body("使用工具類匯入過程中發生伺-服器內部錯誤：" + e.getMessage());
 		}
 	}
+
+	/**
+	 * API 端點，依 TMDB 變動清單增量同步資料庫中的電影。
+	 * 
+	 * @return 一個 ResponseEntity 物件，其中包含同步結果的訊息字串
+	 */
+	@PostMapping("/sync-changes")
+	public ResponseEntity<String> syncChanges() {
+		try {
+			SyncReport report = tmdbIncrementalSyncService.syncChanges();
+			String message = String.format("增量同步完成：本地共 %d 部電影，變動清單中 %d 部，重新取得 %d 部，實際寫入 %d 部，失敗 %d 部%s。",
+					report.checked(), report.changed(), report.refreshed(), report.written(), report.failed(),
+					report.failed() > 0 ? " (下次同步時會重試)" : "");
+			return ResponseEntity.ok(message);
+		} catch (Exception e) {
+			e.printStackTrace();
+			return ResponseEntity.status(500).body("增量同步過程中發生伺服器內部錯誤：" + e.getMessage());
+		}
+	}
 }
\ No newline at end of file
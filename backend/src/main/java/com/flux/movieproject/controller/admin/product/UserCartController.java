@@ -1,7 +1,10 @@
 package com.flux.movieproject.controller.admin.product;
 
 import com.flux.movieproject.model.dto.product.cart.CartDTO;
+import com.flux.movieproject.model.dto.product.cart.CartEvaluationDTO;
+import com.flux.movieproject.model.dto.product.cart.CartEvaluationRequestDTO;
 import com.flux.movieproject.model.entity.product.CartItem;
+import com.flux.movieproject.service.product.CartEvaluationService;
 import com.flux.movieproject.service.product.CartService;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,10 +18,12 @@ import org.springframework.web.bind.annotation.*;
 public class UserCartController {
 
    private CartService cartService;
+   private CartEvaluationService cartEvaluationService;
 
     @Autowired
-    public UserCartController(CartService cartService) {
+    public UserCartController(CartService cartService, CartEvaluationService cartEvaluationService) {
        this.cartService = cartService;
+       this.cartEvaluationService = cartEvaluationService;
     }
 
     @GetMapping
@@ -27,6 +32,20 @@ public class UserCartController {
         return ResponseEntity.ok(cartDTO);
     }
 
+    // 結帳頁試算：商品小計、加價選項、庫存、可用優惠券與應付金額一次回傳
+    @PostMapping("/evaluate")
+    public ResponseEntity<CartEvaluationDTO> evaluateCart(
+            HttpServletRequest request,
+            @RequestBody(required = false) CartEvaluationRequestDTO evaluationRequest) {
+
+        Integer memberId = (Integer) request.getAttribute("memberId");
+        if (memberId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        return ResponseEntity.ok(cartEvaluationService.evaluate(memberId, evaluationRequest));
+    }
+
 
     @PostMapping("/add")
     public ResponseEntity<CartItem> addToCart(
@@ -3,6 +3,7 @@ package com.flux.movieproject.controller.admin.product;
 
 import com.flux.movieproject.model.dto.product.product.ProductDTO;
 import com.flux.movieproject.model.dto.product.product.ProductResponseDTO;
+import com.flux.movieproject.model.dto.product.product.ProductSearchResultDTO;
 import com.flux.movieproject.model.dto.product.product.ProductWithCategoryNameDTO;
 import com.flux.movieproject.model.entity.product.Product;
 import com.flux.movieproject.model.entity.product.ProductCategory;
@@ -47,6 +48,19 @@ public class UserProductController {
 
     }
 
+    // 商品搜尋：依相關度排序，並回傳類別與價格區間的商品數
+    @GetMapping("/search")
+    public ResponseEntity<ProductSearchResultDTO> searchProducts(
+            @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size,
+            @RequestParam @Nullable String sortBy, @RequestParam @Nullable String direction,
+            @RequestParam @Nullable String keyword, @RequestParam @Nullable Integer minPrice,
+            @RequestParam @Nullable Integer maxPrice, @RequestParam @Nullable Integer categoryId
+    ) {
+        ProductSearchResultDTO result = productService.searchVisibleProducts(page, size, sortBy, direction, keyword,
+                minPrice, maxPrice, categoryId);
+        return ResponseEntity.ok(result);
+    }
+
     @GetMapping("/category")
     public ResponseEntity<List<ProductWithCategoryNameDTO>> getProductsByCategoryId(@RequestParam Integer categoryId) {
         List<ProductWithCategoryNameDTO> products = productService.getProductsByCategoryId(categoryId);
@@ -0,0 +1,47 @@
+package com.flux.movieproject.controller.admin.ticket;
+
+import java.util.List;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+
+import com.flux.movieproject.repository.ticket.WorkQueueJdbcRepository.DeadLetterRow;
+import com.flux.movieproject.repository.ticket.WorkQueueJdbcRepository.WorkItem;
+import com.flux.movieproject.service.ticket.DurableWorkQueue;
+
+/**
+ * 工作佇列管理的共用端點： 1. 查看處理統計: GET {base}/stats 2. 查看重試次數用盡的工作: GET {base}/dead-letters
+ * 3. 重新處理: POST {base}/{id}/retry
+ */
+public abstract class AbstractWorkQueueController<T extends WorkItem, S> {
+
+	protected abstract DurableWorkQueue<T> queue();
+
+	protected abstract S stats();
+
+	@GetMapping("/stats")
+	public ResponseEntity<S> getStats() {
+		return ResponseEntity.ok(stats());
+	}
+
+	@GetMapping("/dead-letters")
+	public ResponseEntity<List<DeadLetterRow<T>>> getDeadLetters() {
+		return ResponseEntity.ok(queue().findDeadLetters());
+	}
+
+	/**
+	 * 將死信重新排入處理
+	 *
+	 * @param id 工作 ID
+	 * @return 找不到死信時回傳 404
+	 */
+	@PostMapping("/{id}/retry")
+	public ResponseEntity<Void> retryDeadLetter(@PathVariable Long id) {
+		if (!queue().retryDeadLetter(id)) {
+			return ResponseEntity.notFound().build();
+		}
+		return ResponseEntity.accepted().build();
+	}
+}
@@ -0,0 +1,31 @@
+package com.flux.movieproject.controller.admin.ticket;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.flux.movieproject.repository.ticket.OrderOutboxJdbcRepository.OutboxRow;
+import com.flux.movieproject.service.ticket.DurableWorkQueue;
+import com.flux.movieproject.service.ticket.OrderEventOutbox;
+import com.flux.movieproject.service.ticket.OrderEventOutbox.Stats;
+
+/**
+ * 訂單事件 outbox 管理，端點見 AbstractWorkQueueController
+ */
+@RestController
+@RequestMapping("/api/admin/order-outbox")
+public class AdminOrderOutboxController extends AbstractWorkQueueController<OutboxRow, Stats> {
+
+	@Autowired
+	private OrderEventOutbox orderEventOutbox;
+
+	@Override
+	protected DurableWorkQueue<OutboxRow> queue() {
+		return orderEventOutbox.getQueue();
+	}
+
+	@Override
+	protected Stats stats() {
+		return orderEventOutbox.stats();
+	}
+}
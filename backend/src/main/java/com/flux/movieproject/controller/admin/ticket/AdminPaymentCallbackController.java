@@ -0,0 +1,31 @@
+package com.flux.movieproject.controller.admin.ticket;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.flux.movieproject.repository.ticket.PaymentCallbackJdbcRepository.CallbackRow;
+import com.flux.movieproject.service.ticket.DurableWorkQueue;
+import com.flux.movieproject.service.ticket.EcpayCallbackPipeline;
+import com.flux.movieproject.service.ticket.EcpayCallbackPipeline.Stats;
+
+/**
+ * 綠界付款通知管理，端點見 AbstractWorkQueueController
+ */
+@RestController
+@RequestMapping("/api/admin/payment-callbacks")
+public class AdminPaymentCallbackController extends AbstractWorkQueueController<CallbackRow, Stats> {
+
+	@Autowired
+	private EcpayCallbackPipeline ecpayCallbackPipeline;
+
+	@Override
+	protected DurableWorkQueue<CallbackRow> queue() {
+		return ecpayCallbackPipeline.getQueue();
+	}
+
+	@Override
+	protected Stats stats() {
+		return ecpayCallbackPipeline.stats();
+	}
+}
@@ -16,9 +16,9 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.flux.movieproject.model.dto.ticket.PriceRuleUpdateDTO;
+import com.flux.movieproject.model.dto.ticket.TicketTypeDTO;
 import com.flux.movieproject.model.dto.ticket.TicketTypeResponseDTO;
 import com.flux.movieproject.model.dto.ticket.UpdateTicketTypeDTO;
-import com.flux.movieproject.model.entity.theater.TicketType;
 import com.flux.movieproject.service.ticket.TicketService;
 
 
@@ -34,8 +34,8 @@ public class AdminTicketController {
 	 * @return
 	 */
 	@GetMapping("/ticket-types")
-	public ResponseEntity<List<TicketType>> getAllTicketTypes() {
-		List<TicketType> ticketTypes = ticketService.findAllTicketTypes();
+	public ResponseEntity<List<TicketTypeDTO>> getAllTicketTypes() {
+		List<TicketTypeDTO> ticketTypes = ticketService.findAllTicketTypes();
 		return ResponseEntity.ok(ticketTypes);
 	}
 
@@ -1,7 +1,6 @@
 package com.flux.movieproject.controller.admin.ticket;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -14,7 +13,7 @@ import org.springframework.web.bind.annotation.RestController;
 import com.flux.movieproject.model.dto.ticket.ManualPaymentDTO;
 import com.flux.movieproject.model.dto.ticket.TicketOrderDetailDTO;
 import com.flux.movieproject.model.dto.ticket.TicketOrderSearchRequestDTO;
-import com.flux.movieproject.model.dto.ticket.TicketOrderSummaryDTO;
+import com.flux.movieproject.model.dto.ticket.TicketOrderSearchResultDTO;
 import com.flux.movieproject.model.dto.ticket.UpdateTicketOrderResponseDTO;
 import com.flux.movieproject.service.ticket.TicketOrderService;
 import com.flux.movieproject.utils.OrderNumberUtils;
@@ -27,12 +26,17 @@ public class AdminTicketOrderController {
 
 	/**
 	 * 查詢訂單列表 (支援篩選與分頁) 前端會透過 GET 請求，並將篩選條件放在 URL 參數中 例如:
-	 * /api/admin/orders?page=1&pageSize=10&status=已付款
+	 * /api/admin/orders?page=1&pageSize=10&status=已付款 查詢下一頁時可帶入上一頁回傳的 cursor，不需要略過前面的資料
 	 */
 	@GetMapping
-	public ResponseEntity<Page<TicketOrderSummaryDTO>> getOrders(TicketOrderSearchRequestDTO searchDTO) {
-		Page<TicketOrderSummaryDTO> orderPage = ticketOrderService.findOrdersByCriteria(searchDTO);
-		return ResponseEntity.ok(orderPage);
+	public ResponseEntity<TicketOrderSearchResultDTO> getOrders(TicketOrderSearchRequestDTO searchDTO) {
+		try {
+			TicketOrderSearchResultDTO orderPage = ticketOrderService.findOrdersByCriteria(searchDTO);
+			return ResponseEntity.ok(orderPage);
+		} catch (IllegalArgumentException e) {
+			// 游標格式錯誤
+			return ResponseEntity.badRequest().build();
+		}
 	}
 
 	/**
@@ -0,0 +1,173 @@
+package com.flux.movieproject.controller.fluxapp;
+
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.flux.movieproject.service.image.DerivativeFormat;
+import com.flux.movieproject.service.image.ImageDerivativeService;
+import com.flux.movieproject.service.image.ImageDerivativeService.Derivative;
+import com.flux.movieproject.service.image.ImageService;
+import com.flux.movieproject.service.image.ImageService.ImageInfo;
+import com.flux.movieproject.service.image.ImageType;
+
+/**
+ * 圖片 API。網址由 ImageService 產生 (例如 /api/images/posters/12?v=3fa1c0d2e4b5a6f7)，
+ * 版本與內容相符時回應一年且 immutable 的快取標頭；瀏覽器帶 If-None-Match 重新驗證時回應 304。
+ * 加上 w 參數 (例如 &w=320) 則回傳縮圖，並依 Accept 標頭選擇 AVIF / WebP / JPEG。
+ */
+@RestController
+@RequestMapping("/api/images")
+public class ImageController {
+
+	private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+	@Autowired
+	private ImageService imageService;
+	@Autowired
+	private ImageDerivativeService imageDerivativeService;
+
+	/**
+	 * 取得圖片
+	 *
+	 * @param type        圖片種類 (posters / previews-1 ~ 4 / events / announcements / theaters / members)
+	 * @param id          ID
+	 * @param version     網址中的內容雜湊
+	 * @param ifNoneMatch 瀏覽器快取的 ETag
+	 * @return 圖片內容，或 304 / 404
+	 */
+	@GetMapping("/{type}/{id}")
+	public ResponseEntity<StreamingResponseBody> getImage(@PathVariable String type, @PathVariable Integer id,
+			@RequestParam(name = "v", required = false) String version,
+			@RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+		ImageType imageType = ImageType.fromPathSegment(type);
+		if (imageType == null) {
+			return ResponseEntity.notFound().build();
+		}
+
+		// 1. 快取中的雜湊與瀏覽器的 ETag 相同，不必查資料庫
+		String cachedHash = imageService.getCachedHash(imageType, id);
+		if (cachedHash != null && accessible(imageType, cachedHash, version) && etagMatches(ifNoneMatch, cachedHash)) {
+			return notModified(cachedHash, version);
+		}
+
+		// 2. 由資料庫取得雜湊、大小與格式，圖片內容在回應時直接從資料庫串流，不整張讀進記憶體
+		Optional<ImageInfo> infoOpt = imageService.describe(imageType, id);
+		if (infoOpt.isEmpty() || !accessible(imageType, infoOpt.get().hash(), version)) {
+			return ResponseEntity.notFound().build();
+		}
+		ImageInfo info = infoOpt.get();
+		if (etagMatches(ifNoneMatch, info.hash())) {
+			return notModified(info.hash(), version);
+		}
+
+		return ResponseEntity.ok()
+				.eTag(info.hash())
+				.header(HttpHeaders.CACHE_CONTROL, cacheControl(info.hash(), version))
+				.contentType(info.mediaType())
+				.contentLength(info.length())
+				.body(out -> imageService.writeTo(imageType, id, out));
+	}
+
+	/**
+	 * 取得縮圖
+	 *
+	 * @param type        圖片種類
+	 * @param id          ID
+	 * @param width       需要的寬度 (會對齊到固定的級距)
+	 * @param version     網址中的內容雜湊
+	 * @param ifNoneMatch 瀏覽器快取的 ETag
+	 * @param accept      瀏覽器可接受的格式
+	 * @return 縮圖內容，或 304 / 404；原圖無法解碼時回傳原圖
+	 */
+	@GetMapping(value = "/{type}/{id}", params = "w")
+	public ResponseEntity<StreamingResponseBody> getResizedImage(@PathVariable String type, @PathVariable Integer id,
+			@RequestParam("w") int width,
+			@RequestParam(name = "v", required = false) String version,
+			@RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+			@RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept) {
+		ImageType imageType = ImageType.fromPathSegment(type);
+		if (imageType == null || width <= 0) {
+			return ResponseEntity.notFound().build();
+		}
+
+		// 1. 取得來源雜湊 (快取或資料庫計算，不讀取原圖)，並決定縮圖的寬度級距與格式
+		String sourceHash = imageService.getHash(imageType, id);
+		if (sourceHash == null || !accessible(imageType, sourceHash, version)) {
+			return ResponseEntity.notFound().build();
+		}
+		int bucket = imageDerivativeService.bucketFor(width);
+		DerivativeFormat format = DerivativeFormat.negotiate(accept);
+		String etag = Derivative.etag(sourceHash, bucket, format);
+		if (etagMatches(ifNoneMatch, etag)) {
+			return notModified(etag, sourceHash, version);
+		}
+
+		// 2. 從磁碟快取取得縮圖，沒有時才讀取原圖產生
+		Optional<Derivative> derivativeOpt = imageDerivativeService.getOrCreate(imageType, id, sourceHash, bucket, format);
+		if (derivativeOpt.isEmpty()) {
+			return getImage(type, id, version, ifNoneMatch);
+		}
+		Derivative derivative = derivativeOpt.get();
+		return ResponseEntity.ok()
+				.eTag(derivative.etag())
+				.header(HttpHeaders.CACHE_CONTROL, cacheControl(derivative.sourceHash(), version))
+				.header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+				.contentType(format.getMediaType())
+				.contentLength(derivative.bytes().length)
+				.body(out -> out.write(derivative.bytes()));
+	}
+
+	private ResponseEntity<StreamingResponseBody> notModified(String etag, String hash, String version) {
+		return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+				.eTag(etag)
+				.header(HttpHeaders.CACHE_CONTROL, cacheControl(hash, version))
+				.header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+				.build();
+	}
+
+	private ResponseEntity<StreamingResponseBody> notModified(String hash, String version) {
+		return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+				.eTag(hash)
+				.header(HttpHeaders.CACHE_CONTROL, cacheControl(hash, version))
+				.build();
+	}
+
+	/**
+	 * 網址版本與內容相符才可長期快取；沒帶版本或版本已過時 (舊網址) 則每次都要重新驗證
+	 */
+	private static String cacheControl(String hash, String version) {
+		return hash.equals(version) ? IMMUTABLE_CACHE_CONTROL : CacheControl.noCache().cachePublic().getHeaderValue();
+	}
+
+	/**
+	 * 不公開的圖片 (例如會員大頭貼) 必須帶上與內容相符的版本
+	 */
+	private static boolean accessible(ImageType type, String hash, String version) {
+		return type.isPublicAccess() || hash.equals(version);
+	}
+
+	private static boolean etagMatches(String ifNoneMatch, String hash) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (String tag : ifNoneMatch.split(",")) {
+			String value = tag.trim();
+			if (value.equals("*") || value.equals("\"" + hash + "\"")) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -3,11 +3,13 @@ package com.flux.movieproject.controller.fluxapp;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.flux.movieproject.model.dto.moviesession.movieshowtimes.ShowtimeDTO;
 import com.flux.movieproject.model.dto.moviesession.quickbookingform.MovieSessionResponseDTO;
@@ -58,6 +60,21 @@ public class MovieSessionController {
     }
     
     
+    /**
+     * 訂閱特定場次座位圖的即時異動 (Server-Sent Events)。
+     * 事件 snapshot：完整座位圖 (與 /{sessionId}/seats 相同結構)；事件 delta：狀態有變化的座位列表。
+     * @param sessionId 從 URL 路徑中獲取的場次 ID
+     * @return SSE 連線
+     */
+    @GetMapping(value = "/{sessionId}/seats/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamSessionSeatStatus(@PathVariable Integer sessionId) {
+        try {
+            return ResponseEntity.ok(movieSessionService.subscribeSessionSeatStatus(sessionId));
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
     @GetMapping("/{movieId}/showtimes")
     public ResponseEntity<List<ShowtimeDTO>> getShowtimesWithSeatStatus(@PathVariable Integer movieId) {
         // 它呼叫的 Service 方法內部已經被我們優化了！
@@ -9,7 +9,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.flux.movieproject.model.entity.theater.TicketType;
+import com.flux.movieproject.model.dto.ticket.TicketTypeDTO;
 import com.flux.movieproject.service.ticket.TicketService;
 
 @RestController
@@ -24,9 +24,11 @@ public class TicketController {
 	 * @return
 	 */
 	@GetMapping("/ticket-types")
-	public ResponseEntity<List<TicketType>> getAllTicketTypes() {
-		List<TicketType> ticketTypes = ticketService.findAllTicketTypes();
-		ticketTypes.removeIf(ticketType -> !ticketType.getIsEnabled());
+	public ResponseEntity<List<TicketTypeDTO>> getAllTicketTypes() {
+		// 快取中的列表不可修改，篩選後回傳新的列表
+		List<TicketTypeDTO> ticketTypes = ticketService.findAllTicketTypes().stream()
+				.filter(ticketType -> Boolean.TRUE.equals(ticketType.isEnabled()))
+				.toList();
 		return ResponseEntity.ok(ticketTypes);
 	}
 
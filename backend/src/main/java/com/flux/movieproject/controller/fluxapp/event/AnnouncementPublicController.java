@@ -2,9 +2,7 @@ package com.flux.movieproject.controller.fluxapp.event;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.*;
-import org.springframework.http.CacheControl;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -14,8 +12,8 @@ import com.flux.movieproject.service.event.AnnouncementService;
 
 import lombok.RequiredArgsConstructor;
 
+import java.net.URI;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/announcements")
@@ -65,43 +63,13 @@ public class AnnouncementPublicController {
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
-    // ========== 圖片 Blob ==========
+    // ========== 圖片：轉址到帶內容雜湊的圖片 API，由瀏覽器長期快取 ==========
     @GetMapping("/{id}/image")
-    public ResponseEntity<byte[]> getImage(@PathVariable("id") Integer id) {
-        Optional<byte[]> imgOpt = service.getImageById(id);
-        if (imgOpt.isEmpty() || imgOpt.get() == null || imgOpt.get().length == 0) {
+    public ResponseEntity<Void> getImage(@PathVariable("id") Integer id) {
+        Optional<String> urlOpt = service.getImageUrl(id);
+        if (urlOpt.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-        byte[] body = imgOpt.get();
-
-        MediaType mediaType = detectImageMediaType(body); // 粗略偵測 mime；未知就給 octet-stream
-        return ResponseEntity.ok()
-                .contentType(mediaType)
-                .cacheControl(CacheControl.maxAge(3600, TimeUnit.SECONDS).cachePublic()) // 可調整快取策略
-                .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(body.length))
-                .body(body);
-    }
-
-    // ====== 簡單的圖片格式偵測（PNG/JPEG/GIF/WEBP），其餘回 octet-stream ======
-    private static MediaType detectImageMediaType(byte[] bytes) {
-        if (bytes.length >= 8 &&
-                bytes[0] == (byte)0x89 && bytes[1] == 0x50 && bytes[2] == 0x4E && bytes[3] == 0x47) {
-            return MediaType.IMAGE_PNG; // PNG
-        }
-        if (bytes.length >= 3 &&
-                bytes[0] == (byte)0xFF && bytes[1] == (byte)0xD8 && bytes[2] == (byte)0xFF) {
-            return MediaType.IMAGE_JPEG; // JPEG
-        }
-        if (bytes.length >= 6 &&
-                bytes[0] == 'G' && bytes[1] == 'I' && bytes[2] == 'F' &&
-                bytes[3] == '8' && (bytes[4] == '7' || bytes[4] == '9') && bytes[5] == 'a') {
-            return MediaType.IMAGE_GIF; // GIF
-        }
-        if (bytes.length >= 12 &&
-                bytes[0] == 'R' && bytes[1] == 'I' && bytes[2] == 'F' && bytes[3] == 'F' &&
-                bytes[8] == 'W' && bytes[9] == 'E' && bytes[10] == 'B' && bytes[11] == 'P') {
-            return MediaType.parseMediaType("image/webp"); // WEBP
-        }
-        return MediaType.APPLICATION_OCTET_STREAM;
+        return ResponseEntity.status(HttpStatus.FOUND).location(URI.create(urlOpt.get())).build();
     }
 }
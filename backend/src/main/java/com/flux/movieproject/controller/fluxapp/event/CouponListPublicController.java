@@ -71,7 +71,12 @@ public class CouponListPublicController {
 	@PostMapping("/{couponId}/claim")
 	public ResponseEntity<MemberCouponListDTO> claim(@PathVariable Integer couponId,
 			@RequestAttribute("memberId") Integer memberId) {
-		return ResponseEntity.ok(memberCouponService.claim(memberId, couponId));
+		MemberCouponListDTO claimed = memberCouponService.claim(memberId, couponId);
+		// 已受理但還在寫入中時回 202
+		if (MemberCouponService.CLAIM_PENDING.equals(claimed.getStatus())) {
+			return ResponseEntity.accepted().body(claimed);
+		}
+		return ResponseEntity.ok(claimed);
 	}
 
 	/** 會員中心：我的優惠券 */
@@ -1,5 +1,6 @@
 package com.flux.movieproject.controller.fluxapp.event;
 
+import java.net.URI;
 import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
@@ -9,8 +10,7 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.CacheControl;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -96,43 +96,14 @@ public class EventPublicController {
         );
     }
 
- // ====== 圖片 Blob（跟公告同樣作法）======
+ // ====== 圖片：轉址到帶內容雜湊的圖片 API，由瀏覽器長期快取 ======
     @GetMapping("/{id}/image")
-    public ResponseEntity<byte[]> image(@PathVariable Integer id) {
-        Optional<byte[]> imgOpt = eventService.getImageById(id);
-        if (imgOpt.isEmpty() || imgOpt.get() == null || imgOpt.get().length == 0) {
+    public ResponseEntity<Void> image(@PathVariable Integer id) {
+        Optional<String> urlOpt = eventService.getImageUrl(id);
+        if (urlOpt.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-        byte[] body = imgOpt.get();
-        MediaType mediaType = detectImageMediaType(body);
-        return ResponseEntity.ok()
-                .contentType(mediaType)
-                .cacheControl(CacheControl.noStore()) // 開發期直接禁快取
-                .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(body.length))
-                .body(body);
-    }
-
-    // ====== 簡單的圖片格式偵測 ======
-    private static MediaType detectImageMediaType(byte[] bytes) {
-        if (bytes.length >= 8 &&
-                bytes[0] == (byte)0x89 && bytes[1] == 0x50 && bytes[2] == 0x4E && bytes[3] == 0x47) {
-            return MediaType.IMAGE_PNG;
-        }
-        if (bytes.length >= 3 &&
-                bytes[0] == (byte)0xFF && bytes[1] == (byte)0xD8 && bytes[2] == (byte)0xFF) {
-            return MediaType.IMAGE_JPEG;
-        }
-        if (bytes.length >= 6 &&
-                bytes[0] == 'G' && bytes[1] == 'I' && bytes[2] == 'F' &&
-                bytes[3] == '8' && (bytes[4] == '7' || bytes[4] == '9') && bytes[5] == 'a') {
-            return MediaType.IMAGE_GIF;
-        }
-        if (bytes.length >= 12 &&
-                bytes[0] == 'R' && bytes[1] == 'I' && bytes[2] == 'F' && bytes[3] == 'F' &&
-                bytes[8] == 'W' && bytes[9] == 'E' && bytes[10] == 'B' && bytes[11] == 'P') {
-            return MediaType.parseMediaType("image/webp");
-        }
-        return MediaType.APPLICATION_OCTET_STREAM;
+        return ResponseEntity.status(HttpStatus.FOUND).location(URI.create(urlOpt.get())).build();
     }
     
  // GET /api/events/latest?limit=5
@@ -55,6 +55,11 @@ public class MemberCouponPublicController {
 	@Operation(summary = "領取指定優惠券（建立 member_coupon，status='未使用'）")
 	public ResponseEntity<MemberCouponListDTO> claim(@AuthenticationPrincipal(expression = "memberId") Integer memberId,
 			@PathVariable Integer couponId) {
-		return ResponseEntity.ok(memberCouponService.claim(memberId, couponId));
+		MemberCouponListDTO claimed = memberCouponService.claim(memberId, couponId);
+		// 已受理但還在寫入中時回 202
+		if (MemberCouponService.CLAIM_PENDING.equals(claimed.getStatus())) {
+			return ResponseEntity.accepted().body(claimed);
+		}
+		return ResponseEntity.ok(claimed);
 	}
 }
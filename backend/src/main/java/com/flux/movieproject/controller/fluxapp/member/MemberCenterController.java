@@ -264,6 +264,25 @@ public class MemberCenterController {
 		}
 	}
 
+	@PutMapping("/orders/{orderId}/pay")
+	public ResponseEntity<?> payProductOrder(@PathVariable Integer orderId, HttpServletRequest request) {
+		try {
+			String email = getEmailFromToken(request);
+			Member member = memberService.getMemberEntityByEmail(email);
+			ProductOrderDTO paidOrder = productOrderService.payMemberOrder(orderId, member.getMemberId());
+
+			return ResponseEntity.ok(paidOrder);
+		} catch (EntityNotFoundException e) {
+			return ResponseEntity.status(404).body(e.getMessage());
+		} catch (SecurityException e) {
+			return ResponseEntity.status(403).body(e.getMessage());
+		} catch (IllegalStateException e) {
+			return ResponseEntity.status(400).body(e.getMessage());
+		} catch (Exception e) {
+			return ResponseEntity.status(500).body("付款時發生未知錯誤");
+		}
+	}
+
 	// =====================收藏電影====================================================================================================
 	/**
 	 * 新增一部電影到當前登入會員的收藏列表。
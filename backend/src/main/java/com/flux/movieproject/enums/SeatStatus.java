@@ -1,5 +1,8 @@
 package com.flux.movieproject.enums;
 
+/**
+ * 座位狀態。宣告順序即為 SessionSeatBitmap 中的 2 位元編碼，最多只能有 4 種狀態。
+ */
 public enum SeatStatus {
 	AVAILABLE,     // 可用
     RESERVED,      // 已預訂 (臨時鎖定)
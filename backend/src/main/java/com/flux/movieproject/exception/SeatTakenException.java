@@ -0,0 +1,23 @@
+package com.flux.movieproject.exception;
+
+import java.util.List;
+
+/**
+ * 座位已被其他人預訂時拋出，攜帶衝突的 SessionSeat ID 供呼叫端參考
+ */
+public class SeatTakenException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<Integer> sessionSeatIds;
+
+	public SeatTakenException(String message, List<Integer> sessionSeatIds) {
+		super(message);
+		this.sessionSeatIds = sessionSeatIds;
+	}
+
+	public List<Integer> getSessionSeatIds() {
+		return sessionSeatIds;
+	}
+
+}
@@ -27,7 +27,8 @@ public class MemberDTO { // 用於傳送給前端的資料
 	private LocalDateTime lastLoginTime;
 
 	private Integer memberPoints;
-	
-	 private String profilePhoto;
+
+	// 大頭貼網址 (帶內容雜湊，可長期快取，並可加上 &w= 取得縮圖)
+	private String profilePhotoUrl;
 
 }
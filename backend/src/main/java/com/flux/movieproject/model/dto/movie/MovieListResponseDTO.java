@@ -1,7 +1,5 @@
 package com.flux.movieproject.model.dto.movie;
 
-import java.util.Base64;
-
 import lombok.Data;
 
 /**
@@ -36,29 +34,11 @@ public class MovieListResponseDTO {
     private String overview;
 
     /**
-     * 電影海報的 Base64 Data URL 字串。
+     * 電影海報的網址 (由 ImageService 產生，帶內容雜湊，可長期快取)。
      * 對應前端 MovieCard.vue 中的 movie.posterImageUrl。
      */
     private String posterImageUrl;
     
 //    預告連結
-    private String trailerUrl; 
-
-    /**
-     * 輔助方法，由 MovieService 層在轉換 Entity 到 DTO 時調用。
-     * 將從資料庫取出的 byte[] 格式的圖片，轉換為前端可以直接使用的 Base64 Data URL。
-     *
-     * @param posterImage 來自 Movie Entity 的 byte[] 圖片資料
-     */
-    public void setPosterImage(byte[] posterImage) {
-        // 檢查從資料庫來的 byte 陣列是否為 null 或為空
-        if (posterImage != null && posterImage.length > 0) {
-            // 使用 Java 內建的 Base64 編碼器將 byte[] 轉換為 Base64 字串
-            String base64String = Base64.getEncoder().encodeToString(posterImage);
-            
-            this.posterImageUrl = "data:image/jpeg;base64," + base64String;
-        } else {
-            this.posterImageUrl = null;
-        }
-    }
-}
\ No newline at end of file
+    private String trailerUrl;
+}
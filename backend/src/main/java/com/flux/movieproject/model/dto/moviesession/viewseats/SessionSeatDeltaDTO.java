@@ -0,0 +1,16 @@
+package com.flux.movieproject.model.dto.moviesession.viewseats;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 座位狀態異動 (推播給座位圖的增量資料)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionSeatDeltaDTO {
+	private Integer sessionSeatId;
+	private String status;
+}
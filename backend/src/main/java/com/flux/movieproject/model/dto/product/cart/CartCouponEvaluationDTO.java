@@ -0,0 +1,19 @@
+package com.flux.movieproject.model.dto.product.cart;
+
+import com.flux.movieproject.enums.DiscountType;
+
+/**
+ * 會員一張未使用的優惠券套用在購物車上的結果
+ *
+ * @param couponDiscount 優惠券設定的折扣 (固定金額或百分比)
+ * @param applicable     購物車金額已達最低消費
+ * @param discountAmount 套用後折抵的金額，不適用時為 0
+ */
+public record CartCouponEvaluationDTO(Integer couponId,
+                                      String couponName,
+                                      DiscountType discountType,
+                                      Integer couponDiscount,
+                                      Integer minimumSpend,
+                                      boolean applicable,
+                                      Integer discountAmount) {
+}
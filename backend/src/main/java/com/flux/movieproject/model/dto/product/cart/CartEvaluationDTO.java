@@ -0,0 +1,22 @@
+package com.flux.movieproject.model.dto.product.cart;
+
+import java.util.List;
+
+/**
+ * 結帳頁的購物車試算結果，金額的計算方式與建立訂單相同
+ *
+ * @param orderAmount        所有商品小計的合計
+ * @param appliedCouponId    實際套用的優惠券，指定的優惠券不可用時為 null
+ * @param discountAmount     折抵金額
+ * @param finalPaymentAmount 應付金額
+ * @param checkoutReady      購物車不是空的且所有商品庫存足夠
+ */
+public record CartEvaluationDTO(Integer cartId,
+                                List<CartLineEvaluationDTO> items,
+                                Integer orderAmount,
+                                List<CartCouponEvaluationDTO> coupons,
+                                Integer appliedCouponId,
+                                Integer discountAmount,
+                                Integer finalPaymentAmount,
+                                boolean checkoutReady) {
+}
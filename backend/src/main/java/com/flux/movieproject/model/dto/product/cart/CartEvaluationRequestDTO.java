@@ -0,0 +1,13 @@
+package com.flux.movieproject.model.dto.product.cart;
+
+import java.util.Map;
+
+/**
+ * 結帳頁試算購物車的條件
+ *
+ * @param options  購物車項目 ID 對應選擇的加價選項 ID (product_optional_price.option_id)，未選擇的項目不必列出
+ * @param couponId 要使用的優惠券 ID，不使用時為 null
+ */
+public record CartEvaluationRequestDTO(Map<Integer, Integer> options,
+                                       Integer couponId) {
+}
@@ -0,0 +1,28 @@
+package com.flux.movieproject.model.dto.product.cart;
+
+import java.util.List;
+
+/**
+ * 購物車中一個商品的試算結果
+ *
+ * @param unitPrice        商品目前的售價
+ * @param selectedOptionId 選擇的加價選項，選項不屬於此商品時視為未選擇
+ * @param extraPrice       加價選項的金額 x 數量，即建立訂單時明細的 extraPrice
+ * @param subtotal         unitPrice x 數量 + extraPrice
+ * @param stockSufficient  商品上架中且庫存足夠
+ * @param options          此商品所有的加價選項
+ */
+public record CartLineEvaluationDTO(Integer cartItemId,
+                                    Integer productId,
+                                    String productName,
+                                    String imageUrl,
+                                    Integer quantity,
+                                    Integer unitPrice,
+                                    Integer selectedOptionId,
+                                    Integer extraPrice,
+                                    Integer subtotal,
+                                    boolean isAvailable,
+                                    Integer stock,
+                                    boolean stockSufficient,
+                                    List<CartOptionDTO> options) {
+}
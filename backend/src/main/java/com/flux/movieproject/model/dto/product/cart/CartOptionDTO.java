@@ -0,0 +1,7 @@
+package com.flux.movieproject.model.dto.product.cart;
+
+public record CartOptionDTO(Integer optionId,
+                            String size,
+                            String topping,
+                            Integer extraPrice) {
+}
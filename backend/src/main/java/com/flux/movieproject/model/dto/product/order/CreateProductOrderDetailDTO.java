@@ -1,4 +1,7 @@
 package com.flux.movieproject.model.dto.product.order;
 
-public record CreateProductOrderDetailDTO(Integer productId, Integer quantity, Integer extraPrice) {
+/**
+ * @param optionId 選擇的加價選項 ID (product_optional_price.option_id)，未選擇時為 null；加價金額由後端依選項計算
+ */
+public record CreateProductOrderDetailDTO(Integer productId, Integer quantity, Integer optionId) {
 }
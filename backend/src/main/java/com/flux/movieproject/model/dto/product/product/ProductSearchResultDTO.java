@@ -0,0 +1,15 @@
+package com.flux.movieproject.model.dto.product.product;
+
+import java.util.List;
+
+import org.springframework.data.domain.Page;
+
+import com.flux.movieproject.service.product.ProductSearchIndex.CategoryFacet;
+import com.flux.movieproject.service.product.ProductSearchIndex.PriceFacet;
+
+/**
+ * 商品搜尋結果：這一頁的商品，以及各類別與各價格區間的商品數
+ */
+public record ProductSearchResultDTO(Page<ProductResponseDTO> products, List<CategoryFacet> categories,
+		List<PriceFacet> prices) {
+}
@@ -10,6 +10,8 @@ import lombok.Data;
 public class TicketOrderSearchRequestDTO {
 	private int page = 1;
 	private int pageSize = 10;
+	// 上一頁回傳的 nextCursor；有游標時從游標之後查詢，忽略 page
+	private String cursor;
 
 	private String orderNumber;
 	private String username;
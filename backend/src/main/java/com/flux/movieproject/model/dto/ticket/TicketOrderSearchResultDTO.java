@@ -0,0 +1,24 @@
+package com.flux.movieproject.model.dto.ticket;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 後台訂單列表的查詢結果。以游標分頁，總筆數為估計值：
+ * 篩選後的筆數超過上限時 totalElements 只計到上限，無條件查詢時取自資料表統計資訊，此時 totalExact 為 false。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TicketOrderSearchResultDTO {
+	private List<TicketOrderSummaryDTO> content;
+	private long totalElements; // 總筆數 (可能為估計值)
+	private boolean totalExact; // totalElements 是否為精確筆數
+	private int page;
+	private int pageSize;
+	private boolean hasNext; // 是否還有下一頁
+	private String nextCursor; // 查詢下一頁時帶入 cursor 參數
+}
@@ -0,0 +1,23 @@
+package com.flux.movieproject.model.dto.ticket;
+
+import java.math.BigDecimal;
+
+import com.flux.movieproject.enums.DiscountType;
+import com.flux.movieproject.model.entity.theater.TicketType;
+
+/**
+ * 票種資料 (不可變，可直接放入快取共用)，JSON 欄位與 TicketType 相同
+ */
+public record TicketTypeDTO(Integer ticketTypeId,
+		String ticketTypeName,
+		String description,
+		Boolean isEnabled,
+		DiscountType discountType,
+		BigDecimal discountValue) {
+
+	public static TicketTypeDTO from(TicketType ticketType) {
+		return new TicketTypeDTO(ticketType.getTicketTypeId(), ticketType.getTicketTypeName(),
+				ticketType.getDescription(), ticketType.getIsEnabled(), ticketType.getDiscountType(),
+				ticketType.getDiscountValue());
+	}
+}
@@ -6,6 +6,7 @@ import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
 
+import org.hibernate.annotations.DynamicUpdate;
 import org.springframework.format.annotation.DateTimeFormat;
 
 import jakarta.persistence.CascadeType;
@@ -20,6 +21,7 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Entity
+@DynamicUpdate // 只更新有變動的欄位，海報沒換時不會重寫整張圖片
 @Getter
 @Setter
 @NoArgsConstructor
@@ -53,6 +55,14 @@ public class TMDBMovie {
 
 	private Integer voteCount; // 評分人數 
 
+	private String posterPath; // TMDB 海報路徑（路徑不變代表海報沒有更換）
+
+	private String contentHash; // 內容雜湊（同步時用來判斷資料是否有變動）
+
+	@DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+	@Temporal(TemporalType.TIMESTAMP) 
+	private LocalDateTime lastSyncTime; // 最後一次與 TMDB 同步的時間
+
 	@DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")//前端對應的時間格式，要搭配雙層大括號 
 	@Temporal(TemporalType.TIMESTAMP) 
 	private LocalDateTime createTime; // 建立時間(後續興建到資料庫再加) 
@@ -2,6 +2,7 @@ package com.flux.movieproject.model.entity.product;
 
     public enum OrderStatus {
         PENDING,       // 待付款
+        AWAITING_PAYMENT, // 等待線上付款 (庫存已保留，逾時未付款自動取消)
         PREPARED,      //準備中
         PROCESSING,    // 處理中
         COMPLETED,     // 已完成
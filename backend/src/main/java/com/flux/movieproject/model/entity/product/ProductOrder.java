@@ -58,6 +58,10 @@ public class ProductOrder {
     @Column(name = "order_status", length = 20)
     private OrderStatus orderStatus;
 
+    // 進入目前訂單狀態的時間
+    @Column(name = "status_time")
+    private Instant statusTime;
+
     @OneToMany(mappedBy = "productOrder", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<ProductOrderDetail>  productOrderDetails = new ArrayList<>();
 
@@ -43,6 +43,16 @@ public class MovieSession {
 	private LocalDateTime startTime;
 
 	private LocalDateTime endTime;
+
+	/**
+	 * 可售座位總數 (不含友善座位)，由 ShowtimeAvailabilityService 維護
+	 */
+	private Integer sellableSeats;
+
+	/**
+	 * 目前仍可購買的座位數 (不含友善座位)，座位狀態異動時以增量更新，並由定時任務校正
+	 */
+	private Integer availableSeats;
 	/**
 	 * 新增與場次座位表的關聯
 	 */
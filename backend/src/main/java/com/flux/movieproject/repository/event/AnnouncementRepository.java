@@ -1,5 +1,6 @@
 package com.flux.movieproject.repository.event;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
@@ -63,4 +64,11 @@ public interface AnnouncementRepository extends JpaRepository<Announcement, Inte
                    lower(a.content) LIKE lower(concat('%', :kw, '%')))
             """)
         Page<Announcement> searchByKeyword(@Param("kw") String keyword, Pageable pageable);
-}
\ No newline at end of file
+
+    /**
+     * 由資料庫計算公告圖片的 SHA-256 (取前 16 個十六進位字元)
+     */
+    @Query(value = "SELECT announcement_id, LOWER(LEFT(CONVERT(VARCHAR(64), HASHBYTES('SHA2_256', announcement_image), 2), 16)) "
+    		+ "FROM announcement WHERE announcement_id IN (:ids) AND announcement_image IS NOT NULL", nativeQuery = true)
+    List<Object[]> findImageHashesByIds(@Param("ids") Collection<Integer> ids);
+}
@@ -0,0 +1,38 @@
+package com.flux.movieproject.repository.event;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 優惠券適用條件的 JDBC 查詢，供 CouponEligibilityIndex 建立索引。
+ * 一次查出所有優惠券與其適用條件 (event_eligibility) 的 ID，不載入任何 Entity。
+ */
+@Repository
+public class CouponEligibilityJdbcRepository {
+
+	@Autowired
+	private NamedParameterJdbcTemplate jdbc;
+
+	/**
+	 * 一張優惠券的適用條件，沒有限制的欄位為 null
+	 *
+	 * @param couponId      優惠券 ID
+	 * @param movieId       限定的電影 ID
+	 * @param sessionId     限定的場次 ID
+	 * @param memberLevelId 要求的最低會員等級 ID
+	 */
+	public record EligibilityRow(int couponId, Integer movieId, Integer sessionId, Integer memberLevelId) {
+	}
+
+	public List<EligibilityRow> findAll() {
+		return jdbc.query("SELECT c.coupon_id, e.movie_id, e.session_id, e.member_level_id "
+				+ "FROM coupon c LEFT JOIN event_eligibility e ON e.event_eligibility_id = c.event_eligibility_id",
+				Map.of(),
+				(rs, rowNum) -> new EligibilityRow(rs.getInt("coupon_id"), rs.getObject("movie_id", Integer.class),
+						rs.getObject("session_id", Integer.class), rs.getObject("member_level_id", Integer.class)));
+	}
+}
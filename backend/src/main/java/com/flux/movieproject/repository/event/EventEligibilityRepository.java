@@ -1,9 +1,18 @@
 package com.flux.movieproject.repository.event;
 
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import com.flux.movieproject.model.entity.event.EventEligibility;
 
 public interface EventEligibilityRepository extends JpaRepository<EventEligibility, Integer> {
 
+	/**
+	 * 查詢活動的所有適用條件
+	 *
+	 * @param eventId 活動 ID
+	 * @return 適用條件列表
+	 */
+	List<EventEligibility> findByEvent_EventId(Integer eventId);
 }
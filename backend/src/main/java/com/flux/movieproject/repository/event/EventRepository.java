@@ -1,5 +1,6 @@
 package com.flux.movieproject.repository.event;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
@@ -77,5 +78,10 @@ public interface EventRepository extends JpaRepository<Event, Integer>, JpaSpeci
     		""")
     		List<Event> findActiveOrderByStartDateDesc(@Param("today") java.time.LocalDate today, Pageable pageable);
 
-    
+    /**
+     * 由資料庫計算活動圖片的 SHA-256 (取前 16 個十六進位字元)
+     */
+    @Query(value = "SELECT event_id, LOWER(LEFT(CONVERT(VARCHAR(64), HASHBYTES('SHA2_256', image), 2), 16)) "
+    		+ "FROM event WHERE event_id IN (:ids) AND image IS NOT NULL", nativeQuery = true)
+    List<Object[]> findImageHashesByIds(@Param("ids") Collection<Integer> ids);
 }
@@ -0,0 +1,94 @@
+package com.flux.movieproject.repository.image;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 圖片欄位的 JDBC 存取，供 ImageService 提供圖片。
+ * 雜湊、長度與檔頭由資料庫計算；圖片內容以 getBinaryStream 直接串流到回應，不整張讀進記憶體。
+ * 資料表與欄位名稱來自 ImageType 的固定設定，不是使用者輸入。
+ */
+@Repository
+public class ImageJdbcRepository {
+
+	// 判斷圖片格式需要的檔頭長度
+	private static final int HEADER_LENGTH = 12;
+
+	@Autowired
+	private NamedParameterJdbcTemplate jdbc;
+
+	/**
+	 * 圖片的基本資料
+	 *
+	 * @param hash   內容的 SHA-256 (前 16 個十六進位字元)
+	 * @param length 圖片大小 (位元組)
+	 * @param header 圖片開頭的位元組，用於判斷格式
+	 */
+	public record ImageMeta(String hash, long length, byte[] header) {
+	}
+
+	/**
+	 * 圖片內容與同一次讀取計算的雜湊
+	 */
+	public record ImageContent(String hash, byte[] bytes) {
+	}
+
+	/**
+	 * @return 圖片的基本資料；找不到資料或沒有圖片時回傳 Optional.empty()
+	 */
+	public Optional<ImageMeta> findMeta(String table, String idColumn, String imageColumn, int id) {
+		return jdbc.query("SELECT " + hashOf(imageColumn) + " AS hash, DATALENGTH(" + imageColumn + ") AS length, "
+				+ "CAST(SUBSTRING(" + imageColumn + ", 1, " + HEADER_LENGTH + ") AS VARBINARY(" + HEADER_LENGTH
+				+ ")) AS header FROM " + table + " WHERE " + idColumn + " = :id AND DATALENGTH(" + imageColumn + ") > 0",
+				Map.of("id", id),
+				(rs, rowNum) -> new ImageMeta(rs.getString("hash"), rs.getLong("length"), rs.getBytes("header")))
+				.stream().findFirst();
+	}
+
+	/**
+	 * 讀取整張圖片 (產生縮圖時需要解碼)
+	 */
+	public Optional<ImageContent> findContent(String table, String idColumn, String imageColumn, int id) {
+		return jdbc.query("SELECT " + hashOf(imageColumn) + " AS hash, " + imageColumn + " AS image FROM " + table
+				+ " WHERE " + idColumn + " = :id AND DATALENGTH(" + imageColumn + ") > 0",
+				Map.of("id", id),
+				(rs, rowNum) -> new ImageContent(rs.getString("hash"), rs.getBytes("image")))
+				.stream().findFirst();
+	}
+
+	/**
+	 * 將圖片內容串流寫出
+	 *
+	 * @return 是否有寫出圖片
+	 */
+	public boolean stream(String table, String idColumn, String imageColumn, int id, OutputStream out) {
+		Boolean written = jdbc.query("SELECT " + imageColumn + " FROM " + table + " WHERE " + idColumn + " = :id",
+				Map.of("id", id), rs -> {
+					if (!rs.next()) {
+						return false;
+					}
+					try (InputStream in = rs.getBinaryStream(1)) {
+						if (in == null) {
+							return false;
+						}
+						in.transferTo(out);
+						return true;
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+		return Boolean.TRUE.equals(written);
+	}
+
+	private static String hashOf(String imageColumn) {
+		return "LOWER(LEFT(CONVERT(VARCHAR(64), HASHBYTES('SHA2_256', " + imageColumn + "), 2), 16))";
+	}
+}
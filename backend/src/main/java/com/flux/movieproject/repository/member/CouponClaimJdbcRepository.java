@@ -0,0 +1,130 @@
+package com.flux.movieproject.repository.member;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 領取優惠券的 JDBC 存取，供 CouponClaimEngine 批次寫入。
+ * 1. 發放總量: coupon.quantity 為剩餘張數，以帶條件的 UPDATE 扣除，不會扣到負數
+ * 2. 每人限領: member_coupon_claim_count 記錄每位會員領取每張券的次數，以帶條件的 MERGE 累加，達到上限時不再累加
+ * 兩者都不需要先 COUNT 已領取的 member_coupon。
+ */
+@Repository
+public class CouponClaimJdbcRepository {
+
+	// 一次新增的 member_coupon 筆數上限 (SQL Server 每個語句最多 2100 個參數)
+	public static final int MAX_INSERT_ROWS = 500;
+
+	@Autowired
+	private NamedParameterJdbcTemplate jdbc;
+
+	/**
+	 * 優惠券的領取設定
+	 *
+	 * @param status          啟用狀態
+	 * @param quantity        剩餘張數，不限量時為 null
+	 * @param redeemableTimes 每人限領次數，不限時為 null 或 0
+	 */
+	public record CouponQuota(String status, Integer quantity, Integer redeemableTimes) {
+	}
+
+	/**
+	 * 一筆領取紀錄
+	 */
+	public record ClaimRow(int memberId, int couponId) {
+	}
+
+	/**
+	 * 新增的會員優惠券
+	 */
+	public record InsertedRow(int memberCouponId, int memberId, int couponId) {
+	}
+
+	public Optional<CouponQuota> findQuota(Integer couponId) {
+		return jdbc.query("SELECT status, quantity, redeemable_times FROM coupon WHERE coupon_id = :couponId",
+				Map.of("couponId", couponId),
+				(rs, rowNum) -> new CouponQuota(rs.getString("status"), rs.getObject("quantity", Integer.class),
+						rs.getObject("redeemable_times", Integer.class)))
+				.stream().findFirst();
+	}
+
+	/**
+	 * 扣除剩餘張數
+	 *
+	 * @return 剩餘張數足夠且已扣除時為 true
+	 */
+	public boolean decrementQuantity(int couponId, int count) {
+		return jdbc.update("UPDATE coupon SET quantity = quantity - :count "
+				+ "WHERE coupon_id = :couponId AND quantity >= :count",
+				Map.of("couponId", couponId, "count", count)) == 1;
+	}
+
+	/**
+	 * 退回已扣除的剩餘張數
+	 */
+	public void restoreQuantity(int couponId, int count) {
+		jdbc.update("UPDATE coupon SET quantity = quantity + :count WHERE coupon_id = :couponId AND quantity IS NOT NULL",
+				Map.of("couponId", couponId, "count", count));
+	}
+
+	/**
+	 * 以一次批次累加會員的領取次數，已達上限的不累加
+	 *
+	 * @param claims 領取紀錄
+	 * @param limits 與 claims 對應的每人限領次數
+	 * @return 與 claims 對應的結果，true 代表已累加 (未超過上限)
+	 */
+	public boolean[] incrementClaimCounts(List<ClaimRow> claims, List<Integer> limits) {
+		SqlParameterSource[] params = new SqlParameterSource[claims.size()];
+		for (int i = 0; i < claims.size(); i++) {
+			params[i] = new MapSqlParameterSource()
+					.addValue("memberId", claims.get(i).memberId())
+					.addValue("couponId", claims.get(i).couponId())
+					.addValue("limit", limits.get(i));
+		}
+		int[] updated = jdbc.batchUpdate("MERGE member_coupon_claim_count WITH (HOLDLOCK) AS t "
+				+ "USING (SELECT :memberId AS member_id, :couponId AS coupon_id) AS s "
+				+ "ON t.member_id = s.member_id AND t.coupon_id = s.coupon_id "
+				+ "WHEN MATCHED AND t.claimed_count < :limit THEN UPDATE SET claimed_count = t.claimed_count + 1 "
+				+ "WHEN NOT MATCHED THEN INSERT (member_id, coupon_id, claimed_count) "
+				+ "VALUES (s.member_id, s.coupon_id, 1);", params);
+		boolean[] accepted = new boolean[updated.length];
+		for (int i = 0; i < updated.length; i++) {
+			accepted[i] = updated[i] == 1;
+		}
+		return accepted;
+	}
+
+	/**
+	 * 以一個 INSERT 新增多筆未使用的會員優惠券 (最多 MAX_INSERT_ROWS 筆)
+	 *
+	 * @return 新增的紀錄 (順序不一定與傳入的相同)
+	 */
+	public List<InsertedRow> insertMemberCoupons(List<ClaimRow> claims, LocalDateTime acquisitionTime) {
+		if (claims.size() > MAX_INSERT_ROWS) {
+			throw new IllegalArgumentException("一次最多新增 " + MAX_INSERT_ROWS + " 筆會員優惠券");
+		}
+		StringBuilder sql = new StringBuilder("INSERT INTO member_coupon (member_id, coupon_id, status, acquisition_time) "
+				+ "OUTPUT INSERTED.member_coupon_id, INSERTED.member_id, INSERTED.coupon_id VALUES ");
+		MapSqlParameterSource params = new MapSqlParameterSource("acquisitionTime", Timestamp.valueOf(acquisitionTime));
+		for (int i = 0; i < claims.size(); i++) {
+			if (i > 0) {
+				sql.append(", ");
+			}
+			sql.append("(:memberId").append(i).append(", :couponId").append(i).append(", N'未使用', :acquisitionTime)");
+			params.addValue("memberId" + i, claims.get(i).memberId());
+			params.addValue("couponId" + i, claims.get(i).couponId());
+		}
+		return jdbc.query(sql.toString(), params, (rs, rowNum) -> new InsertedRow(rs.getInt("member_coupon_id"),
+				rs.getInt("member_id"), rs.getInt("coupon_id")));
+	}
+}
@@ -64,6 +64,15 @@ public interface MemberCouponRepository extends JpaRepository<MemberCoupon, Inte
 	@Query("SELECT mc FROM MemberCoupon mc JOIN FETCH mc.coupon WHERE mc.member = :member AND mc.status = '未使用'")
 	List<MemberCoupon> findByMemberAndStatusWithCoupon(@Param("member") Member member);
 
+	// 結帳頁試算用：以會員 ID 查詢，不必先載入會員
+	@Query("SELECT mc FROM MemberCoupon mc JOIN FETCH mc.coupon WHERE mc.member.memberId = :memberId AND mc.status = '未使用'")
+	List<MemberCoupon> findUnusedWithCouponByMemberId(@Param("memberId") Integer memberId);
+
+	// 領取後回傳用：一併載入優惠券與類別
+	@Query("SELECT mc FROM MemberCoupon mc JOIN FETCH mc.coupon c LEFT JOIN FETCH c.couponCategory "
+			+ "WHERE mc.memberCouponId = :memberCouponId")
+	Optional<MemberCoupon> findWithCouponById(@Param("memberCouponId") Integer memberCouponId);
+
 	@Query("SELECT mc FROM MemberCoupon mc JOIN FETCH mc.coupon " +
 			"WHERE mc.member.memberId = :memberId AND mc.coupon.couponId = :couponId")
 	List<MemberCoupon> findByMemberIdAndCouponId(@Param("memberId") Integer memberId,
@@ -0,0 +1,232 @@
+package com.flux.movieproject.repository.member;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 會員等級批次重新評估的 JDBC 存取。
+ * 一次評估 (member_level_evaluation_job) 依會員 ID 切成多個區段 (member_level_evaluation_chunk)，
+ * 各區段以帶條件的 UPDATE 取得處理權，處理結果與完成標記在同一個交易中寫入，中斷後只需重做未完成的區段。
+ */
+@Repository
+public class MemberLevelEvaluationJdbcRepository {
+
+	public static final String RUNNING = "RUNNING";
+	public static final String DONE = "DONE";
+	// 被較新的評估取代
+	public static final String SUPERSEDED = "SUPERSEDED";
+
+	public static final String CHUNK_PENDING = "PENDING";
+	public static final String CHUNK_PROCESSING = "PROCESSING";
+	public static final String CHUNK_DONE = "DONE";
+
+	// 會員的累計消費 (與 MemberSpendingJdbcRepository.findTotalSpent 相同) 與依門檻應有的等級，
+	// 只回傳目前等級與應有等級不同 (或沒有目前等級) 的會員
+	private static final String LEVEL_CHANGE_QUERY = "WITH spend AS ("
+			+ "SELECT m.member_id, ISNULL(s.total_spent, 0) + ISNULL(p.pending, 0) AS total_spent "
+			+ "FROM member m "
+			+ "LEFT JOIN member_spending s ON s.member_id = m.member_id "
+			+ "LEFT JOIN (SELECT member_id, SUM(CAST(amount AS BIGINT)) AS pending FROM member_spending_entry "
+			+ "WHERE applied = 0 AND effective_time <= :now GROUP BY member_id) p ON p.member_id = m.member_id "
+			+ "WHERE %1$s), "
+			+ "target AS ("
+			+ "SELECT sp.member_id, COALESCE("
+			+ "(SELECT TOP 1 l.member_level_id FROM member_level l WHERE l.threshold_lower_bound <= sp.total_spent "
+			+ "ORDER BY l.threshold_lower_bound DESC), "
+			+ "(SELECT TOP 1 l.member_level_id FROM member_level l ORDER BY l.threshold_lower_bound)) AS level_id "
+			+ "FROM spend sp) "
+			+ "SELECT t.member_id, t.level_id FROM target t "
+			+ "LEFT JOIN member_level_record r WITH (UPDLOCK, HOLDLOCK) ON r.member_id = t.member_id AND r.end_date IS NULL "
+			+ "WHERE t.level_id IS NOT NULL AND (r.member_level_id IS NULL OR r.member_level_id <> t.level_id)";
+
+	private static final RowMapper<JobRow> JOB_ROW_MAPPER = (rs, rowNum) -> new JobRow(rs.getLong("job_id"),
+			rs.getString("status"), rs.getString("reason"), rs.getInt("total_chunks"), rs.getInt("done_chunks"),
+			rs.getInt("members_changed"), rs.getObject("created_time", LocalDateTime.class),
+			rs.getObject("finished_time", LocalDateTime.class));
+
+	@Autowired
+	private NamedParameterJdbcTemplate jdbc;
+
+	/**
+	 * 一次評估的進度
+	 *
+	 * @param membersChanged 已完成的區段中變更等級的會員數
+	 */
+	public record JobRow(long jobId, String status, String reason, int totalChunks, int doneChunks,
+			int membersChanged, LocalDateTime createdTime, LocalDateTime finishedTime) {
+	}
+
+	/**
+	 * 一個會員 ID 區段 (含頭尾)
+	 */
+	public record ChunkRow(long jobId, int chunkNo, int fromMemberId, int toMemberId) {
+	}
+
+	/**
+	 * 需要變更等級的會員
+	 */
+	public record LevelChange(int memberId, int memberLevelId) {
+	}
+
+	/**
+	 * 建立一次評估：取代進行中的評估，並將所有會員依 ID 每 chunkSize 位切成一個區段
+	 *
+	 * @return 評估 ID
+	 */
+	public long createJob(String reason, int chunkSize, LocalDateTime now) {
+		jdbc.update("UPDATE member_level_evaluation_job SET status = '" + SUPERSEDED + "', finished_time = :now "
+				+ "WHERE status = '" + RUNNING + "'", Map.of("now", Timestamp.valueOf(now)));
+
+		KeyHolder keyHolder = new GeneratedKeyHolder();
+		jdbc.update("INSERT INTO member_level_evaluation_job (status, reason, total_chunks, members_changed, "
+				+ "created_time) VALUES ('" + RUNNING + "', :reason, 0, 0, :now)",
+				new MapSqlParameterSource().addValue("reason", reason).addValue("now", Timestamp.valueOf(now)),
+				keyHolder, new String[] { "job_id" });
+		long jobId = keyHolder.getKey().longValue();
+
+		int chunks = jdbc.update("INSERT INTO member_level_evaluation_chunk (job_id, chunk_no, from_member_id, "
+				+ "to_member_id, status, members_changed, updated_time) "
+				+ "SELECT :jobId, chunk_no, MIN(member_id), MAX(member_id), '" + CHUNK_PENDING + "', 0, :now "
+				+ "FROM (SELECT member_id, (ROW_NUMBER() OVER (ORDER BY member_id) - 1) / :chunkSize AS chunk_no "
+				+ "FROM member) m GROUP BY chunk_no",
+				Map.of("jobId", jobId, "chunkSize", chunkSize, "now", Timestamp.valueOf(now)));
+		jdbc.update("UPDATE member_level_evaluation_job SET total_chunks = :chunks WHERE job_id = :jobId",
+				Map.of("chunks", chunks, "jobId", jobId));
+		return jobId;
+	}
+
+	/**
+	 * 取得進行中評估的下一個待處理區段 (已被其他執行緒鎖定的區段直接略過)
+	 */
+	public Optional<ChunkRow> claimNextChunk(LocalDateTime now) {
+		return jdbc.query("UPDATE TOP (1) c SET status = '" + CHUNK_PROCESSING + "', updated_time = :now "
+				+ "OUTPUT inserted.job_id, inserted.chunk_no, inserted.from_member_id, inserted.to_member_id "
+				+ "FROM member_level_evaluation_chunk c WITH (READPAST, UPDLOCK, ROWLOCK) "
+				+ "JOIN member_level_evaluation_job j ON j.job_id = c.job_id "
+				+ "WHERE c.status = '" + CHUNK_PENDING + "' AND j.status = '" + RUNNING + "'",
+				Map.of("now", Timestamp.valueOf(now)),
+				(rs, rowNum) -> new ChunkRow(rs.getLong("job_id"), rs.getInt("chunk_no"), rs.getInt("from_member_id"),
+						rs.getInt("to_member_id")))
+				.stream().findFirst();
+	}
+
+	/**
+	 * 區段內需要變更等級的會員
+	 */
+	public List<LevelChange> findLevelChanges(int fromMemberId, int toMemberId, LocalDateTime now) {
+		return jdbc.query(String.format(LEVEL_CHANGE_QUERY, "m.member_id BETWEEN :fromMemberId AND :toMemberId"),
+				Map.of("fromMemberId", fromMemberId, "toMemberId", toMemberId, "now", Timestamp.valueOf(now)),
+				(rs, rowNum) -> new LevelChange(rs.getInt("member_id"), rs.getInt("level_id")));
+	}
+
+	/**
+	 * 指定會員中需要變更等級的會員 (memberIds 最多 1000 個)
+	 */
+	public List<LevelChange> findLevelChanges(Collection<Integer> memberIds, LocalDateTime now) {
+		return jdbc.query(String.format(LEVEL_CHANGE_QUERY, "m.member_id IN (:memberIds)"),
+				Map.of("memberIds", memberIds, "now", Timestamp.valueOf(now)),
+				(rs, rowNum) -> new LevelChange(rs.getInt("member_id"), rs.getInt("level_id")));
+	}
+
+	/**
+	 * 以 JDBC batch 結束會員目前的等級紀錄並新增新等級的紀錄
+	 */
+	public void applyLevelChanges(List<LevelChange> changes, LocalDateTime now) {
+		if (changes.isEmpty()) {
+			return;
+		}
+		SqlParameterSource[] params = changes.stream()
+				.map(change -> new MapSqlParameterSource()
+						.addValue("memberId", change.memberId())
+						.addValue("memberLevelId", change.memberLevelId())
+						.addValue("now", Timestamp.valueOf(now)))
+				.toArray(SqlParameterSource[]::new);
+		jdbc.batchUpdate("UPDATE member_level_record SET end_date = :now WHERE member_id = :memberId "
+				+ "AND end_date IS NULL", params);
+		jdbc.batchUpdate("INSERT INTO member_level_record (member_id, member_level_id, start_date, end_date) "
+				+ "VALUES (:memberId, :memberLevelId, :now, NULL)", params);
+	}
+
+	/**
+	 * 標記區段完成
+	 *
+	 * @return 是否更新；區段處理逾時已被重新排入時為 false
+	 */
+	public boolean markChunkDone(ChunkRow chunk, int membersChanged, LocalDateTime now) {
+		return jdbc.update("UPDATE member_level_evaluation_chunk SET status = '" + CHUNK_DONE + "', "
+				+ "members_changed = :membersChanged, updated_time = :now "
+				+ "WHERE job_id = :jobId AND chunk_no = :chunkNo AND status = '" + CHUNK_PROCESSING + "'",
+				Map.of("membersChanged", membersChanged, "now", Timestamp.valueOf(now), "jobId", chunk.jobId(),
+						"chunkNo", chunk.chunkNo())) == 1;
+	}
+
+	/**
+	 * 處理中的時間超過 stuckBefore 的區段 (例如處理到一半應用程式重啟) 重新排入
+	 *
+	 * @return 筆數
+	 */
+	public int resetStuckChunks(LocalDateTime stuckBefore, LocalDateTime now) {
+		return jdbc.update("UPDATE member_level_evaluation_chunk SET status = '" + CHUNK_PENDING + "', "
+				+ "updated_time = :now WHERE status = '" + CHUNK_PROCESSING + "' AND updated_time < :stuckBefore",
+				Map.of("stuckBefore", Timestamp.valueOf(stuckBefore), "now", Timestamp.valueOf(now)));
+	}
+
+	/**
+	 * 所有區段都完成時結束評估
+	 *
+	 * @return 是否結束
+	 */
+	public boolean finishJobIfComplete(long jobId, LocalDateTime now) {
+		return jdbc.update("UPDATE member_level_evaluation_job SET status = '" + DONE + "', finished_time = :now, "
+				+ "members_changed = (SELECT ISNULL(SUM(members_changed), 0) FROM member_level_evaluation_chunk "
+				+ "WHERE job_id = :jobId) "
+				+ "WHERE job_id = :jobId AND status = '" + RUNNING + "' AND NOT EXISTS (SELECT 1 FROM "
+				+ "member_level_evaluation_chunk WHERE job_id = :jobId AND status <> '" + CHUNK_DONE + "')",
+				Map.of("jobId", jobId, "now", Timestamp.valueOf(now))) == 1;
+	}
+
+	/**
+	 * 是否有進行中且還有待處理區段的評估
+	 */
+	public boolean hasPendingChunks() {
+		Boolean exists = jdbc.queryForObject("SELECT CASE WHEN EXISTS (SELECT 1 FROM member_level_evaluation_chunk c "
+				+ "JOIN member_level_evaluation_job j ON j.job_id = c.job_id "
+				+ "WHERE c.status = '" + CHUNK_PENDING + "' AND j.status = '" + RUNNING + "') THEN 1 ELSE 0 END",
+				Map.of(), Boolean.class);
+		return Boolean.TRUE.equals(exists);
+	}
+
+	/**
+	 * 進行中的評估 ID
+	 */
+	public List<Long> findRunningJobIds() {
+		return jdbc.queryForList("SELECT job_id FROM member_level_evaluation_job WHERE status = '" + RUNNING + "'",
+				Map.of(), Long.class);
+	}
+
+	/**
+	 * 最近一次評估的進度
+	 */
+	public Optional<JobRow> findLatestJob() {
+		return jdbc.query("SELECT TOP 1 j.job_id, j.status, j.reason, j.total_chunks, j.created_time, j.finished_time, "
+				+ "(SELECT COUNT(*) FROM member_level_evaluation_chunk c WHERE c.job_id = j.job_id "
+				+ "AND c.status = '" + CHUNK_DONE + "') AS done_chunks, "
+				+ "(SELECT ISNULL(SUM(members_changed), 0) FROM member_level_evaluation_chunk c "
+				+ "WHERE c.job_id = j.job_id) AS members_changed "
+				+ "FROM member_level_evaluation_job j ORDER BY j.job_id DESC", Map.of(), JOB_ROW_MAPPER)
+				.stream().findFirst();
+	}
+}
@@ -2,7 +2,11 @@ package com.flux.movieproject.repository.member;
 
 import com.flux.movieproject.model.entity.member.Member;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface MemberRepository extends JpaRepository<Member, Integer> {
@@ -17,4 +21,11 @@ public interface MemberRepository extends JpaRepository<Member, Integer> {
 	Optional<Member> findById(Integer id);
 
 	Member findByMemberId(Integer memberId);
+
+	/**
+	 * 由資料庫計算會員大頭貼的 SHA-256 (取前 16 個十六進位字元)
+	 */
+	@Query(value = "SELECT member_id, LOWER(LEFT(CONVERT(VARCHAR(64), HASHBYTES('SHA2_256', profile_photo), 2), 16)) "
+			+ "FROM member WHERE member_id IN (:ids) AND profile_photo IS NOT NULL", nativeQuery = true)
+	List<Object[]> findProfilePhotoHashesByIds(@Param("ids") Collection<Integer> ids);
 }
@@ -0,0 +1,200 @@
+package com.flux.movieproject.repository.member;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 會員累計消費帳 (member_spending_entry / member_spending) 的 JDBC 存取。
+ * 每筆計入消費的訂單在 member_spending_entry 各有一筆，生效時間 (票券為場次開始時間) 到了才累加到
+ * member_spending.total_spent，會員的累計消費因此只需讀取一筆彙總與少數尚未累加的明細。
+ */
+@Repository
+public class MemberSpendingJdbcRepository {
+
+	public static final String TICKET = "TICKET";
+	public static final String PRODUCT = "PRODUCT";
+
+	// 計入消費的訂單：已完成的票券訂單、已付款的票券訂單 (場次開始後生效)、已完成的商品訂單
+	private static final String TICKET_SOURCE = "SELECT '" + TICKET + "' AS source_type, o.ticket_order_id AS source_id, "
+			+ "o.member_id, o.total_amount AS amount, "
+			+ "MIN(CASE WHEN o.status = 'COMPLETED' THEN o.created_time ELSE ms.start_time END) AS effective_time "
+			+ "FROM ticket_order o "
+			+ "JOIN ticket_order_detail d ON d.ticket_order_id = o.ticket_order_id "
+			+ "JOIN session_seat ss ON ss.session_seat_id = d.session_seat_id "
+			+ "JOIN movie_session ms ON ms.session_id = ss.session_id "
+			+ "WHERE o.status IN ('PAID', 'COMPLETED') ";
+	private static final String TICKET_SOURCE_GROUP = "GROUP BY o.ticket_order_id, o.member_id, o.total_amount";
+	private static final String PRODUCT_SOURCE = "SELECT '" + PRODUCT + "' AS source_type, p.order_id AS source_id, "
+			+ "p.member_id, p.final_payment_amount AS amount, p.order_time AS effective_time "
+			+ "FROM product_order p WHERE p.order_status = 'COMPLETED' ";
+
+	@Autowired
+	private NamedParameterJdbcTemplate jdbc;
+
+	/**
+	 * 一筆計入消費的訂單
+	 *
+	 * @param sourceType    訂單來源 (TICKET / PRODUCT)
+	 * @param sourceId      訂單 ID
+	 * @param effectiveTime 計入消費的時間
+	 */
+	public record SpendingSource(String sourceType, int sourceId, int memberId, int amount,
+			LocalDateTime effectiveTime) {
+	}
+
+	/**
+	 * 帳上的一筆訂單
+	 *
+	 * @param applied 是否已累加到 member_spending
+	 */
+	public record EntryRow(int memberId, int amount, LocalDateTime effectiveTime, boolean applied) {
+	}
+
+	/**
+	 * 已累加的消費金額
+	 */
+	public record AppliedAmount(int memberId, int amount) {
+	}
+
+	/**
+	 * 重新核對的結果
+	 *
+	 * @param entriesFixed 新增、修正或刪除的明細筆數
+	 * @param totalsFixed  修正的會員彙總筆數
+	 */
+	public record ReconcileResult(int entriesFixed, int totalsFixed) {
+	}
+
+	/**
+	 * 會員目前的累計消費：已累加的彙總加上已生效但尚未累加的明細
+	 */
+	public long findTotalSpent(int memberId, LocalDateTime now) {
+		Long total = jdbc.queryForObject("SELECT ISNULL((SELECT total_spent FROM member_spending "
+				+ "WHERE member_id = :memberId), 0) + ISNULL((SELECT SUM(amount) FROM member_spending_entry "
+				+ "WHERE member_id = :memberId AND applied = 0 AND effective_time <= :now), 0)",
+				Map.of("memberId", memberId, "now", Timestamp.valueOf(now)), Long.class);
+		return total == null ? 0 : total;
+	}
+
+	/**
+	 * 目前應計入消費的票券訂單 (訂單不存在或不計入時為 empty)
+	 */
+	public Optional<SpendingSource> findTicketSource(int ticketOrderId) {
+		return jdbc.query(TICKET_SOURCE + "AND o.ticket_order_id = :sourceId " + TICKET_SOURCE_GROUP,
+				Map.of("sourceId", ticketOrderId), (rs, rowNum) -> toSource(rs)).stream().findFirst();
+	}
+
+	/**
+	 * 目前應計入消費的商品訂單 (訂單不存在或不計入時為 empty)
+	 */
+	public Optional<SpendingSource> findProductSource(int productOrderId) {
+		return jdbc.query(PRODUCT_SOURCE + "AND p.order_id = :sourceId", Map.of("sourceId", productOrderId),
+				(rs, rowNum) -> toSource(rs)).stream().findFirst();
+	}
+
+	/**
+	 * 鎖定並讀取帳上的一筆訂單，避免同一筆訂單被同時調整
+	 */
+	public Optional<EntryRow> lockEntry(String sourceType, int sourceId) {
+		return jdbc.query("SELECT member_id, amount, effective_time, applied FROM member_spending_entry "
+				+ "WITH (UPDLOCK, HOLDLOCK) WHERE source_type = :sourceType AND source_id = :sourceId",
+				Map.of("sourceType", sourceType, "sourceId", sourceId),
+				(rs, rowNum) -> new EntryRow(rs.getInt("member_id"), rs.getInt("amount"),
+						rs.getObject("effective_time", LocalDateTime.class), rs.getBoolean("applied")))
+				.stream().findFirst();
+	}
+
+	public void insertEntry(SpendingSource source, LocalDateTime now) {
+		jdbc.update("INSERT INTO member_spending_entry (source_type, source_id, member_id, amount, effective_time, "
+				+ "applied, updated_time) VALUES (:sourceType, :sourceId, :memberId, :amount, :effectiveTime, 0, :now)",
+				sourceParams(source, now));
+	}
+
+	/**
+	 * 修改明細的金額與生效時間，修改後的明細重新等待累加
+	 */
+	public void updateEntry(SpendingSource source, LocalDateTime now) {
+		jdbc.update("UPDATE member_spending_entry SET member_id = :memberId, amount = :amount, "
+				+ "effective_time = :effectiveTime, applied = 0, updated_time = :now "
+				+ "WHERE source_type = :sourceType AND source_id = :sourceId", sourceParams(source, now));
+	}
+
+	public void deleteEntry(String sourceType, int sourceId) {
+		jdbc.update("DELETE FROM member_spending_entry WHERE source_type = :sourceType AND source_id = :sourceId",
+				Map.of("sourceType", sourceType, "sourceId", sourceId));
+	}
+
+	/**
+	 * 調整會員的累計消費彙總 (沒有彙總時新增)
+	 */
+	public void addToTotal(int memberId, long delta, LocalDateTime now) {
+		jdbc.update("MERGE member_spending WITH (HOLDLOCK) AS m "
+				+ "USING (SELECT :memberId AS member_id) AS s ON m.member_id = s.member_id "
+				+ "WHEN MATCHED THEN UPDATE SET total_spent = m.total_spent + :delta, updated_time = :now "
+				+ "WHEN NOT MATCHED THEN INSERT (member_id, total_spent, updated_time) VALUES (:memberId, :delta, :now);",
+				Map.of("memberId", memberId, "delta", delta, "now", Timestamp.valueOf(now)));
+	}
+
+	/**
+	 * 將已生效的明細標記為已累加
+	 *
+	 * @return 這次標記的明細 (呼叫端負責累加到彙總，兩者必須在同一個交易中)
+	 */
+	public List<AppliedAmount> markDueApplied(LocalDateTime now, int limit) {
+		return jdbc.query("UPDATE TOP (:limit) member_spending_entry SET applied = 1, updated_time = :now "
+				+ "OUTPUT inserted.member_id, inserted.amount WHERE applied = 0 AND effective_time <= :now",
+				Map.of("limit", limit, "now", Timestamp.valueOf(now)),
+				(rs, rowNum) -> new AppliedAmount(rs.getInt("member_id"), rs.getInt("amount")));
+	}
+
+	/**
+	 * 以訂單資料重新核對整本帳：補上遺漏的明細、修正金額或生效時間不符的明細、刪除不再計入的明細，
+	 * 再以已累加的明細重新計算不一致的會員彙總
+	 */
+	public ReconcileResult reconcile(LocalDateTime now) {
+		int entriesFixed = jdbc.update("MERGE member_spending_entry WITH (HOLDLOCK) AS e "
+				+ "USING (" + TICKET_SOURCE + TICKET_SOURCE_GROUP + " UNION ALL " + PRODUCT_SOURCE + ") AS s "
+				+ "ON e.source_type = s.source_type AND e.source_id = s.source_id "
+				+ "WHEN MATCHED AND (e.member_id <> s.member_id OR e.amount <> s.amount "
+				+ "OR e.effective_time <> s.effective_time) THEN UPDATE SET member_id = s.member_id, amount = s.amount, "
+				+ "effective_time = s.effective_time, "
+				+ "applied = CASE WHEN s.effective_time <= :now THEN e.applied ELSE 0 END, updated_time = :now "
+				+ "WHEN NOT MATCHED BY TARGET THEN INSERT (source_type, source_id, member_id, amount, effective_time, "
+				+ "applied, updated_time) VALUES (s.source_type, s.source_id, s.member_id, s.amount, s.effective_time, 0, :now) "
+				+ "WHEN NOT MATCHED BY SOURCE THEN DELETE;",
+				Map.of("now", Timestamp.valueOf(now)));
+		int totalsFixed = jdbc.update("MERGE member_spending WITH (HOLDLOCK) AS m "
+				+ "USING (SELECT member_id, SUM(CAST(amount AS BIGINT)) AS total FROM member_spending_entry "
+				+ "WHERE applied = 1 GROUP BY member_id) AS s ON m.member_id = s.member_id "
+				+ "WHEN MATCHED AND m.total_spent <> s.total THEN UPDATE SET total_spent = s.total, updated_time = :now "
+				+ "WHEN NOT MATCHED BY TARGET THEN INSERT (member_id, total_spent, updated_time) VALUES (s.member_id, s.total, :now) "
+				+ "WHEN NOT MATCHED BY SOURCE AND m.total_spent <> 0 THEN UPDATE SET total_spent = 0, updated_time = :now;",
+				Map.of("now", Timestamp.valueOf(now)));
+		return new ReconcileResult(entriesFixed, totalsFixed);
+	}
+
+	private static SpendingSource toSource(ResultSet rs) throws SQLException {
+		return new SpendingSource(rs.getString("source_type"), rs.getInt("source_id"), rs.getInt("member_id"),
+				rs.getInt("amount"), rs.getObject("effective_time", LocalDateTime.class));
+	}
+
+	private static MapSqlParameterSource sourceParams(SpendingSource source, LocalDateTime now) {
+		return new MapSqlParameterSource()
+				.addValue("sourceType", source.sourceType())
+				.addValue("sourceId", source.sourceId())
+				.addValue("memberId", source.memberId())
+				.addValue("amount", source.amount())
+				.addValue("effectiveTime", Timestamp.valueOf(source.effectiveTime()))
+				.addValue("now", Timestamp.valueOf(now));
+	}
+}
@@ -0,0 +1,230 @@
+package com.flux.movieproject.repository.movie;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+/**
+ * TMDB 電影批次轉存到本地 Movie 表時使用的 JDBC 存取。
+ * 人員與類型以集合查詢 (IN) 一次解析，電影與關聯表以 JDBC batch 寫入，不經過 JPA 的逐筆 find-or-create。
+ * IN 清單每次最多 IN_CHUNK_SIZE 個參數 (SQL Server 單一語句上限為 2100 個參數)。
+ */
+@Repository
+public class MovieImportJdbcRepository {
+
+	private static final int IN_CHUNK_SIZE = 1000;
+
+	@Autowired
+	private NamedParameterJdbcTemplate jdbc;
+
+	/**
+	 * 轉存前需要檢查的 TMDBMovie 欄位 (不含海報)
+	 */
+	public record TmdbMovieRow(Integer tmdbMovieId, String titleLocal, LocalDate releaseDate,
+			Integer durationMinutes, String certification) {
+	}
+
+	/**
+	 * 電影的一筆類型、導演或演員
+	 *
+	 * @param tmdbMovieId TMDB 電影 ID
+	 * @param tmdbId      TMDB 類型 / 人員 ID
+	 * @param name        名稱
+	 * @param character   飾演角色 (僅演員)
+	 * @param orderNum    出場順序 (僅演員)
+	 */
+	public record CreditRow(Integer tmdbMovieId, Integer tmdbId, String name, String character, Integer orderNum) {
+	}
+
+	/**
+	 * 要新增的本地電影 (其餘欄位由資料庫直接從 tmdb_movie 複製，海報不經過應用程式)
+	 */
+	public record MovieInsert(Integer tmdbMovieId, String certification) {
+	}
+
+	/**
+	 * 電影與類型 / 人員的一筆關聯 (character 與 orderNum 僅演員使用)
+	 */
+	public record Link(int movieId, int targetId, String character, Integer orderNum) {
+	}
+
+	/**
+	 * 人員與類型的主檔 (genre / director / actor)
+	 */
+	public enum CreditTable {
+		GENRE("genre", "genre_id", "tmdb_genre_id"),
+		DIRECTOR("director", "director_id", "tmdb_director_id"),
+		ACTOR("actor", "actor_id", "tmdb_actor_id");
+
+		private final String table;
+		private final String idColumn;
+		private final String tmdbIdColumn;
+
+		CreditTable(String table, String idColumn, String tmdbIdColumn) {
+			this.table = table;
+			this.idColumn = idColumn;
+			this.tmdbIdColumn = tmdbIdColumn;
+		}
+	}
+
+	/**
+	 * 已轉存到本地 Movie 表的 TMDB 電影 ID
+	 */
+	public Set<Integer> findImportedTmdbMovieIds(Collection<Integer> tmdbMovieIds) {
+		Set<Integer> result = new HashSet<>();
+		forEachChunk(tmdbMovieIds, chunk -> result.addAll(jdbc.queryForList(
+				"SELECT tmdb_movie_id FROM movie WHERE tmdb_movie_id IN (:ids)", Map.of("ids", chunk), Integer.class)));
+		return result;
+	}
+
+	/**
+	 * 讀取 TMDBMovie 的必要欄位
+	 */
+	public List<TmdbMovieRow> findTmdbMovieRows(Collection<Integer> tmdbMovieIds) {
+		List<TmdbMovieRow> result = new ArrayList<>();
+		forEachChunk(tmdbMovieIds, chunk -> result.addAll(jdbc.query(
+				"SELECT tmdb_movie_id, title_local, release_date, duration_minutes, certification "
+						+ "FROM tmdb_movie WHERE tmdb_movie_id IN (:ids)",
+				Map.of("ids", chunk),
+				(rs, rowNum) -> new TmdbMovieRow(rs.getInt("tmdb_movie_id"), rs.getString("title_local"),
+						rs.getObject("release_date", LocalDate.class), (Integer) rs.getObject("duration_minutes"),
+						rs.getString("certification")))));
+		return result;
+	}
+
+	/**
+	 * 讀取 tmdb_movie_genre / tmdb_movie_director / tmdb_movie_actor 中已存在的關聯
+	 */
+	public List<CreditRow> findTmdbCredits(CreditTable type, Collection<Integer> tmdbMovieIds) {
+		String sql = switch (type) {
+		case GENRE -> "SELECT mg.tmdb_movie_id, g.tmdb_genre_id AS tmdb_id, g.name, NULL AS [character], NULL AS order_num "
+				+ "FROM tmdb_movie_genre mg JOIN tmdb_genre g ON g.tmdb_genre_id = mg.tmdb_genre_id "
+				+ "WHERE mg.tmdb_movie_id IN (:ids)";
+		case DIRECTOR -> "SELECT md.tmdb_movie_id, d.tmdb_director_id AS tmdb_id, d.name, NULL AS [character], NULL AS order_num "
+				+ "FROM tmdb_movie_director md JOIN tmdb_director d ON d.tmdb_director_id = md.tmdb_director_id "
+				+ "WHERE md.tmdb_movie_id IN (:ids)";
+		case ACTOR -> "SELECT ma.tmdb_movie_id, a.tmdb_actor_id AS tmdb_id, a.name, ma.[character], ma.order_num "
+				+ "FROM tmdb_movie_actor ma JOIN tmdb_actor a ON a.tmdb_actor_id = ma.tmdb_actor_id "
+				+ "WHERE ma.tmdb_movie_id IN (:ids)";
+		};
+		List<CreditRow> result = new ArrayList<>();
+		forEachChunk(tmdbMovieIds, chunk -> result.addAll(jdbc.query(sql, Map.of("ids", chunk),
+				(rs, rowNum) -> new CreditRow(rs.getInt("tmdb_movie_id"), rs.getInt("tmdb_id"), rs.getString("name"),
+						rs.getString("character"), (Integer) rs.getObject("order_num")))));
+		return result;
+	}
+
+	/**
+	 * 以 batch 新增本地電影。其餘欄位以 INSERT ... SELECT 從 tmdb_movie 複製，並排除已轉存過的電影。
+	 *
+	 * @return 每筆的影響列數 (0 表示已存在而未新增)
+	 */
+	public int[] insertMoviesFromTmdb(List<MovieInsert> movies, LocalDateTime now) {
+		String sql = "INSERT INTO movie (tmdb_movie_id, title_local, title_english, release_date, certification, overview, "
+				+ "trailer_url, duration_minutes, poster_image, original_language, popularity, vote_average, vote_count, "
+				+ "status, create_time, update_time) "
+				+ "SELECT t.tmdb_movie_id, t.title_local, t.title_english, t.release_date, :certification, t.overview, "
+				+ "t.trailer_url, t.duration_minutes, t.poster_image, t.original_language, t.popularity, t.vote_average, "
+				+ "t.vote_count, 0, :now, :now "
+				+ "FROM tmdb_movie t WHERE t.tmdb_movie_id = :tmdbMovieId "
+				+ "AND NOT EXISTS (SELECT 1 FROM movie m WHERE m.tmdb_movie_id = t.tmdb_movie_id)";
+		Timestamp timestamp = Timestamp.valueOf(now);
+		SqlParameterSource[] params = movies.stream()
+				.map(movie -> new MapSqlParameterSource()
+						.addValue("tmdbMovieId", movie.tmdbMovieId())
+						.addValue("certification", movie.certification())
+						.addValue("now", timestamp))
+				.toArray(SqlParameterSource[]::new);
+		return jdbc.batchUpdate(sql, params);
+	}
+
+	/**
+	 * TMDB 電影 ID 對應的本地電影 ID
+	 */
+	public Map<Integer, Integer> findMovieIdsByTmdbIds(Collection<Integer> tmdbMovieIds) {
+		Map<Integer, Integer> result = new HashMap<>();
+		forEachChunk(tmdbMovieIds, chunk -> jdbc.query(
+				"SELECT tmdb_movie_id, movie_id FROM movie WHERE tmdb_movie_id IN (:ids)", Map.of("ids", chunk),
+				rs -> {
+					result.putIfAbsent(rs.getInt("tmdb_movie_id"), rs.getInt("movie_id"));
+				}));
+		return result;
+	}
+
+	/**
+	 * 解析類型或人員的本地 ID：一次查出已存在的，不存在的以 batch 新增後再查一次
+	 *
+	 * @param type  主檔種類
+	 * @param names key 為 TMDB ID，value 為名稱
+	 * @return key 為 TMDB ID，value 為本地 ID
+	 */
+	public Map<Integer, Integer> resolveIds(CreditTable type, Map<Integer, String> names) {
+		Map<Integer, Integer> result = findLocalIds(type, names.keySet());
+		List<SqlParameterSource> missing = names.entrySet().stream()
+				.filter(entry -> !result.containsKey(entry.getKey()))
+				.map(entry -> (SqlParameterSource) new MapSqlParameterSource()
+						.addValue("tmdbId", entry.getKey())
+						.addValue("name", entry.getValue() != null ? entry.getValue() : "未知"))
+				.toList();
+		if (!missing.isEmpty()) {
+			jdbc.batchUpdate("INSERT INTO " + type.table + " (" + type.tmdbIdColumn + ", name) VALUES (:tmdbId, :name)",
+					missing.toArray(SqlParameterSource[]::new));
+			List<Integer> insertedIds = missing.stream().map(param -> (Integer) param.getValue("tmdbId")).toList();
+			result.putAll(findLocalIds(type, insertedIds));
+		}
+		return result;
+	}
+
+	/**
+	 * 以 batch 新增電影與類型、導演或演員的關聯
+	 */
+	public void insertLinks(CreditTable type, List<Link> links) {
+		if (links.isEmpty()) {
+			return;
+		}
+		String sql = switch (type) {
+		case GENRE -> "INSERT INTO movie_genre (movie_id, genre_id) VALUES (:movieId, :targetId)";
+		case DIRECTOR -> "INSERT INTO movie_director (movie_id, director_id) VALUES (:movieId, :targetId)";
+		case ACTOR -> "INSERT INTO movie_actor (movie_id, actor_id, [character], order_num) "
+				+ "VALUES (:movieId, :targetId, :character, :orderNum)";
+		};
+		jdbc.batchUpdate(sql, links.stream()
+				.map(link -> new MapSqlParameterSource()
+						.addValue("movieId", link.movieId())
+						.addValue("targetId", link.targetId())
+						.addValue("character", link.character())
+						.addValue("orderNum", link.orderNum()))
+				.toArray(SqlParameterSource[]::new));
+	}
+
+	private Map<Integer, Integer> findLocalIds(CreditTable type, Collection<Integer> tmdbIds) {
+		Map<Integer, Integer> result = new HashMap<>();
+		String sql = "SELECT " + type.tmdbIdColumn + " AS tmdb_id, MIN(" + type.idColumn + ") AS local_id FROM "
+				+ type.table + " WHERE " + type.tmdbIdColumn + " IN (:ids) GROUP BY " + type.tmdbIdColumn;
+		forEachChunk(tmdbIds, chunk -> jdbc.query(sql, Map.of("ids", chunk), rs -> {
+			result.put(rs.getInt("tmdb_id"), rs.getInt("local_id"));
+		}));
+		return result;
+	}
+
+	private static <T> void forEachChunk(Collection<T> values, Consumer<List<T>> action) {
+		List<T> list = new ArrayList<>(values);
+		for (int from = 0; from < list.size(); from += IN_CHUNK_SIZE) {
+			action.accept(list.subList(from, Math.min(list.size(), from + IN_CHUNK_SIZE)));
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package com.flux.movieproject.repository.movie;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -94,4 +95,47 @@ public interface MovieRepository extends JpaRepository<Movie, Integer> {
 	 */
 	@Query("SELECT m FROM Movie m WHERE " + "m.status = true AND " + "m.releaseDate > :queryDate")
 	List<Movie> findMoviesForComingSoon(@Param("queryDate") LocalDate queryDate);
+
+	/**
+	 * 上映中電影列表用的欄位 (不讀取海報與劇照等二進位欄位)
+	 * 
+	 * @param queryDate 上映的日期，用於判斷上映日期是否在這個日期之前
+	 * @return [id, titleLocal, durationMinutes, overview, trailerUrl, releaseDate, offShelfDate]
+	 */
+	@Query("SELECT m.id, m.titleLocal, m.durationMinutes, m.overview, m.trailerUrl, m.releaseDate, m.offShelfDate "
+			+ "FROM Movie m WHERE m.status = true AND m.releaseDate <= :queryDate")
+	List<Object[]> findNowPlayingCandidateRows(@Param("queryDate") LocalDate queryDate);
+
+	/**
+	 * 即將上映電影列表用的欄位 (不讀取海報與劇照等二進位欄位)
+	 * 
+	 * @param queryDate 查詢的起始日期
+	 * @return [id, titleLocal, durationMinutes, overview, trailerUrl]
+	 */
+	@Query("SELECT m.id, m.titleLocal, m.durationMinutes, m.overview, m.trailerUrl "
+			+ "FROM Movie m WHERE m.status = true AND m.releaseDate > :queryDate")
+	List<Object[]> findComingSoonRows(@Param("queryDate") LocalDate queryDate);
+
+	/**
+	 * 由資料庫計算海報的 SHA-256 (取前 16 個十六進位字元)，不需把圖片傳回應用程式
+	 * 
+	 * @param ids 電影 ID 列表
+	 * @return [movieId, hash]，沒有海報的電影不會出現在結果中
+	 */
+	@Query(value = "SELECT movie_id, LOWER(LEFT(CONVERT(VARCHAR(64), HASHBYTES('SHA2_256', poster_image), 2), 16)) "
+			+ "FROM movie WHERE movie_id IN (:ids) AND poster_image IS NOT NULL", nativeQuery = true)
+	List<Object[]> findPosterHashesByIds(@Param("ids") Collection<Integer> ids);
+
+	/**
+	 * 由資料庫計算指定編號劇照的 SHA-256 (取前 16 個十六進位字元)
+	 * 
+	 * @param ids  電影 ID 列表
+	 * @param slot 劇照編號 1 ~ 4
+	 * @return [movieId, hash]，沒有該劇照的電影不會出現在結果中
+	 */
+	@Query(value = "SELECT p.movie_id, LOWER(LEFT(CONVERT(VARCHAR(64), HASHBYTES('SHA2_256', p.image), 2), 16)) "
+			+ "FROM (SELECT movie_id, CASE :slot WHEN 1 THEN preview_image_1 WHEN 2 THEN preview_image_2 "
+			+ "WHEN 3 THEN preview_image_3 ELSE preview_image_4 END AS image FROM movie WHERE movie_id IN (:ids)) p "
+			+ "WHERE p.image IS NOT NULL", nativeQuery = true)
+	List<Object[]> findPreviewHashesByIds(@Param("ids") Collection<Integer> ids, @Param("slot") int slot);
 }
@@ -1,9 +1,50 @@
 package com.flux.movieproject.repository.movie;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.flux.movieproject.model.entity.movie.TMDBMovie;
 
 public interface TMDBMovieRepository extends JpaRepository<TMDBMovie, Integer>{
 
+	/**
+	 * 只查詢所有 TMDB 電影 ID (不載入海報等大型欄位)
+	 */
+	@Query("SELECT t.tmdbMovieId FROM TMDBMovie t ORDER BY t.tmdbMovieId")
+	List<Integer> findAllTmdbMovieIds();
+
+	/**
+	 * 查詢所有電影的同步狀態 (不載入海報)
+	 * 
+	 * @return 每筆為 [tmdbMovieId, contentHash, posterPath, 是否已有海報, lastSyncTime]
+	 */
+	@Query("SELECT t.tmdbMovieId, t.contentHash, t.posterPath, "
+			+ "CASE WHEN t.posterImage IS NULL THEN false ELSE true END, t.lastSyncTime FROM TMDBMovie t")
+	List<Object[]> findAllSyncStates();
+
+	/**
+	 * 查詢指定電影的同步狀態 (不載入海報)
+	 * 
+	 * @return 每筆為 [tmdbMovieId, contentHash, posterPath, 是否已有海報, lastSyncTime]
+	 */
+	@Query("SELECT t.tmdbMovieId, t.contentHash, t.posterPath, "
+			+ "CASE WHEN t.posterImage IS NULL THEN false ELSE true END, t.lastSyncTime FROM TMDBMovie t "
+			+ "WHERE t.tmdbMovieId IN :ids")
+	List<Object[]> findSyncStatesByIds(@Param("ids") Collection<Integer> ids);
+
+	/**
+	 * 內容沒有變動的電影只更新同步時間 (呼叫端須將 ids 控制在 SQL Server 2100 個參數以內)
+	 */
+	@Modifying
+	@Transactional
+	@Query("UPDATE TMDBMovie t SET t.lastSyncTime = :syncTime WHERE t.tmdbMovieId IN :ids")
+	int updateLastSyncTime(@Param("ids") Collection<Integer> ids, @Param("syncTime") LocalDateTime syncTime);
+
 }
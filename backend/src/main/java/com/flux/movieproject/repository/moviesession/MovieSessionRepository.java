@@ -5,6 +5,7 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -84,4 +85,64 @@ public interface MovieSessionRepository extends JpaRepository<MovieSession, Inte
            "WHERE ss.movieSession IN :sessions")
     List<SessionSeat> findSessionSeatsForSessions(@Param("sessions") List<MovieSession> sessions);
 
+    /**
+     * 以增量方式調整場次的可購買座位數 (單一 UPDATE，由資料庫保證原子性)
+     * @param sessionId 場次 ID
+     * @param delta 增減數量，釋放座位為正數、預訂座位為負數
+     */
+    @Modifying
+    @Query("UPDATE MovieSession ms SET ms.availableSeats = ms.availableSeats + :delta WHERE ms.sessionId = :sessionId")
+    int adjustAvailableSeats(@Param("sessionId") Integer sessionId, @Param("delta") int delta);
+
+    /**
+     * 依 session_seat 的實際狀態重新計算場次的座位統計 (校正增量更新的誤差)
+     * @param fromTime 只校正結束時間在此之後的場次
+     * @param excludedSeatType 不計入可售座位的座位類型 (友善座位)
+     * @return 更新的場次數
+     */
+    @Modifying
+    @Query(value =
+        "UPDATE ms SET ms.sellable_seats = ISNULL(c.sellable, 0), ms.available_seats = ISNULL(c.available, 0) " +
+        "FROM movie_session ms " +
+        "LEFT JOIN (SELECT ss.session_id, COUNT(*) AS sellable, " +
+        "           SUM(CASE WHEN ss.status = 'AVAILABLE' THEN 1 ELSE 0 END) AS available " +
+        "           FROM session_seat ss JOIN seat s ON ss.seat_id = s.seat_id " +
+        "           WHERE s.seat_type <> :excludedSeatType GROUP BY ss.session_id) c ON c.session_id = ms.session_id " +
+        "WHERE ms.end_time >= :fromTime",
+        nativeQuery = true)
+    int reconcileSeatCountersEndingAfter(@Param("fromTime") LocalDateTime fromTime,
+        @Param("excludedSeatType") String excludedSeatType);
+
+    /**
+     * 重新計算指定場次的座位統計 (用於新建立的場次)
+     * @param sessionIds 場次 ID 列表
+     * @param excludedSeatType 不計入可售座位的座位類型 (友善座位)
+     */
+    @Modifying
+    @Query(value =
+        "UPDATE ms SET ms.sellable_seats = ISNULL(c.sellable, 0), ms.available_seats = ISNULL(c.available, 0) " +
+        "FROM movie_session ms " +
+        "LEFT JOIN (SELECT ss.session_id, COUNT(*) AS sellable, " +
+        "           SUM(CASE WHEN ss.status = 'AVAILABLE' THEN 1 ELSE 0 END) AS available " +
+        "           FROM session_seat ss JOIN seat s ON ss.seat_id = s.seat_id " +
+        "           WHERE s.seat_type <> :excludedSeatType AND ss.session_id IN :sessionIds " +
+        "           GROUP BY ss.session_id) c ON c.session_id = ms.session_id " +
+        "WHERE ms.session_id IN :sessionIds",
+        nativeQuery = true)
+    int reconcileSeatCountersForSessions(@Param("sessionIds") List<Integer> sessionIds,
+        @Param("excludedSeatType") String excludedSeatType);
+
+    /**
+     * 直接以彙總查詢計算場次的座位統計 (只回傳每個場次一列，不載入任何座位 Entity)，
+     * 用於尚未建立計數器的場次。
+     * @return 每個 Object[] 包含 [sessionId, sellableSeats, availableSeats]
+     */
+    @Query("SELECT ss.movieSession.sessionId, COUNT(ss), " +
+           "SUM(CASE WHEN ss.status = com.flux.movieproject.enums.SeatStatus.AVAILABLE THEN 1 ELSE 0 END) " +
+           "FROM SessionSeat ss " +
+           "WHERE ss.movieSession.sessionId IN :sessionIds AND ss.seat.seatType <> :excludedSeatType " +
+           "GROUP BY ss.movieSession.sessionId")
+    List<Object[]> countSeatsBySessionIds(@Param("sessionIds") List<Integer> sessionIds,
+        @Param("excludedSeatType") String excludedSeatType);
+
 }
@@ -0,0 +1,112 @@
+package com.flux.movieproject.repository.product;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 購物車的 JDBC 存取，供 CartStore 載入會員的購物車與寫回異動。
+ * 數量的修改與刪除累積在記憶體中，寫回時以批次 UPDATE / DELETE 一次送出，不經過 Entity。
+ */
+@Repository
+public class CartJdbcRepository {
+
+	@Autowired
+	private NamedParameterJdbcTemplate jdbc;
+
+	/**
+	 * 購物車主檔
+	 */
+	public record CartRow(int cartId, int memberId, Instant createdAt, Instant updatedAt) {
+	}
+
+	/**
+	 * 購物車中的一個商品
+	 */
+	public record ItemRow(int cartItemId, int productId, int quantity, int productPrice) {
+	}
+
+	/**
+	 * 會員的購物車；同一會員有多個購物車時取最早建立的一個，與 CartRepository.findByMemberId 一致
+	 */
+	public Optional<CartRow> findCart(int memberId) {
+		return jdbc.query("SELECT TOP 1 cart_id, member_id, created_at, updated_at FROM cart "
+				+ "WHERE member_id = :memberId ORDER BY cart_id",
+				Map.of("memberId", memberId),
+				(rs, rowNum) -> new CartRow(rs.getInt("cart_id"), rs.getInt("member_id"),
+						rs.getTimestamp("created_at").toInstant(), rs.getTimestamp("updated_at").toInstant()))
+				.stream().findFirst();
+	}
+
+	/**
+	 * 建立購物車
+	 *
+	 * @return 新購物車的 ID
+	 */
+	public int insertCart(int memberId, Instant now) {
+		return jdbc.queryForObject("INSERT INTO cart (member_id, created_at, updated_at) OUTPUT INSERTED.cart_id "
+				+ "VALUES (:memberId, :now, :now)",
+				Map.of("memberId", memberId, "now", Timestamp.from(now)), Integer.class);
+	}
+
+	/**
+	 * 購物車中的商品，依加入的順序排列
+	 */
+	public List<ItemRow> findItems(int cartId) {
+		return jdbc.query("SELECT cart_item_id, product_id, quantity, product_price FROM cart_item "
+				+ "WHERE cart_id = :cartId ORDER BY cart_item_id",
+				Map.of("cartId", cartId),
+				(rs, rowNum) -> new ItemRow(rs.getInt("cart_item_id"), rs.getInt("product_id"),
+						rs.getInt("quantity"), rs.getInt("product_price")));
+	}
+
+	/**
+	 * 新增購物車中的商品。新商品立即寫入，前端以取得的 cart_item_id 修改與刪除
+	 *
+	 * @return 新項目的 ID
+	 */
+	public int insertItem(int cartId, int productId, int quantity, int productPrice) {
+		return jdbc.queryForObject("INSERT INTO cart_item (cart_id, product_id, quantity, product_price) "
+				+ "OUTPUT INSERTED.cart_item_id VALUES (:cartId, :productId, :quantity, :productPrice)",
+				Map.of("cartId", cartId, "productId", productId, "quantity", quantity, "productPrice", productPrice),
+				Integer.class);
+	}
+
+	/**
+	 * 批次修改數量
+	 *
+	 * @param quantities cart_item_id 對應新的數量
+	 */
+	public void updateQuantities(int cartId, Map<Integer, Integer> quantities) {
+		if (quantities.isEmpty()) {
+			return;
+		}
+		MapSqlParameterSource[] batch = quantities.entrySet().stream()
+				.map(entry -> new MapSqlParameterSource().addValue("cartId", cartId)
+						.addValue("cartItemId", entry.getKey()).addValue("quantity", entry.getValue()))
+				.toArray(MapSqlParameterSource[]::new);
+		jdbc.batchUpdate("UPDATE cart_item SET quantity = :quantity "
+				+ "WHERE cart_item_id = :cartItemId AND cart_id = :cartId", batch);
+	}
+
+	public void deleteItems(int cartId, Collection<Integer> cartItemIds) {
+		if (cartItemIds.isEmpty()) {
+			return;
+		}
+		jdbc.update("DELETE FROM cart_item WHERE cart_id = :cartId AND cart_item_id IN (:cartItemIds)",
+				Map.of("cartId", cartId, "cartItemIds", cartItemIds));
+	}
+
+	public void touchCart(int cartId, Instant updatedAt) {
+		jdbc.update("UPDATE cart SET updated_at = :updatedAt WHERE cart_id = :cartId",
+				Map.of("cartId", cartId, "updatedAt", Timestamp.from(updatedAt)));
+	}
+}
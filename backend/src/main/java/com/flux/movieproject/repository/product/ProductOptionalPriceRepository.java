@@ -0,0 +1,14 @@
+package com.flux.movieproject.repository.product;
+
+import com.flux.movieproject.model.entity.product.ProductOptionalPrice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ProductOptionalPriceRepository extends JpaRepository<ProductOptionalPrice, Integer> {
+
+    List<ProductOptionalPrice> findByProductIdIn(Collection<Integer> productIds);
+}
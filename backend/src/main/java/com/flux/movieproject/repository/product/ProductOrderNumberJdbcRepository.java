@@ -0,0 +1,31 @@
+package com.flux.movieproject.repository.product;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 商品訂單編號的序列 (product_order_number_seq)。
+ * 序列每次遞增 BLOCK_SIZE，取得一個值即代表保留了 [值, 值 + BLOCK_SIZE) 這一段編號，
+ * 由 ProductOrderNumberGenerator 在記憶體中依序發放，多個應用程式實例各自取得不重疊的區段。
+ */
+@Repository
+public class ProductOrderNumberJdbcRepository {
+
+	// 必須與 CreateTable.sql 中序列的 INCREMENT BY 相同
+	public static final int BLOCK_SIZE = 50;
+
+	@Autowired
+	private NamedParameterJdbcTemplate jdbc;
+
+	/**
+	 * 保留下一段編號
+	 *
+	 * @return 區段的第一個編號
+	 */
+	public long nextBlockStart() {
+		return jdbc.queryForObject("SELECT NEXT VALUE FOR product_order_number_seq", Map.of(), Long.class);
+	}
+}
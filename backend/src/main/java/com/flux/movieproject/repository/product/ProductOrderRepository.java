@@ -1,10 +1,14 @@
 package com.flux.movieproject.repository.product;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.flux.movieproject.model.entity.product.OrderStatus;
 import com.flux.movieproject.model.entity.product.ProductOrder;
@@ -26,5 +30,8 @@ public interface ProductOrderRepository extends JpaRepository<ProductOrder,Integ
     @EntityGraph(attributePaths = {"member", "productOrderDetails", "productOrderDetails.product"})
     List<ProductOrder> findAllByOrderStatus(OrderStatus orderStatus);
 
-
+    // 在指定狀態停留超過期限的訂單 ID (依訂單 ID 排序)
+    @Query("SELECT o.orderId FROM ProductOrder o WHERE o.orderStatus = :status AND o.statusTime < :cutoff ORDER BY o.orderId")
+    List<Integer> findIdsByOrderStatusAndStatusTimeBefore(@Param("status") OrderStatus status,
+            @Param("cutoff") Instant cutoff, Pageable pageable);
 }
@@ -0,0 +1,52 @@
+package com.flux.movieproject.repository.product;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 商品搜尋索引的 JDBC 查詢，供 ProductSearchIndex 建立與更新索引。
+ * 只查出搜尋、篩選與排序需要的欄位 (不含圖片網址)，不載入任何 Entity。
+ */
+@Repository
+public class ProductSearchJdbcRepository {
+
+	private static final String SELECT = "SELECT p.product_id, p.product_name, p.description, p.category_id, "
+			+ "c.category_name, p.price, p.stock, p.is_available, p.creation_time, "
+			+ "CAST(p.row_version AS BIGINT) AS version "
+			+ "FROM product p LEFT JOIN product_category c ON c.category_id = p.category_id";
+
+	@Autowired
+	private NamedParameterJdbcTemplate jdbc;
+
+	/**
+	 * 一個商品的搜尋資料
+	 *
+	 * @param version 讀取時的 row_version，商品的任何欄位更新時都會變大
+	 */
+	public record SearchRow(int productId, String productName, String description, Integer categoryId,
+			String categoryName, int price, int stock, boolean available, long creationTime, long version) {
+	}
+
+	public List<SearchRow> findAll() {
+		return jdbc.query(SELECT, Map.of(), (rs, rowNum) -> toRow(rs));
+	}
+
+	public Optional<SearchRow> findById(int productId) {
+		return jdbc.query(SELECT + " WHERE p.product_id = :productId", Map.of("productId", productId),
+				(rs, rowNum) -> toRow(rs)).stream().findFirst();
+	}
+
+	private static SearchRow toRow(ResultSet rs) throws SQLException {
+		return new SearchRow(rs.getInt("product_id"), rs.getString("product_name"), rs.getString("description"),
+				rs.getObject("category_id", Integer.class), rs.getString("category_name"), rs.getInt("price"),
+				rs.getInt("stock"), rs.getBoolean("is_available"), rs.getTimestamp("creation_time").getTime(),
+				rs.getLong("version"));
+	}
+}
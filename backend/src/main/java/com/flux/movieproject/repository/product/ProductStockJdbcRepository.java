@@ -0,0 +1,114 @@
+package com.flux.movieproject.repository.product;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 商品庫存的 JDBC 存取，供 ProductStockService 預留與回補庫存。
+ * 扣除庫存一律是帶條件的 UPDATE (stock >= 數量)，由資料庫的列鎖保證不會超賣，
+ * 不在 Java 中讀出庫存、比較後再寫回。
+ */
+@Repository
+public class ProductStockJdbcRepository {
+
+	private static final String OUTPUT_STOCK = "OUTPUT INSERTED.stock, CAST(INSERTED.row_version AS BIGINT) AS version ";
+
+	private static final RowMapper<StockLevel> STOCK_LEVEL_MAPPER = (rs, rowNum) -> new StockLevel(rs.getInt("stock"),
+			rs.getLong("version"));
+
+	@Autowired
+	private NamedParameterJdbcTemplate jdbc;
+
+	/**
+	 * 一筆訂單中某個商品的數量 (同一商品的多筆明細已合計)
+	 */
+	public record OrderLine(int productId, int quantity) {
+	}
+
+	/**
+	 * 更新後的庫存
+	 *
+	 * @param stock   庫存
+	 * @param version 更新後的 row_version，用來判斷同一商品的多次更新的先後
+	 */
+	public record StockLevel(int stock, long version) {
+	}
+
+	/**
+	 * 扣除庫存
+	 *
+	 * @return 扣除後的庫存；庫存不足 (未扣除) 時為 null
+	 */
+	public StockLevel reserve(int productId, int quantity) {
+		return jdbc.query("UPDATE product SET stock = stock - :quantity " + OUTPUT_STOCK
+				+ "WHERE product_id = :productId AND stock >= :quantity",
+				Map.of("productId", productId, "quantity", quantity), STOCK_LEVEL_MAPPER)
+				.stream().findFirst().orElse(null);
+	}
+
+	/**
+	 * 回補庫存
+	 *
+	 * @return 回補後的庫存；商品已不存在時為 null
+	 */
+	public StockLevel restock(int productId, int quantity) {
+		return jdbc.query("UPDATE product SET stock = stock + :quantity " + OUTPUT_STOCK
+				+ "WHERE product_id = :productId",
+				Map.of("productId", productId, "quantity", quantity), STOCK_LEVEL_MAPPER)
+				.stream().findFirst().orElse(null);
+	}
+
+	/**
+	 * 將訂單改為已取消，只在目前狀態為 fromStatuses 之一時生效。
+	 * 同一筆訂單同時被多個請求取消 (例如會員取消與逾時取消) 時只有一個會成功，庫存也只會回補一次
+	 *
+	 * @return 是否確實改為已取消
+	 */
+	public boolean markCancelled(int orderId, Collection<String> fromStatuses) {
+		return jdbc.update("UPDATE product_order SET order_status = 'CANCELLED' "
+				+ "WHERE order_id = :orderId AND order_status IN (:fromStatuses)",
+				Map.of("orderId", orderId, "fromStatuses", fromStatuses)) == 1;
+	}
+
+	/**
+	 * 將等待線上付款的訂單改為處理中 (付款完成)。
+	 * 與逾時取消的 markCancelled 以相同的帶條件 UPDATE 競爭，已被取消的訂單不會再被改為已付款
+	 *
+	 * @return 是否確實改為處理中
+	 */
+	public boolean markPaid(int orderId) {
+		return jdbc.update("UPDATE product_order SET order_status = 'PROCESSING' "
+				+ "WHERE order_id = :orderId AND order_status = 'AWAITING_PAYMENT'",
+				Map.of("orderId", orderId)) == 1;
+	}
+
+	/**
+	 * 歸還訂單使用的優惠券：將該會員這張券最近一筆已使用的會員優惠券改回未使用。
+	 * 必須與 markCancelled 在同一個交易中呼叫，才不會重複歸還
+	 *
+	 * @return 是否歸還了優惠券 (訂單沒有使用優惠券時為 false)
+	 */
+	public boolean returnCoupon(int orderId) {
+		return jdbc.update("UPDATE member_coupon SET status = N'未使用', usage_time = NULL "
+				+ "WHERE member_coupon_id = (SELECT TOP 1 mc.member_coupon_id FROM member_coupon mc "
+				+ "JOIN product_order o ON o.member_id = mc.member_id AND o.coupon_id = mc.coupon_id "
+				+ "WHERE o.order_id = :orderId AND mc.status = N'已使用' ORDER BY mc.usage_time DESC)",
+				Map.of("orderId", orderId)) == 1;
+	}
+
+	/**
+	 * 訂單中各商品的數量，依商品 ID 排序
+	 */
+	public List<OrderLine> findOrderLines(int orderId) {
+		return jdbc.query("SELECT product_id, SUM(quantity) AS quantity FROM product_order_detail "
+				+ "WHERE order_id = :orderId GROUP BY product_id ORDER BY product_id",
+				Map.of("orderId", orderId),
+				(rs, rowNum) -> new OrderLine(rs.getInt("product_id"), rs.getInt("quantity")));
+	}
+}
@@ -1,5 +1,6 @@
 package com.flux.movieproject.repository.theater;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -18,4 +19,11 @@ public interface TheaterRepository extends JpaRepository<Theater, Integer> {
 	 */
 	@Query("SELECT t FROM Theater t LEFT JOIN FETCH t.seats WHERE t.theaterId IN :ids")
 	List<Theater> findByIdInWithSeats(@Param("ids") List<Integer> ids);
+
+	/**
+	 * 由資料庫計算影廳預覽圖的 SHA-256 (取前 16 個十六進位字元)
+	 */
+	@Query(value = "SELECT theater_id, LOWER(LEFT(CONVERT(VARCHAR(64), HASHBYTES('SHA2_256', theater_photo), 2), 16)) "
+			+ "FROM theater WHERE theater_id IN (:ids) AND theater_photo IS NOT NULL", nativeQuery = true)
+	List<Object[]> findPhotoHashesByIds(@Param("ids") Collection<Integer> ids);
 }
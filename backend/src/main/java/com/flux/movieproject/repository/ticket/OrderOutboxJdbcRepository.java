@@ -0,0 +1,64 @@
+package com.flux.movieproject.repository.ticket;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import com.flux.movieproject.repository.ticket.WorkQueueJdbcRepository.WorkItem;
+import com.flux.movieproject.repository.ticket.WorkQueueJdbcRepository.WorkQueueTable;
+
+/**
+ * 訂單事件 outbox (order_event_outbox) 的 JDBC 存取。
+ * 事件在訂單狀態改變的同一個交易中寫入，每個事件的每個處理者各一筆，彼此獨立重試；
+ * 處理狀態的轉換由 WorkQueueJdbcRepository 以 TABLE 的設定進行。
+ */
+@Repository
+public class OrderOutboxJdbcRepository {
+
+	public static final String PENDING = "PENDING";
+
+	public static final WorkQueueTable<OutboxRow> TABLE = new WorkQueueTable<>("order_event_outbox", "outbox_id",
+			"created_time", PENDING, "outbox_id, event_type, handler, ticket_order_id, attempts",
+			(rs, rowNum) -> new OutboxRow(rs.getLong("outbox_id"), rs.getString("event_type"),
+					rs.getString("handler"), rs.getInt("ticket_order_id"), rs.getInt("attempts")));
+
+	@Autowired
+	private NamedParameterJdbcTemplate jdbc;
+
+	/**
+	 * 待處理的事件
+	 *
+	 * @param attempts 已處理次數 (不含這次)
+	 */
+	public record OutboxRow(long outboxId, String eventType, String handler, int ticketOrderId, int attempts)
+			implements WorkItem {
+
+		@Override
+		public long id() {
+			return outboxId;
+		}
+	}
+
+	/**
+	 * 新增一筆事件，必須在訂單狀態改變的交易中呼叫
+	 */
+	public OutboxRow insert(String eventType, String handler, int ticketOrderId, LocalDateTime now) {
+		KeyHolder keyHolder = new GeneratedKeyHolder();
+		jdbc.update("INSERT INTO order_event_outbox (event_type, handler, ticket_order_id, status, attempts, "
+				+ "created_time, updated_time) "
+				+ "VALUES (:eventType, :handler, :ticketOrderId, '" + PENDING + "', 0, :now, :now)",
+				new MapSqlParameterSource()
+						.addValue("eventType", eventType)
+						.addValue("handler", handler)
+						.addValue("ticketOrderId", ticketOrderId)
+						.addValue("now", Timestamp.valueOf(now)),
+				keyHolder, new String[] { "outbox_id" });
+		return new OutboxRow(keyHolder.getKey().longValue(), eventType, handler, ticketOrderId, 0);
+	}
+}
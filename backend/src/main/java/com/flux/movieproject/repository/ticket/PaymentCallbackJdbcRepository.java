@@ -0,0 +1,74 @@
+package com.flux.movieproject.repository.ticket;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import com.flux.movieproject.repository.ticket.WorkQueueJdbcRepository.WorkItem;
+import com.flux.movieproject.repository.ticket.WorkQueueJdbcRepository.WorkQueueTable;
+
+/**
+ * 綠界付款通知紀錄 (payment_callback) 的 JDBC 存取。
+ * (merchant_trade_no, trade_no) 有唯一限制，重送的通知在新增時就會被擋下；
+ * 處理狀態的轉換由 WorkQueueJdbcRepository 以 TABLE 的設定進行。
+ */
+@Repository
+public class PaymentCallbackJdbcRepository {
+
+	public static final String RECEIVED = "RECEIVED";
+
+	public static final WorkQueueTable<CallbackRow> TABLE = new WorkQueueTable<>("payment_callback", "callback_id",
+			"received_time", RECEIVED, "callback_id, merchant_trade_no, trade_no, rtn_code, attempts",
+			(rs, rowNum) -> new CallbackRow(rs.getLong("callback_id"), rs.getString("merchant_trade_no"),
+					rs.getString("trade_no"), rs.getString("rtn_code"), rs.getInt("attempts")));
+
+	@Autowired
+	private NamedParameterJdbcTemplate jdbc;
+
+	/**
+	 * 待處理的通知
+	 *
+	 * @param attempts 已處理次數 (不含這次)
+	 */
+	public record CallbackRow(long callbackId, String merchantTradeNo, String tradeNo, String rtnCode, int attempts)
+			implements WorkItem {
+
+		@Override
+		public long id() {
+			return callbackId;
+		}
+	}
+
+	/**
+	 * 新增一筆通知紀錄
+	 *
+	 * @return 新紀錄的 ID；同一筆交易已經記錄過時為 empty
+	 */
+	public Optional<Long> insertIfAbsent(String merchantTradeNo, String tradeNo, String rtnCode, String rtnMsg,
+			LocalDateTime now) {
+		KeyHolder keyHolder = new GeneratedKeyHolder();
+		try {
+			jdbc.update("INSERT INTO payment_callback (merchant_trade_no, trade_no, rtn_code, rtn_msg, status, "
+					+ "attempts, received_time, updated_time) "
+					+ "VALUES (:merchantTradeNo, :tradeNo, :rtnCode, :rtnMsg, '" + RECEIVED + "', 0, :now, :now)",
+					new MapSqlParameterSource()
+							.addValue("merchantTradeNo", merchantTradeNo)
+							.addValue("tradeNo", tradeNo)
+							.addValue("rtnCode", rtnCode)
+							.addValue("rtnMsg", rtnMsg)
+							.addValue("now", Timestamp.valueOf(now)),
+					keyHolder, new String[] { "callback_id" });
+		} catch (DuplicateKeyException e) {
+			return Optional.empty();
+		}
+		return Optional.of(keyHolder.getKey().longValue());
+	}
+}
@@ -0,0 +1,53 @@
+package com.flux.movieproject.repository.ticket;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 樂觀模式訂位使用的 JDBC 存取。
+ * 以一個帶條件的 UPDATE 直接把 AVAILABLE 的座位改為 RESERVED，以狀態欄位作為版本判斷，
+ * 不需要先 SELECT ... 加鎖並建立 SessionSeat Entity。
+ * 呼叫端必須在交易中執行，且座位數不可超過 SQL Server 單一語句的參數上限。
+ */
+@Repository
+public class SeatClaimJdbcRepository {
+
+	@Autowired
+	private NamedParameterJdbcTemplate jdbc;
+
+	/**
+	 * 把指定座位中仍為 AVAILABLE 的改為 RESERVED
+	 *
+	 * @param sessionId      場次 ID
+	 * @param sessionSeatIds 要預訂的 SessionSeat ID
+	 * @param expiryTime     預訂到期時間
+	 * @return 實際搶下的 SessionSeat ID；數量少於要求時代表有座位已被預訂
+	 */
+	public List<Integer> claimAvailableSeats(Integer sessionId, Collection<Integer> sessionSeatIds,
+			LocalDateTime expiryTime) {
+		return jdbc.queryForList("UPDATE session_seat SET status = 'RESERVED', reserved_expired_date = :expiryTime "
+				+ "OUTPUT inserted.session_seat_id "
+				+ "WHERE session_seat_id IN (:ids) AND session_id = :sessionId AND status = 'AVAILABLE'",
+				new MapSqlParameterSource()
+						.addValue("expiryTime", Timestamp.valueOf(expiryTime))
+						.addValue("ids", sessionSeatIds)
+						.addValue("sessionId", sessionId),
+				Integer.class);
+	}
+
+	/**
+	 * 退回同一交易中以 claimAvailableSeats 搶下的座位
+	 */
+	public void releaseClaimedSeats(Collection<Integer> sessionSeatIds) {
+		jdbc.update("UPDATE session_seat SET status = 'AVAILABLE', reserved_expired_date = NULL "
+				+ "WHERE session_seat_id IN (:ids)", Map.of("ids", sessionSeatIds));
+	}
+}
@@ -58,6 +58,29 @@ public interface SessionSeatRepository extends JpaRepository<SessionSeat, Intege
         nativeQuery = true)
     void bulkCreateSessionSeatsForNewSessions(@Param("sessionIds") List<Integer> sessionIds);
 
+	/**
+	 * 查詢場次所有座位的 ID 與狀態，依 ID 排序，供 SeatStateEngine 建立座位點陣圖。
+	 * 只選取兩個欄位，避免建立 SessionSeat Entity。
+	 * 
+	 * @param sessionId 場次 ID
+	 * @return 每個 Object[] 包含 [sessionSeatId, status]
+	 */
+	@Query("SELECT ss.sessionSeatId, ss.status FROM SessionSeat ss WHERE ss.movieSession.sessionId = :sessionId ORDER BY ss.sessionSeatId")
+	List<Object[]> findSeatStatesBySessionId(@Param("sessionId") Integer sessionId);
+
+	/**
+	 * 依場次統計指定座位中屬於可售座位 (排除指定座位類型) 的數量，用於增量更新場次的可購買座位數
+	 * 
+	 * @param sessionSeatIds   狀態改變的 SessionSeat ID
+	 * @param excludedSeatType 不計入可售座位的座位類型
+	 * @return 每個 Object[] 包含 [sessionId, count]
+	 */
+	@Query("SELECT ss.movieSession.sessionId, COUNT(ss) FROM SessionSeat ss "
+			+ "WHERE ss.sessionSeatId IN :sessionSeatIds AND ss.seat.seatType <> :excludedSeatType "
+			+ "GROUP BY ss.movieSession.sessionId")
+	List<Object[]> countSellableSeatsBySession(@Param("sessionSeatIds") List<Integer> sessionSeatIds,
+			@Param("excludedSeatType") String excludedSeatType);
+
 	/**
 	 * 根據 ID 列表查詢並以悲觀寫鎖鎖定 SessionSeat 記錄。
 	 * 當這個查詢在一個交易(Transaction)中被執行時，資料庫會鎖定這些記錄所在的行，
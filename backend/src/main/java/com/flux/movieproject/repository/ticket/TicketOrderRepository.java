@@ -38,6 +38,28 @@ public interface TicketOrderRepository
 	List<TicketOrder> findExpiredPendingOrders(@Param("status") OrderStatus status,
 			@Param("expiryTime") LocalDateTime expiryTime);
 
+	/**
+	 * 查詢指定狀態的所有訂單及其座位保留到期時間 (取該訂單座位中最早的到期時間)，
+	 * 供應用程式啟動時重建到期排程。
+	 * 
+	 * @param status 訂單狀態
+	 * @return 每個 Object[] 包含 [ticketOrderId, reservedExpiredDate]
+	 */
+	@Query("SELECT o.ticketOrderId, MIN(ss.reservedExpiredDate) FROM TicketOrder o " + "JOIN o.ticketOrderDetails tod "
+			+ "JOIN tod.sessionSeat ss " + "WHERE o.status = :status AND ss.reservedExpiredDate IS NOT NULL "
+			+ "GROUP BY o.ticketOrderId")
+	List<Object[]> findReservationExpiriesByStatus(@Param("status") OrderStatus status);
+
+	/**
+	 * 查詢單筆訂單的座位保留到期時間 (取該訂單座位中最早的到期時間)
+	 * 
+	 * @param orderId 訂單 ID
+	 * @return 到期時間，訂單沒有座位時為 null
+	 */
+	@Query("SELECT MIN(ss.reservedExpiredDate) FROM TicketOrderDetail tod JOIN tod.sessionSeat ss "
+			+ "WHERE tod.ticketOrder.ticketOrderId = :orderId")
+	LocalDateTime findReservationExpiryByOrderId(@Param("orderId") Integer orderId);
+
 	/**
 	 * 根據會員ID，查找所有可用於計算消費總額的電影票訂單。
 	 * 包含：所有 'COMPLETED' 的訂單，以及狀態為 'PAID' 且場次時間已是過去的訂單。
@@ -0,0 +1,266 @@
+package com.flux.movieproject.repository.ticket;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+
+/**
+ * 後台訂單查詢使用的 JDBC 存取。
+ * 列表依 (created_time, ticket_order_id) 倒序以游標 (keyset) 分頁，由 idx_ticketorder_created_time 等索引支撐，不需要 OFFSET 掃過前面的資料；
+ * 會員帳號、信箱、電話的部分字串查詢先以 member_search_gram 的三字元片段縮小候選會員，再以 LIKE 驗證，
+ * 不足三個字元時改用前綴查詢 (LIKE 'x%')，可以使用欄位上的唯一索引。
+ * 訂單明細以兩次 JOIN 查詢直接取得畫面需要的欄位，不經過 JPA 的延遲載入。
+ */
+@Repository
+public class TicketOrderSearchJdbcRepository {
+
+	// 片段長度，需與 member_search_gram 的觸發程序一致
+	private static final int GRAM_LENGTH = 3;
+
+	@Autowired
+	private NamedParameterJdbcTemplate jdbc;
+
+	/**
+	 * 可以部分比對的會員欄位 (code 為 member_search_gram.field)
+	 */
+	private enum MemberField {
+		USERNAME(1, "username"),
+		EMAIL(2, "email"),
+		PHONE(3, "phone");
+
+		private final int code;
+		private final String column;
+
+		MemberField(int code, String column) {
+			this.code = code;
+			this.column = column;
+		}
+	}
+
+	/**
+	 * 查詢條件，null 表示不限制
+	 *
+	 * @param ticketOrderId 訂單 ID (由訂單編號解碼)
+	 * @param username      會員帳號 (部分字串)
+	 * @param email         會員信箱 (部分字串)
+	 * @param phone         會員電話 (部分字串)
+	 * @param status        訂單狀態 (OrderStatus 名稱)
+	 * @param paymentType   付款方式
+	 * @param createdFrom   建立時間起 (含)
+	 * @param createdBefore 建立時間迄 (不含)
+	 */
+	public record SearchCriteria(Integer ticketOrderId, String username, String email, String phone, String status,
+			String paymentType, LocalDateTime createdFrom, LocalDateTime createdBefore) {
+
+		/**
+		 * 是否沒有任何查詢條件
+		 */
+		public boolean isUnfiltered() {
+			return ticketOrderId == null && !StringUtils.hasText(username) && !StringUtils.hasText(email)
+					&& !StringUtils.hasText(phone) && status == null && paymentType == null && createdFrom == null
+					&& createdBefore == null;
+		}
+	}
+
+	/**
+	 * 分頁游標：上一頁最後一筆訂單的建立時間與 ID
+	 */
+	public record Cursor(LocalDateTime createdTime, int ticketOrderId) {
+	}
+
+	/**
+	 * 列表的一筆訂單
+	 */
+	public record OrderRow(int ticketOrderId, LocalDateTime createdTime, Integer totalAmount, String status,
+			String paymentType, Integer memberId, String username, String email, String phone) {
+	}
+
+	/**
+	 * 訂單詳情的主體 (含會員與優惠券)
+	 */
+	public record OrderHeaderRow(int ticketOrderId, Integer totalAmount, Integer totalTicketAmount,
+			Integer totalDiscount, String status, String paymentType, LocalDateTime createdTime,
+			LocalDateTime paymentTime, Integer memberId, String username, String email, String phone, Integer couponId,
+			String couponName) {
+	}
+
+	/**
+	 * 訂單詳情的一張票
+	 */
+	public record OrderItemRow(String movieTitle, LocalDateTime startTime, String theaterName, String rowNumber,
+			Integer columnNumber, String ticketTypeName, Integer unitPrice) {
+	}
+
+	/**
+	 * 查詢一頁訂單，依建立時間與 ID 倒序
+	 *
+	 * @param criteria 查詢條件
+	 * @param after    游標，只查詢排在游標之後的訂單；null 時從 offset 開始
+	 * @param offset   沒有游標時略過的筆數 (直接跳頁用)
+	 * @param limit    筆數
+	 */
+	public List<OrderRow> findPage(SearchCriteria criteria, Cursor after, int offset, int limit) {
+		MapSqlParameterSource params = new MapSqlParameterSource();
+		StringBuilder sql = new StringBuilder("SELECT o.ticket_order_id, o.created_time, o.total_amount, o.status, "
+				+ "o.payment_type, m.member_id, m.username, m.email, m.phone "
+				+ "FROM ticket_order o JOIN member m ON m.member_id = o.member_id");
+		appendWhere(sql, params, criteria);
+		if (after != null) {
+			sql.append(" AND (o.created_time < :cursorTime "
+					+ "OR (o.created_time = :cursorTime AND o.ticket_order_id < :cursorId))");
+			params.addValue("cursorTime", Timestamp.valueOf(after.createdTime()));
+			params.addValue("cursorId", after.ticketOrderId());
+		}
+		sql.append(" ORDER BY o.created_time DESC, o.ticket_order_id DESC "
+				+ "OFFSET :offset ROWS FETCH NEXT :limit ROWS ONLY");
+		params.addValue("offset", after != null ? 0 : offset);
+		params.addValue("limit", limit);
+
+		return jdbc.query(sql.toString(), params,
+				(rs, rowNum) -> new OrderRow(rs.getInt("ticket_order_id"),
+						rs.getObject("created_time", LocalDateTime.class), (Integer) rs.getObject("total_amount"),
+						rs.getString("status"), rs.getString("payment_type"), (Integer) rs.getObject("member_id"),
+						rs.getString("username"), rs.getString("email"), rs.getString("phone")));
+	}
+
+	/**
+	 * 符合條件的訂單數，最多數到 cap 筆，避免大量資料時對整個結果做 COUNT
+	 */
+	public long countUpTo(SearchCriteria criteria, int cap) {
+		MapSqlParameterSource params = new MapSqlParameterSource("cap", cap);
+		StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM (SELECT TOP (:cap) o.ticket_order_id "
+				+ "FROM ticket_order o JOIN member m ON m.member_id = o.member_id");
+		appendWhere(sql, params, criteria);
+		sql.append(") t");
+		Long count = jdbc.queryForObject(sql.toString(), params, Long.class);
+		return count != null ? count : 0;
+	}
+
+	/**
+	 * 以資料表統計資訊估計的訂單總數；沒有權限讀取 sys.dm_db_partition_stats 時回傳 empty
+	 */
+	public Optional<Long> estimateTotalOrders() {
+		try {
+			Long rows = jdbc.queryForObject("SELECT SUM(row_count) FROM sys.dm_db_partition_stats "
+					+ "WHERE object_id = OBJECT_ID('ticket_order') AND index_id IN (0, 1)", Map.of(), Long.class);
+			return Optional.ofNullable(rows);
+		} catch (DataAccessException e) {
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * 訂單詳情的主體
+	 */
+	public Optional<OrderHeaderRow> findOrderHeader(int ticketOrderId) {
+		List<OrderHeaderRow> rows = jdbc.query("SELECT o.ticket_order_id, o.total_amount, o.total_ticket_amount, "
+				+ "o.total_discount, o.status, o.payment_type, o.created_time, o.payment_time, "
+				+ "m.member_id, m.username, m.email, m.phone, c.coupon_id, c.coupon_name "
+				+ "FROM ticket_order o "
+				+ "LEFT JOIN member m ON m.member_id = o.member_id "
+				+ "LEFT JOIN coupon c ON c.coupon_id = o.coupon_id "
+				+ "WHERE o.ticket_order_id = :ticketOrderId",
+				Map.of("ticketOrderId", ticketOrderId),
+				(rs, rowNum) -> new OrderHeaderRow(rs.getInt("ticket_order_id"),
+						(Integer) rs.getObject("total_amount"), (Integer) rs.getObject("total_ticket_amount"),
+						(Integer) rs.getObject("total_discount"), rs.getString("status"),
+						rs.getString("payment_type"), rs.getObject("created_time", LocalDateTime.class),
+						rs.getObject("payment_time", LocalDateTime.class), (Integer) rs.getObject("member_id"),
+						rs.getString("username"), rs.getString("email"), rs.getString("phone"),
+						(Integer) rs.getObject("coupon_id"), rs.getString("coupon_name")));
+		return rows.stream().findFirst();
+	}
+
+	/**
+	 * 訂單詳情的票券明細
+	 */
+	public List<OrderItemRow> findOrderItems(int ticketOrderId) {
+		return jdbc.query("SELECT mv.title_local, ms.start_time, t.theater_name, s.row_number, s.column_number, "
+				+ "tt.ticket_type_name, d.unit_price "
+				+ "FROM ticket_order_detail d "
+				+ "JOIN session_seat ss ON ss.session_seat_id = d.session_seat_id "
+				+ "JOIN seat s ON s.seat_id = ss.seat_id "
+				+ "JOIN movie_session ms ON ms.session_id = ss.session_id "
+				+ "JOIN movie mv ON mv.movie_id = ms.movie_id "
+				+ "JOIN theater t ON t.theater_id = ms.theater_id "
+				+ "JOIN ticket_type tt ON tt.ticket_type_id = d.ticket_type_id "
+				+ "WHERE d.ticket_order_id = :ticketOrderId "
+				+ "ORDER BY d.ticket_order_detail_id",
+				Map.of("ticketOrderId", ticketOrderId),
+				(rs, rowNum) -> new OrderItemRow(rs.getString("title_local"),
+						rs.getObject("start_time", LocalDateTime.class), rs.getString("theater_name"),
+						rs.getString("row_number"), (Integer) rs.getObject("column_number"),
+						rs.getString("ticket_type_name"), (Integer) rs.getObject("unit_price")));
+	}
+
+	private void appendWhere(StringBuilder sql, MapSqlParameterSource params, SearchCriteria criteria) {
+		sql.append(" WHERE 1 = 1");
+		if (criteria.ticketOrderId() != null) {
+			sql.append(" AND o.ticket_order_id = :ticketOrderId");
+			params.addValue("ticketOrderId", criteria.ticketOrderId());
+		}
+		appendMemberTerm(sql, params, MemberField.USERNAME, criteria.username());
+		appendMemberTerm(sql, params, MemberField.EMAIL, criteria.email());
+		appendMemberTerm(sql, params, MemberField.PHONE, criteria.phone());
+		if (criteria.status() != null) {
+			sql.append(" AND o.status = :status");
+			params.addValue("status", criteria.status());
+		}
+		if (criteria.paymentType() != null) {
+			sql.append(" AND o.payment_type = :paymentType");
+			params.addValue("paymentType", criteria.paymentType());
+		}
+		if (criteria.createdFrom() != null) {
+			sql.append(" AND o.created_time >= :createdFrom");
+			params.addValue("createdFrom", Timestamp.valueOf(criteria.createdFrom()));
+		}
+		if (criteria.createdBefore() != null) {
+			sql.append(" AND o.created_time < :createdBefore");
+			params.addValue("createdBefore", Timestamp.valueOf(criteria.createdBefore()));
+		}
+	}
+
+	/**
+	 * 會員欄位的部分比對條件。三個字元以上時，候選會員必須包含查詢字串的所有片段，再以 LIKE 排除片段順序不符的會員
+	 */
+	private void appendMemberTerm(StringBuilder sql, MapSqlParameterSource params, MemberField field, String term) {
+		if (!StringUtils.hasText(term)) {
+			return;
+		}
+		String value = term.trim().toLowerCase(Locale.ROOT);
+		String prefix = field.column;
+		if (value.length() < GRAM_LENGTH) {
+			sql.append(" AND m.").append(field.column).append(" LIKE :").append(prefix).append("Pattern ESCAPE '\\'");
+			params.addValue(prefix + "Pattern", escapeLike(value) + "%");
+			return;
+		}
+		Set<String> grams = new LinkedHashSet<>();
+		for (int i = 0; i + GRAM_LENGTH <= value.length(); i++) {
+			grams.add(value.substring(i, i + GRAM_LENGTH));
+		}
+		sql.append(" AND o.member_id IN (SELECT g.member_id FROM member_search_gram g WHERE g.field = :")
+				.append(prefix).append("Field AND g.gram IN (:").append(prefix).append("Grams) ")
+				.append("GROUP BY g.member_id HAVING COUNT(DISTINCT g.gram) = :").append(prefix).append("GramCount)");
+		sql.append(" AND m.").append(field.column).append(" LIKE :").append(prefix).append("Pattern ESCAPE '\\'");
+		params.addValue(prefix + "Field", field.code);
+		params.addValue(prefix + "Grams", grams);
+		params.addValue(prefix + "GramCount", grams.size());
+		params.addValue(prefix + "Pattern", "%" + escapeLike(value) + "%");
+	}
+
+	private static String escapeLike(String value) {
+		return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_").replace("[", "\\[");
+	}
+}
@@ -0,0 +1,182 @@
+package com.flux.movieproject.repository.ticket;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 持久化工作佇列 (payment_callback、order_event_outbox) 共用的狀態轉換。
+ * 狀態轉換一律以帶條件的 UPDATE 進行，同一筆工作不會被兩個執行緒同時處理。
+ * 資料表與欄位名稱來自各 Repository 的固定設定 (WorkQueueTable)，不是使用者輸入。
+ */
+@Repository
+public class WorkQueueJdbcRepository {
+
+	public static final String PROCESSING = "PROCESSING";
+	public static final String RETRY = "RETRY";
+	public static final String DONE = "DONE";
+	public static final String DEAD = "DEAD";
+
+	// last_error 欄位長度
+	private static final int MAX_ERROR_LENGTH = 500;
+
+	@Autowired
+	private NamedParameterJdbcTemplate jdbc;
+
+	/**
+	 * 佇列中的一筆工作
+	 */
+	public interface WorkItem {
+
+		long id();
+
+		/**
+		 * @return 已處理次數 (不含這次)
+		 */
+		int attempts();
+	}
+
+	/**
+	 * 工作佇列的資料表設定
+	 *
+	 * @param table         資料表
+	 * @param idColumn      主鍵欄位
+	 * @param createdColumn 建立時間欄位
+	 * @param initialStatus 新增時的狀態
+	 * @param columns       讀取工作時查詢的欄位
+	 * @param rowMapper     將查詢結果轉換為工作
+	 */
+	public record WorkQueueTable<T extends WorkItem>(String table, String idColumn, String createdColumn,
+			String initialStatus, String columns, RowMapper<T> rowMapper) {
+	}
+
+	/**
+	 * 重試次數用盡的工作
+	 */
+	public record DeadLetterRow<T>(T item, String lastError, LocalDateTime createdTime, LocalDateTime updatedTime) {
+	}
+
+	/**
+	 * 取得處理權 (新增 / RETRY -> PROCESSING) 並累加處理次數
+	 *
+	 * @return 是否取得；已被其他執行緒處理或已完成時為 false
+	 */
+	public boolean markProcessing(WorkQueueTable<?> table, long id, LocalDateTime now) {
+		return jdbc.update("UPDATE " + table.table() + " SET status = '" + PROCESSING + "', attempts = attempts + 1, "
+				+ "updated_time = :now WHERE " + table.idColumn() + " = :id AND status IN ('" + table.initialStatus()
+				+ "', '" + RETRY + "')", Map.of("id", id, "now", Timestamp.valueOf(now))) == 1;
+	}
+
+	/**
+	 * 處理完成 (PROCESSING -> DONE)
+	 *
+	 * @return 是否更新；處理逾時已被排程改為重試時為 false
+	 */
+	public boolean markDone(WorkQueueTable<?> table, long id, LocalDateTime now) {
+		return jdbc.update("UPDATE " + table.table() + " SET status = '" + DONE + "', last_error = NULL, "
+				+ "next_attempt_time = NULL, updated_time = :now WHERE " + table.idColumn() + " = :id AND status = '"
+				+ PROCESSING + "'", Map.of("id", id, "now", Timestamp.valueOf(now))) == 1;
+	}
+
+	/**
+	 * 處理失敗，排定下次重試時間
+	 */
+	public void markRetry(WorkQueueTable<?> table, long id, String error, LocalDateTime nextAttemptTime,
+			LocalDateTime now) {
+		jdbc.update("UPDATE " + table.table() + " SET status = '" + RETRY + "', last_error = :error, "
+				+ "next_attempt_time = :nextAttemptTime, updated_time = :now WHERE " + table.idColumn() + " = :id",
+				new MapSqlParameterSource()
+						.addValue("id", id)
+						.addValue("error", truncate(error))
+						.addValue("nextAttemptTime", Timestamp.valueOf(nextAttemptTime))
+						.addValue("now", Timestamp.valueOf(now)));
+	}
+
+	/**
+	 * 重試次數用盡，移到死信 (DEAD) 等待人工處理
+	 */
+	public void markDead(WorkQueueTable<?> table, long id, String error, LocalDateTime now) {
+		jdbc.update("UPDATE " + table.table() + " SET status = '" + DEAD + "', last_error = :error, "
+				+ "next_attempt_time = NULL, updated_time = :now WHERE " + table.idColumn() + " = :id",
+				new MapSqlParameterSource()
+						.addValue("id", id)
+						.addValue("error", truncate(error))
+						.addValue("now", Timestamp.valueOf(now)));
+	}
+
+	/**
+	 * 處理中的時間超過 stuckBefore 的工作 (例如處理到一半應用程式重啟) 改為立即重試
+	 *
+	 * @return 筆數
+	 */
+	public int resetStuck(WorkQueueTable<?> table, LocalDateTime stuckBefore, LocalDateTime now) {
+		return jdbc.update("UPDATE " + table.table() + " SET status = '" + RETRY + "', next_attempt_time = :now, "
+				+ "updated_time = :now WHERE status = '" + PROCESSING + "' AND updated_time < :stuckBefore",
+				Map.of("stuckBefore", Timestamp.valueOf(stuckBefore), "now", Timestamp.valueOf(now)));
+	}
+
+	/**
+	 * 需要補處理的工作：到了重試時間的，以及建立後超過 createdBefore 仍未處理的 (例如沒排進佇列)
+	 */
+	public <T extends WorkItem> List<T> findDue(WorkQueueTable<T> table, LocalDateTime now,
+			LocalDateTime createdBefore, int limit) {
+		return jdbc.query("SELECT TOP (:limit) " + table.columns() + " FROM " + table.table() + " "
+				+ "WHERE (status = '" + RETRY + "' AND next_attempt_time <= :now) "
+				+ "OR (status = '" + table.initialStatus() + "' AND " + table.createdColumn() + " < :createdBefore) "
+				+ "ORDER BY " + table.idColumn(),
+				Map.of("limit", limit, "now", Timestamp.valueOf(now), "createdBefore",
+						Timestamp.valueOf(createdBefore)),
+				table.rowMapper());
+	}
+
+	public <T extends WorkItem> List<DeadLetterRow<T>> findDeadLetters(WorkQueueTable<T> table) {
+		return jdbc.query("SELECT " + table.columns() + ", last_error, " + table.createdColumn() + " AS created_time, "
+				+ "updated_time FROM " + table.table() + " WHERE status = '" + DEAD + "' "
+				+ "ORDER BY " + table.idColumn() + " DESC", Map.of(),
+				(rs, rowNum) -> new DeadLetterRow<>(table.rowMapper().mapRow(rs, rowNum), rs.getString("last_error"),
+						rs.getObject("created_time", LocalDateTime.class),
+						rs.getObject("updated_time", LocalDateTime.class)));
+	}
+
+	/**
+	 * 將死信重新排入處理 (處理次數歸零)
+	 *
+	 * @return 取得重新處理的工作；不存在或不是死信時為 empty
+	 */
+	public <T extends WorkItem> Optional<T> requeueDeadLetter(WorkQueueTable<T> table, long id, LocalDateTime now) {
+		int updated = jdbc.update("UPDATE " + table.table() + " SET status = '" + RETRY + "', attempts = 0, "
+				+ "next_attempt_time = :now, updated_time = :now WHERE " + table.idColumn() + " = :id AND status = '"
+				+ DEAD + "'", Map.of("id", id, "now", Timestamp.valueOf(now)));
+		if (updated == 0) {
+			return Optional.empty();
+		}
+		return jdbc.query("SELECT " + table.columns() + " FROM " + table.table() + " WHERE " + table.idColumn()
+				+ " = :id", Map.of("id", id), table.rowMapper())
+				.stream().findFirst();
+	}
+
+	/**
+	 * 刪除已完成超過 doneBefore 的工作
+	 *
+	 * @return 筆數
+	 */
+	public int purgeDone(WorkQueueTable<?> table, LocalDateTime doneBefore) {
+		return jdbc.update("DELETE FROM " + table.table() + " WHERE status = '" + DONE + "' AND updated_time < :doneBefore",
+				Map.of("doneBefore", Timestamp.valueOf(doneBefore)));
+	}
+
+	private static String truncate(String error) {
+		if (error == null || error.length() <= MAX_ERROR_LENGTH) {
+			return error;
+		}
+		return error.substring(0, MAX_ERROR_LENGTH);
+	}
+}
@@ -0,0 +1,116 @@
+package com.flux.movieproject.service.cache;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.flux.movieproject.service.cache.ReadThroughCache.Stats;
+
+/**
+ * 前台目錄資料 (電影、類型、影廳、票種) 的快取管理。票價由 TicketPricingEngine 的價目表提供。
+ * 這些資料只在後台編輯時才會改變，卻在每次瀏覽頁面時都要查詢資料庫，因此以具名快取保存查詢結果。
+ * 每個快取的有效時間與筆數上限可用 catalog.cache.{名稱}.ttl-seconds / max-entries 設定；
+ * 後台的新增、修改、刪除方法在交易提交後主動清除相關快取，有效時間只是避免漏掉的異動一直沿用舊資料。
+ */
+@Component
+public class CatalogCacheManager {
+
+	// --- 快取名稱 ---
+	public static final String MOVIES_NOW_PLAYING = "movies-now-playing";
+	public static final String MOVIES_COMING_SOON = "movies-coming-soon";
+	public static final String MOVIE_DETAIL = "movie-detail";
+	public static final String GENRES = "genres";
+	public static final String THEATERS = "theaters";
+	public static final String THEATER_TYPES = "theater-types";
+	public static final String TICKET_TYPES = "ticket-types";
+
+	// 電影或其類型、導演、演員異動時需要一起清除的快取
+	public static final String[] MOVIE_CACHES = { MOVIES_NOW_PLAYING, MOVIES_COMING_SOON, MOVIE_DETAIL, GENRES };
+
+	private final Environment environment;
+	private final TransactionTemplate readOnlyTransaction;
+	private final Map<String, ReadThroughCache<?, ?>> caches = new ConcurrentHashMap<>();
+
+	@Autowired
+	public CatalogCacheManager(Environment environment, PlatformTransactionManager transactionManager) {
+		this.environment = environment;
+		this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+		this.readOnlyTransaction.setReadOnly(true);
+	}
+
+	/**
+	 * 取得 (第一次呼叫時建立) 具名快取。快取未命中時的讀取在唯讀交易中執行。
+	 *
+	 * @param name              快取名稱
+	 * @param defaultTtl        沒有設定 catalog.cache.{name}.ttl-seconds 時的有效時間
+	 * @param defaultMaxEntries 沒有設定 catalog.cache.{name}.max-entries 時的筆數上限
+	 * @return 快取
+	 */
+	@SuppressWarnings("unchecked")
+	public <K, V> ReadThroughCache<K, V> getCache(String name, Duration defaultTtl, int defaultMaxEntries) {
+		return (ReadThroughCache<K, V>) caches.computeIfAbsent(name, key -> {
+			long ttlSeconds = environment.getProperty("catalog.cache." + name + ".ttl-seconds", Long.class,
+					defaultTtl.getSeconds());
+			int maxEntries = environment.getProperty("catalog.cache." + name + ".max-entries", Integer.class,
+					defaultMaxEntries);
+			return new ReadThroughCache<>(name, ttlSeconds * 1000, Math.max(1, maxEntries), readOnlyTransaction);
+		});
+	}
+
+	/**
+	 * 清除指定的快取。在交易中呼叫時，提交前先清除一次，提交後再清除一次，
+	 * 避免其他請求在提交前又把舊資料放回快取；交易回滾時快取只是被提早清除，不影響正確性。
+	 *
+	 * @param names 快取名稱
+	 */
+	public void invalidateAfterCommit(String... names) {
+		invalidate(names);
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				invalidate(names);
+			}
+		});
+	}
+
+	/**
+	 * 立即清除指定的快取
+	 *
+	 * @param names 快取名稱
+	 * @return 是否有找到對應的快取
+	 */
+	public boolean invalidate(String... names) {
+		boolean found = false;
+		for (String name : names) {
+			ReadThroughCache<?, ?> cache = caches.get(name);
+			if (cache != null) {
+				cache.invalidateAll();
+				found = true;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * 所有快取的命中率等統計數據，用來調整有效時間與筆數上限
+	 */
+	public List<Stats> stats() {
+		return caches.values().stream()
+				.map(ReadThroughCache::stats)
+				.sorted(Comparator.comparing(Stats::name))
+				.toList();
+	}
+}
@@ -0,0 +1,147 @@
+package com.flux.movieproject.service.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.transaction.support.TransactionOperations;
+
+/**
+ * 具名、有筆數上限與有效時間的讀取快取 (read-through)。
+ * 取值時若快取中沒有或已過期，就以呼叫端提供的 loader 從資料庫讀取後放入快取；
+ * 超過筆數上限時依 LRU (最久未使用) 順序淘汰。loader 回傳 null (例如查無資料) 時不快取。
+ * 快取的值會被多個請求共用，呼叫端不可修改取得的物件。
+ *
+ * @param <K> 快取鍵
+ * @param <V> 快取值
+ */
+public class ReadThroughCache<K, V> {
+
+	private final String name;
+	private final long ttlMillis;
+	private final int maxEntries;
+	// loader 在這個交易設定下執行 (唯讀交易)，快取命中時不會向連線池借用連線
+	private final TransactionOperations loaderTransaction;
+
+	// accessOrder = true，迭代順序即為最久未使用到最近使用
+	private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+	// 每次清除快取就加一；清除前開始讀取的結果不放入快取，避免把舊資料放回去
+	private long generation;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder loadFailures = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+	private record Entry<V>(V value, long expiresAtMillis) {
+	}
+
+	/**
+	 * 快取的統計數據
+	 *
+	 * @param name          快取名稱
+	 * @param size          目前筆數
+	 * @param maxEntries    筆數上限
+	 * @param ttlSeconds    有效秒數
+	 * @param hits          命中次數
+	 * @param misses        未命中 (含過期) 次數
+	 * @param hitRate       命中率 (0 ~ 1)
+	 * @param loadFailures  從資料庫讀取失敗的次數
+	 * @param evictions     因超過筆數上限而淘汰的筆數
+	 * @param invalidations 被主動清除的次數
+	 */
+	public record Stats(String name, int size, int maxEntries, long ttlSeconds, long hits, long misses, double hitRate,
+			long loadFailures, long evictions, long invalidations) {
+	}
+
+	ReadThroughCache(String name, long ttlMillis, int maxEntries, TransactionOperations loaderTransaction) {
+		this.name = name;
+		this.ttlMillis = ttlMillis;
+		this.maxEntries = maxEntries;
+		this.loaderTransaction = loaderTransaction;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * 取得快取值，沒有或已過期時以 loader 讀取並放入快取
+	 *
+	 * @param key    快取鍵
+	 * @param loader 從資料庫讀取的程式
+	 * @return 快取值；loader 回傳 null 時為 null
+	 */
+	public V get(K key, Supplier<V> loader) {
+		long loadGeneration;
+		synchronized (this) {
+			Entry<V> entry = entries.get(key);
+			if (entry != null && entry.expiresAtMillis() > System.currentTimeMillis()) {
+				hits.increment();
+				return entry.value();
+			}
+			if (entry != null) {
+				entries.remove(key);
+			}
+			loadGeneration = generation;
+		}
+		misses.increment();
+
+		V value;
+		try {
+			value = loaderTransaction.execute(status -> loader.get());
+		} catch (RuntimeException e) {
+			loadFailures.increment();
+			throw e;
+		}
+		if (value == null) {
+			return null;
+		}
+
+		synchronized (this) {
+			if (loadGeneration == generation) {
+				entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+				evictOverflow();
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * 清除一筆
+	 */
+	public synchronized void invalidate(K key) {
+		generation++;
+		entries.remove(key);
+		invalidations.increment();
+	}
+
+	/**
+	 * 清除全部
+	 */
+	public synchronized void invalidateAll() {
+		generation++;
+		entries.clear();
+		invalidations.increment();
+	}
+
+	public synchronized Stats stats() {
+		long hitCount = hits.sum();
+		long missCount = misses.sum();
+		long total = hitCount + missCount;
+		return new Stats(name, entries.size(), maxEntries, ttlMillis / 1000, hitCount, missCount,
+				total == 0 ? 0 : (double) hitCount / total, loadFailures.sum(), evictions.sum(), invalidations.sum());
+	}
+
+	private void evictOverflow() {
+		Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+		while (entries.size() > maxEntries && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+			evictions.increment();
+		}
+	}
+}
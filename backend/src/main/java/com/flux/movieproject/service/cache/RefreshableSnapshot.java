@@ -0,0 +1,107 @@
+package com.flux.movieproject.service.cache;
+
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 由資料庫建立、整份替換的記憶體快照 (價目表、索引等)。
+ * 資料異動時在交易提交後重新建立 (同一個交易只重新建立一次)，另外由使用者的排程定期呼叫 refresh，
+ * 讓其他應用程式實例的異動也能生效。讀取端取得的快照不會被替換到一半。
+ *
+ * @param <S> 快照
+ */
+public class RefreshableSnapshot<S> {
+
+	private final String name;
+	private final UnaryOperator<S> loader;
+	private volatile S current;
+
+	/**
+	 * @param name   快照名稱，用於記錄
+	 * @param loader 以目前的快照 (第一次建立時為 null) 建立新的快照
+	 */
+	public RefreshableSnapshot(String name, UnaryOperator<S> loader) {
+		this.name = name;
+		this.loader = loader;
+	}
+
+	public S get() {
+		return current;
+	}
+
+	/**
+	 * 重新建立並整份替換；與 update 互斥
+	 */
+	public synchronized void reload() {
+		current = loader.apply(current);
+	}
+
+	/**
+	 * 就地更新目前的快照 (快照需自行處理並行的讀取)；與 reload 互斥，不會更新到即將被替換的舊快照
+	 */
+	public synchronized void update(Consumer<S> action) {
+		action.accept(current);
+	}
+
+	/**
+	 * 在目前交易提交後重新建立；交易回滾時快照維持不變，不在交易中時立即重新建立。
+	 * 同一個交易中多次呼叫只會重新建立一次
+	 */
+	public void reloadAfterCommit() {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			reload();
+			return;
+		}
+		if (TransactionSynchronizationManager.hasResource(this)) {
+			return;
+		}
+		TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				refresh();
+			}
+
+			@Override
+			public void afterCompletion(int status) {
+				TransactionSynchronizationManager.unbindResource(RefreshableSnapshot.this);
+			}
+		});
+	}
+
+	/**
+	 * 在目前交易提交後就地更新快照；不在交易中時立即更新
+	 */
+	public void updateAfterCommit(Consumer<S> action) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			update(action);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				try {
+					update(action);
+				} catch (DataAccessException e) {
+					// 由下次重新建立補上
+					System.err.println(name + ": 更新失敗：" + e.getMessage());
+				}
+			}
+		});
+	}
+
+	/**
+	 * 重新建立；失敗時沿用目前的快照，由下次排程再重試
+	 */
+	public void refresh() {
+		try {
+			reload();
+		} catch (DataAccessException e) {
+			System.err.println(name + ": 重新建立失敗：" + e.getMessage());
+		}
+	}
+}
@@ -18,6 +18,8 @@ import com.flux.movieproject.model.dto.event.AnnouncementDTO;
 import com.flux.movieproject.model.dto.event.AnnouncementListResponse;
 import com.flux.movieproject.model.entity.event.Announcement;
 import com.flux.movieproject.repository.event.AnnouncementRepository;
+import com.flux.movieproject.service.image.ImageService;
+import com.flux.movieproject.service.image.ImageType;
 import com.flux.movieproject.utils.PictureConverter;
 
 @Service
@@ -27,6 +29,9 @@ public class AnnouncementService {
 	@Autowired
 	private AnnouncementRepository announcementRepository;
 
+	@Autowired
+	private ImageService imageService;
+
 	/**
 	 * 將 Announcement 實體轉換為 AnnouncementDTO 的輔助方法。
 	 */
@@ -150,6 +155,7 @@ public class AnnouncementService {
 	        }
 	    }
 
+	    imageService.invalidate(ImageType.ANNOUNCEMENT, announcementId);
 	    return announcementRepository.save(existingAnnouncement);
 	}
 
@@ -159,14 +165,14 @@ public class AnnouncementService {
             throw new RuntimeException("找不到 ID 為 " + announcementId + " 的公告，無法刪除。");
         }
 		announcementRepository.deleteById(announcementId);
+		imageService.invalidate(ImageType.ANNOUNCEMENT, announcementId);
 	}
 
-	public Optional<byte[]> getImageById(Integer announcementId) {
-		Optional<Announcement> announcementOptional = announcementRepository.findById(announcementId);
-		if (announcementOptional.isPresent()) {
-		    return Optional.ofNullable(announcementOptional.get().getAnnouncementImage());
-		}
-		return Optional.empty();
+	/**
+	 * 取得公告圖片的網址 (由圖片 API 提供)，沒有圖片時回傳 Optional.empty()
+	 */
+	public Optional<String> getImageUrl(Integer announcementId) {
+		return Optional.ofNullable(imageService.getImageUrl(ImageType.ANNOUNCEMENT, announcementId));
 	}
 	
 	public Page<Announcement> findPublic(Pageable pageable, String keyword) {
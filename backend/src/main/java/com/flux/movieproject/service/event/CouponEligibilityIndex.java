@@ -0,0 +1,137 @@
+package com.flux.movieproject.service.event;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.flux.movieproject.repository.event.CouponEligibilityJdbcRepository;
+import com.flux.movieproject.repository.event.CouponEligibilityJdbcRepository.EligibilityRow;
+import com.flux.movieproject.service.cache.RefreshableSnapshot;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 優惠券適用條件的索引：電影、場次與會員等級分別對應到優惠券 ID 的集合。
+ * 結帳時查詢可用的優惠券，只需將會員持有的優惠券與各條件的集合取交集，不必逐張走訪 Coupon -> EventEligibility 的關聯。
+ * 每個條件的可用集合 = 沒有限制此條件的優惠券 ∪ 限定此值的優惠券；
+ * 會員等級是「不低於要求的等級」，因此依要求的等級由低到高預先累加，查詢時取不大於目前等級的那一組。
+ */
+@Service
+public class CouponEligibilityIndex {
+
+	/**
+	 * 建立後不再修改的索引
+	 */
+	private static final class Snapshot {
+		private final Set<Integer> indexedCouponIds = new HashSet<>();
+		private final Set<Integer> anyMovie = new HashSet<>();
+		private final Map<Integer, Set<Integer>> byMovie = new HashMap<>();
+		private final Set<Integer> anySession = new HashSet<>();
+		private final Map<Integer, Set<Integer>> bySession = new HashMap<>();
+		private final Set<Integer> anyLevel = new HashSet<>();
+		// 要求的會員等級 -> 要求等級不高於此等級的優惠券 (累加)
+		private final NavigableMap<Integer, Set<Integer>> atOrBelowLevel = new TreeMap<>();
+	}
+
+	@Autowired
+	private CouponEligibilityJdbcRepository couponEligibilityRepo;
+
+	private RefreshableSnapshot<Snapshot> snapshot;
+
+	@PostConstruct
+	public void init() {
+		snapshot = new RefreshableSnapshot<>("優惠券適用條件", previous -> build());
+		snapshot.reload();
+	}
+
+	/**
+	 * 在目前交易提交後重新建立索引 (優惠券或適用條件異動時呼叫)
+	 */
+	public void rebuildAfterCommit() {
+		snapshot.reloadAfterCommit();
+	}
+
+	/**
+	 * 定期重新建立索引，讓其他應用程式實例的異動也能生效
+	 */
+	@Scheduled(fixedDelayString = "${coupon.eligibility.refresh-interval-ms:300000}",
+			initialDelayString = "${coupon.eligibility.refresh-interval-ms:300000}")
+	public void refresh() {
+		snapshot.refresh();
+	}
+
+	/**
+	 * 優惠券是否已在索引中 (其他應用程式實例剛新增的優惠券可能還沒有)
+	 */
+	public boolean isIndexed(Integer couponId) {
+		return snapshot.get().indexedCouponIds.contains(couponId);
+	}
+
+	/**
+	 * 從候選的優惠券中找出適用於指定情境的優惠券
+	 *
+	 * @param couponIds     候選的優惠券 ID (例如會員持有的未使用優惠券)
+	 * @param movieId       電影 ID
+	 * @param sessionId     場次 ID
+	 * @param memberLevelId 會員目前的等級 ID
+	 * @return 已在索引中且符合所有條件的優惠券 ID；不在索引中的優惠券不會出現在結果中，需要呼叫端自行判斷
+	 */
+	public Set<Integer> findApplicable(Collection<Integer> couponIds, Integer movieId, Integer sessionId,
+			Integer memberLevelId) {
+		Snapshot current = snapshot.get();
+		Set<Integer> movieCoupons = current.byMovie.getOrDefault(movieId, Set.of());
+		Set<Integer> sessionCoupons = current.bySession.getOrDefault(sessionId, Set.of());
+		Entry<Integer, Set<Integer>> levelEntry = memberLevelId == null ? null
+				: current.atOrBelowLevel.floorEntry(memberLevelId);
+		Set<Integer> levelCoupons = levelEntry == null ? Set.of() : levelEntry.getValue();
+
+		Set<Integer> applicable = new HashSet<>();
+		for (Integer couponId : couponIds) {
+			if (current.indexedCouponIds.contains(couponId)
+					&& (current.anyMovie.contains(couponId) || movieCoupons.contains(couponId))
+					&& (current.anySession.contains(couponId) || sessionCoupons.contains(couponId))
+					&& (current.anyLevel.contains(couponId) || levelCoupons.contains(couponId))) {
+				applicable.add(couponId);
+			}
+		}
+		return applicable;
+	}
+
+	private Snapshot build() {
+		Snapshot built = new Snapshot();
+		NavigableMap<Integer, Set<Integer>> byLevel = new TreeMap<>();
+		for (EligibilityRow row : couponEligibilityRepo.findAll()) {
+			int couponId = row.couponId();
+			built.indexedCouponIds.add(couponId);
+			index(couponId, row.movieId(), built.anyMovie, built.byMovie);
+			index(couponId, row.sessionId(), built.anySession, built.bySession);
+			index(couponId, row.memberLevelId(), built.anyLevel, byLevel);
+		}
+		Set<Integer> cumulative = new HashSet<>();
+		for (Entry<Integer, Set<Integer>> entry : byLevel.entrySet()) {
+			cumulative.addAll(entry.getValue());
+			built.atOrBelowLevel.put(entry.getKey(), Set.copyOf(cumulative));
+		}
+		return built;
+	}
+
+	/**
+	 * 將優惠券放入某個條件的索引：沒有限制時放入 unrestricted，否則放入限定值對應的集合
+	 */
+	private static void index(int couponId, Integer value, Set<Integer> unrestricted, Map<Integer, Set<Integer>> byValue) {
+		if (value == null) {
+			unrestricted.add(couponId);
+		} else {
+			byValue.computeIfAbsent(value, key -> new HashSet<>()).add(couponId);
+		}
+	}
+}
@@ -24,6 +24,7 @@ import com.flux.movieproject.repository.event.EventRepository;
 import com.flux.movieproject.repository.member.MemberLevelRepository;
 import com.flux.movieproject.repository.movie.MovieRepository;
 import com.flux.movieproject.repository.moviesession.MovieSessionRepository;
+import com.flux.movieproject.service.member.CouponClaimEngine;
 import com.flux.movieproject.utils.CouponNumberUtils;
 
 /**
@@ -51,6 +52,10 @@ public class CouponService {
 	private MovieSessionRepository movieSessionRepository;
 	@Autowired
 	private MemberLevelRepository memberLevelRepository;
+	@Autowired
+	private CouponEligibilityIndex couponEligibilityIndex;
+	@Autowired
+	private CouponClaimEngine couponClaimEngine;
 
 	/**
 	 * 取得所有優惠券，並支援分頁功能。
@@ -88,6 +93,7 @@ public class CouponService {
 	 */
 	@Transactional
 	 public Coupon createCoupon(CouponDTO couponDTO) {
+	  couponEligibilityIndex.rebuildAfterCommit();
 	  // 先轉 DTO -> Entity
 	  Coupon coupon = convertToEntity(couponDTO);
 	  EventEligibility eligibility = convertEligibility(couponDTO);
@@ -245,7 +251,8 @@ public class CouponService {
 			existingCoupon.setQuantity(couponDetails.getQuantity());
 		}
 
-		// 4. 將更新後的實體儲存回資料庫
+		// 4. 將更新後的實體儲存回資料庫，領取用的剩餘張數與限領次數在提交後重新載入
+		couponClaimEngine.evictAfterCommit(couponId);
 		return couponRepository.save(existingCoupon);
 	}
 
@@ -261,6 +268,8 @@ public class CouponService {
 			throw new RuntimeException("找不到此優惠券，ID：" + couponId);
 		}
 		couponRepository.deleteById(couponId);
+		couponEligibilityIndex.rebuildAfterCommit();
+		couponClaimEngine.evictAfterCommit(couponId);
 	}
 
 	/**
@@ -21,7 +21,6 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
 
 @Service
@@ -43,6 +42,9 @@ public class EventEligibilityService {
     @Autowired
     private MemberLevelRepository memberLevelRepository;
 
+    @Autowired
+    private CouponEligibilityIndex couponEligibilityIndex;
+
     /** 建立單筆條件（if/else 版本） */
     public EventEligibilityResponse create(EventEligibilityCreateRequest req) {
         // 取 Event
@@ -83,20 +85,18 @@ public class EventEligibilityService {
         }
 
         EventEligibility saved = eligibilityRepository.save(e);
+        couponEligibilityIndex.rebuildAfterCommit();
         return toResponse(saved);
     }
 
-    /** 依活動查詢（for 迴圈版本） */
+    /** 依活動查詢（由資料庫依 event_id 篩選） */
     @Transactional(readOnly = true)
     public List<EventEligibilityResponse> findByEventId(Integer eventId) {
-        List<EventEligibility> all = eligibilityRepository.findAll();
+        List<EventEligibility> items = eligibilityRepository.findByEvent_EventId(eventId);
         List<EventEligibilityResponse> result = new ArrayList<EventEligibilityResponse>();
 
-        for (int i = 0; i < all.size(); i++) {
-            EventEligibility item = all.get(i);
-            if (item.getEvent() != null && Objects.equals(item.getEvent().getEventId(), eventId)) {
-                result.add(toResponse(item));
-            }
+        for (int i = 0; i < items.size(); i++) {
+            result.add(toResponse(items.get(i)));
         }
         return result;
     }
@@ -120,6 +120,7 @@ public class EventEligibilityService {
             throw new EntityNotFoundException("Eligibility not found: " + id);
         }
         eligibilityRepository.deleteById(id);
+        couponEligibilityIndex.rebuildAfterCommit();
     }
 
     /** 批次建立（for 迴圈版本） */
@@ -22,6 +22,8 @@ import com.flux.movieproject.model.entity.event.Event;
 import com.flux.movieproject.model.entity.event.EventCategory;
 import com.flux.movieproject.repository.event.EventCategoryRepository;
 import com.flux.movieproject.repository.event.EventRepository;
+import com.flux.movieproject.service.image.ImageService;
+import com.flux.movieproject.service.image.ImageType;
 import com.flux.movieproject.utils.PictureConverter;
 
 @Service
@@ -34,6 +36,9 @@ public class EventService {
 	@Autowired
 	private EventCategoryRepository eventCategoryRepository;
 
+	@Autowired
+	private ImageService imageService;
+
 	/**
 	 * 將 Event 實體轉換為 EventDTO 的輔助方法。
 	 */
@@ -194,6 +199,7 @@ public class EventService {
 			throw new RuntimeException("找不到 ID 為 " + eventId + " 的活動，無法刪除。");
 		}
 		eventRepository.deleteById(eventId);
+		imageService.invalidate(ImageType.EVENT, eventId);
 	}
 
 	/**
@@ -232,6 +238,7 @@ public class EventService {
 			} catch (IllegalArgumentException e) {
 				throw new RuntimeException("圖片 Base64 字串格式無效。", e);
 			}
+			imageService.invalidate(ImageType.EVENT, eventId);
 		}
 		Event updatedEvent = eventRepository.save(existingEvent);
 		return convertToDto(updatedEvent);
@@ -251,8 +258,9 @@ public class EventService {
 		return eventRepository.findById(id).orElseThrow(() -> new IllegalArgumentException("Event not found: " + id));
 	}
 
-	public Optional<byte[]> getImageById(Integer id) {
-		return eventRepository.findById(id).map(Event::getImage);
+	/** 取得活動圖片的網址 (由圖片 API 提供)，沒有圖片時回傳 Optional.empty() */
+	public Optional<String> getImageUrl(Integer id) {
+		return Optional.ofNullable(imageService.getImageUrl(ImageType.EVENT, id));
 	}
 	
 	@Transactional(readOnly = true)
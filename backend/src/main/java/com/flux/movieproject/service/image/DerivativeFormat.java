@@ -0,0 +1,55 @@
+package com.flux.movieproject.service.image;
+
+import javax.imageio.ImageIO;
+
+import org.springframework.http.MediaType;
+
+/**
+ * 縮圖的輸出格式。AVIF / WebP 需要對應的 ImageIO 外掛，未安裝時自動改用 JPEG。
+ */
+public enum DerivativeFormat {
+
+	AVIF("avif", "image/avif"),
+	WEBP("webp", "image/webp"),
+	JPEG("jpg", "image/jpeg");
+
+	private final String extension;
+	private final MediaType mediaType;
+	private final boolean writable;
+
+	DerivativeFormat(String extension, String mediaType) {
+		this.extension = extension;
+		this.mediaType = MediaType.parseMediaType(mediaType);
+		this.writable = ImageIO.getImageWritersByMIMEType(mediaType).hasNext();
+	}
+
+	public String getExtension() {
+		return extension;
+	}
+
+	public MediaType getMediaType() {
+		return mediaType;
+	}
+
+	/**
+	 * 目前的執行環境是否有此格式的 ImageIO 編碼器
+	 */
+	public boolean isWritable() {
+		return writable;
+	}
+
+	/**
+	 * 依瀏覽器的 Accept 標頭選擇壓縮率最好、且可以輸出的格式
+	 */
+	public static DerivativeFormat negotiate(String accept) {
+		for (DerivativeFormat format : values()) {
+			if (format == JPEG) {
+				break;
+			}
+			if (format.writable && accept != null && accept.contains(format.mediaType.toString())) {
+				return format;
+			}
+		}
+		return JPEG;
+	}
+}
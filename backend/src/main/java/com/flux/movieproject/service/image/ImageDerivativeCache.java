@@ -0,0 +1,165 @@
+package com.flux.movieproject.service.image;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 縮圖的磁碟快取。每個縮圖存成一個檔案，檔名即快取鍵 ({來源雜湊}-{寬度}.{副檔名})，
+ * 總大小超過上限時依 LRU (最久未使用) 順序刪除。
+ * 重新啟動後依檔案的最後修改時間重建使用順序，既有的縮圖不必重新產生。
+ */
+@Component
+public class ImageDerivativeCache {
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	@Value("${image.derivative.cache-dir:${java.io.tmpdir}/flux-image-derivatives}")
+	private String cacheDir;
+
+	@Value("${image.derivative.cache-max-mb:256}")
+	private long maxMegabytes;
+
+	private Path directory;
+
+	// key 為檔名，value 為檔案大小；accessOrder = true，迭代順序即為最久未使用到最近使用
+	private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(256, 0.75f, true);
+	private long totalBytes;
+
+	@PostConstruct
+	public void init() throws IOException {
+		directory = Paths.get(cacheDir);
+		Files.createDirectories(directory);
+
+		List<Path> files;
+		try (Stream<Path> stream = Files.list(directory)) {
+			files = stream.filter(Files::isRegularFile).sorted(Comparator.comparing(this::lastModified)).toList();
+		}
+		List<Path> evicted;
+		synchronized (this) {
+			for (Path file : files) {
+				String key = file.getFileName().toString();
+				if (key.endsWith(TEMP_SUFFIX)) {
+					Files.deleteIfExists(file); // 上次寫到一半的檔案
+					continue;
+				}
+				long size = Files.size(file);
+				entries.put(key, size);
+				totalBytes += size;
+			}
+			evicted = evictOverflow();
+		}
+		delete(evicted);
+		System.out.println("縮圖快取: 已載入 " + entries.size() + " 個檔案，共 " + totalBytes / 1024 + " KB (" + directory + ")");
+	}
+
+	/**
+	 * 讀取縮圖
+	 *
+	 * @return 縮圖內容；不在快取中時回傳 null
+	 */
+	public byte[] get(String key) {
+		synchronized (this) {
+			if (entries.get(key) == null) { // get 會同時更新 LRU 順序
+				return null;
+			}
+		}
+		Path file = directory.resolve(key);
+		try {
+			byte[] bytes = Files.readAllBytes(file);
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			return bytes;
+		} catch (NoSuchFileException e) {
+			forget(key); // 剛好被淘汰，或被外部刪除
+			return null;
+		} catch (IOException e) {
+			System.err.println("縮圖快取: 讀取 " + key + " 失敗：" + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * 寫入縮圖。先寫到暫存檔再改名，讀取端不會看到寫到一半的檔案。
+	 */
+	public void put(String key, byte[] bytes) {
+		Path file = directory.resolve(key);
+		Path temp = directory.resolve(key + "." + Thread.currentThread().getId() + TEMP_SUFFIX);
+		try {
+			Files.write(temp, bytes);
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			System.err.println("縮圖快取: 寫入 " + key + " 失敗：" + e.getMessage());
+			try {
+				Files.deleteIfExists(temp);
+			} catch (IOException ignored) {
+				// 下次啟動時會清除暫存檔
+			}
+			return;
+		}
+
+		List<Path> evicted;
+		synchronized (this) {
+			Long previous = entries.put(key, (long) bytes.length);
+			totalBytes += bytes.length - (previous == null ? 0 : previous);
+			evicted = evictOverflow();
+		}
+		delete(evicted);
+	}
+
+	private synchronized void forget(String key) {
+		Long size = entries.remove(key);
+		if (size != null) {
+			totalBytes -= size;
+		}
+	}
+
+	/**
+	 * 從最久未使用的項目開始移除，直到總大小低於上限 (呼叫端須持有鎖；實際刪檔在鎖外進行)
+	 */
+	private List<Path> evictOverflow() {
+		long maxBytes = maxMegabytes * 1024 * 1024;
+		List<Path> evicted = new ArrayList<>();
+		Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+		while (totalBytes > maxBytes && iterator.hasNext()) {
+			Map.Entry<String, Long> eldest = iterator.next();
+			totalBytes -= eldest.getValue();
+			evicted.add(directory.resolve(eldest.getKey()));
+			iterator.remove();
+		}
+		return evicted;
+	}
+
+	private void delete(List<Path> files) {
+		for (Path file : files) {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				System.err.println("縮圖快取: 刪除 " + file + " 失敗：" + e.getMessage());
+			}
+		}
+	}
+
+	private FileTime lastModified(Path file) {
+		try {
+			return Files.getLastModifiedTime(file);
+		} catch (IOException e) {
+			return FileTime.fromMillis(0);
+		}
+	}
+}
@@ -0,0 +1,208 @@
+package com.flux.movieproject.service.image;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.flux.movieproject.service.image.ImageService.StoredImage;
+
+/**
+ * 圖片縮圖 (衍生圖) 服務。
+ * 第一次請求某個寬度時才從原圖產生縮圖，寬度一律對齊到固定的幾個級距，避免每種寬度都產生一份；
+ * 產生的縮圖以「來源雜湊 + 寬度 + 格式」為鍵存進磁碟快取，原圖內容改變時雜湊不同，舊縮圖自然不再被使用並逐漸被淘汰。
+ */
+@Service
+public class ImageDerivativeService {
+
+	@Autowired
+	private ImageService imageService;
+	@Autowired
+	private ImageDerivativeCache derivativeCache;
+
+	// 可產生的寬度級距 (由小到大)
+	@Value("${image.derivative.widths:160,320,480,640,960,1280}")
+	private int[] widths;
+
+	@Value("${image.derivative.quality:0.8}")
+	private float quality;
+
+	// 同一個縮圖同時被多個請求要求時，只產生一次
+	private final Map<String, CompletableFuture<Optional<Derivative>>> inFlight = new ConcurrentHashMap<>();
+
+	/**
+	 * 產生好的縮圖
+	 *
+	 * @param sourceHash 來源圖片的內容雜湊
+	 * @param width      寬度級距
+	 * @param format     輸出格式
+	 * @param bytes      縮圖內容
+	 */
+	public record Derivative(String sourceHash, int width, DerivativeFormat format, byte[] bytes) {
+
+		/**
+		 * 縮圖的 ETag (來源雜湊、寬度與格式都相同時內容就相同)
+		 */
+		public String etag() {
+			return etag(sourceHash, width, format);
+		}
+
+		public static String etag(String sourceHash, int width, DerivativeFormat format) {
+			return sourceHash + "-" + width + "." + format.getExtension();
+		}
+	}
+
+	/**
+	 * 將請求的寬度對齊到最接近且不小於它的級距 (超過最大級距時取最大級距)
+	 */
+	public int bucketFor(int requestedWidth) {
+		int[] sorted = widths.clone();
+		Arrays.sort(sorted);
+		for (int width : sorted) {
+			if (width >= requestedWidth) {
+				return width;
+			}
+		}
+		return sorted[sorted.length - 1];
+	}
+
+	/**
+	 * 取得縮圖，快取中沒有時讀取原圖產生
+	 *
+	 * @param type       圖片種類
+	 * @param id         ID
+	 * @param sourceHash 目前已知的來源雜湊 (用於先查磁碟快取，不必讀取原圖)
+	 * @param width      寬度級距 (須先經過 bucketFor)
+	 * @param format     輸出格式
+	 * @return 縮圖；原圖不存在或無法解碼時回傳 Optional.empty()
+	 */
+	public Optional<Derivative> getOrCreate(ImageType type, Integer id, String sourceHash, int width,
+			DerivativeFormat format) {
+		String key = Derivative.etag(sourceHash, width, format);
+		byte[] cached = derivativeCache.get(key);
+		if (cached != null) {
+			return Optional.of(new Derivative(sourceHash, width, format, cached));
+		}
+
+		CompletableFuture<Optional<Derivative>> future = new CompletableFuture<>();
+		CompletableFuture<Optional<Derivative>> existing = inFlight.putIfAbsent(key, future);
+		if (existing != null) {
+			return existing.join(); // 其他請求正在產生同一個縮圖
+		}
+		try {
+			Optional<Derivative> derivative = create(type, id, width, format);
+			future.complete(derivative);
+			return derivative;
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key);
+		}
+	}
+
+	private Optional<Derivative> create(ImageType type, Integer id, int width, DerivativeFormat format) {
+		Optional<StoredImage> source = imageService.load(type, id);
+		if (source.isEmpty()) {
+			return Optional.empty();
+		}
+		// 原圖可能在這段期間被更新，以實際讀到的內容雜湊為準
+		String sourceHash = source.get().hash();
+		String key = Derivative.etag(sourceHash, width, format);
+		byte[] cached = derivativeCache.get(key);
+		if (cached != null) {
+			return Optional.of(new Derivative(sourceHash, width, format, cached));
+		}
+
+		try {
+			BufferedImage image = ImageIO.read(new ByteArrayInputStream(source.get().bytes()));
+			if (image == null) {
+				return Optional.empty(); // ImageIO 無法解碼的格式，由呼叫端改回傳原圖
+			}
+			byte[] bytes = encode(resize(image, width), format);
+			derivativeCache.put(key, bytes);
+			return Optional.of(new Derivative(sourceHash, width, format, bytes));
+		} catch (IOException e) {
+			System.err.println("產生縮圖失敗 (" + type + " " + id + ", " + key + ")：" + e.getMessage());
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * 等比例縮小到指定寬度 (不放大)。每次最多縮小一半，多次雙線性內插的畫質接近面積平均，速度快得多。
+	 * 透明背景一律填白，輸出格式不一定支援透明。
+	 */
+	private static BufferedImage resize(BufferedImage source, int targetWidth) {
+		int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+		BufferedImage current = toRgb(source);
+		int w = current.getWidth();
+		int h = current.getHeight();
+		while (w > targetWidth) {
+			w = Math.max(targetWidth, w / 2);
+			h = Math.max(targetHeight, h / 2);
+			BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+			Graphics2D g = next.createGraphics();
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			g.drawImage(current, 0, 0, w, h, null);
+			g.dispose();
+			current = next;
+		}
+		return current;
+	}
+
+	private static BufferedImage toRgb(BufferedImage source) {
+		if (source.getType() == BufferedImage.TYPE_INT_RGB) {
+			return source;
+		}
+		BufferedImage rgb = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = rgb.createGraphics();
+		g.drawImage(source, 0, 0, Color.WHITE, null);
+		g.dispose();
+		return rgb;
+	}
+
+	private byte[] encode(BufferedImage image, DerivativeFormat format) throws IOException {
+		Iterator<ImageWriter> writers = ImageIO.getImageWritersByMIMEType(format.getMediaType().toString());
+		if (!writers.hasNext()) {
+			throw new IOException("沒有可用的 " + format + " 編碼器");
+		}
+		ImageWriter writer = writers.next();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+			writer.setOutput(output);
+			ImageWriteParam param = writer.getDefaultWriteParam();
+			if (param.canWriteCompressed()) {
+				param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+				String[] compressionTypes = param.getCompressionTypes();
+				if (param.getCompressionType() == null && compressionTypes != null && compressionTypes.length > 0) {
+					param.setCompressionType(compressionTypes[0]);
+				}
+				param.setCompressionQuality(quality);
+			}
+			writer.write(null, new IIOImage(image, null, null), param);
+		} finally {
+			writer.dispose();
+		}
+		return out.toByteArray();
+	}
+}
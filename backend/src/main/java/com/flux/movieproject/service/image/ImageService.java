@@ -0,0 +1,249 @@
+package com.flux.movieproject.service.image;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.flux.movieproject.repository.event.AnnouncementRepository;
+import com.flux.movieproject.repository.event.EventRepository;
+import com.flux.movieproject.repository.image.ImageJdbcRepository;
+import com.flux.movieproject.repository.member.MemberRepository;
+import com.flux.movieproject.repository.movie.MovieRepository;
+import com.flux.movieproject.repository.theater.TheaterRepository;
+
+/**
+ * 圖片服務。
+ * 海報、劇照、活動、公告、影廳與會員圖片一律透過 /api/images/{種類}/{id}?v={內容雜湊} 提供，
+ * 列表 API 只回傳這個網址，不再把圖片以 Base64 塞進 JSON。
+ * 網址中的 v 是圖片內容的 SHA-256 (前 16 個十六進位字元)，圖片內容改變網址就會改變，
+ * 因此瀏覽器可以長期快取，同一個雜湊也作為 ETag 支援條件式請求 (If-None-Match)。
+ */
+@Service
+@Transactional(readOnly = true)
+public class ImageService {
+
+	@Autowired
+	private MovieRepository movieRepo;
+	@Autowired
+	private EventRepository eventRepo;
+	@Autowired
+	private AnnouncementRepository announcementRepo;
+	@Autowired
+	private TheaterRepository theaterRepo;
+	@Autowired
+	private MemberRepository memberRepo;
+	@Autowired
+	private ImageJdbcRepository imageRepo;
+
+	// 雜湊快取的有效時間；圖片異動時會主動清除，這裡只是避免漏掉的異動一直沿用舊雜湊
+	@Value("${image.hash-cache-minutes:10}")
+	private long hashCacheMinutes;
+
+	private final Map<String, CachedHash> hashes = new ConcurrentHashMap<>();
+
+	private record CachedHash(String hash, long cachedAtMillis) {
+	}
+
+	/**
+	 * 從資料庫讀出的圖片
+	 *
+	 * @param bytes     圖片內容
+	 * @param hash      內容雜湊 (同時作為網址版本與 ETag)
+	 * @param mediaType 依檔頭判斷的圖片格式
+	 */
+	public record StoredImage(byte[] bytes, String hash, MediaType mediaType) {
+	}
+
+	/**
+	 * 圖片的基本資訊，不含圖片內容
+	 *
+	 * @param hash      內容雜湊 (同時作為網址版本與 ETag)
+	 * @param length    圖片大小 (位元組)
+	 * @param mediaType 依檔頭判斷的圖片格式
+	 */
+	public record ImageInfo(String hash, long length, MediaType mediaType) {
+	}
+
+	/**
+	 * 取得單張圖片的網址
+	 *
+	 * @return 帶內容雜湊的網址；沒有圖片時回傳 null
+	 */
+	public String getImageUrl(ImageType type, Integer id) {
+		return getImageUrls(type, List.of(id)).get(id);
+	}
+
+	/**
+	 * 批次取得圖片網址。快取中沒有的雜湊以一次查詢交給資料庫計算，不會把圖片讀回應用程式。
+	 *
+	 * @param type 圖片種類
+	 * @param ids  ID 列表
+	 * @return key 為 ID，value 為網址；沒有圖片的 ID 不會出現在結果中
+	 */
+	public Map<Integer, String> getImageUrls(ImageType type, Collection<Integer> ids) {
+		Map<Integer, String> urls = new HashMap<>();
+		List<Integer> missing = new ArrayList<>();
+		for (Integer id : ids) {
+			String hash = getCachedHash(type, id);
+			if (hash != null) {
+				urls.put(id, buildUrl(type, id, hash));
+			} else {
+				missing.add(id);
+			}
+		}
+		if (!missing.isEmpty()) {
+			for (Object[] row : findHashes(type, missing)) {
+				Integer id = ((Number) row[0]).intValue();
+				String hash = (String) row[1];
+				cacheHash(type, id, hash);
+				urls.put(id, buildUrl(type, id, hash));
+			}
+		}
+		return urls;
+	}
+
+	/**
+	 * 取得圖片的內容雜湊 (快取中沒有時由資料庫計算，不讀取圖片本身)
+	 *
+	 * @return 雜湊；沒有圖片時回傳 null
+	 */
+	public String getHash(ImageType type, Integer id) {
+		String hash = getCachedHash(type, id);
+		if (hash != null) {
+			return hash;
+		}
+		for (Object[] row : findHashes(type, List.of(id))) {
+			hash = (String) row[1];
+			cacheHash(type, id, hash);
+		}
+		return hash;
+	}
+
+	/**
+	 * 取得快取中的內容雜湊，用於條件式請求時免查資料庫直接回應 304
+	 *
+	 * @return 雜湊；未快取或已過期時回傳 null
+	 */
+	public String getCachedHash(ImageType type, Integer id) {
+		CachedHash cached = hashes.get(key(type, id));
+		if (cached == null || System.currentTimeMillis() - cached.cachedAtMillis() > hashCacheMinutes * 60_000) {
+			return null;
+		}
+		return cached.hash();
+	}
+
+	/**
+	 * 取得圖片的雜湊、大小與格式 (由資料庫計算，不讀取圖片本身)
+	 *
+	 * @return 圖片資訊；找不到資料或沒有圖片時回傳 Optional.empty()
+	 */
+	public Optional<ImageInfo> describe(ImageType type, Integer id) {
+		return imageRepo.findMeta(type.getTable(), type.getIdColumn(), type.getImageColumn(), id)
+				.map(meta -> {
+					cacheHash(type, id, meta.hash());
+					return new ImageInfo(meta.hash(), meta.length(), detectMediaType(meta.header()));
+				});
+	}
+
+	/**
+	 * 將圖片內容直接從資料庫串流寫出，不整張讀進記憶體
+	 *
+	 * @return 是否有寫出圖片 (圖片在這段期間被刪除時為 false)
+	 */
+	public boolean writeTo(ImageType type, Integer id, OutputStream out) {
+		return imageRepo.stream(type.getTable(), type.getIdColumn(), type.getImageColumn(), id, out);
+	}
+
+	/**
+	 * 讀取整張圖片，供產生縮圖時解碼；雜湊與內容在同一次查詢中取得
+	 *
+	 * @return 圖片；找不到資料或沒有圖片時回傳 Optional.empty()
+	 */
+	public Optional<StoredImage> load(ImageType type, Integer id) {
+		return imageRepo.findContent(type.getTable(), type.getIdColumn(), type.getImageColumn(), id)
+				.map(content -> {
+					cacheHash(type, id, content.hash());
+					return new StoredImage(content.bytes(), content.hash(), detectMediaType(content.bytes()));
+				});
+	}
+
+	/**
+	 * 圖片被修改或刪除時呼叫。立即清除快取，交易結束後再清除一次，
+	 * 避免其他請求在提交前又把舊雜湊放回快取，或留下已回滾的新雜湊。
+	 */
+	public void invalidate(ImageType type, Integer id) {
+		String key = key(type, id);
+		hashes.remove(key);
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCompletion(int status) {
+				hashes.remove(key);
+			}
+		});
+	}
+
+	/**
+	 * 依檔頭判斷圖片格式 (PNG/JPEG/GIF/WEBP)，其餘回傳 octet-stream
+	 */
+	public static MediaType detectMediaType(byte[] bytes) {
+		if (bytes.length >= 8 &&
+				bytes[0] == (byte) 0x89 && bytes[1] == 0x50 && bytes[2] == 0x4E && bytes[3] == 0x47) {
+			return MediaType.IMAGE_PNG;
+		}
+		if (bytes.length >= 3 &&
+				bytes[0] == (byte) 0xFF && bytes[1] == (byte) 0xD8 && bytes[2] == (byte) 0xFF) {
+			return MediaType.IMAGE_JPEG;
+		}
+		if (bytes.length >= 6 &&
+				bytes[0] == 'G' && bytes[1] == 'I' && bytes[2] == 'F' &&
+				bytes[3] == '8' && (bytes[4] == '7' || bytes[4] == '9') && bytes[5] == 'a') {
+			return MediaType.IMAGE_GIF;
+		}
+		if (bytes.length >= 12 &&
+				bytes[0] == 'R' && bytes[1] == 'I' && bytes[2] == 'F' && bytes[3] == 'F' &&
+				bytes[8] == 'W' && bytes[9] == 'E' && bytes[10] == 'B' && bytes[11] == 'P') {
+			return MediaType.parseMediaType("image/webp");
+		}
+		return MediaType.APPLICATION_OCTET_STREAM;
+	}
+
+	private List<Object[]> findHashes(ImageType type, List<Integer> ids) {
+		return switch (type) {
+		case MOVIE_POSTER -> movieRepo.findPosterHashesByIds(ids);
+		case MOVIE_PREVIEW_1, MOVIE_PREVIEW_2, MOVIE_PREVIEW_3, MOVIE_PREVIEW_4 ->
+			movieRepo.findPreviewHashesByIds(ids, type.getPreviewSlot());
+		case EVENT -> eventRepo.findImageHashesByIds(ids);
+		case ANNOUNCEMENT -> announcementRepo.findImageHashesByIds(ids);
+		case THEATER_PHOTO -> theaterRepo.findPhotoHashesByIds(ids);
+		case MEMBER_PHOTO -> memberRepo.findProfilePhotoHashesByIds(ids);
+		};
+	}
+
+	private void cacheHash(ImageType type, Integer id, String hash) {
+		hashes.put(key(type, id), new CachedHash(hash, System.currentTimeMillis()));
+	}
+
+	private static String buildUrl(ImageType type, Integer id, String hash) {
+		return "/api/images/" + type.getPathSegment() + "/" + id + "?v=" + hash;
+	}
+
+	private static String key(ImageType type, Integer id) {
+		return type.name() + ":" + id;
+	}
+}
@@ -0,0 +1,84 @@
+package com.flux.movieproject.service.image;
+
+/**
+ * 由圖片服務統一提供的圖片種類，pathSegment 為 /api/images/{pathSegment}/{id} 中的路徑
+ */
+public enum ImageType {
+
+	MOVIE_POSTER("posters", true, "movie", "movie_id", "poster_image"), // 電影海報
+	MOVIE_PREVIEW_1("previews-1", true, "movie", "movie_id", "preview_image_1"), // 電影劇照
+	MOVIE_PREVIEW_2("previews-2", true, "movie", "movie_id", "preview_image_2"),
+	MOVIE_PREVIEW_3("previews-3", true, "movie", "movie_id", "preview_image_3"),
+	MOVIE_PREVIEW_4("previews-4", true, "movie", "movie_id", "preview_image_4"),
+	EVENT("events", true, "event", "event_id", "image"), // 活動圖片
+	ANNOUNCEMENT("announcements", true, "announcement", "announcement_id", "announcement_image"), // 公告圖片
+	THEATER_PHOTO("theaters", true, "theater", "theater_id", "theater_photo"), // 影廳預覽圖
+	MEMBER_PHOTO("members", false, "member", "member_id", "profile_photo"); // 會員大頭貼，網址必須帶正確的內容雜湊才能取得
+
+	private final String pathSegment;
+	private final boolean publicAccess;
+	private final String table;
+	private final String idColumn;
+	private final String imageColumn;
+
+	ImageType(String pathSegment, boolean publicAccess, String table, String idColumn, String imageColumn) {
+		this.pathSegment = pathSegment;
+		this.publicAccess = publicAccess;
+		this.table = table;
+		this.idColumn = idColumn;
+		this.imageColumn = imageColumn;
+	}
+
+	public String getPathSegment() {
+		return pathSegment;
+	}
+
+	/**
+	 * 是否只憑 ID 就能取得圖片。不公開的種類必須帶上與內容相符的 v 參數，避免依序猜 ID 取得他人的圖片。
+	 */
+	public boolean isPublicAccess() {
+		return publicAccess;
+	}
+
+	/**
+	 * 圖片所在的資料表、主鍵欄位與圖片欄位，供直接串流讀取圖片
+	 */
+	public String getTable() {
+		return table;
+	}
+
+	public String getIdColumn() {
+		return idColumn;
+	}
+
+	public String getImageColumn() {
+		return imageColumn;
+	}
+
+	/**
+	 * 電影劇照對應的欄位編號 (1 ~ 4)，其他種類回傳 0
+	 */
+	public int getPreviewSlot() {
+		return switch (this) {
+		case MOVIE_PREVIEW_1 -> 1;
+		case MOVIE_PREVIEW_2 -> 2;
+		case MOVIE_PREVIEW_3 -> 3;
+		case MOVIE_PREVIEW_4 -> 4;
+		default -> 0;
+		};
+	}
+
+	/**
+	 * 依網址路徑取得圖片種類
+	 *
+	 * @return 對應的種類，找不到時回傳 null
+	 */
+	public static ImageType fromPathSegment(String pathSegment) {
+		for (ImageType type : values()) {
+			if (type.pathSegment.equals(pathSegment)) {
+				return type;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,448 @@
+package com.flux.movieproject.service.member;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.flux.movieproject.repository.member.CouponClaimJdbcRepository;
+import com.flux.movieproject.repository.member.CouponClaimJdbcRepository.ClaimRow;
+import com.flux.movieproject.repository.member.CouponClaimJdbcRepository.CouponQuota;
+import com.flux.movieproject.repository.member.CouponClaimJdbcRepository.InsertedRow;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 優惠券領取。限量券在活動開始的瞬間會有大量會員同時領取，流程分成兩段：
+ * 1. 記憶體: 每張券的剩餘張數放在 AtomicInteger 中以 CAS 扣除，已發完時直接拒絕，不會進到資料庫；
+ * 2. 資料庫: 搶到名額的請求排入有上限的佇列，由單一寫入執行緒每次取出一批，在一個交易中
+ * 以帶條件的 UPDATE 扣除 coupon.quantity、以帶條件的 MERGE 累加每人領取次數，再以一個 INSERT 新增所有 member_coupon。
+ * 資料庫的條件式扣除才是最終的依據，多個應用程式實例同時發放也不會超發；記憶體的剩餘張數只用來提早拒絕，
+ * 與資料庫不一致時 (例如被其他實例發完) 會移除並重新載入；寫入執行緒也會定期以資料庫的剩餘張數扣除佇列中還沒寫入的名額，
+ * 重新計算記憶體的剩餘張數，讓其他實例的發放與後台的調整生效。
+ * 發出請求的執行緒等待所屬批次寫入完成後才回傳，等待期間不佔用資料庫連線。
+ */
+@Service
+public class CouponClaimEngine {
+
+	/**
+	 * 領取結果
+	 */
+	public enum Outcome {
+		CLAIMED,
+		// 優惠券不存在
+		NOT_FOUND,
+		// 優惠券未啟用
+		DISABLED,
+		// 已發完
+		SOLD_OUT,
+		// 已達每人限領次數
+		LIMIT_REACHED,
+		// 佇列已滿，沒有受理
+		BUSY,
+		// 已受理，但在等待時間內沒有寫入完成；請求仍在佇列中，結果稍後會出現在會員的優惠券
+		PENDING
+	}
+
+	/**
+	 * @param outcome        領取結果
+	 * @param memberCouponId 領取成功時新增的會員優惠券 ID
+	 * @param limit          每人限領次數 (LIMIT_REACHED 時用於提示)
+	 */
+	public record ClaimResult(Outcome outcome, Integer memberCouponId, Integer limit) {
+		private static ClaimResult of(Outcome outcome) {
+			return new ClaimResult(outcome, null, null);
+		}
+	}
+
+	/**
+	 * 領取的統計數據
+	 *
+	 * @param queued       佇列中等待寫入的筆數
+	 * @param claimed      領取成功的次數
+	 * @param soldOut      因已發完而拒絕的次數 (含記憶體與資料庫)
+	 * @param limitReached 因已達每人限領次數而拒絕的次數
+	 * @param busy         因佇列已滿而拒絕的次數
+	 * @param batches      寫入的批次數
+	 * @param failures     寫入失敗 (整批回滾) 的批次數
+	 */
+	public record Stats(int queued, long claimed, long soldOut, long limitReached, long busy, long batches,
+			long failures) {
+	}
+
+	/**
+	 * 一張券在記憶體中的狀態
+	 */
+	private static final class CouponState {
+		private final boolean enabled;
+		// 每人限領次數，不限時為 Integer.MAX_VALUE
+		private final int limit;
+		// 剩餘張數，不限量時為 null
+		private final AtomicInteger remaining;
+		// 已扣除記憶體名額、還沒寫入資料庫的請求數；重新計算剩餘張數時沿用同一個計數器
+		private final AtomicInteger inFlight;
+
+		private CouponState(CouponQuota quota, AtomicInteger inFlight) {
+			this.enabled = isEnabled(quota.status());
+			this.limit = quota.redeemableTimes() == null || quota.redeemableTimes() <= 0 ? Integer.MAX_VALUE
+					: quota.redeemableTimes();
+			this.remaining = quota.quantity() == null ? null
+					: new AtomicInteger(Math.max(0, quota.quantity() - inFlight.get()));
+			this.inFlight = inFlight;
+		}
+
+		private boolean tryTake() {
+			if (remaining == null) {
+				return true;
+			}
+			int current;
+			do {
+				current = remaining.get();
+				if (current <= 0) {
+					return false;
+				}
+			} while (!remaining.compareAndSet(current, current - 1));
+			return true;
+		}
+
+		private void giveBack() {
+			if (remaining != null) {
+				remaining.incrementAndGet();
+			}
+		}
+	}
+
+	private record PendingClaim(int memberId, int couponId, CouponState state, CompletableFuture<ClaimResult> result) {
+	}
+
+	@Autowired
+	private CouponClaimJdbcRepository couponClaimRepo;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Value("${coupon-claim.queue-capacity:10000}")
+	private int queueCapacity;
+	@Value("${coupon-claim.batch-size:200}")
+	private int batchSize;
+	// 請求等待寫入完成的時間上限
+	@Value("${coupon-claim.wait-timeout-ms:10000}")
+	private long waitTimeoutMs;
+	// 依資料庫重新計算剩餘張數的間隔
+	@Value("${coupon-claim.refresh-interval-ms:30000}")
+	private long refreshIntervalMs;
+
+	private final Map<Integer, CouponState> states = new ConcurrentHashMap<>();
+	private ArrayBlockingQueue<PendingClaim> queue;
+	private TransactionTemplate transaction;
+	private Thread writer;
+	private volatile boolean running;
+
+	private final LongAdder claimed = new LongAdder();
+	private final LongAdder soldOut = new LongAdder();
+	private final LongAdder limitReached = new LongAdder();
+	private final LongAdder busy = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+
+	@PostConstruct
+	public void init() {
+		batchSize = Math.max(1, Math.min(batchSize, CouponClaimJdbcRepository.MAX_INSERT_ROWS));
+		queue = new ArrayBlockingQueue<>(queueCapacity);
+		transaction = new TransactionTemplate(transactionManager);
+		running = true;
+		writer = new Thread(this::writeLoop, "coupon-claim-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		// 已受理的請求寫入完才結束
+		running = false;
+		writer.join(TimeUnit.SECONDS.toMillis(10));
+	}
+
+	/**
+	 * 領取一張優惠券
+	 *
+	 * @param memberId 會員 ID
+	 * @param couponId 優惠券 ID
+	 * @return 領取結果
+	 */
+	public ClaimResult claim(Integer memberId, Integer couponId) {
+		Optional<CouponState> loaded = state(couponId);
+		if (loaded.isEmpty()) {
+			return ClaimResult.of(Outcome.NOT_FOUND);
+		}
+		CouponState state = loaded.get();
+		if (!state.enabled) {
+			return ClaimResult.of(Outcome.DISABLED);
+		}
+		// 1. 記憶體中扣除名額，已發完的請求不必進入佇列
+		if (!state.tryTake()) {
+			soldOut.increment();
+			return ClaimResult.of(Outcome.SOLD_OUT);
+		}
+
+		// 2. 排入佇列等待批次寫入
+		PendingClaim pending = new PendingClaim(memberId, couponId, state, new CompletableFuture<>());
+		state.inFlight.incrementAndGet();
+		if (!running || !queue.offer(pending)) {
+			state.inFlight.decrementAndGet();
+			giveBack(couponId);
+			busy.increment();
+			return ClaimResult.of(Outcome.BUSY);
+		}
+		try {
+			return pending.result().get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			return ClaimResult.of(Outcome.PENDING);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return ClaimResult.of(Outcome.PENDING);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("領取優惠券失敗：" + e.getCause().getMessage(), e.getCause());
+		}
+	}
+
+	/**
+	 * 在目前交易提交後移除記憶體中的狀態 (後台修改或刪除優惠券時呼叫)，下次領取時重新載入
+	 */
+	public void evictAfterCommit(Integer couponId) {
+		states.remove(couponId);
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				states.remove(couponId);
+			}
+		});
+	}
+
+	public Stats stats() {
+		return new Stats(queue.size(), claimed.sum(), soldOut.sum(), limitReached.sum(), busy.sum(), batches.sum(),
+				failures.sum());
+	}
+
+	private Optional<CouponState> state(Integer couponId) {
+		CouponState state = states.get(couponId);
+		if (state != null) {
+			return Optional.of(state);
+		}
+		Optional<CouponQuota> quota = couponClaimRepo.findQuota(couponId);
+		// 同時載入時以先放入的為準，兩邊扣除的名額才會在同一個計數器上
+		return quota.map(q -> states.computeIfAbsent(couponId, key -> new CouponState(q, new AtomicInteger())));
+	}
+
+	/**
+	 * 名額退回目前的狀態；狀態已重新計算時，新的剩餘張數扣除過這個名額，也要退回到新的狀態上
+	 */
+	private void giveBack(int couponId) {
+		CouponState current = states.get(couponId);
+		if (current != null) {
+			current.giveBack();
+		}
+	}
+
+	/**
+	 * 依資料庫重新計算已載入的券的狀態。只在寫入執行緒的批次之間執行，
+	 * 此時這個實例沒有寫到一半的批次，資料庫的剩餘張數扣除 inFlight 就是記憶體可再發出的張數
+	 */
+	private void refreshStates() {
+		for (Integer couponId : states.keySet()) {
+			try {
+				Optional<CouponQuota> quota = couponClaimRepo.findQuota(couponId);
+				if (quota.isEmpty()) {
+					states.remove(couponId);
+				} else {
+					states.computeIfPresent(couponId, (key, old) -> new CouponState(quota.get(), old.inFlight));
+				}
+			} catch (DataAccessException e) {
+				// 沿用目前的狀態，下次再重新計算
+				System.err.println("優惠券領取: 重新載入優惠券 " + couponId + " 失敗：" + e.getMessage());
+			}
+		}
+	}
+
+	private void writeLoop() {
+		List<PendingClaim> batch = new ArrayList<>(batchSize);
+		long nextRefresh = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(refreshIntervalMs);
+		while (running || !queue.isEmpty()) {
+			try {
+				if (System.nanoTime() - nextRefresh >= 0) {
+					refreshStates();
+					nextRefresh = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(refreshIntervalMs);
+				}
+				PendingClaim first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				queue.drainTo(batch, batchSize - 1);
+				flush(batch);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (RuntimeException e) {
+				System.err.println("優惠券領取: 寫入執行緒發生錯誤：" + e.getMessage());
+			} finally {
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * 在一個交易中寫入一批領取請求，交易提交後才通知等待的請求
+	 */
+	private void flush(List<PendingClaim> batch) {
+		List<ClaimResult> results;
+		try {
+			results = transaction.execute(status -> persist(batch, LocalDateTime.now()));
+			batches.increment();
+		} catch (RuntimeException e) {
+			batch.forEach(pending -> pending.state().inFlight.decrementAndGet());
+			// 整批回滾：記憶體中扣除的名額已不可信，移除後重新從資料庫載入
+			failures.increment();
+			for (PendingClaim pending : batch) {
+				states.remove(pending.couponId(), pending.state());
+				pending.result().completeExceptionally(e);
+			}
+			System.err.println("優惠券領取: 批次寫入失敗 (" + batch.size() + " 筆)：" + e.getMessage());
+			return;
+		}
+
+		for (int i = 0; i < batch.size(); i++) {
+			PendingClaim pending = batch.get(i);
+			ClaimResult result = results.get(i);
+			pending.state().inFlight.decrementAndGet();
+			switch (result.outcome()) {
+			case CLAIMED:
+				claimed.increment();
+				break;
+			case SOLD_OUT:
+				// 資料庫已發完 (例如被其他實例發完)，記憶體的剩餘張數偏高，重新載入
+				soldOut.increment();
+				states.remove(pending.couponId(), pending.state());
+				break;
+			case LIMIT_REACHED:
+				// 資料庫已退回這個名額，記憶體也一併退回
+				limitReached.increment();
+				giveBack(pending.couponId());
+				break;
+			default:
+				break;
+			}
+			pending.result().complete(result);
+		}
+	}
+
+	/**
+	 * 寫入一批領取請求
+	 * 1. 依優惠券分組扣除剩餘張數，整組扣除失敗時改為逐張扣除，扣不到的為 SOLD_OUT
+	 * 2. 扣到名額的累加每人領取次數，已達上限的為 LIMIT_REACHED，並退回其名額
+	 * 3. 以一個 INSERT 新增剩下的會員優惠券
+	 *
+	 * @return 與 batch 對應的結果
+	 */
+	private List<ClaimResult> persist(List<PendingClaim> batch, LocalDateTime now) {
+		ClaimResult[] results = new ClaimResult[batch.size()];
+
+		Map<Integer, List<Integer>> byCoupon = new LinkedHashMap<>();
+		for (int i = 0; i < batch.size(); i++) {
+			byCoupon.computeIfAbsent(batch.get(i).couponId(), key -> new ArrayList<>()).add(i);
+		}
+		List<Integer> granted = new ArrayList<>(batch.size());
+		for (Map.Entry<Integer, List<Integer>> entry : byCoupon.entrySet()) {
+			int couponId = entry.getKey();
+			List<Integer> indexes = entry.getValue();
+			if (batch.get(indexes.get(0)).state().remaining == null
+					|| couponClaimRepo.decrementQuantity(couponId, indexes.size())) {
+				granted.addAll(indexes);
+				continue;
+			}
+			for (Integer index : indexes) {
+				if (couponClaimRepo.decrementQuantity(couponId, 1)) {
+					granted.add(index);
+				} else {
+					results[index] = ClaimResult.of(Outcome.SOLD_OUT);
+				}
+			}
+		}
+		if (granted.isEmpty()) {
+			return List.of(results);
+		}
+
+		List<ClaimRow> rows = new ArrayList<>(granted.size());
+		List<Integer> limits = new ArrayList<>(granted.size());
+		for (Integer index : granted) {
+			PendingClaim pending = batch.get(index);
+			rows.add(new ClaimRow(pending.memberId(), pending.couponId()));
+			limits.add(pending.state().limit);
+		}
+		boolean[] accepted = couponClaimRepo.incrementClaimCounts(rows, limits);
+
+		List<ClaimRow> inserts = new ArrayList<>(granted.size());
+		Map<Integer, Integer> restore = new HashMap<>();
+		for (int i = 0; i < granted.size(); i++) {
+			int index = granted.get(i);
+			PendingClaim pending = batch.get(index);
+			if (accepted[i]) {
+				inserts.add(rows.get(i));
+			} else {
+				results[index] = new ClaimResult(Outcome.LIMIT_REACHED, null, pending.state().limit);
+				if (pending.state().remaining != null) {
+					restore.merge(pending.couponId(), 1, Integer::sum);
+				}
+			}
+		}
+		restore.forEach(couponClaimRepo::restoreQuantity);
+
+		if (!inserts.isEmpty()) {
+			// 同一會員同一張券的多筆紀錄內容相同，依 (會員, 優惠券) 分配新增的 ID 即可
+			Map<ClaimRow, ArrayDeque<Integer>> insertedIds = new HashMap<>();
+			for (InsertedRow row : couponClaimRepo.insertMemberCoupons(inserts, now)) {
+				insertedIds.computeIfAbsent(new ClaimRow(row.memberId(), row.couponId()), key -> new ArrayDeque<>())
+						.add(row.memberCouponId());
+			}
+			for (int i = 0; i < granted.size(); i++) {
+				if (accepted[i]) {
+					Integer memberCouponId = insertedIds.get(rows.get(i)).poll();
+					results[granted.get(i)] = new ClaimResult(Outcome.CLAIMED, memberCouponId, null);
+				}
+			}
+		}
+		return List.of(results);
+	}
+
+	private static boolean isEnabled(String status) {
+		if (status == null) {
+			return false;
+		}
+		String s = status.trim();
+		return "1".equals(s) || "ACTIVE".equalsIgnoreCase(s) || "啟用".equals(s);
+	}
+}
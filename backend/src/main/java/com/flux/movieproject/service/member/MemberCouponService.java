@@ -1,6 +1,5 @@
 package com.flux.movieproject.service.member;
 
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
@@ -13,6 +12,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.flux.movieproject.model.dto.event.CouponListItemDTO;
@@ -22,6 +22,7 @@ import com.flux.movieproject.model.entity.member.Member;
 import com.flux.movieproject.model.entity.member.MemberCoupon;
 import com.flux.movieproject.repository.event.CouponRepository;
 import com.flux.movieproject.repository.member.MemberCouponRepository;
+import com.flux.movieproject.service.member.CouponClaimEngine.ClaimResult;
 
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
@@ -30,11 +31,18 @@ import lombok.RequiredArgsConstructor;
 @Transactional(readOnly = true)
 @RequiredArgsConstructor
 public class MemberCouponService {
+
+    /** 領取已受理、還在寫入中的狀態 (claim 的回傳值沒有 memberCouponId) */
+    public static final String CLAIM_PENDING = "處理中";
+
 	@Autowired
     private  CouponRepository couponRepository;
 	
 	@Autowired
     private  MemberCouponRepository memberCouponRepository;
+
+	@Autowired
+	private CouponClaimEngine couponClaimEngine;
 	
 //	@Autowired
 //	private MemberLevelResolver levelResolver;
@@ -164,60 +172,50 @@ public class MemberCouponService {
         return dto;
     }
 
-    /** 領取（建立 member_coupon，status='未使用'） */
-    @Transactional
+    /**
+     * 領取（建立 member_coupon，status='未使用'）
+     * 名額與每人限領次數由 CouponClaimEngine 以原子計數檢查並批次寫入，
+     * 等待寫入期間不在交易中，不佔用資料庫連線；等待逾時時回傳 status 為 CLAIM_PENDING 的結果
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public MemberCouponListDTO claim(Integer memberId, Integer couponId) {
-        Coupon c = couponRepository.findById(couponId)
-                .orElseThrow(() -> new EntityNotFoundException("優惠券不存在: " + couponId));
-        if (!isEnabled(c.getStatus())) {
+        ClaimResult result = couponClaimEngine.claim(memberId, couponId);
+        switch (result.outcome()) {
+        case CLAIMED:
+            break;
+        case NOT_FOUND:
+            throw new EntityNotFoundException("優惠券不存在: " + couponId);
+        case DISABLED:
             throw new IllegalStateException("此優惠券未啟用，無法領取。");
-        }
-        
-		// 1. 取得這張券的「每人限領次數」
-		Integer limit = c.getRedeemableTimes();
-
-		// 2. 如果有設定限領次數 (例如: > 0)
-		if (limit != null && limit > 0) {
-			// 3. 查詢資料庫，看這位會員 (memberId) 已經領了幾次這張券 (couponId)
-			long myClaimCount = memberCouponRepository.countByMember_MemberIdAndCoupon_CouponId(memberId, couponId);
-
-			// 4. 如果已領取的次數 >= 限制次數，就拋出異常，阻止領取
-			if (myClaimCount >= limit) {
-				// 這個錯誤訊息會被前端的 catch 捕獲並顯示給使用者
-				throw new IllegalStateException("已達個人領取上限，每人限領 " + limit + " 張。");
-			}
-		}
-
-        // 有控量就檢查是否還有名額（不做 schema 變更）
-        if (c.getQuantity() != null) {
-            long claimed = memberCouponRepository.countByCoupon_CouponId(couponId);
-            if (claimed >= c.getQuantity()) {
-                throw new IllegalStateException("此優惠券已發完。");
-            }
-        }
-
-        Member m = new Member();
-        m.setMemberId(memberId);
-
-        MemberCoupon mc = new MemberCoupon();
-        mc.setMember(m);
-        mc.setCoupon(c);
-        mc.setStatus("未使用");
-        mc.setAcquisitionTime(LocalDateTime.now());
-        mc = memberCouponRepository.save(mc); // ★ 每次都新增一筆
-        
-        System.out.println("會員優惠券紀錄!!!!!!!  " + mc.getMemberCouponId());
-        
-
-        // （可選）真的把 quantity 減 1 —— 不是 schema 變更，只是更新值
-        if (c.getQuantity() != null) {
-            c.setQuantity(Math.max(0, c.getQuantity() - 1));
-            couponRepository.save(c);
+        case LIMIT_REACHED:
+            // 這個錯誤訊息會被前端的 catch 捕獲並顯示給使用者
+            throw new IllegalStateException("已達個人領取上限，每人限領 " + result.limit() + " 張。");
+        case SOLD_OUT:
+            throw new IllegalStateException("此優惠券已發完。");
+        case BUSY:
+            throw new IllegalStateException("領取人數眾多，請稍後再試。");
+        case PENDING:
+            return pendingClaim(memberId, couponId);
+        default:
+            throw new IllegalStateException("未知的領取結果: " + result.outcome());
         }
 
+        MemberCoupon mc = memberCouponRepository.findWithCouponById(result.memberCouponId())
+                .orElseThrow(() -> new EntityNotFoundException("會員優惠券不存在: " + result.memberCouponId()));
         return toMemberDTOSafeWithDisplaySerial(mc);
     }
 
+    /**
+     * 已受理但還沒寫入完成的領取，沒有 memberCouponId；結果稍後會出現在我的優惠券
+     */
+    private MemberCouponListDTO pendingClaim(Integer memberId, Integer couponId) {
+        MemberCouponListDTO dto = new MemberCouponListDTO();
+        dto.setMemberId(memberId);
+        dto.setCouponId(couponId);
+        dto.setStatus(CLAIM_PENDING);
+        return dto;
+    }
+
     private MemberCouponListDTO toMemberDTOSafeWithDisplaySerial(MemberCoupon mc) {
         MemberCouponListDTO dto = toMemberDTOSafe(mc); // 你原本的安全轉換
 
@@ -244,12 +242,6 @@ public class MemberCouponService {
 //        return list.get(0);
 //    }
 
-    private boolean isEnabled(String status) {
-        if (status == null) return false;
-        String s = status.trim();
-        return "1".equals(s) || "ACTIVE".equalsIgnoreCase(s) || "啟用".equals(s);
-    }
-    
     /** 回傳 true 表示該會員可領這張券 */
     // public boolean canClaim(Integer memberId, Integer couponId) {
     //     Coupon c = couponRepository.findById(couponId)
@@ -0,0 +1,197 @@
+package com.flux.movieproject.service.member;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.flux.movieproject.repository.member.MemberLevelEvaluationJdbcRepository;
+import com.flux.movieproject.repository.member.MemberLevelEvaluationJdbcRepository.ChunkRow;
+import com.flux.movieproject.repository.member.MemberLevelEvaluationJdbcRepository.JobRow;
+import com.flux.movieproject.repository.member.MemberLevelEvaluationJdbcRepository.LevelChange;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 會員等級批次重新評估。
+ * 以一個集合查詢算出一批會員的累計消費與依 member_level 門檻應有的等級，只對等級不同的會員以 JDBC batch
+ * 結束舊的 MemberLevelRecord 並新增新紀錄。
+ * 1. 全體評估: 等級門檻變更或管理員要求時，依會員 ID 切成區段，由多個工作執行緒平行處理；
+ * 每個區段的變更與完成標記在同一個交易中提交，應用程式重啟後由排程接續未完成的區段。
+ * 2. 指定會員: 消費有變動的會員 (購買、消費生效) 立即評估，使用同一個查詢。
+ */
+@Service
+public class MemberLevelEvaluationEngine {
+
+	@Autowired
+	private MemberLevelEvaluationJdbcRepository evaluationRepo;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Value("${member-level.evaluation.workers:4}")
+	private int workers;
+	// 每個區段的會員數
+	@Value("${member-level.evaluation.chunk-size:2000}")
+	private int chunkSize;
+
+	// 處理中超過此時間的區段視為中斷，重新排入
+	private static final long STALE_MINUTES = 10;
+	// 指定會員評估時，每次查詢的會員數上限 (SQL Server 單一語句上限為 2100 個參數)
+	private static final int IN_CHUNK_SIZE = 1000;
+
+	private ExecutorService executor;
+	private TransactionTemplate transactionTemplate;
+	private final AtomicInteger activeWorkers = new AtomicInteger();
+
+	@PostConstruct
+	public void init() {
+		AtomicInteger threadCount = new AtomicInteger();
+		executor = Executors.newFixedThreadPool(workers, runnable -> {
+			Thread thread = new Thread(runnable, "member-level-eval-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		transactionTemplate = new TransactionTemplate(transactionManager);
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		// 處理到一半的區段會回滾，重啟後由排程接續
+		executor.shutdownNow();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * 開始重新評估全體會員，進行中的評估會被取代。在交易中呼叫時，交易提交後才開始處理
+	 *
+	 * @param reason 評估原因 (記錄用)
+	 * @return 評估 ID
+	 */
+	@Transactional
+	public long startFullEvaluation(String reason) {
+		long jobId = evaluationRepo.createJob(reason, chunkSize, LocalDateTime.now());
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				launchWorkers();
+			}
+		});
+		return jobId;
+	}
+
+	/**
+	 * 立即重新評估指定會員的等級，在呼叫端的交易中執行
+	 *
+	 * @return 變更等級的會員數
+	 */
+	@Transactional
+	public int evaluateMembers(Collection<Integer> memberIds) {
+		List<Integer> ids = new ArrayList<>(memberIds);
+		LocalDateTime now = LocalDateTime.now();
+		int changed = 0;
+		for (int from = 0; from < ids.size(); from += IN_CHUNK_SIZE) {
+			List<LevelChange> changes = evaluationRepo.findLevelChanges(
+					ids.subList(from, Math.min(from + IN_CHUNK_SIZE, ids.size())), now);
+			evaluationRepo.applyLevelChanges(changes, now);
+			changed += changes.size();
+		}
+		return changed;
+	}
+
+	/**
+	 * 最近一次全體評估的進度
+	 */
+	public Optional<JobRow> findLatestJob() {
+		return evaluationRepo.findLatestJob();
+	}
+
+	/**
+	 * 接續中斷的評估：重新排入處理逾時的區段，還有待處理區段時啟動工作執行緒
+	 */
+	@Scheduled(fixedDelayString = "${member-level.evaluation.sweep-interval-ms:60000}")
+	public void resume() {
+		LocalDateTime now = LocalDateTime.now();
+		try {
+			evaluationRepo.resetStuckChunks(now.minusMinutes(STALE_MINUTES), now);
+			if (evaluationRepo.hasPendingChunks()) {
+				launchWorkers();
+			} else {
+				finishCompletedJobs();
+			}
+		} catch (DataAccessException e) {
+			System.err.println("會員等級評估接續失敗：" + e.getMessage());
+		}
+	}
+
+	private void launchWorkers() {
+		while (true) {
+			int active = activeWorkers.get();
+			if (active >= workers) {
+				return;
+			}
+			if (activeWorkers.compareAndSet(active, active + 1)) {
+				executor.execute(this::work);
+			}
+		}
+	}
+
+	/**
+	 * 工作執行緒：持續取得待處理的區段，直到沒有區段為止
+	 */
+	private void work() {
+		try {
+			Optional<ChunkRow> chunk;
+			while (!Thread.currentThread().isInterrupted()
+					&& (chunk = evaluationRepo.claimNextChunk(LocalDateTime.now())).isPresent()) {
+				processChunk(chunk.get());
+			}
+			finishCompletedJobs();
+		} catch (DataAccessException e) {
+			System.err.println("會員等級評估失敗：" + e.getMessage());
+		} finally {
+			activeWorkers.decrementAndGet();
+		}
+	}
+
+	private void processChunk(ChunkRow chunk) {
+		try {
+			transactionTemplate.executeWithoutResult(status -> {
+				LocalDateTime now = LocalDateTime.now();
+				List<LevelChange> changes = evaluationRepo.findLevelChanges(chunk.fromMemberId(), chunk.toMemberId(),
+						now);
+				evaluationRepo.applyLevelChanges(changes, now);
+				// 區段已被排程收回 (處理逾時) 時回滾，交給重新處理的執行緒
+				if (!evaluationRepo.markChunkDone(chunk, changes.size(), now)) {
+					status.setRollbackOnly();
+				}
+			});
+		} catch (RuntimeException e) {
+			// 區段停在處理中，由排程在逾時後重新排入
+			System.err.println("會員等級評估: 評估 " + chunk.jobId() + " 的區段 " + chunk.chunkNo() + " 處理失敗："
+					+ e.getMessage());
+		}
+	}
+
+	private void finishCompletedJobs() {
+		for (Long jobId : evaluationRepo.findRunningJobIds()) {
+			evaluationRepo.finishJobIfComplete(jobId, LocalDateTime.now());
+		}
+	}
+}
@@ -4,13 +4,8 @@ import com.flux.movieproject.model.dto.member.MemberLevelDTO;
 import com.flux.movieproject.model.dto.member.MemberLevelStatusDTO;
 import com.flux.movieproject.model.entity.member.MemberLevel;
 import com.flux.movieproject.model.entity.member.MemberLevelRecord;
-import com.flux.movieproject.model.entity.product.OrderStatus;
-import com.flux.movieproject.model.entity.product.ProductOrder;
-import com.flux.movieproject.model.entity.theater.TicketOrder;
 import com.flux.movieproject.repository.member.MemberLevelRecordRepository;
 import com.flux.movieproject.repository.member.MemberLevelRepository;
-import com.flux.movieproject.repository.product.ProductOrderRepository;
-import com.flux.movieproject.repository.ticket.TicketOrderRepository;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -22,24 +17,25 @@ import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
 public class MemberLevelService {
 
-	private final ProductOrderRepository productOrderRepository;
-	private final TicketOrderRepository ticketOrderRepository;
+	private final MemberSpendingLedger memberSpendingLedger;
 	private final MemberLevelRepository memberLevelRepository;
 	private final MemberLevelRecordRepository memberLevelRecordRepository;
+	private final MemberLevelEvaluationEngine memberLevelEvaluationEngine;
 
-	public MemberLevelService(ProductOrderRepository productOrderRepository,
-			TicketOrderRepository ticketOrderRepository, MemberLevelRepository memberLevelRepository,
-			MemberLevelRecordRepository memberLevelRecordRepository) {
-		this.productOrderRepository = productOrderRepository;
-		this.ticketOrderRepository = ticketOrderRepository;
+	public MemberLevelService(MemberSpendingLedger memberSpendingLedger, MemberLevelRepository memberLevelRepository,
+			MemberLevelRecordRepository memberLevelRecordRepository,
+			MemberLevelEvaluationEngine memberLevelEvaluationEngine) {
+		this.memberSpendingLedger = memberSpendingLedger;
 		this.memberLevelRepository = memberLevelRepository;
 		this.memberLevelRecordRepository = memberLevelRecordRepository;
+		this.memberLevelEvaluationEngine = memberLevelEvaluationEngine;
 	}
 
 	// --- 提供給前端使用的方法 ---
@@ -61,20 +57,8 @@ public class MemberLevelService {
 
 	@Transactional
 	public void updateLevelOnPurchase(Integer memberId) {
-		BigDecimal totalSpent = calculateTotalSpent(memberId);
-		MemberLevel currentLevel = getCurrentLevel(memberId);
-		MemberLevel newPotentialLevel = determineLevelBySpending(totalSpent);
-
-		if (!currentLevel.getMemberLevelId().equals(newPotentialLevel.getMemberLevelId())) {
-			memberLevelRecordRepository.findByMemberIdAndEndDateIsNull(memberId).ifPresent(record -> {
-				record.setEndDate(LocalDateTime.now());
-				memberLevelRecordRepository.save(record);
-			});
-			MemberLevelRecord newRecord = MemberLevelRecord.builder().memberId(memberId)
-					.memberLevelId(newPotentialLevel.getMemberLevelId()).startDate(LocalDateTime.now()).endDate(null)
-					.build();
-			memberLevelRecordRepository.save(newRecord);
-		}
+		// 與批次評估使用相同的查詢，只有等級改變時才寫入紀錄
+		memberLevelEvaluationEngine.evaluateMembers(List.of(memberId));
 	}
 
 	// --- 提供給管理後台使用的方法 ---
@@ -95,6 +79,8 @@ public class MemberLevelService {
 			}
 		}
 		MemberLevel savedLevel = memberLevelRepository.save(memberLevel);
+		// 新等級可能讓部分會員升降級，交易提交後重新評估全體會員
+		memberLevelEvaluationEngine.startFullEvaluation("新增等級 " + savedLevel.getLevelName());
 		return convertToDto(savedLevel);
 	}
 
@@ -103,6 +89,7 @@ public class MemberLevelService {
 		MemberLevel existingLevel = memberLevelRepository.findById(id)
 				.orElseThrow(() -> new EntityNotFoundException("MemberLevel not found with id: " + id));
 
+		boolean thresholdChanged = !Objects.equals(existingLevel.getThresholdLowerBound(), dto.getThresholdLowerBound());
 		existingLevel.setLevelName(dto.getLevelName());
 		existingLevel.setThresholdLowerBound(dto.getThresholdLowerBound());
 		existingLevel.setUpgradeConditionDescription(dto.getUpgradeConditionDescription());
@@ -114,6 +101,9 @@ public class MemberLevelService {
 			}
 		}
 		MemberLevel updatedLevel = memberLevelRepository.save(existingLevel);
+		if (thresholdChanged) {
+			memberLevelEvaluationEngine.startFullEvaluation("等級 " + updatedLevel.getLevelName() + " 門檻變更");
+		}
 		return convertToDto(updatedLevel);
 	}
 
@@ -123,6 +113,7 @@ public class MemberLevelService {
 			throw new EntityNotFoundException("MemberLevel not found with id: " + id);
 		}
 		memberLevelRepository.deleteById(id);
+		memberLevelEvaluationEngine.startFullEvaluation("刪除等級 " + id);
 	}
 
 	@Transactional
@@ -171,14 +162,8 @@ public class MemberLevelService {
 	}
 
 	private BigDecimal calculateTotalSpent(Integer memberId) {
-		BigDecimal productTotal = productOrderRepository
-				.findByMemberMemberIdAndOrderStatus(memberId, OrderStatus.COMPLETED).stream()
-				.map(ProductOrder::getFinalPaymentAmount).map(BigDecimal::new).reduce(BigDecimal.ZERO, BigDecimal::add);
-
-		BigDecimal ticketTotal = ticketOrderRepository.findEligibleForSpending(memberId, LocalDateTime.now()).stream()
-				.map(TicketOrder::getTotalAmount).map(BigDecimal::new).reduce(BigDecimal.ZERO, BigDecimal::add);
-
-		return productTotal.add(ticketTotal);
+		// 由會員消費帳讀取，不再讀出會員所有訂單加總
+		return BigDecimal.valueOf(memberSpendingLedger.getTotalSpent(memberId));
 	}
 
 	private MemberLevel determineLevelBySpending(BigDecimal totalSpent) {
@@ -7,6 +7,7 @@ import java.time.LocalDateTime;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -43,6 +44,8 @@ import com.google.api.client.googleapis.auth.oauth2.GoogleIdTokenVerifier;
 import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.gson.GsonFactory;
 import com.flux.movieproject.repository.movie.MovieRepository;
+import com.flux.movieproject.service.image.ImageService;
+import com.flux.movieproject.service.image.ImageType;
 
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -68,6 +71,9 @@ public class MemberService {
 	@Autowired
 	private MemberLevelRecordRepository memberLevelRecordRepository;
 
+	@Autowired
+	private ImageService imageService;
+
 	// 注入 SecurityConfig 中設定的密碼加密器 Bean
 	@Autowired
 	private PasswordEncoder passwordEncoder;
@@ -81,15 +87,17 @@ public class MemberService {
 	 * @return
 	 */
 	private MemberDTO convertToDto(Member member) {
+		boolean hasPhoto = member.getProfilePhoto() != null && member.getProfilePhoto().length > 0;
+		return convertToDto(member, hasPhoto ? imageService.getImageUrl(ImageType.MEMBER_PHOTO, member.getMemberId()) : null);
+	}
+
+	/**
+	 * 將 Entity 轉換為 DTO，大頭貼只回傳網址 (雜湊由資料庫計算)，不回傳圖片內容
+	 */
+	private MemberDTO convertToDto(Member member, String profilePhotoUrl) {
 		MemberDTO dto = new MemberDTO();
 		BeanUtils.copyProperties(member, dto); // 把 member 的屬性值複製到 dto
-
-		if (member.getProfilePhoto() != null && member.getProfilePhoto().length > 0) {
-			String base64Photo = Base64.getEncoder().encodeToString(member.getProfilePhoto());
-
-			dto.setProfilePhoto(base64Photo);
-		}
-
+		dto.setProfilePhotoUrl(profilePhotoUrl);
 		return dto;
 	}
 
@@ -98,7 +106,12 @@ public class MemberService {
 	 * 
 	 */
 	public List<MemberDTO> getAllMembers() {
-		return memberRepository.findAll().stream().map(this::convertToDto).collect(Collectors.toList());
+		List<Member> members = memberRepository.findAll();
+		// 大頭貼網址以一次查詢取得
+		Map<Integer, String> photoUrls = imageService.getImageUrls(ImageType.MEMBER_PHOTO,
+				members.stream().map(Member::getMemberId).toList());
+		return members.stream().map(member -> convertToDto(member, photoUrls.get(member.getMemberId())))
+				.collect(Collectors.toList());
 	}
 
 	/**
@@ -250,6 +263,9 @@ public class MemberService {
 		}
 
 		Member saveMember = memberRepository.save(member);
+		if (file != null && !file.isEmpty()) {
+			imageService.invalidate(ImageType.MEMBER_PHOTO, id);
+		}
 
 		return convertToDto(saveMember);
 	}
@@ -374,6 +390,7 @@ public class MemberService {
 		}
 
 		Member updatedMember = memberRepository.save(member);
+		imageService.invalidate(ImageType.MEMBER_PHOTO, memberId);
 		return convertToDto(updatedMember);
 	}
 
@@ -605,6 +622,10 @@ public class MemberService {
 		// 這個方法會一次性地將電影資料也抓取回來，避免 N+1 問題
 		List<FavoriteMovie> favorites = favoriteMovieRepository.findByMemberWithMovie(member);
 
+		// 海報只回傳網址，一次查詢取得所有收藏電影的海報網址
+		Map<Integer, String> posterUrls = imageService.getImageUrls(ImageType.MOVIE_POSTER,
+				favorites.stream().map(favorite -> favorite.getMovie().getId()).collect(Collectors.toList()));
+
 		// 使用 Java Stream API，將每一個 FavoriteMovie 實體，轉換成前端需要的 MovieListResponseDTO
 		return favorites.stream().map(favorite -> {
 			Movie movie = favorite.getMovie();
@@ -616,7 +637,7 @@ public class MemberService {
 			dto.setCertification(movie.getCertification());
 			dto.setDurationMinutes(movie.getDurationMinutes());
 			dto.setOverview(movie.getOverview());
-			dto.setPosterImage(movie.getPosterImage());
+			dto.setPosterImageUrl(posterUrls.get(movie.getId()));
 			// 如果您的 DTO 還有其他欄位，也可以在這裡一併設定
 			// dto.setTitleEnglish(movie.getTitleEnglish());
 			// dto.setCertification(movie.getCertification());
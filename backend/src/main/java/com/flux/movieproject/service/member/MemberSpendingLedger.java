@@ -0,0 +1,136 @@
+package com.flux.movieproject.service.member;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.flux.movieproject.repository.member.MemberSpendingJdbcRepository;
+import com.flux.movieproject.repository.member.MemberSpendingJdbcRepository.AppliedAmount;
+import com.flux.movieproject.repository.member.MemberSpendingJdbcRepository.EntryRow;
+import com.flux.movieproject.repository.member.MemberSpendingJdbcRepository.ReconcileResult;
+import com.flux.movieproject.repository.member.MemberSpendingJdbcRepository.SpendingSource;
+
+/**
+ * 會員累計消費帳。
+ * 訂單完成、付款或退款時只調整該筆訂單在帳上的明細，不再每次讀出會員所有訂單重新加總；
+ * 計算會員等級與升級進度時只需讀取一筆彙總 (見 MemberSpendingJdbcRepository)。
+ * 1. 票券訂單: 付款後以場次開始時間為生效時間記帳，退款後移除 (由訂單事件 outbox 呼叫)
+ * 2. 商品訂單: 狀態改為已完成時記帳，改為其他狀態時移除
+ * 3. 排程: 定期將已生效的明細累加到彙總並重新評估這些會員的等級，每天以訂單資料重新核對整本帳
+ */
+@Service
+public class MemberSpendingLedger {
+
+	// 每次累加的明細筆數上限
+	private static final int APPLY_BATCH_SIZE = 1000;
+
+	@Autowired
+	private MemberSpendingJdbcRepository spendingRepo;
+	@Autowired
+	private MemberLevelEvaluationEngine memberLevelEvaluationEngine;
+
+	/**
+	 * 會員目前的累計消費
+	 */
+	@Transactional(readOnly = true)
+	public long getTotalSpent(Integer memberId) {
+		return spendingRepo.findTotalSpent(memberId, LocalDateTime.now());
+	}
+
+	/**
+	 * 依票券訂單目前的狀態調整帳上的明細 (重複呼叫結果相同)
+	 */
+	@Transactional
+	public void syncTicketOrder(Integer ticketOrderId) {
+		sync(MemberSpendingJdbcRepository.TICKET, ticketOrderId, spendingRepo.findTicketSource(ticketOrderId));
+	}
+
+	/**
+	 * 依商品訂單目前的狀態調整帳上的明細，在改變訂單狀態的交易中呼叫 (訂單狀態必須已經 flush)
+	 */
+	@Transactional
+	public void syncProductOrder(Integer productOrderId) {
+		sync(MemberSpendingJdbcRepository.PRODUCT, productOrderId, spendingRepo.findProductSource(productOrderId));
+	}
+
+	/**
+	 * 將已生效的明細累加到會員彙總
+	 *
+	 * @return 累計消費有變動的會員
+	 */
+	@Scheduled(fixedDelayString = "${member-spending.apply-interval-ms:60000}")
+	@Transactional
+	public Set<Integer> applyDueEntries() {
+		LocalDateTime now = LocalDateTime.now();
+		Map<Integer, Long> deltas = new HashMap<>();
+		List<AppliedAmount> applied;
+		do {
+			applied = spendingRepo.markDueApplied(now, APPLY_BATCH_SIZE);
+			for (AppliedAmount amount : applied) {
+				deltas.merge(amount.memberId(), (long) amount.amount(), Long::sum);
+			}
+		} while (applied.size() == APPLY_BATCH_SIZE);
+		deltas.forEach((memberId, delta) -> spendingRepo.addToTotal(memberId, delta, now));
+		// 消費生效 (例如場次開始) 的會員立即重新評估等級
+		if (!deltas.isEmpty()) {
+			memberLevelEvaluationEngine.evaluateMembers(deltas.keySet());
+		}
+		return deltas.keySet();
+	}
+
+	/**
+	 * 每天以訂單資料重新核對整本帳，修正漏記或狀態改變時沒有同步的明細
+	 */
+	@Scheduled(cron = "${member-spending.reconcile-cron:0 0 4 * * *}")
+	@Transactional
+	public ReconcileResult reconcile() {
+		ReconcileResult result = spendingRepo.reconcile(LocalDateTime.now());
+		if (result.entriesFixed() > 0 || result.totalsFixed() > 0) {
+			System.out.println("會員消費帳核對: 修正 " + result.entriesFixed() + " 筆明細、" + result.totalsFixed()
+					+ " 位會員的累計消費。");
+		}
+		return result;
+	}
+
+	private void sync(String sourceType, int sourceId, Optional<SpendingSource> source) {
+		LocalDateTime now = LocalDateTime.now();
+		Optional<EntryRow> entry = spendingRepo.lockEntry(sourceType, sourceId);
+
+		if (source.isEmpty()) {
+			// 不再計入消費：移除明細，已累加的金額從彙總扣回
+			entry.ifPresent(row -> {
+				spendingRepo.deleteEntry(sourceType, sourceId);
+				if (row.applied()) {
+					spendingRepo.addToTotal(row.memberId(), -row.amount(), now);
+				}
+			});
+			return;
+		}
+
+		SpendingSource target = source.get();
+		if (entry.isEmpty()) {
+			// 新明細一律等排程累加 (已生效的部分在查詢時直接計入)
+			spendingRepo.insertEntry(target, now);
+			return;
+		}
+
+		EntryRow row = entry.get();
+		if (row.memberId() == target.memberId() && row.amount() == target.amount()
+				&& row.effectiveTime().equals(target.effectiveTime())) {
+			return;
+		}
+		// 金額或生效時間改變：先扣回已累加的舊金額，修改後的明細重新等排程累加
+		if (row.applied()) {
+			spendingRepo.addToTotal(row.memberId(), -row.amount(), now);
+		}
+		spendingRepo.updateEntry(target, now);
+	}
+}
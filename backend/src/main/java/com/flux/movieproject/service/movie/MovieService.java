@@ -1,5 +1,6 @@
 package com.flux.movieproject.service.movie;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -37,6 +38,10 @@ import com.flux.movieproject.repository.movie.ActorRepository;
 import com.flux.movieproject.repository.movie.DirectorRepository;
 import com.flux.movieproject.repository.movie.GenreRepository;
 import com.flux.movieproject.repository.movie.MovieRepository;
+import com.flux.movieproject.service.cache.CatalogCacheManager;
+import com.flux.movieproject.service.cache.ReadThroughCache;
+import com.flux.movieproject.service.image.ImageService;
+import com.flux.movieproject.service.image.ImageType;
 
 import jakarta.persistence.EntityNotFoundException;
 
@@ -56,16 +61,32 @@ public class MovieService {
 	private final GenreRepository genreRepo;
 	private final MovieActorRepository movieActorRepo;
 	private final MovieGenreRepository movieGenreRepo;
+	private final ImageService imageService;
+	private final CatalogCacheManager cacheManager;
+
+	// 前台電影列表、詳細資料與類型列表的快取 (後台異動時清除)
+	private final ReadThroughCache<LocalDate, List<MovieListResponseDTO>> nowPlayingCache;
+	private final ReadThroughCache<LocalDate, List<MovieListResponseDTO>> comingSoonCache;
+	private final ReadThroughCache<Integer, MoviePublicDetailDTO> movieDetailCache;
+	private final ReadThroughCache<String, List<GenreListDTO>> genresCache;
 
 	@Autowired
 	public MovieService(MovieRepository movieRepo, DirectorRepository directorRepo, ActorRepository actorRepo,
-			GenreRepository genreRepo, MovieActorRepository movieActorRepo, MovieGenreRepository movieGenreRepo) {
+			GenreRepository genreRepo, MovieActorRepository movieActorRepo, MovieGenreRepository movieGenreRepo,
+			ImageService imageService, CatalogCacheManager cacheManager) {
 		this.movieRepo = movieRepo;
 		this.directorRepo = directorRepo;
 		this.actorRepo = actorRepo;
 		this.genreRepo = genreRepo;
 		this.movieActorRepo = movieActorRepo;
 		this.movieGenreRepo = movieGenreRepo;
+		this.imageService = imageService;
+		this.cacheManager = cacheManager;
+		this.nowPlayingCache = cacheManager.getCache(CatalogCacheManager.MOVIES_NOW_PLAYING, Duration.ofMinutes(5), 16);
+		this.comingSoonCache = cacheManager.getCache(CatalogCacheManager.MOVIES_COMING_SOON, Duration.ofMinutes(5), 16);
+		// 詳細資料含海報與劇照，筆數上限不宜太大
+		this.movieDetailCache = cacheManager.getCache(CatalogCacheManager.MOVIE_DETAIL, Duration.ofMinutes(10), 100);
+		this.genresCache = cacheManager.getCache(CatalogCacheManager.GENRES, Duration.ofMinutes(10), 1);
 	}
 	/**
      * 查詢所有電影，並將其映射為 MovieResponseDto 列表
@@ -123,6 +144,7 @@ public class MovieService {
      */
     @Transactional
     public Optional<Movie> updateMovieById(Integer id, Map<String, Object> updates) {
+        cacheManager.invalidateAfterCommit(CatalogCacheManager.MOVIE_CACHES);
         // 1. 根據 ID 從資料庫找出既有的電影物件
         return movieRepo.findById(id).map(existingMovie -> {
             
@@ -165,6 +187,11 @@ public class MovieService {
             updateImageField(updates, "previewImage2", existingMovie::setPreviewImage2);
             updateImageField(updates, "previewImage3", existingMovie::setPreviewImage3);
             updateImageField(updates, "previewImage4", existingMovie::setPreviewImage4);
+            invalidateImageIfUpdated(updates, "posterImage", ImageType.MOVIE_POSTER, id);
+            invalidateImageIfUpdated(updates, "previewImage1", ImageType.MOVIE_PREVIEW_1, id);
+            invalidateImageIfUpdated(updates, "previewImage2", ImageType.MOVIE_PREVIEW_2, id);
+            invalidateImageIfUpdated(updates, "previewImage3", ImageType.MOVIE_PREVIEW_3, id);
+            invalidateImageIfUpdated(updates, "previewImage4", ImageType.MOVIE_PREVIEW_4, id);
 
             // 3. 更新「更新時間」
             existingMovie.setUpdateTime(LocalDateTime.now());
@@ -189,6 +216,13 @@ public class MovieService {
         // 如果 key 不存在，就什麼都不做，保持原樣
     }
 
+    // 圖片有更新時，清除圖片服務中快取的內容雜湊
+    private void invalidateImageIfUpdated(Map<String, Object> updates, String fieldName, ImageType type, Integer id) {
+        if (updates.containsKey(fieldName)) {
+            imageService.invalidate(type, id);
+        }
+    }
+
 	/**
 	 * 根據電影 ID 刪除電影資料
 	 * 
@@ -197,8 +231,13 @@ public class MovieService {
 	 */
 	@Transactional
 	public boolean deleteMovieById(Integer id) {
+		cacheManager.invalidateAfterCommit(CatalogCacheManager.MOVIE_CACHES);
 		if (movieRepo.existsById(id)) {
 			movieRepo.deleteById(id);
+			for (ImageType type : List.of(ImageType.MOVIE_POSTER, ImageType.MOVIE_PREVIEW_1, ImageType.MOVIE_PREVIEW_2,
+					ImageType.MOVIE_PREVIEW_3, ImageType.MOVIE_PREVIEW_4)) {
+				imageService.invalidate(type, id);
+			}
 			return true;
 		}
 		return false;
@@ -266,6 +305,7 @@ public class MovieService {
 	 */
 	@Transactional
 	public Optional<Director> updateDirector(Integer id, Director updatedDirector) {
+		cacheManager.invalidateAfterCommit(CatalogCacheManager.MOVIE_CACHES);
 		Optional<Director> directorOptional = directorRepo.findById(id);
 		if (directorOptional.isPresent()) {
 			Director existingDirector = directorOptional.get();
@@ -289,6 +329,7 @@ public class MovieService {
 	 */
 	@Transactional
 	public boolean deleteDirector(Integer id) {
+		cacheManager.invalidateAfterCommit(CatalogCacheManager.MOVIE_CACHES);
 		if (directorRepo.existsById(id)) {
 			directorRepo.deleteById(id);
 			return true;
@@ -393,6 +434,7 @@ public class MovieService {
 	 */
 	@Transactional
 	public Optional<Actor> updateActor(Integer id, Actor updatedActor) {
+		cacheManager.invalidateAfterCommit(CatalogCacheManager.MOVIE_CACHES);
 		Optional<Actor> actorOptional = actorRepo.findById(id);
 		if (actorOptional.isPresent()) {
 			Actor existingActor = actorOptional.get();
@@ -415,6 +457,7 @@ public class MovieService {
 	 */
 	@Transactional
 	public boolean deleteActor(Integer id) {
+		cacheManager.invalidateAfterCommit(CatalogCacheManager.MOVIE_CACHES);
 		if (actorRepo.existsById(id)) {
 			actorRepo.deleteById(id);
 			return true;
@@ -464,6 +507,7 @@ public class MovieService {
 	 */
 	@Transactional
 	public Genre createGenre(Genre genre) {
+		cacheManager.invalidateAfterCommit(CatalogCacheManager.MOVIE_CACHES);
 		return genreRepo.save(genre);
 	}
 
@@ -488,8 +532,12 @@ public class MovieService {
      * 查詢所有類型
      * @return 所有類型的列表
      */
-    @Transactional(readOnly = true)
     public List<GenreListDTO> getAllGenres() { // 修正點：回傳 GenreListDto 列表
+        return genresCache.get(CatalogCacheManager.GENRES, () -> List.copyOf(loadAllGenres()));
+    }
+
+    // 查詢所有類型 (快取未命中時在唯讀交易中執行)
+    private List<GenreListDTO> loadAllGenres() {
         List<Genre> genres = genreRepo.findAll();
         // 修正點：顯式觸發 movieGenres 集合的載入
         for (Genre genre : genres) {
@@ -534,6 +582,7 @@ public class MovieService {
 	 */
 	@Transactional
 	public Optional<Genre> updateGenre(Integer id, Genre updatedGenre) {
+		cacheManager.invalidateAfterCommit(CatalogCacheManager.MOVIE_CACHES);
 		Optional<Genre> genreOptional = genreRepo.findById(id);
 		if (genreOptional.isPresent()) {
 			Genre existingGenre = genreOptional.get();
@@ -553,6 +602,7 @@ public class MovieService {
 	 */
 	@Transactional
 	public boolean deleteGenre(Integer id) {
+		cacheManager.invalidateAfterCommit(CatalogCacheManager.MOVIE_CACHES);
 		if (genreRepo.existsById(id)) {
 			genreRepo.deleteById(id);
 			return true;
@@ -597,6 +647,7 @@ public class MovieService {
 	 */
 	@Transactional
 	public Movie createMovie(Movie movie) {
+		cacheManager.invalidateAfterCommit(CatalogCacheManager.MOVIE_CACHES);
 		// 設定建立時間和更新時間
 		movie.setCreateTime(LocalDateTime.now());
 		movie.setUpdateTime(LocalDateTime.now());
@@ -664,6 +715,7 @@ public class MovieService {
      */
     @Transactional
     public void updateMovieActorRole(Integer movieId, Integer actorId, String newCharacterName) {
+        cacheManager.invalidateAfterCommit(CatalogCacheManager.MOVIE_CACHES);
         
         // 【修正】在更新前，先用 findById 方法去資料庫裡尋找這筆關聯紀錄
         // findByMovieIdAndActorId 是您在 Repository 中定義好的方法
@@ -711,6 +763,7 @@ public class MovieService {
 	 */
 	@Transactional
 	public boolean updateMovieGenres(Integer movieId, List<Integer> genreIds) {
+		cacheManager.invalidateAfterCommit(CatalogCacheManager.MOVIE_CACHES);
 		Optional<Movie> movieOptional = movieRepo.findById(movieId);
 		if (movieOptional.isPresent()) {
 			Movie movie = movieOptional.get();
@@ -740,13 +793,17 @@ public class MovieService {
 	 * @param date 上映日期
 	 * @return 當日上映中電影基本資訊
 	 */
-	@Transactional(readOnly = true)
 	public List<MovieListResponseDTO> findNowPlayingMoviesByDate(LocalDate date) {
+		return nowPlayingCache.get(date, () -> List.copyOf(loadNowPlayingMovies(date)));
+	}
+
+	// 查詢當日上映中的電影 (快取未命中時在唯讀交易中執行)
+	private List<MovieListResponseDTO> loadNowPlayingMovies(LocalDate date) {
 
 		List<MovieListResponseDTO> nowPlayingMovies = new ArrayList<>();
 
-		// 從資料庫取得候選上映中候選電影列表
-		List<Movie> candidateMovies = movieRepo.findCandidateMoviesForNowPlaying(date);
+		// 從資料庫取得候選上映中候選電影列表 (只查列表需要的欄位，不讀取海報)
+		List<Object[]> candidateMovies = movieRepo.findNowPlayingCandidateRows(date);
 
 		// 如果內容為空返回一個空字串
 		if (candidateMovies == null || candidateMovies.isEmpty()) {
@@ -754,10 +811,10 @@ public class MovieService {
 		}
 
 		// 遍歷電影候選列表
-		for (Movie movie : candidateMovies) {
+		for (Object[] row : candidateMovies) {
 			// 取出上映日期及下檔日期
-			LocalDate releaseDate = movie.getReleaseDate();
-			LocalDate offShelfDate = movie.getOffShelfDate();
+			LocalDate releaseDate = (LocalDate) row[5];
+			LocalDate offShelfDate = (LocalDate) row[6];
 
 			// 先判斷 offShelfDate 有沒有值，沒值就讓他等於 releaseDate + 60天
 			if (offShelfDate == null || offShelfDate.isBefore(releaseDate)) {
@@ -767,17 +824,10 @@ public class MovieService {
 			// 判斷 date 是否在上檔和下檔之間，是的話就做成 DTO 放到給前端的 list 中
 			// 這裡只判斷下檔日期，因為抓取資料庫方法已經判定過上映日期
 			if (!date.isAfter(offShelfDate)) {
-				MovieListResponseDTO dto = new MovieListResponseDTO();
-				dto.setId(movie.getId());
-				dto.setTitleLocal(movie.getTitleLocal());
-				dto.setDurationMinutes(movie.getDurationMinutes());
-				dto.setOverview(movie.getOverview());
-				dto.setPosterImage(movie.getPosterImage());
-				dto.setTrailerUrl(movie.getTrailerUrl());
-				
-				nowPlayingMovies.add(dto);
+				nowPlayingMovies.add(toMovieListDTO(row));
 			}
 		}
+		fillPosterUrls(nowPlayingMovies);
 		return nowPlayingMovies;
 	}
 
@@ -787,34 +837,53 @@ public class MovieService {
      * @param fromDate 查詢的起始日期 (例如，今天的日期)
      * @return 從指定日期開始，所有即將上映的電影列表
      */
-    @Transactional(readOnly = true)
     public List<MovieListResponseDTO> getComingSoonMovies(LocalDate fromDate) {
+        return comingSoonCache.get(fromDate, () -> List.copyOf(loadComingSoonMovies(fromDate)));
+    }
+
+    // 查詢即將上映的電影 (快取未命中時在唯讀交易中執行)
+    private List<MovieListResponseDTO> loadComingSoonMovies(LocalDate fromDate) {
 
         // 1. 直接呼叫 Repository 中定義好的查詢方法。
-        //    所有複雜的篩選 (status=true, releaseDate >= fromDate) 和排序，
-        //    都已經交給資料庫去高效地完成了。
-        List<Movie> movies = movieRepo.findMoviesForComingSoon(fromDate);
-
-        // 2. 使用 Java Stream API，將從資料庫拿到的 Movie 實體列表，
-        //    轉換成前端需要的 MovieListResponseDTO 列表。
-        //    這比傳統的 for 迴圈更簡潔、可讀性更高。
-        return movies.stream()
-                .map(movie -> {
-                    // 對於列表中的每一個 movie 物件...
-                    MovieListResponseDTO dto = new MovieListResponseDTO();
-                    
-                    // ...我們建立一個新的 DTO，並把需要的資料複製過去
-                    dto.setId(movie.getId());
-                    dto.setTitleLocal(movie.getTitleLocal());
-                    dto.setDurationMinutes(movie.getDurationMinutes());
-                    dto.setOverview(movie.getOverview());
-                    dto.setPosterImage(movie.getPosterImage());
-                    dto.setTrailerUrl(movie.getTrailerUrl());
-                    // 如果您的 DTO 還有其他欄位，也可以在這裡設定
-                    
-                    return dto;
-                })
-                .collect(Collectors.toList()); // 最後，將所有 DTO 收集成一個 List 並回傳
+        //    所有複雜的篩選 (status=true, releaseDate >= fromDate) 都已經交給資料庫去完成，
+        //    而且只查列表需要的欄位，不讀取海報與劇照。
+        List<Object[]> rows = movieRepo.findComingSoonRows(fromDate);
+
+        // 2. 將每一列轉換成前端需要的 MovieListResponseDTO
+        List<MovieListResponseDTO> movies = rows.stream()
+                .map(this::toMovieListDTO)
+                .collect(Collectors.toList());
+
+        // 3. 海報只回傳網址，由瀏覽器另外向圖片 API 取得 (可長期快取)
+        fillPosterUrls(movies);
+        return movies;
+    }
+
+    /**
+     * 將列表查詢的欄位 [id, titleLocal, durationMinutes, overview, trailerUrl, ...] 轉換為 DTO
+     */
+    private MovieListResponseDTO toMovieListDTO(Object[] row) {
+        MovieListResponseDTO dto = new MovieListResponseDTO();
+        dto.setId((Integer) row[0]);
+        dto.setTitleLocal((String) row[1]);
+        dto.setDurationMinutes((Integer) row[2]);
+        dto.setOverview((String) row[3]);
+        dto.setTrailerUrl((String) row[4]);
+        return dto;
+    }
+
+    /**
+     * 以一次查詢為整個列表填入海報網址
+     */
+    private void fillPosterUrls(List<MovieListResponseDTO> movies) {
+        if (movies.isEmpty()) {
+            return;
+        }
+        Map<Integer, String> posterUrls = imageService.getImageUrls(ImageType.MOVIE_POSTER,
+                movies.stream().map(MovieListResponseDTO::getId).collect(Collectors.toList()));
+        for (MovieListResponseDTO dto : movies) {
+            dto.setPosterImageUrl(posterUrls.get(dto.getId()));
+        }
     }
     
 	public List<MoviesAllDataDTO> getAllLocalMovies() {
@@ -845,6 +914,7 @@ public class MovieService {
      */
     @Transactional
     public void addActorToMovie(Integer movieId, Integer actorId, String characterName) {
+        cacheManager.invalidateAfterCommit(CatalogCacheManager.MOVIE_CACHES);
         Movie movie = movieRepo.findById(movieId)
                 .orElseThrow(() -> new EntityNotFoundException("找不到 ID 為 " + movieId + " 的電影"));
         Actor actor = actorRepo.findById(actorId)
@@ -865,6 +935,7 @@ public class MovieService {
      */
     @Transactional
     public void removeActorFromMovie(Integer movieId, Integer actorId) {
+        cacheManager.invalidateAfterCommit(CatalogCacheManager.MOVIE_CACHES);
         // 1. 使用您在 Repository 中定義好的方法，直接根據 ID 找出要刪除的關聯實體
         MovieActor movieActorToRemove = movieActorRepo.findByMovieIdAndActorId(movieId, actorId)
                 .orElseThrow(() -> new EntityNotFoundException("在電影 ID " + movieId + " 的卡司中找不到演員 ID " + actorId));
@@ -877,8 +948,12 @@ public class MovieService {
      * @param movieId 電影 ID
      * @return 包含電影、類型、導演和演員的 DTO 物件
      */
-    @Transactional(readOnly = true)
     public MoviePublicDetailDTO getPublicMovieDetailById(Integer movieId) {
+        return movieDetailCache.get(movieId, () -> loadPublicMovieDetail(movieId));
+    }
+
+    // 查詢單一電影的完整公開詳細資訊 (快取未命中時在唯讀交易中執行)
+    private MoviePublicDetailDTO loadPublicMovieDetail(Integer movieId) {
         // 1. 根據傳入的 movieId，從資料庫中找出對應的 Movie 物件
         //    【重要】這裡假設您的 MovieRepository 有一個 findByIdWithDetails 的方法，
         //    它會使用 JOIN FETCH 一次性地載入所有關聯資料，以避免 N+1 查詢問題。
@@ -4,12 +4,15 @@ import com.flux.movieproject.model.dto.movie.TMDBGenreListDTO;
 import com.flux.movieproject.model.dto.movie.TMDBMovieCreditsDTO;
 import com.flux.movieproject.model.dto.movie.TMDBMovieDTO;
 import com.flux.movieproject.model.dto.movie.TMDBMovieSearchResponseDTO;
+import com.flux.movieproject.utils.TmdbRateLimiter;
 
 import java.time.LocalDate;
+import java.util.function.Supplier;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 @Service
@@ -20,14 +23,19 @@ public class TMDBApiService {
     @Value("${tmdb.api.key}") // 從 application.yml 讀取 API 金鑰
     private String apiKey;
 
+    private static final int MAX_RETRIES = 3;
+
     private final RestTemplate restTemplate;
     
     private final ObjectMapper objectMapper;
 
+    private final TmdbRateLimiter rateLimiter;
+
     // 透過建構子注入 RestTemplate
-    public TMDBApiService(RestTemplate restTemplate ,ObjectMapper objectMapper) {
+    public TMDBApiService(RestTemplate restTemplate ,ObjectMapper objectMapper, TmdbRateLimiter rateLimiter) {
         this.restTemplate = restTemplate;
         this.objectMapper = objectMapper;
+        this.rateLimiter = rateLimiter;
     }
 
     /**
@@ -39,7 +47,7 @@ public class TMDBApiService {
         String url = String.format("%s/movie/%d?api_key=%s&language=zh-TW", baseUrl, movieId, apiKey);
         try {
             // 發送 GET 請求並將回傳的 JSON 轉換成 TMDBMovieDto 物件
-            return restTemplate.getForObject(url, TMDBMovieDTO.class);
+            return get(() -> restTemplate.getForObject(url, TMDBMovieDTO.class));
         } catch (Exception e) {
             System.err.println("無法從 TMDB API 取得電影資訊：" + e.getMessage());
             return null;
@@ -59,7 +67,7 @@ public class TMDBApiService {
                 baseUrl, apiKey, startDate.toString(), endDate.toString(), region, page);
         try {
             // 1. 改用 getForEntity 來接收回應，並指定我們想要收到「純文字」(String.class)
-            ResponseEntity<String> responseEntity = restTemplate.getForEntity(url, String.class);
+            ResponseEntity<String> responseEntity = get(() -> restTemplate.getForEntity(url, String.class));
             
             // 2. 從回應中取出 JSON 字串
             String jsonBody = responseEntity.getBody();
@@ -91,7 +99,7 @@ public class TMDBApiService {
      public TMDBMovieCreditsDTO fetchMovieCredits(Integer movieId) {
     	 String url = String.format("%s/movie/%d/credits?api_key=%s&language=zh-TW", baseUrl, movieId, apiKey);
          try {
-             return restTemplate.getForObject(url, TMDBMovieCreditsDTO.class);
+             return get(() -> restTemplate.getForObject(url, TMDBMovieCreditsDTO.class));
          } catch (Exception e) {
              System.err.println("無法從 TMDB API 取得電影演職員表：" + e.getMessage());
              return null;
@@ -106,13 +114,30 @@ public class TMDBApiService {
       public TMDBGenreListDTO fetchMovieGenres() {
          String url = String.format("%s/genre/movie/list?api_key=%s&language=zh-TW", baseUrl, apiKey);
          try {
-             return restTemplate.getForObject(url, TMDBGenreListDTO.class);
+             return get(() -> restTemplate.getForObject(url, TMDBGenreListDTO.class));
          } catch (Exception e) {
              System.err.println("無法從 TMDB API 取得電影類型列表：" + e.getMessage());
              return null;
          }
         
       }
+
+      /**
+       * 在 TmdbRateLimiter 的配額內送出請求；回應 429 時依 Retry-After 暫停所有請求後重試
+       */
+      private <T> T get(Supplier<T> request) {
+          for (int attempt = 0;; attempt++) {
+              try {
+                  return rateLimiter.call(request);
+              } catch (HttpClientErrorException.TooManyRequests e) {
+                  if (attempt >= MAX_RETRIES) {
+                      throw e;
+                  }
+                  String retryAfter = e.getResponseHeaders() != null ? e.getResponseHeaders().getFirst("Retry-After") : null;
+                  rateLimiter.pause(retryAfter != null && retryAfter.matches("\\d+") ? Long.parseLong(retryAfter) : 1);
+              }
+          }
+      }
 }
 //package tw.com.eeit.smalltheater.util;
 //
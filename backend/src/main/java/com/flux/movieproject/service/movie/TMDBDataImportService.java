@@ -7,35 +7,37 @@ import com.flux.movieproject.model.dto.movie.TMDBMovieCreditsDTO;
 import com.flux.movieproject.model.dto.movie.TMDBMovieDTO;
 import com.flux.movieproject.model.dto.movie.TMDBMovieResponseDTO;
 import com.flux.movieproject.model.dto.movie.TMDBMovieSearchResponseDTO;
-import com.flux.movieproject.model.entity.movie.Actor;
-import com.flux.movieproject.model.entity.movie.Director;
-import com.flux.movieproject.model.entity.movie.Genre;
-import com.flux.movieproject.model.entity.movie.Movie;
-import com.flux.movieproject.model.entity.movie.MovieActor;
-import com.flux.movieproject.model.entity.movie.MovieDirector;
-import com.flux.movieproject.model.entity.movie.MovieGenre;
 import com.flux.movieproject.model.entity.movie.TMDBMovie;
-import com.flux.movieproject.repository.movie.ActorRepository;
-import com.flux.movieproject.repository.movie.DirectorRepository;
-import com.flux.movieproject.repository.movie.GenreRepository;
-import com.flux.movieproject.repository.movie.MovieActorRepository;
-import com.flux.movieproject.repository.movie.MovieDirectorRepository;
-import com.flux.movieproject.repository.movie.MovieGenreRepository;
-import com.flux.movieproject.repository.movie.MovieRepository;
+import com.flux.movieproject.repository.movie.MovieImportJdbcRepository;
+import com.flux.movieproject.repository.movie.MovieImportJdbcRepository.CreditRow;
+import com.flux.movieproject.repository.movie.MovieImportJdbcRepository.CreditTable;
+import com.flux.movieproject.repository.movie.MovieImportJdbcRepository.Link;
+import com.flux.movieproject.repository.movie.MovieImportJdbcRepository.MovieInsert;
+import com.flux.movieproject.repository.movie.MovieImportJdbcRepository.TmdbMovieRow;
 import com.flux.movieproject.repository.movie.TMDBMovieRepository;
+import com.flux.movieproject.service.cache.CatalogCacheManager;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.client.RestTemplate;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -46,31 +48,27 @@ public class TMDBDataImportService {
 
 	private final TMDBApiService tmdbApiService;
 	private final TMDBMovieRepository tmdbMovieRepository;
-	private final MovieRepository movieRepository;
 	private final RestTemplate restTemplate;
-	private final DirectorRepository directorRepository; // 注入 DirectorRepository
-	private final ActorRepository actorRepository; // 注入 ActorRepository
-	private final GenreRepository genreRepository; // 注入 GenreRepository
-	private final MovieDirectorRepository movieDirectorRepository; // 注入 MovieDirectorRepository
-	private final MovieActorRepository movieActorRepository; // 注入 MovieActorRepository
-	private final MovieGenreRepository movieGenreRepository; // 注入 MovieGenreRepository
+	private final TmdbIngestionEngine tmdbIngestionEngine;
+	private final TransactionTemplate transactionTemplate;
+	private final MovieImportJdbcRepository movieImportJdbcRepository;
+	private final CatalogCacheManager cacheManager;
+
+	// 批次轉存到本地 Movie 表時，每個交易處理的電影數
+	private static final int LOCAL_IMPORT_CHUNK_SIZE = 500;
 
 	@Autowired
 	public TMDBDataImportService(TMDBApiService tmdbApiService, TMDBMovieRepository tmdbMovieRepository,
-			MovieRepository movieRepository, RestTemplate restTemplate, DirectorRepository directorRepository,
-			ActorRepository actorRepository, GenreRepository genreRepository,
-			MovieDirectorRepository movieDirectorRepository, MovieActorRepository movieActorRepository,
-			MovieGenreRepository movieGenreRepository) {
+			RestTemplate restTemplate, TmdbIngestionEngine tmdbIngestionEngine,
+			TransactionTemplate transactionTemplate, MovieImportJdbcRepository movieImportJdbcRepository,
+			CatalogCacheManager cacheManager) {
 		this.tmdbApiService = tmdbApiService;
 		this.tmdbMovieRepository = tmdbMovieRepository;
-		this.movieRepository = movieRepository;
 		this.restTemplate = restTemplate;
-		this.directorRepository = directorRepository;
-		this.actorRepository = actorRepository;
-		this.genreRepository = genreRepository;
-		this.movieDirectorRepository = movieDirectorRepository;
-		this.movieActorRepository = movieActorRepository;
-		this.movieGenreRepository = movieGenreRepository;
+		this.tmdbIngestionEngine = tmdbIngestionEngine;
+		this.transactionTemplate = transactionTemplate;
+		this.movieImportJdbcRepository = movieImportJdbcRepository;
+		this.cacheManager = cacheManager;
 	}
 
 	/**
@@ -98,27 +96,7 @@ public class TMDBDataImportService {
 			System.out.println("電影 ID: " + movieId + " 不存在，將新增。");
 		}
 
-		tmdbMovie.setTitleLocal(TMDBMovieDTO.getTitle());
-		tmdbMovie.setTitleEnglish(TMDBMovieDTO.getOriginalTitle());
-		tmdbMovie.setReleaseDate(TMDBMovieDTO.getReleaseDate());
-		tmdbMovie.setOverview(TMDBMovieDTO.getOverview());
-		tmdbMovie.setDurationMinutes(TMDBMovieDTO.getRuntimeMinutes());
-		tmdbMovie.setOriginalLanguage(TMDBMovieDTO.getOriginalLanguage());
-		tmdbMovie.setPopularity(TMDBMovieDTO.getPopularity());
-		tmdbMovie.setTrailerUrl(TMDBMovieDTO.getTrailerUrl());
-		tmdbMovie.setVoteAverage(TMDBMovieDTO.getVoteAverage());
-		tmdbMovie.setVoteCount(TMDBMovieDTO.getVoteCount());
-		tmdbMovie.setUpdateTime(LocalDateTime.now());
-
-		if (TMDBMovieDTO.getPosterPath() != null && !TMDBMovieDTO.getPosterPath().isEmpty()) {
-			try {
-				byte[] posterBytes = downloadPosterImage(TMDBMovieDTO.getPosterPath());
-				tmdbMovie.setPosterImage(posterBytes);
-				System.out.println("成功下載電影海報： " + TMDBMovieDTO.getPosterPath());
-			} catch (Exception e) {
-				System.err.println("下載海報圖片時發生錯誤：" + e.getMessage());
-			}
-		}
+		applyMovieData(tmdbMovie, TMDBMovieDTO, fetchPoster(TMDBMovieDTO));
 
 		try {
 			tmdbMovieRepository.save(tmdbMovie);
@@ -130,109 +108,19 @@ public class TMDBDataImportService {
 
 	/**
 	 * 從 TMDBMovie 資料表將資料匯入到本地的 Movie 資料表，並處理導演、演員、類型 如果電影已存在於本地 Movie 表，則略過匯入。
+	 * 與批次匯入共用 importTmdbMoviesToLocalInBulk。
 	 * 
 	 * @param tmdbMovieId TMDB 的電影 ID
 	 */
-	@Transactional
 	public void importToLocalMovieTable(Integer tmdbMovieId) {
-		// 檢查本地 Movie 表中是否已存在此電影
-		Optional<Movie> existingMovie = movieRepository.findByTmdbMovieId(tmdbMovieId);
-
-		if (existingMovie.isPresent()) {
-			System.out.println("電影 ID: " + tmdbMovieId + " 已存在於本地 Movie 表，將略過匯入。");
-			return; // 修正點：如果電影已存在，則直接返回，略過後續操作
-		}
-
-		TMDBMovie tmdbMovie = tmdbMovieRepository.findById(tmdbMovieId)
-				.orElseThrow(() -> new RuntimeException("在 TMDBMovie 資料表中找不到電影 ID: " + tmdbMovieId));
-
-		Movie localMovie = new Movie();
-		localMovie.setCreateTime(LocalDateTime.now());
-		localMovie.setTmdbMovie(tmdbMovie); // 設定 OneToOne 關聯
-		System.out.println("電影 ID: " + tmdbMovieId + " 不存在於本地 Movie 表，將新增。");
-
-		// 將 TMDBMovie 的資料複製到 Movie 實體
-		localMovie.setTitleLocal(tmdbMovie.getTitleLocal());
-		localMovie.setTitleEnglish(tmdbMovie.getTitleEnglish());
-		localMovie.setReleaseDate(tmdbMovie.getReleaseDate());
-		// 1. 獲取原始分級
-		String rawCertification = tmdbMovie.getCertification();
-		// 2. 呼叫輔助方法進行標準化
-		String standardizedCert = standardizeCertification(rawCertification);
-		// 3. 設定標準化後的分級
-		localMovie.setCertification(standardizedCert);
-		localMovie.setOverview(tmdbMovie.getOverview());
-		localMovie.setTrailerUrl(tmdbMovie.getTrailerUrl());
-		localMovie.setDurationMinutes(tmdbMovie.getDurationMinutes());
-		localMovie.setPosterImage(tmdbMovie.getPosterImage());
-		localMovie.setOriginalLanguage(tmdbMovie.getOriginalLanguage());
-		localMovie.setPopularity(tmdbMovie.getPopularity().doubleValue());
-		localMovie.setVoteAverage(tmdbMovie.getVoteAverage().doubleValue());
-		localMovie.setVoteCount(tmdbMovie.getVoteCount());
-		localMovie.setStatus(false); // 預設為下架
-		localMovie.setUpdateTime(LocalDateTime.now());
-
-		// 儲存 Movie 實體，以便後續關聯使用其 ID
-		movieRepository.save(localMovie);
-		System.out.println("成功將電影 ID: " + tmdbMovieId + " 匯入到本地 Movie 表。");
-
-		// --- 匯入導演、演員、類型資料 ---
-		// 1. 匯入類型 (Genres)
-		TMDBMovieDTO TMDBMovieDTO = tmdbApiService.fetchMovieById(tmdbMovieId); // 重新獲取 DTO 以取得類型
-		if (TMDBMovieDTO != null && TMDBMovieDTO.getGenres() != null) {
-			for (TMDBMovieDTO.TMDBGenreDto genreDto : TMDBMovieDTO.getGenres()) {
-				Genre genre = genreRepository.findByTmdbGenreId(genreDto.getId()).orElseGet(() -> {
-					Genre newGenre = new Genre();
-					newGenre.setTmdbGenreId(genreDto.getId());
-					newGenre.setName(genreDto.getName());
-					return genreRepository.save(newGenre);
-				});
-
-				// 建立電影與類型的關聯
-				MovieGenre movieGenre = new MovieGenre(localMovie, genre);
-				movieGenreRepository.save(movieGenre);
-				System.out.println("關聯電影 " + localMovie.getId() + " 與類型 " + genre.getName());
-			}
+		LocalImportReport report = importTmdbMoviesToLocalInBulk(List.of(tmdbMovieId));
+		if (!report.errors().isEmpty()) {
+			throw new RuntimeException(report.errors().get(0));
 		}
-
-		// 2. 匯入導演和演員 (Credits)
-		TMDBMovieCreditsDTO creditsDto = tmdbApiService.fetchMovieCredits(tmdbMovieId);
-		if (creditsDto != null) {
-			// 處理導演
-			for (TMDBMovieCreditsDTO.TMDBCrewDto crewDto : creditsDto.getCrew()) {
-				if ("Director".equals(crewDto.getJob())) {
-					Director director = directorRepository.findByTmdbDirectorId(crewDto.getId()).orElseGet(() -> {
-						Director newDirector = new Director();
-						newDirector.setTmdbDirectorId(crewDto.getId());
-						newDirector.setName(crewDto.getName());
-						// newDirector.setDirectorSummary(crewDto.getBiography()); // 如果 TMDB API 有提供簡介
-						return directorRepository.save(newDirector);
-					});
-
-					// 建立電影與導演的關聯
-					MovieDirector movieDirector = new MovieDirector(localMovie, director);
-					movieDirectorRepository.save(movieDirector);
-					System.out.println("關聯電影 " + localMovie.getId() + " 與導演 " + director.getName());
-				}
-			}
-
-			// 處理演員
-			for (TMDBMovieCreditsDTO.TMDBCastDto castDto : creditsDto.getCast()) {
-				Actor actor = actorRepository.findByTmdbActorId(castDto.getId()).orElseGet(() -> {
-					Actor newActor = new Actor();
-					newActor.setTmdbActorId(castDto.getId());
-					newActor.setName(castDto.getName());
-					// newActor.setBiography(castDto.getBiography()); // 如果 TMDB API 有提供簡介
-					return actorRepository.save(newActor);
-				});
-
-				// 建立電影與演員的關聯
-				MovieActor movieActor = new MovieActor(localMovie, actor, castDto.getCharacter(),
-						castDto.getOrderNum());
-				movieActorRepository.save(movieActor);
-				System.out.println("關聯電影 " + localMovie.getId() + " 與演員 " + actor.getName() + " (角色: "
-						+ castDto.getCharacter() + ")");
-			}
+		if (report.skipped() > 0) {
+			System.out.println("電影 ID: " + tmdbMovieId + " 已存在於本地 Movie 表，將略過匯入。");
+		} else {
+			System.out.println("成功將電影 ID: " + tmdbMovieId + " 匯入到本地 Movie 表。");
 		}
 	}
 
@@ -260,9 +148,14 @@ public class TMDBDataImportService {
 //            }
 //        }
 //    }
-	// 檔案路徑: com/flux/movieproject/service/movie/TMDBDataImportService.java
-	@Transactional
-	// 【修正1】將返回類型從 void 改為 TMDBMovieSearchResponseDTO
+	/**
+	 * 匯入 discover 查詢的某一頁。
+	 * 本頁每部電影的詳細資料與海報交給 TmdbIngestionEngine 同時抓取 (API 請求受 TmdbRateLimiter 控制)，
+	 * 全部抓完後才在一個交易中寫入，等待網路回應時不會佔住資料庫連線。
+	 * 每次呼叫只處理一頁並立即提交，中斷後從下一頁繼續呼叫即可。
+	 *
+	 * @return discover 查詢結果 (供前端決定下一頁)；API 失敗時回傳 null
+	 */
 	public TMDBMovieSearchResponseDTO importMoviesByDateRangeAndRegion(LocalDate startDate, LocalDate endDate,
 			String region, Integer page) {
 		TMDBMovieSearchResponseDTO response = tmdbApiService.discoverMoviesByDateRangeAndRegion(startDate, endDate,
@@ -270,25 +163,88 @@ public class TMDBDataImportService {
 
 		if (response == null || response.getResults() == null) {
 			System.err.println("無法匯入電影，因為 API 回傳結果為空。");
-
-			// 雖然結果為空，但最好還是回傳一個空的 response 物件，避免讓 Controller 收到 null
-			// return new TMDBMovieSearchResponseDTO();
-			// 或者直接回傳 null，讓 Controller 處理
 			return null;
 		}
 
 		System.out.printf("發現 %d 部符合條件的電影，開始匯入...\n", response.getResults().size());
 
-		for (TMDBMovieDTO tmdbMovieDto : response.getResults()) {
-			if (tmdbMovieDto.getId() != null) {
-				importMovieData(tmdbMovieDto.getId());
+		// 1. 同時抓取每部電影的詳細資料與海報
+		List<Integer> movieIds = response.getResults().stream()
+				.map(TMDBMovieDTO::getId)
+				.filter(Objects::nonNull)
+				.distinct()
+				.toList();
+		List<FetchedMovie> fetched = tmdbIngestionEngine.fetchConcurrently(movieIds, movieId -> {
+			TMDBMovieDTO dto = tmdbApiService.fetchMovieById(movieId);
+			return dto == null ? null : new FetchedMovie(dto, fetchPoster(dto));
+		});
+
+		// 2. 一次查出已存在的電影，在同一個交易中新增或更新
+		transactionTemplate.executeWithoutResult(status -> {
+			Map<Integer, TMDBMovie> existing = tmdbMovieRepository
+					.findAllById(fetched.stream().map(movie -> movie.dto().getId()).toList()).stream()
+					.collect(Collectors.toMap(TMDBMovie::getTmdbMovieId, Function.identity()));
+			List<TMDBMovie> entities = new ArrayList<>();
+			for (FetchedMovie movie : fetched) {
+				TMDBMovie tmdbMovie = existing.get(movie.dto().getId());
+				if (tmdbMovie == null) {
+					tmdbMovie = new TMDBMovie();
+					tmdbMovie.setTmdbMovieId(movie.dto().getId());
+					tmdbMovie.setCreateTime(LocalDateTime.now());
+				}
+				applyMovieData(tmdbMovie, movie.dto(), movie.posterImage());
+				entities.add(tmdbMovie);
 			}
-		}
+			tmdbMovieRepository.saveAll(entities);
+		});
+		System.out.printf("成功匯入 %d / %d 部電影\n", fetched.size(), movieIds.size());
 
-		// 【修正2】在方法的最後，將 response 物件回傳出去
 		return response;
 	}
 
+	// 抓取完成、尚未寫入資料庫的電影
+	private record FetchedMovie(TMDBMovieDTO dto, byte[] posterImage) {
+	}
+
+	/**
+	 * 將 API 回傳的電影資料寫入 TMDBMovie 實體 (海報為 null 時保留原本的海報)
+	 */
+	private void applyMovieData(TMDBMovie tmdbMovie, TMDBMovieDTO dto, byte[] posterImage) {
+		tmdbMovie.setTitleLocal(dto.getTitle());
+		tmdbMovie.setTitleEnglish(dto.getOriginalTitle());
+		tmdbMovie.setReleaseDate(dto.getReleaseDate());
+		tmdbMovie.setOverview(dto.getOverview());
+		tmdbMovie.setDurationMinutes(dto.getRuntimeMinutes());
+		tmdbMovie.setOriginalLanguage(dto.getOriginalLanguage());
+		tmdbMovie.setPopularity(dto.getPopularity());
+		tmdbMovie.setTrailerUrl(dto.getTrailerUrl());
+		tmdbMovie.setVoteAverage(dto.getVoteAverage());
+		tmdbMovie.setVoteCount(dto.getVoteCount());
+		tmdbMovie.setUpdateTime(LocalDateTime.now());
+		if (posterImage != null) {
+			tmdbMovie.setPosterImage(posterImage);
+		}
+	}
+
+	/**
+	 * 下載電影海報 (受 TmdbIngestionEngine 的同時下載數限制)
+	 *
+	 * @return 圖片內容；沒有海報或下載失敗時回傳 null
+	 */
+	private byte[] fetchPoster(TMDBMovieDTO dto) {
+		if (dto.getPosterPath() == null || dto.getPosterPath().isEmpty()) {
+			return null;
+		}
+		try {
+			byte[] posterBytes = tmdbIngestionEngine.withPosterPermit(() -> downloadPosterImage(dto.getPosterPath()));
+			System.out.println("成功下載電影海報： " + dto.getPosterPath());
+			return posterBytes;
+		} catch (Exception e) {
+			System.err.println("下載海報圖片時發生錯誤：" + e.getMessage());
+			return null;
+		}
+	}
+
 	/**
 	 * 根據海報路徑下載圖片
 	 * 
@@ -319,24 +275,16 @@ public class TMDBDataImportService {
 	}
 
 	/**
-	 * 將所有 TMDBMovie 的電影匯入到本地 Movie 表 這個方法會遍歷所有 TMDBMovie 資料，並逐一匯入到本地 Movie 表
+	 * 將所有 TMDBMovie 的電影匯入到本地 Movie 表 (已匯入過的電影會略過)
+	 * 
+	 * @return 匯入結果
 	 */
-	@Transactional
-	public void importAllTmdbMoviesToLocal() {
-		List<TMDBMovie> allTmdbMovies = tmdbMovieRepository.findAll();
-		System.out.printf("發現 %d 部 TMDBMovie 資料，開始批量匯入到本地 Movie 表...\n", allTmdbMovies.size());
-
-		for (TMDBMovie tmdbMovie : allTmdbMovies) {
-			try {
-				// 這裡會呼叫 importToLocalMovieTable，該方法內部已包含存在性檢查和略過邏輯
-				importToLocalMovieTable(tmdbMovie.getTmdbMovieId());
-			} catch (Exception e) {
-				System.err.println("批量匯入電影 ID: " + tmdbMovie.getTmdbMovieId() + " 到本地 Movie 表時發生錯誤：" + e.getMessage());
-				// 這裡可以選擇是否拋出異常中斷，或者繼續處理其他電影
-				// throw new RuntimeException("批量匯入失敗，請檢查日誌", e);
-			}
-		}
-		System.out.println("所有 TMDBMovie 資料批量匯入到本地 Movie 表完成。");
+	public LocalImportReport importAllTmdbMoviesToLocal() {
+		List<Integer> tmdbMovieIds = tmdbMovieRepository.findAllTmdbMovieIds();
+		System.out.printf("發現 %d 部 TMDBMovie 資料，開始批量匯入到本地 Movie 表...\n", tmdbMovieIds.size());
+		LocalImportReport report = importTmdbMoviesToLocalInBulk(tmdbMovieIds);
+		System.out.println("所有 TMDBMovie 資料批量匯入到本地 Movie 表完成。" + report);
+		return report;
 	}
 
 	/**
@@ -349,22 +297,171 @@ public class TMDBDataImportService {
 	}
 
 	/**
-	 * 將選定的 TMDBMovie 電影匯入到本地 Movie 表
+	 * 將選定的 TMDBMovie 電影匯入到本地 Movie 表 (已匯入過的電影會略過)
 	 * 
 	 * @param tmdbMovieIds 要匯入的 TMDB 電影 ID 列表
+	 * @return 匯入結果
 	 */
-	@Transactional
-	public void importSelectedTmdbMovies(List<Integer> tmdbMovieIds) {
+	public LocalImportReport importSelectedTmdbMovies(List<Integer> tmdbMovieIds) {
 		System.out.printf("收到 %d 個選定的 TMDBMovie ID，開始匯入到本地 Movie 表...\n", tmdbMovieIds.size());
-		for (Integer tmdbMovieId : tmdbMovieIds) {
+		LocalImportReport report = importTmdbMoviesToLocalInBulk(tmdbMovieIds);
+		System.out.println("選定的 TMDBMovie 資料匯入到本地 Movie 表完成。" + report);
+		return report;
+	}
+
+	/**
+	 * 批次轉存的結果
+	 *
+	 * @param imported 新增到本地 Movie 表的電影數
+	 * @param skipped  已存在而略過的電影數
+	 * @param errors   無法匯入的電影與原因
+	 */
+	public record LocalImportReport(int imported, int skipped, List<String> errors) {
+	}
+
+	/**
+	 * 批次將 TMDBMovie 轉存到本地 Movie 表。
+	 * 每 LOCAL_IMPORT_CHUNK_SIZE 部電影一個交易：
+	 * 1. 以集合查詢找出尚未匯入的電影，並從 tmdb_movie_genre / director / actor 讀出類型與演職員
+	 *    (這三張表都沒有資料的電影才向 TMDB API 補抓，並同時進行)
+	 * 2. 以集合查詢解析本地的類型、導演、演員 ID，不存在的以 batch 新增
+	 * 3. 電影 (INSERT ... SELECT，海報直接在資料庫中複製) 與三張關聯表都以 JDBC batch 寫入
+	 *
+	 * @param tmdbMovieIds 要匯入的 TMDB 電影 ID
+	 * @return 匯入結果
+	 */
+	public LocalImportReport importTmdbMoviesToLocalInBulk(Collection<Integer> tmdbMovieIds) {
+		List<Integer> ids = tmdbMovieIds.stream().filter(Objects::nonNull).distinct().toList();
+		int imported = 0;
+		int skipped = 0;
+		List<String> errors = new ArrayList<>();
+		for (int from = 0; from < ids.size(); from += LOCAL_IMPORT_CHUNK_SIZE) {
+			List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + LOCAL_IMPORT_CHUNK_SIZE));
 			try {
-				importToLocalMovieTable(tmdbMovieId); // 呼叫現有的匯入單一電影方法
+				LocalImportReport result = importChunkToLocal(chunk);
+				imported += result.imported();
+				skipped += result.skipped();
+				errors.addAll(result.errors());
 			} catch (Exception e) {
-				System.err.println("匯入選定電影 ID: " + tmdbMovieId + " 到本地 Movie 表時發生錯誤：" + e.getMessage());
-				// 這裡可以選擇是否拋出異常中斷，或者繼續處理其他電影
+				System.err.println("批量匯入電影 " + chunk.get(0) + " ~ " + chunk.get(chunk.size() - 1) + " 時發生錯誤：" + e.getMessage());
+				errors.add("電影 ID " + chunk.get(0) + " ~ " + chunk.get(chunk.size() - 1) + "：" + e.getMessage());
+			}
+		}
+		return new LocalImportReport(imported, skipped, errors);
+	}
+
+	private LocalImportReport importChunkToLocal(List<Integer> chunk) {
+		// 1. 過濾已匯入、不存在或缺少必要欄位 (片名、上映日、片長) 的電影
+		Set<Integer> alreadyImported = movieImportJdbcRepository.findImportedTmdbMovieIds(chunk);
+		Map<Integer, TmdbMovieRow> rows = movieImportJdbcRepository.findTmdbMovieRows(chunk).stream()
+				.collect(Collectors.toMap(TmdbMovieRow::tmdbMovieId, Function.identity()));
+		List<String> errors = new ArrayList<>();
+		List<MovieInsert> inserts = new ArrayList<>();
+		for (Integer tmdbMovieId : chunk) {
+			if (alreadyImported.contains(tmdbMovieId)) {
+				continue;
+			}
+			TmdbMovieRow row = rows.get(tmdbMovieId);
+			if (row == null) {
+				errors.add("在 TMDBMovie 資料表中找不到電影 ID: " + tmdbMovieId);
+			} else if (row.titleLocal() == null || row.releaseDate() == null || row.durationMinutes() == null) {
+				errors.add("電影 ID: " + tmdbMovieId + " 缺少片名、上映日期或片長，無法匯入");
+			} else {
+				inserts.add(new MovieInsert(tmdbMovieId, standardizeCertification(row.certification())));
+			}
+		}
+		if (inserts.isEmpty()) {
+			return new LocalImportReport(0, alreadyImported.size(), errors);
+		}
+
+		// 2. 類型與演職員：優先使用 tmdb_* 關聯表，沒有資料的電影才呼叫 API (在交易外進行)
+		List<Integer> pendingIds = inserts.stream().map(MovieInsert::tmdbMovieId).toList();
+		Map<CreditTable, List<CreditRow>> credits = new EnumMap<>(CreditTable.class);
+		Set<Integer> withLocalCredits = new HashSet<>();
+		for (CreditTable type : CreditTable.values()) {
+			List<CreditRow> found = new ArrayList<>(movieImportJdbcRepository.findTmdbCredits(type, pendingIds));
+			found.forEach(credit -> withLocalCredits.add(credit.tmdbMovieId()));
+			credits.put(type, found);
+		}
+		List<Integer> needApi = pendingIds.stream().filter(id -> !withLocalCredits.contains(id)).toList();
+		if (!needApi.isEmpty()) {
+			for (Map<CreditTable, List<CreditRow>> fetched : tmdbIngestionEngine.fetchConcurrently(needApi,
+					this::fetchCreditsFromApi)) {
+				fetched.forEach((type, rowsOfType) -> credits.get(type).addAll(rowsOfType));
+			}
+		}
+
+		// 3. 在一個交易中寫入電影、解析主檔 ID、寫入關聯
+		LocalDateTime now = LocalDateTime.now();
+		int imported = transactionTemplate.execute(status -> {
+			cacheManager.invalidateAfterCommit(CatalogCacheManager.MOVIE_CACHES);
+			int[] counts = movieImportJdbcRepository.insertMoviesFromTmdb(inserts, now);
+			Set<Integer> inserted = new HashSet<>();
+			for (int i = 0; i < counts.length; i++) {
+				if (counts[i] != 0) { // Statement.SUCCESS_NO_INFO (-2) 也視為成功
+					inserted.add(inserts.get(i).tmdbMovieId());
+				}
+			}
+			Map<Integer, Integer> movieIds = movieImportJdbcRepository.findMovieIdsByTmdbIds(inserted);
+			for (CreditTable type : CreditTable.values()) {
+				List<CreditRow> rowsOfType = credits.get(type).stream()
+						.filter(credit -> credit.tmdbId() != null && movieIds.containsKey(credit.tmdbMovieId()))
+						.toList();
+				Map<Integer, String> names = new HashMap<>();
+				rowsOfType.forEach(credit -> names.putIfAbsent(credit.tmdbId(), credit.name()));
+				Map<Integer, Integer> localIds = movieImportJdbcRepository.resolveIds(type, names);
+
+				// 同一位演員在同一部電影飾演多個角色時只保留第一筆 (關聯表的主鍵為 電影 + 演員)
+				Map<String, Link> links = new LinkedHashMap<>();
+				for (CreditRow credit : rowsOfType) {
+					int movieId = movieIds.get(credit.tmdbMovieId());
+					int targetId = localIds.get(credit.tmdbId());
+					links.putIfAbsent(movieId + ":" + targetId,
+							new Link(movieId, targetId, credit.character(), credit.orderNum()));
+				}
+				movieImportJdbcRepository.insertLinks(type, new ArrayList<>(links.values()));
+			}
+			return inserted.size();
+		});
+		int skipped = alreadyImported.size() + inserts.size() - imported;
+		System.out.printf("批量匯入：新增 %d 部電影到本地 Movie 表\n", imported);
+		return new LocalImportReport(imported, skipped, errors);
+	}
+
+	/**
+	 * 向 TMDB API 取得單部電影的類型與演職員 (本地 tmdb_* 關聯表沒有資料時使用)
+	 */
+	private Map<CreditTable, List<CreditRow>> fetchCreditsFromApi(Integer tmdbMovieId) {
+		Map<CreditTable, List<CreditRow>> result = new EnumMap<>(CreditTable.class);
+		List<CreditRow> genres = new ArrayList<>();
+		TMDBMovieDTO movieDto = tmdbApiService.fetchMovieById(tmdbMovieId);
+		if (movieDto != null && movieDto.getGenres() != null) {
+			for (TMDBMovieDTO.TMDBGenreDto genreDto : movieDto.getGenres()) {
+				genres.add(new CreditRow(tmdbMovieId, genreDto.getId(), genreDto.getName(), null, null));
+			}
+		}
+		List<CreditRow> directors = new ArrayList<>();
+		List<CreditRow> actors = new ArrayList<>();
+		TMDBMovieCreditsDTO creditsDto = tmdbApiService.fetchMovieCredits(tmdbMovieId);
+		if (creditsDto != null) {
+			if (creditsDto.getCrew() != null) {
+				for (TMDBMovieCreditsDTO.TMDBCrewDto crewDto : creditsDto.getCrew()) {
+					if ("Director".equals(crewDto.getJob())) {
+						directors.add(new CreditRow(tmdbMovieId, crewDto.getId(), crewDto.getName(), null, null));
+					}
+				}
+			}
+			if (creditsDto.getCast() != null) {
+				for (TMDBMovieCreditsDTO.TMDBCastDto castDto : creditsDto.getCast()) {
+					actors.add(new CreditRow(tmdbMovieId, castDto.getId(), castDto.getName(), castDto.getCharacter(),
+							castDto.getOrderNum()));
+				}
 			}
 		}
-		System.out.println("選定的 TMDBMovie 資料匯入到本地 Movie 表完成。");
+		result.put(CreditTable.GENRE, genres);
+		result.put(CreditTable.DIRECTOR, directors);
+		result.put(CreditTable.ACTOR, actors);
+		return result;
 	}
 
 	/**
@@ -0,0 +1,146 @@
+package com.flux.movieproject.service.movie;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * TMDB 匯入進度 (checkpoint) 的存放處。
+ * 每個匯入工作 (例如某段日期區間的 discover 查詢) 一個 JSON 檔，記錄已完成的頁數與已寫入資料庫的電影 ID；
+ * 匯入中斷後以相同條件重新執行時，會略過已完成的頁與電影。工作全部成功後刪除檔案。
+ */
+@Component
+public class TmdbImportCheckpointStore {
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	@Value("${tmdb.import.checkpoint-dir:${java.io.tmpdir}/flux-tmdb-import}")
+	private String checkpointDir;
+
+	private Path directory;
+
+	private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+	/**
+	 * 一個匯入工作的進度。集合可被多個執行緒同時讀取與寫入。
+	 */
+	public static class Checkpoint {
+		private String jobKey;
+		private int totalPages;
+		private LocalDateTime updateTime;
+		private final Set<Integer> completedPages = ConcurrentHashMap.newKeySet();
+		private final Set<Integer> completedMovieIds = ConcurrentHashMap.newKeySet();
+
+		public String getJobKey() {
+			return jobKey;
+		}
+
+		public void setJobKey(String jobKey) {
+			this.jobKey = jobKey;
+		}
+
+		public int getTotalPages() {
+			return totalPages;
+		}
+
+		public void setTotalPages(int totalPages) {
+			this.totalPages = totalPages;
+		}
+
+		public LocalDateTime getUpdateTime() {
+			return updateTime;
+		}
+
+		public void setUpdateTime(LocalDateTime updateTime) {
+			this.updateTime = updateTime;
+		}
+
+		public Set<Integer> getCompletedPages() {
+			return completedPages;
+		}
+
+		public void setCompletedPages(Collection<Integer> pages) {
+			completedPages.clear();
+			completedPages.addAll(pages);
+		}
+
+		public Set<Integer> getCompletedMovieIds() {
+			return completedMovieIds;
+		}
+
+		public void setCompletedMovieIds(Collection<Integer> movieIds) {
+			completedMovieIds.clear();
+			completedMovieIds.addAll(movieIds);
+		}
+	}
+
+	@PostConstruct
+	public void init() throws IOException {
+		directory = Paths.get(checkpointDir);
+		Files.createDirectories(directory);
+	}
+
+	/**
+	 * 讀取進度，沒有進度檔 (或檔案損毀) 時回傳新的空進度
+	 */
+	public Checkpoint load(String jobKey) {
+		Path file = fileFor(jobKey);
+		if (Files.exists(file)) {
+			try {
+				Checkpoint checkpoint = objectMapper.readValue(file.toFile(), Checkpoint.class);
+				System.out.println("TMDB 匯入: 從進度檔繼續 " + jobKey + " (已完成 " + checkpoint.getCompletedPages().size()
+						+ " 頁、" + checkpoint.getCompletedMovieIds().size() + " 部電影)");
+				return checkpoint;
+			} catch (IOException e) {
+				System.err.println("TMDB 匯入: 進度檔 " + file + " 無法讀取，將從頭開始：" + e.getMessage());
+			}
+		}
+		Checkpoint checkpoint = new Checkpoint();
+		checkpoint.setJobKey(jobKey);
+		return checkpoint;
+	}
+
+	/**
+	 * 寫入進度。先寫到暫存檔再改名，中途當機也不會留下寫到一半的進度檔。
+	 */
+	public void save(Checkpoint checkpoint) {
+		checkpoint.setUpdateTime(LocalDateTime.now());
+		Path file = fileFor(checkpoint.getJobKey());
+		Path temp = directory.resolve(file.getFileName() + TEMP_SUFFIX);
+		try {
+			objectMapper.writeValue(temp.toFile(), checkpoint);
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			System.err.println("TMDB 匯入: 寫入進度檔 " + file + " 失敗：" + e.getMessage());
+		}
+	}
+
+	/**
+	 * 工作全部完成後刪除進度
+	 */
+	public void delete(String jobKey) {
+		try {
+			Files.deleteIfExists(fileFor(jobKey));
+		} catch (IOException e) {
+			System.err.println("TMDB 匯入: 刪除進度檔失敗：" + e.getMessage());
+		}
+	}
+
+	private Path fileFor(String jobKey) {
+		return directory.resolve(jobKey.replaceAll("[^A-Za-z0-9_.-]", "_") + ".json");
+	}
+}
@@ -0,0 +1,178 @@
+package com.flux.movieproject.service.movie;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.flux.movieproject.model.pojo.TMDBMoviePojo;
+import com.flux.movieproject.repository.movie.TMDBMovieRepository;
+import com.flux.movieproject.service.movie.TmdbUtilImportService.SyncState;
+import com.flux.movieproject.utils.FetchTMDBDataUtil;
+import com.flux.movieproject.utils.FetchTMDBDataUtil.ChangesPage;
+
+/**
+ * TMDB 電影資料的增量同步。
+ * 不再重新抓取所有電影，而是先查詢 TMDB 的變動清單 (/movie/changes)，只重新取得有變動的電影；
+ * 取回後再以內容雜湊比對，內容相同的電影只更新同步時間，海報路徑沒變時也不重新下載海報。
+ * 變動清單最多只能查詢 14 天，超過 14 天沒有同步 (或從未同步) 的電影一律重新取得。
+ */
+@Service
+public class TmdbIncrementalSyncService {
+
+	// TMDB /movie/changes 的查詢區間上限
+	private static final int CHANGES_WINDOW_DAYS = 14;
+	// 單次 UPDATE 的 ID 數 (SQL Server 單一語句上限為 2100 個參數)
+	private static final int UPDATE_CHUNK_SIZE = 1000;
+
+	@Autowired
+	private FetchTMDBDataUtil fetchTMDBDataUtil;
+	@Autowired
+	private TmdbIngestionEngine tmdbIngestionEngine;
+	@Autowired
+	private TmdbUtilImportService tmdbUtilImportService;
+	@Autowired
+	private TMDBMovieRepository tmdbMovieRepository;
+
+	// 每累積幾部電影寫入資料庫一次
+	@Value("${tmdb.ingest.batch-size:50}")
+	private int batchSize;
+
+	@Value("${tmdb.sync.enabled:false}")
+	private boolean scheduledSyncEnabled;
+
+	/**
+	 * 同步結果
+	 *
+	 * @param checked   資料庫中的電影數
+	 * @param changed   TMDB 變動清單中屬於本地電影的數量
+	 * @param refreshed 重新取得資料的電影數 (有變動的電影加上超過 14 天沒有同步的電影)
+	 * @param written   內容或海報有變動而實際寫入的電影數
+	 * @param failed    取得資料失敗的電影數 (同步時間不更新，下次同步時重試)
+	 */
+	public record SyncReport(int checked, int changed, int refreshed, int written, int failed) {
+	}
+
+	/**
+	 * 每天凌晨同步一次 (預設關閉，以 tmdb.sync.enabled=true 開啟)
+	 */
+	@Scheduled(cron = "${tmdb.sync.cron:0 30 3 * * *}")
+	public void scheduledSync() {
+		if (!scheduledSyncEnabled) {
+			return;
+		}
+		try {
+			syncChanges();
+		} catch (Exception e) {
+			System.err.println("TMDB 增量同步失敗：" + e.getMessage());
+		}
+	}
+
+	/**
+	 * 同步資料庫中所有 TMDB 電影
+	 *
+	 * @return 同步結果
+	 */
+	public SyncReport syncChanges() {
+		LocalDateTime syncTime = LocalDateTime.now();
+		// 變動清單以日期查詢，保留一天的餘裕，確保起訖日期不超過上限
+		LocalDateTime windowStart = syncTime.minusDays(CHANGES_WINDOW_DAYS - 1);
+		Map<Integer, SyncState> syncStates = tmdbUtilImportService.findAllSyncStates();
+
+		// 1. 從未同步或超過 14 天沒有同步的電影無法以變動清單判斷，一律重新取得
+		Set<Integer> refreshIds = new HashSet<>();
+		Set<Integer> recentIds = new HashSet<>();
+		LocalDateTime oldestSync = syncTime;
+		for (Map.Entry<Integer, SyncState> entry : syncStates.entrySet()) {
+			SyncState state = entry.getValue();
+			if (state.contentHash() == null || state.lastSyncTime() == null || state.lastSyncTime().isBefore(windowStart)) {
+				refreshIds.add(entry.getKey());
+			} else {
+				recentIds.add(entry.getKey());
+				if (state.lastSyncTime().isBefore(oldestSync)) {
+					oldestSync = state.lastSyncTime();
+				}
+			}
+		}
+
+		// 2. 其餘電影只重新取得變動清單中出現的
+		Set<Integer> changedIds = recentIds.isEmpty() ? Set.of()
+				: fetchChangedIds(oldestSync.toLocalDate(), syncTime.toLocalDate());
+		int changed = 0;
+		for (Integer id : recentIds) {
+			if (changedIds.contains(id)) {
+				refreshIds.add(id);
+				changed++;
+			}
+		}
+		System.out.printf("TMDB 增量同步：本地 %d 部電影，變動清單中 %d 部，需要重新取得 %d 部\n", syncStates.size(), changed,
+				refreshIds.size());
+
+		// 3. 分批重新取得並寫入，內容沒變的電影在寫入時只更新同步時間
+		List<Integer> refreshList = new ArrayList<>(refreshIds);
+		int written = 0;
+		int failed = 0;
+		for (int from = 0; from < refreshList.size(); from += batchSize) {
+			List<Integer> batch = refreshList.subList(from, Math.min(refreshList.size(), from + batchSize));
+			List<TMDBMoviePojo> movies = tmdbIngestionEngine.fetchConcurrently(batch,
+					id -> fetchMovie(id, syncStates.get(id)));
+			failed += batch.size() - movies.size();
+			if (!movies.isEmpty()) {
+				written += tmdbUtilImportService.saveMovies(movies);
+			}
+		}
+
+		// 4. 不在變動清單中的電影只更新同步時間
+		List<Integer> unchangedIds = recentIds.stream().filter(id -> !changedIds.contains(id)).toList();
+		for (int from = 0; from < unchangedIds.size(); from += UPDATE_CHUNK_SIZE) {
+			tmdbMovieRepository.updateLastSyncTime(
+					unchangedIds.subList(from, Math.min(unchangedIds.size(), from + UPDATE_CHUNK_SIZE)), syncTime);
+		}
+
+		System.out.printf("TMDB 增量同步完成：重新取得 %d 部，實際寫入 %d 部，失敗 %d 部\n", refreshIds.size(), written, failed);
+		return new SyncReport(syncStates.size(), changed, refreshIds.size(), written, failed);
+	}
+
+	/**
+	 * 取得區間內所有變動的電影 ID；任何一頁失敗都無法確定哪些電影沒有變動，因此直接中止
+	 */
+	private Set<Integer> fetchChangedIds(LocalDate startDate, LocalDate endDate) {
+		ChangesPage firstPage = fetchTMDBDataUtil.fetchChangesPage(startDate, endDate, 1);
+		if (firstPage == null) {
+			throw new IllegalStateException("無法取得 TMDB 變動清單，請稍後再試");
+		}
+		Set<Integer> changedIds = new HashSet<>(firstPage.movieIds());
+		List<Integer> remainingPages = IntStream.rangeClosed(2, firstPage.totalPages()).boxed().toList();
+		List<ChangesPage> pages = tmdbIngestionEngine.fetchConcurrently(remainingPages,
+				page -> fetchTMDBDataUtil.fetchChangesPage(startDate, endDate, page));
+		if (pages.size() != remainingPages.size()) {
+			throw new IllegalStateException("TMDB 變動清單有部分頁面取得失敗，請稍後再試");
+		}
+		pages.forEach(page -> changedIds.addAll(page.movieIds()));
+		return changedIds;
+	}
+
+	/**
+	 * 取得一部電影的完整資料，海報路徑有變動或資料庫中沒有海報時才下載海報
+	 */
+	private TMDBMoviePojo fetchMovie(Integer tmdbMovieId, SyncState state) {
+		TMDBMoviePojo movie = fetchTMDBDataUtil.fetchMovie(tmdbMovieId);
+		if (movie == null) {
+			return null;
+		}
+		if (movie.getPosterPath() != null && TmdbUtilImportService.needsPoster(movie, state)) {
+			movie.setPosterImage(tmdbIngestionEngine
+					.withPosterPermit(() -> fetchTMDBDataUtil.downloadPoster(movie.getPosterPath())));
+		}
+		return movie;
+	}
+}
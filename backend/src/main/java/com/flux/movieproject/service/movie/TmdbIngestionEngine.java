@@ -0,0 +1,321 @@
+package com.flux.movieproject.service.movie;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.flux.movieproject.model.pojo.TMDBMoviePojo;
+import com.flux.movieproject.service.movie.TmdbImportCheckpointStore.Checkpoint;
+import com.flux.movieproject.utils.FetchTMDBDataUtil;
+import com.flux.movieproject.utils.FetchTMDBDataUtil.DiscoverPage;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * TMDB 電影匯入引擎。
+ * 將匯入拆成三個同時進行的階段，每個網路請求都在自己的虛擬執行緒上執行 (Java 21 以上)：
+ * 1. 掃描 discover 列表的各頁
+ * 2. 取得每部電影的詳細資料 (片長、分級、預告片、演職員)
+ * 3. 下載海報
+ * 打 TMDB API 的請求一律經過 TmdbRateLimiter 控制在配額內，海報則另外限制同時下載數；
+ * 資料庫寫入只在呼叫端的執行緒上分批進行，每寫完一批就更新進度檔，中斷後重新執行會從上次停下的地方繼續。
+ */
+@Service
+public class TmdbIngestionEngine {
+
+	// 不支援虛擬執行緒時的執行緒數 (略多於 TMDB 連線數上限加上海報下載數)
+	private static final int FALLBACK_POOL_SIZE = 32;
+
+	@Autowired
+	private FetchTMDBDataUtil fetchTMDBDataUtil;
+	@Autowired
+	private TmdbImportCheckpointStore checkpointStore;
+
+	// 每累積幾部電影寫入資料庫一次 (同時是進度檔的更新單位)
+	@Value("${tmdb.ingest.batch-size:50}")
+	private int batchSize;
+
+	// image.tmdb.org 不在 API 配額內，另外限制同時下載的海報數
+	@Value("${tmdb.ingest.poster-concurrency:8}")
+	private int posterConcurrency;
+
+	private Semaphore posterPermits;
+
+	@PostConstruct
+	public void init() {
+		posterPermits = new Semaphore(posterConcurrency);
+	}
+
+	/**
+	 * 匯入結果
+	 *
+	 * @param totalPages   discover 查詢的總頁數
+	 * @param resumedPages 因進度檔已完成而略過的頁數
+	 * @param imported     本次寫入資料庫的電影數
+	 * @param resumed      因進度檔已完成而略過的電影數
+	 * @param failed       取得資料失敗的頁數與電影數 (保留在進度檔中，下次重新執行時重試)
+	 */
+	public record IngestionReport(int totalPages, int resumedPages, int imported, int resumed, int failed) {
+	}
+
+	// 各階段完成後交給寫入端的事件 (movie 為 null 表示該頁掃描完成，pending 為該頁待處理的電影數)
+	private record StageEvent(int page, TMDBMoviePojo movie, boolean success, int pending) {
+	}
+
+	/**
+	 * 匯入某段日期區間內的台灣院線電影
+	 *
+	 * @param startDate 上映起始日期
+	 * @param endDate   上映結束日期
+	 * @param sink      寫入資料庫的程式，每次收到一批已補全詳細資料與海報的電影 (只會在呼叫端的執行緒上被呼叫)
+	 * @return 匯入結果
+	 */
+	public IngestionReport ingestDiscover(LocalDate startDate, LocalDate endDate, Consumer<List<TMDBMoviePojo>> sink) {
+		return ingestDiscover(startDate, endDate, movie -> true, sink);
+	}
+
+	/**
+	 * 匯入某段日期區間內的台灣院線電影，只下載需要的海報
+	 *
+	 * @param startDate   上映起始日期
+	 * @param endDate     上映結束日期
+	 * @param needsPoster 是否需要下載該電影的海報 (例如資料庫中的海報路徑相同時不必重新下載，posterImage 會是 null)
+	 * @param sink        寫入資料庫的程式，每次收到一批已補全詳細資料與海報的電影 (只會在呼叫端的執行緒上被呼叫)
+	 * @return 匯入結果
+	 */
+	public IngestionReport ingestDiscover(LocalDate startDate, LocalDate endDate, Predicate<TMDBMoviePojo> needsPoster,
+			Consumer<List<TMDBMoviePojo>> sink) {
+		String jobKey = "discover-TW-" + startDate + "_" + endDate;
+		Checkpoint checkpoint = checkpointStore.load(jobKey);
+
+		DiscoverPage firstPage = fetchTMDBDataUtil.fetchDiscoverPage(startDate, endDate, 1);
+		if (firstPage == null) {
+			throw new IllegalStateException("無法取得 TMDB discover 列表，請稍後再試");
+		}
+		int totalPages = firstPage.totalPages();
+		checkpoint.setTotalPages(totalPages);
+		if (totalPages == 0) {
+			checkpointStore.delete(jobKey);
+			return new IngestionReport(0, 0, 0, 0, 0);
+		}
+		System.out.printf("(Engine) 找到 %d 頁資料，開始同時掃描列表、補全詳細資訊與下載海報...\n", totalPages);
+
+		BlockingQueue<StageEvent> events = new LinkedBlockingQueue<>();
+		Set<Integer> scheduled = ConcurrentHashMap.newKeySet(); // 同一部電影可能因排序變動出現在兩頁
+		Set<Integer> completedPages = checkpoint.getCompletedPages();
+		Set<Integer> completedMovieIds = checkpoint.getCompletedMovieIds();
+		int resumedPages = 0;
+		int resumedMovies = completedMovieIds.size();
+
+		ExecutorService executor = newIngestionExecutor();
+		try {
+			// 1. 掃描階段：每頁一個虛擬執行緒，掃完立刻把該頁的電影交給詳細資料與海報階段
+			List<CompletableFuture<Void>> pageFutures = new ArrayList<>();
+			for (int page = 1; page <= totalPages; page++) {
+				if (completedPages.contains(page)) {
+					resumedPages++;
+					continue;
+				}
+				int currentPage = page;
+				CompletableFuture<DiscoverPage> scan = currentPage == 1
+						? CompletableFuture.completedFuture(firstPage)
+						: CompletableFuture.supplyAsync(
+								() -> fetchTMDBDataUtil.fetchDiscoverPage(startDate, endDate, currentPage), executor)
+								// 取得失敗與回傳 null 同樣視為該頁失敗，保留進度檔供重試
+								.exceptionally(e -> {
+									System.err.println("(Engine) 取得第 " + currentPage + " 頁失敗：" + e.getMessage());
+									return null;
+								});
+				pageFutures.add(scan.thenCompose(result -> {
+					if (result == null) {
+						events.add(new StageEvent(currentPage, null, false, 0));
+						return CompletableFuture.<Void>completedFuture(null);
+					}
+					List<TMDBMoviePojo> pending = result.movies().stream()
+							.filter(movie -> !completedMovieIds.contains(movie.getTmdbMovieId()))
+							.filter(movie -> scheduled.add(movie.getTmdbMovieId()))
+							.toList();
+					events.add(new StageEvent(currentPage, null, true, pending.size()));
+					return CompletableFuture.allOf(pending.stream()
+							.map(movie -> fetchMovie(currentPage, movie, needsPoster, executor, events))
+							.toArray(CompletableFuture[]::new));
+				}));
+			}
+			CompletableFuture<Void> allPages = CompletableFuture.allOf(pageFutures.toArray(CompletableFuture[]::new));
+
+			// 2. 寫入階段：在呼叫端執行緒上分批寫入資料庫並更新進度
+			Map<Integer, Integer> remainingByPage = new HashMap<>();
+			Set<Integer> failedPages = new HashSet<>();
+			List<StageEvent> buffer = new ArrayList<>();
+			int imported = 0;
+			int failed = 0;
+			while (!allPages.isDone() || !events.isEmpty()) {
+				StageEvent event = events.poll(200, TimeUnit.MILLISECONDS);
+				if (event == null) {
+					continue;
+				}
+				if (event.movie() == null) {
+					if (!event.success()) {
+						failed++;
+						failedPages.add(event.page());
+					}
+					remainingByPage.put(event.page(), event.pending());
+					if (event.success() && event.pending() == 0) {
+						completedPages.add(event.page());
+					}
+				} else if (!event.success()) {
+					failed++;
+					failedPages.add(event.page());
+					markMovieDone(event.page(), remainingByPage, failedPages, completedPages);
+				} else {
+					buffer.add(event);
+					if (buffer.size() >= batchSize) {
+						imported += flush(buffer, sink, checkpoint, remainingByPage, failedPages);
+					}
+				}
+			}
+			imported += flush(buffer, sink, checkpoint, remainingByPage, failedPages);
+
+			if (failed == 0) {
+				checkpointStore.delete(jobKey);
+			} else {
+				checkpointStore.save(checkpoint);
+				System.err.printf("(Engine) %d 個頁面或電影取得失敗，已保留進度檔，重新執行相同區間即可重試。\n", failed);
+			}
+			System.out.printf("(Engine) 匯入完成：寫入 %d 部電影，略過先前已完成的 %d 頁、%d 部電影。\n", imported, resumedPages,
+					resumedMovies);
+			return new IngestionReport(totalPages, resumedPages, imported, resumedMovies, failed);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("TMDB 匯入被中斷，已完成的部分保留在進度檔中", e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * 以虛擬執行緒同時處理多筆資料 (例如單頁 discover 結果中每部電影的詳細資料)，並依輸入順序回傳結果。
+	 * 打 TMDB API 的部分由呼叫的程式自行經過 TmdbRateLimiter。
+	 *
+	 * @param inputs  輸入資料
+	 * @param fetcher 處理一筆資料的程式，回傳 null 或拋出例外時略過該筆
+	 * @return 成功的結果
+	 */
+	public <I, R> List<R> fetchConcurrently(List<I> inputs, Function<I, R> fetcher) {
+		ExecutorService executor = newIngestionExecutor();
+		try {
+			List<CompletableFuture<R>> futures = inputs.stream()
+					.map(input -> CompletableFuture.supplyAsync(() -> fetcher.apply(input), executor)
+							.exceptionally(e -> {
+								System.err.println("(Engine) 處理 " + input + " 失敗：" + e.getMessage());
+								return null;
+							}))
+					.toList();
+			return futures.stream().map(CompletableFuture::join).filter(Objects::nonNull).toList();
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * 在海報同時下載數的限制內執行下載
+	 *
+	 * @param download 實際下載海報的程式
+	 * @return 圖片內容；被中斷時回傳 null
+	 */
+	public byte[] withPosterPermit(Supplier<byte[]> download) {
+		try {
+			posterPermits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		try {
+			return download.get();
+		} finally {
+			posterPermits.release();
+		}
+	}
+
+	/**
+	 * 每個任務一個虛擬執行緒 (Java 21 以上)；在較舊的 JVM 上改用固定大小的執行緒池，
+	 * 實際的並行數仍由 TmdbRateLimiter 與海報下載名額決定。
+	 */
+	private static ExecutorService newIngestionExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newFixedThreadPool(FALLBACK_POOL_SIZE);
+		}
+	}
+
+	/**
+	 * 詳細資料與海報兩個階段同時進行，兩者都完成後交給寫入端。海報下載失敗不影響匯入 (與原本的行為相同)。
+	 */
+	private CompletableFuture<Void> fetchMovie(int page, TMDBMoviePojo movie, Predicate<TMDBMoviePojo> needsPoster,
+			ExecutorService executor, BlockingQueue<StageEvent> events) {
+		CompletableFuture<Boolean> details = CompletableFuture
+				.supplyAsync(() -> fetchTMDBDataUtil.fetchMovieDetails(movie), executor);
+		CompletableFuture<byte[]> poster = movie.getPosterPath() == null || !needsPoster.test(movie)
+				? CompletableFuture.completedFuture(null)
+				: CompletableFuture.supplyAsync(
+						() -> withPosterPermit(() -> fetchTMDBDataUtil.downloadPoster(movie.getPosterPath())), executor);
+		return details.thenCombine(poster, (success, posterImage) -> {
+			movie.setPosterImage(posterImage);
+			return success;
+		}).handle((success, e) -> {
+			events.add(new StageEvent(page, movie, e == null && Boolean.TRUE.equals(success), 0));
+			return null;
+		});
+	}
+
+	private int flush(List<StageEvent> buffer, Consumer<List<TMDBMoviePojo>> sink, Checkpoint checkpoint,
+			Map<Integer, Integer> remainingByPage, Set<Integer> failedPages) {
+		if (buffer.isEmpty()) {
+			return 0;
+		}
+		sink.accept(buffer.stream().map(StageEvent::movie).toList());
+		for (StageEvent event : buffer) {
+			checkpoint.getCompletedMovieIds().add(event.movie().getTmdbMovieId());
+			markMovieDone(event.page(), remainingByPage, failedPages, checkpoint.getCompletedPages());
+		}
+		checkpointStore.save(checkpoint);
+		int count = buffer.size();
+		buffer.clear();
+		System.out.printf("(Engine) 已寫入 %d 部電影，已完成 %d / %d 頁\n", checkpoint.getCompletedMovieIds().size(),
+				checkpoint.getCompletedPages().size(), checkpoint.getTotalPages());
+		return count;
+	}
+
+	/**
+	 * 該頁的電影全部處理完且沒有失敗時，將該頁標記為完成
+	 */
+	private static void markMovieDone(int page, Map<Integer, Integer> remainingByPage, Set<Integer> failedPages,
+			Set<Integer> completedPages) {
+		int remaining = remainingByPage.merge(page, -1, Integer::sum);
+		if (remaining == 0 && !failedPages.contains(page)) {
+			completedPages.add(page);
+		}
+	}
+}
@@ -1,13 +1,21 @@
 package com.flux.movieproject.service.movie;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.flux.movieproject.model.entity.movie.TMDBActor;
 import com.flux.movieproject.model.entity.movie.TMDBDirector;
@@ -29,6 +37,7 @@ import com.flux.movieproject.repository.movie.TMDBMovieActorRepository;
 import com.flux.movieproject.repository.movie.TMDBMovieDirectorRepository;
 import com.flux.movieproject.repository.movie.TMDBMovieGenreRepository;
 import com.flux.movieproject.repository.movie.TMDBMovieRepository;
+import com.flux.movieproject.service.movie.TmdbIngestionEngine.IngestionReport;
 import com.flux.movieproject.utils.FetchTMDBDataUtil;
 
 import jakarta.annotation.PostConstruct;
@@ -60,6 +69,10 @@ public class TmdbUtilImportService {
 	// 注入我們信賴的資料抓取工具類
 	@Autowired
 	private FetchTMDBDataUtil fetchTMDBDataUtil;
+	@Autowired
+	private TmdbIngestionEngine tmdbIngestionEngine;
+	@Autowired
+	private TransactionTemplate transactionTemplate;
 
 	// 用來緩存類型ID與名稱的對照表，避免重複查詢API
 	private Map<Integer, String> genreMap;
@@ -71,30 +84,96 @@ public class TmdbUtilImportService {
 	@PostConstruct
 	public void init() {
 		System.out.println("正在初始化電影類型對照表...");
-		this.genreMap = FetchTMDBDataUtil.fetchGenresMap();
+		this.genreMap = fetchTMDBDataUtil.fetchGenresMap();
 		System.out.println("電影類型對照表初始化完成！");
 	}
 
 	/**
-	 * 執行電影批次匯入的主方法。 整個方法由 @Transactional 包裹，確保所有資料庫操作要麼全部成功，要麼全部失敗回滾，保證資料一致性。
+	 * 執行電影批次匯入的主方法。
+	 * 抓取資料交給 TmdbIngestionEngine 同時進行；每收到一批補全好的電影就在一個交易中寫入資料庫，
+	 * 不會在等待網路回應時佔住資料庫連線，中斷後以相同區間重新執行會從上次寫入的地方繼續。
 	 * 
 	 * @param startDate 匯入的起始日期
 	 * @param endDate   匯入的結束日期
+	 * @return 匯入結果
 	 */
-	@Transactional
-	public void importMoviesUsingUtility(LocalDate startDate, LocalDate endDate) {
-		// 1. 呼叫工具類，獲取經過完整處理的原始 POJO 數據列表
-		List<TMDBMoviePojo> pojoList = fetchTMDBDataUtil.fetchMovies(startDate, endDate);
-		if (pojoList == null || pojoList.isEmpty()) {
+	public IngestionReport importMoviesUsingUtility(LocalDate startDate, LocalDate endDate) {
+		// 海報路徑與資料庫相同且已有海報時不重新下載
+		Map<Integer, SyncState> syncStates = findAllSyncStates();
+		IngestionReport report = tmdbIngestionEngine.ingestDiscover(startDate, endDate,
+				movie -> needsPoster(movie, syncStates.get(movie.getTmdbMovieId())), this::saveMovies);
+		if (report.imported() == 0 && report.resumed() == 0) {
 			System.out.println("Service: 工具類未回傳任何電影資料，任務結束。");
-			return;
+		} else {
+			System.out.println("Service: 所有電影資料及關聯已透過工具類成功匯入資料庫！");
 		}
+		return report;
+	}
 
-		System.out.printf("Service: 工具類成功抓取 %d 部電影，開始轉換並存入資料庫...\n", pojoList.size());
+	/**
+	 * 資料庫中一部電影的同步狀態
+	 *
+	 * @param contentHash  上次寫入時的內容雜湊
+	 * @param posterPath   上次寫入時的 TMDB 海報路徑
+	 * @param hasPoster    是否已有海報圖片
+	 * @param lastSyncTime 最後一次與 TMDB 同步的時間
+	 */
+	public record SyncState(String contentHash, String posterPath, boolean hasPoster, LocalDateTime lastSyncTime) {
+	}
+
+	/**
+	 * 查詢所有電影的同步狀態 (不載入海報)
+	 *
+	 * @return key 為 TMDB 電影 ID
+	 */
+	public Map<Integer, SyncState> findAllSyncStates() {
+		return toSyncStates(tmdbMovieRepository.findAllSyncStates());
+	}
+
+	/**
+	 * 是否需要下載海報：新電影、海報路徑有變動，或資料庫中還沒有海報
+	 */
+	public static boolean needsPoster(TMDBMoviePojo movie, SyncState state) {
+		return state == null || !state.hasPoster() || !Objects.equals(state.posterPath(), movie.getPosterPath());
+	}
+
+	/**
+	 * 在一個交易中將一批電影寫入資料庫。內容雜湊與資料庫相同、也沒有新海報的電影只更新同步時間，
+	 * 不會重寫電影資料，也不會重建導演、演員與類型的關聯。
+	 *
+	 * @param pojoList 已補全詳細資料的電影 (不需要更換海報的電影 posterImage 為 null)
+	 * @return 實際寫入的電影數
+	 */
+	public int saveMovies(List<TMDBMoviePojo> pojoList) {
+		Integer written = transactionTemplate.execute(status -> saveChangedMovies(pojoList));
+		return written != null ? written : 0;
+	}
 
-		// 2. 遍歷從API抓回來的POJO列表，逐一處理
+	/**
+	 * 將一批 POJO 轉換並存入資料庫 (須在交易中呼叫)
+	 * 
+	 * @param pojoList 已補全詳細資料的電影
+	 * @return 實際寫入的電影數
+	 */
+	private int saveChangedMovies(List<TMDBMoviePojo> pojoList) {
+		LocalDateTime now = LocalDateTime.now();
+		Map<Integer, SyncState> syncStates = toSyncStates(tmdbMovieRepository
+				.findSyncStatesByIds(pojoList.stream().map(TMDBMoviePojo::getTmdbMovieId).toList()));
+		List<Integer> unchangedIds = new ArrayList<>();
+		int written = 0;
+
+		// 遍歷從API抓回來的POJO列表，逐一處理
 		for (TMDBMoviePojo pojo : pojoList) {
-			// 3. "查找或創建"電影實體：嘗試用ID從資料庫找，如果找不到(orElseGet)，就創建一個新的
+			// 0. 內容沒有變動且沒有新海報時，只更新同步時間
+			String contentHash = contentHash(pojo);
+			SyncState state = syncStates.get(pojo.getTmdbMovieId());
+			boolean contentChanged = state == null || !contentHash.equals(state.contentHash());
+			if (!contentChanged && pojo.getPosterImage() == null) {
+				unchangedIds.add(pojo.getTmdbMovieId());
+				continue;
+			}
+
+			// 1. "查找或創建"電影實體：嘗試用ID從資料庫找，如果找不到(orElseGet)，就創建一個新的
 			TMDBMovie entity = tmdbMovieRepository.findById(pojo.getTmdbMovieId()).orElseGet(() -> {
 				TMDBMovie newEntity = new TMDBMovie();
 				newEntity.setTmdbMovieId(pojo.getTmdbMovieId());
@@ -102,19 +181,73 @@ public class TmdbUtilImportService {
 				return newEntity;
 			});
 
-			// 4. 將 POJO 的資料映射到 Entity 上
+			// 2. 將 POJO 的資料映射到 Entity 上
 			mapPojoToEntity(pojo, entity);
+			entity.setContentHash(contentHash);
+			entity.setLastSyncTime(now);
 
-			// 5. 先儲存電影本身，確保它在資料庫中存在，這樣後續才能建立關聯
+			// 3. 先儲存電影本身，確保它在資料庫中存在，這樣後續才能建立關聯
 			tmdbMovieRepository.save(entity);
+			written++;
+
+			// 4. 分別處理電影的關聯資料（導演、演員、類型），只有海報更新時不必重建
+			if (contentChanged) {
+				handleDirectors(entity, pojo.getDirectors());
+				handleActors(entity, pojo.getActors());
+				handleGenres(entity, pojo.getGenreIds());
+			}
+		}
 
-			// 6. 分別處理電影的關聯資料（導演、演員、類型）
-			handleDirectors(entity, pojo.getDirectors());
-			handleActors(entity, pojo.getActors());
-			handleGenres(entity, pojo.getGenreIds());
+		if (!unchangedIds.isEmpty()) {
+			tmdbMovieRepository.updateLastSyncTime(unchangedIds, now);
 		}
+		return written;
+	}
 
-		System.out.println("Service: 所有電影資料及關聯已透過工具類成功匯入資料庫！");
+	/**
+	 * 電影內容的 SHA-256 雜湊，涵蓋會寫入資料庫的欄位與導演、演員、類型。
+	 * 熱門度與評分幾乎每天都會變動，不列入雜湊，只在電影有其他變動時一併更新。
+	 */
+	static String contentHash(TMDBMoviePojo pojo) {
+		StringBuilder content = new StringBuilder();
+		content.append(pojo.getTitleLocal()).append('\u0001')
+				.append(pojo.getTitleEnglish()).append('\u0001')
+				.append(pojo.getReleaseDate()).append('\u0001')
+				.append(pojo.getCertification()).append('\u0001')
+				.append(pojo.getOverview()).append('\u0001')
+				.append(pojo.getTrailerUrl()).append('\u0001')
+				.append(pojo.getDurationMinutes()).append('\u0001')
+				.append(pojo.getOriginalLanguage()).append('\u0001')
+				.append(pojo.getPosterPath()).append('\u0001');
+		if (pojo.getGenreIds() != null) {
+			pojo.getGenreIds().stream().sorted().forEach(id -> content.append(id).append(','));
+		}
+		content.append('\u0001');
+		if (pojo.getDirectors() != null) {
+			pojo.getDirectors().stream().sorted(Comparator.comparing(TMDBDirectorPojo::getId))
+					.forEach(director -> content.append(director.getId()).append(':').append(director.getName()).append(','));
+		}
+		content.append('\u0001');
+		if (pojo.getActors() != null) {
+			pojo.getActors().stream().sorted(Comparator.comparing(TMDBActorPojo::getOrder).thenComparing(TMDBActorPojo::getId))
+					.forEach(actor -> content.append(actor.getId()).append(':').append(actor.getName()).append(':')
+							.append(actor.getCharacter()).append(':').append(actor.getOrder()).append(','));
+		}
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(digest.digest(content.toString().getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("JVM 不支援 SHA-256", e);
+		}
+	}
+
+	private static Map<Integer, SyncState> toSyncStates(List<Object[]> rows) {
+		Map<Integer, SyncState> states = new HashMap<>();
+		for (Object[] row : rows) {
+			states.put((Integer) row[0],
+					new SyncState((String) row[1], (String) row[2], Boolean.TRUE.equals(row[3]), (LocalDateTime) row[4]));
+		}
+		return states;
 	}
 
 	/**
@@ -129,7 +262,11 @@ public class TmdbUtilImportService {
 		entity.setReleaseDate(pojo.getReleaseDate());
 		entity.setOverview(pojo.getOverview());
 		entity.setCertification(pojo.getCertification());
-		entity.setPosterImage(pojo.getPosterImage());
+		// 沒有重新下載海報 (路徑相同) 時保留原本的海報
+		if (pojo.getPosterImage() != null) {
+			entity.setPosterImage(pojo.getPosterImage());
+		}
+		entity.setPosterPath(pojo.getPosterPath());
 		entity.setDurationMinutes(pojo.getDurationMinutes());
 		entity.setTrailerUrl(pojo.getTrailerUrl());
 		entity.setOriginalLanguage(pojo.getOriginalLanguage());
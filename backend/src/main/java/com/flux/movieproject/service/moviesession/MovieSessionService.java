@@ -13,6 +13,7 @@ import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.flux.movieproject.enums.MovieSessionStatus;
 import com.flux.movieproject.enums.SeatStatus;
@@ -36,6 +37,7 @@ import com.flux.movieproject.repository.movie.MovieRepository;
 import com.flux.movieproject.repository.moviesession.MovieSessionRepository;
 import com.flux.movieproject.repository.theater.TheaterRepository;
 import com.flux.movieproject.repository.ticket.SessionSeatRepository;
+import com.flux.movieproject.service.ticket.SeatStateEngine;
 import com.flux.movieproject.utils.DateProcessUtil;
 
 import jakarta.persistence.EntityNotFoundException;
@@ -51,6 +53,12 @@ public class MovieSessionService {
 	private TheaterRepository theaterRepo;
 	@Autowired
 	private SessionSeatRepository sessionSeatRepo;
+	@Autowired
+	private SeatStateEngine seatStateEngine;
+	@Autowired
+	private SeatStatusBroadcaster seatStatusBroadcaster;
+	@Autowired
+	private ShowtimeAvailabilityService showtimeAvailabilityService;
 
 	private Map<LocalDate, List<MovieSession>> getGroupedSessionsByMonth(Integer year, Integer month) {
 		LocalDate firstDayOfMonth = LocalDate.of(year, month, 1);
@@ -265,6 +273,8 @@ public class MovieSessionService {
 			}
 			sessionSeatRepo.deleteByMovieSessionIn(sessionsToDelete);
 			movieSessionRepo.deleteAllInBatch(sessionsToDelete);
+			// 同步移除記憶體中已刪除場次的座位點陣圖
+			sessionsToDelete.forEach(session -> seatStateEngine.evict(session.getSessionId()));
 		}
 
 		// 步驟 4: 批次化處理新增
@@ -308,6 +318,8 @@ public class MovieSessionService {
 				List<Integer> newSessionIds = savedNewSessions.stream().map(MovieSession::getSessionId)
 						.collect(Collectors.toList());
 				sessionSeatRepo.bulkCreateSessionSeatsForNewSessions(newSessionIds);
+				// 為新場次建立座位統計
+				showtimeAvailabilityService.initializeCounters(newSessionIds);
 			}
 		}
 	}
@@ -385,8 +397,21 @@ public class MovieSessionService {
 		return new SessionSeatLayoutDTO(sessionInfo, seats);
 	}
 	
+	/**
+	 * 訂閱場次座位圖的即時異動。 連線建立後先推送一次完整座位圖，之後只推送狀態有變化的座位。
+	 * 
+	 * @param sessionId 場次識別碼
+	 * @return 維持連線的 SseEmitter
+	 */
+	public SseEmitter subscribeSessionSeatStatus(Integer sessionId) {
+		// 確保座位狀態引擎已載入此場次，之後的釋放才能推播到這個場次
+		seatStateEngine.track(sessionId);
+		return seatStatusBroadcaster.subscribe(sessionId, () -> getSessionSeatLayout(sessionId));
+	}
+
 	/**
      * 專為 MovieShowtimes.vue 設計的主服務方法。
+     * 座位數直接讀取場次上維護的統計欄位，不再載入任何 SessionSeat。
      */
     public List<ShowtimeDTO> findShowtimesWithSeatStatus(Integer movieId) {
         
@@ -401,39 +426,32 @@ public class MovieSessionService {
             return new ArrayList<>();
         }
 
-        // 根據第一查的結果，去抓取所有相關的 SessionSeat 集合
-        // Hibernate 會自動將查出來的 SessionSeat "塞回" sessions 列表裡對應的物件中。
-        movieSessionRepo.findSessionSeatsForSessions(sessions);
+        // 尚未建立統計的場次 (例如校正任務還沒跑過)，改用一次彙總查詢補上
+        List<Integer> uncountedSessionIds = sessions.stream()
+                .filter(session -> session.getSellableSeats() == null || session.getAvailableSeats() == null)
+                .map(MovieSession::getSessionId)
+                .collect(Collectors.toList());
+        Map<Integer, long[]> fallbackCounts = showtimeAvailabilityService.countSeats(uncountedSessionIds);
 
-        // --- 處理數據 ---
-        // 此時的 sessions 列表中的每個 MovieSession 物件都已經填滿了 sessionSeats 集合
         return sessions.stream()
-                .map(this::convertToDTOWithSeatCount)
+                .map(session -> convertToDTOWithSeatCount(session, fallbackCounts))
                 .collect(Collectors.toList());
     }
 
     /**
-     * 輔助方法：(此方法無需修改)
-     * 將單一 MovieSession Entity 轉換為 ShowtimeDTO，並執行「座位計算」。
+     * 輔助方法：將單一 MovieSession Entity 轉換為 ShowtimeDTO，座位數取自場次的統計欄位。
      */
-private ShowtimeDTO convertToDTOWithSeatCount(MovieSession session) {
-        
-        // 【修改點 1】重新計算「可售總座位數」
-        long sellableTotalSeats = session.getSessionSeats().stream()
-                .filter(sessionSeat -> 
-                    sessionSeat.getSeat() != null && 
-                    !"友善座位".equals(sessionSeat.getSeat().getSeatType()) 
-                )
-                .count();
-
-        // 【修改點 2】重新計算「實際可售座位數」
-        long availableSeats = session.getSessionSeats().stream()
-                .filter(sessionSeat -> 
-                    sessionSeat.getSeat() != null &&
-                    SeatStatus.AVAILABLE.equals(sessionSeat.getStatus()) &&      // 條件一：狀態為可售
-                    !"友善座位".equals(sessionSeat.getSeat().getSeatType())       // 條件二：類型不為 "友善座位"
-                )
-                .count();
+    private ShowtimeDTO convertToDTOWithSeatCount(MovieSession session, Map<Integer, long[]> fallbackCounts) {
+        long sellableTotalSeats;
+        long availableSeats;
+        if (session.getSellableSeats() != null && session.getAvailableSeats() != null) {
+            sellableTotalSeats = session.getSellableSeats();
+            availableSeats = session.getAvailableSeats();
+        } else {
+            long[] counts = fallbackCounts.getOrDefault(session.getSessionId(), new long[] { 0, 0 });
+            sellableTotalSeats = counts[0];
+            availableSeats = counts[1];
+        }
 
         // 組裝成前端需要的 DTO 物件
         return new ShowtimeDTO(
@@ -445,9 +463,6 @@ private ShowtimeDTO convertToDTOWithSeatCount(MovieSession session) {
                 availableSeats
         );
     }
-	
-	
-	
 
 	/**
 	 * 輔助方法：將單一的 SessionSeat Entity 轉換為 SessionSeatStatusDTO。
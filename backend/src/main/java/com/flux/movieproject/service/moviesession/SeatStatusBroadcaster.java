@@ -0,0 +1,290 @@
+package com.flux.movieproject.service.moviesession;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.flux.movieproject.enums.SeatStatus;
+import com.flux.movieproject.model.dto.moviesession.viewseats.SessionSeatDeltaDTO;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 座位圖即時推播 (Server-Sent Events)。
+ * 每個場次維護一組訂閱者，訂閱時先送出一次完整座位圖 (snapshot 事件)，
+ * 之後座位狀態有異動時只推送增量 (delta 事件)，前端不需要再輪詢座位圖 API。
+ * 推播只把事件排入各連線的待送佇列，實際寫入連線由固定大小的推播執行緒處理，
+ * 訂位交易提交後的回呼不會因某個連線寫入緩慢而被拖住；待送事件過多、寫入逾時或寫入失敗的連線直接關閉。
+ */
+@Component
+public class SeatStatusBroadcaster {
+
+	@Value("${seat.stream.timeout-minutes:30}")
+	private long timeoutMinutes;
+	@Value("${seat.stream.push-threads:4}")
+	private int pushThreads;
+	@Value("${seat.stream.push-queue-capacity:1000}")
+	private int pushQueueCapacity;
+	// 單一連線待送的事件上限，超過表示用戶端讀取太慢
+	@Value("${seat.stream.max-pending-events:100}")
+	private int maxPendingEvents;
+	// 單一事件寫入連線的時間上限，由心跳檢查
+	@Value("${seat.stream.send-timeout-seconds:10}")
+	private long sendTimeoutSeconds;
+
+	private final Map<Integer, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+	private ThreadPoolExecutor pushExecutor;
+
+	@PostConstruct
+	public void init() {
+		AtomicInteger threadCount = new AtomicInteger();
+		// 佇列滿時直接拒絕 (AbortPolicy)，該連線關閉，不讓呼叫端的執行緒代為寫入
+		pushExecutor = new ThreadPoolExecutor(pushThreads, pushThreads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(pushQueueCapacity), runnable -> {
+					Thread thread = new Thread(runnable, "seat-stream-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		pushExecutor.shutdownNow();
+	}
+
+	/**
+	 * 訂閱某場次的座位狀態。 先註冊訂閱者再讀取完整座位圖，讀取期間發生的異動會先暫存，等完整座位圖送出後再補送，避免遺漏。
+	 *
+	 * @param sessionId 場次 ID
+	 * @param snapshot  取得完整座位圖的方法
+	 * @return 交給 Spring MVC 維持連線的 SseEmitter
+	 */
+	public SseEmitter subscribe(Integer sessionId, Supplier<Object> snapshot) {
+		SseEmitter emitter = new SseEmitter(timeoutMinutes * 60_000);
+		Subscriber subscriber = new Subscriber(sessionId, emitter);
+
+		List<Subscriber> sessionSubscribers = subscribers.computeIfAbsent(sessionId,
+				id -> new CopyOnWriteArrayList<>());
+		sessionSubscribers.add(subscriber);
+
+		emitter.onCompletion(subscriber::discard);
+		emitter.onTimeout(subscriber::discard);
+		emitter.onError(e -> subscriber.discard());
+
+		try {
+			subscriber.start(SseEmitter.event().name("snapshot").data(snapshot.get()));
+		} catch (RuntimeException e) {
+			subscriber.discard();
+			throw e;
+		}
+		return emitter;
+	}
+
+	/**
+	 * 場次是否有人正在看座位圖
+	 */
+	public boolean hasSubscribers(Integer sessionId) {
+		List<Subscriber> sessionSubscribers = subscribers.get(sessionId);
+		return sessionSubscribers != null && !sessionSubscribers.isEmpty();
+	}
+
+	/**
+	 * 推送座位狀態異動給該場次的所有訂閱者 (只排入待送佇列，不等待寫入)
+	 *
+	 * @param sessionId      場次 ID
+	 * @param sessionSeatIds 狀態改變的座位
+	 * @param status         新狀態
+	 */
+	public void publish(Integer sessionId, Collection<Integer> sessionSeatIds, SeatStatus status) {
+		List<Subscriber> sessionSubscribers = subscribers.get(sessionId);
+		if (sessionSubscribers == null || sessionSubscribers.isEmpty() || sessionSeatIds.isEmpty()) {
+			return;
+		}
+		List<SessionSeatDeltaDTO> deltas = new ArrayList<>(sessionSeatIds.size());
+		for (Integer sessionSeatId : sessionSeatIds) {
+			deltas.add(new SessionSeatDeltaDTO(sessionSeatId, status.name()));
+		}
+		// SseEventBuilder 送出時會被修改，每個連線各建一個
+		for (Subscriber subscriber : sessionSubscribers) {
+			subscriber.enqueue(SseEmitter.event().name("delta").data(deltas));
+		}
+	}
+
+	/**
+	 * 定時送出心跳，維持連線並清除已斷線或寫入逾時的訂閱者
+	 */
+	@Scheduled(fixedRate = 20000) // 每 20 秒執行一次
+	public void heartbeat() {
+		long sendTimeoutNanos = TimeUnit.SECONDS.toNanos(sendTimeoutSeconds);
+		subscribers.forEach((sessionId, sessionSubscribers) -> {
+			for (Subscriber subscriber : sessionSubscribers) {
+				if (subscriber.isStalled(sendTimeoutNanos)) {
+					subscriber.close(new IllegalStateException("座位推播寫入逾時"));
+				} else {
+					subscriber.enqueue(SseEmitter.event().comment("heartbeat"));
+				}
+			}
+		});
+	}
+
+	private void unsubscribe(Integer sessionId, Subscriber subscriber) {
+		subscribers.computeIfPresent(sessionId, (id, sessionSubscribers) -> {
+			sessionSubscribers.remove(subscriber);
+			return sessionSubscribers.isEmpty() ? null : sessionSubscribers;
+		});
+	}
+
+	/**
+	 * 單一連線。事件依序排入待送佇列，同一時間最多只有一個推播執行緒寫入 (SseEmitter 不允許多執行緒同時寫入)。
+	 */
+	private class Subscriber {
+		private final Integer sessionId;
+		private final SseEmitter emitter;
+		// 待送的事件，以下欄位都在此物件上同步
+		private final Deque<SseEmitter.SseEventBuilder> pending = new ArrayDeque<>();
+		// 完整座位圖排入前收到的異動先暫存，不開始寫入
+		private boolean started;
+		private boolean draining;
+		private boolean closed;
+		// 寫入中被關閉時，由寫入的執行緒在寫完後結束連線
+		private Throwable closeCause;
+		// 目前事件開始寫入的時間 (System.nanoTime)，沒有在寫入時為 0
+		private volatile long sendStartedAt;
+
+		Subscriber(Integer sessionId, SseEmitter emitter) {
+			this.sessionId = sessionId;
+			this.emitter = emitter;
+		}
+
+		/**
+		 * 排入完整座位圖 (排在暫存的異動之前)，開始寫入
+		 */
+		synchronized void start(SseEmitter.SseEventBuilder snapshot) {
+			if (closed) {
+				return;
+			}
+			pending.addFirst(snapshot);
+			started = true;
+			scheduleDrain();
+		}
+
+		synchronized void enqueue(SseEmitter.SseEventBuilder event) {
+			if (closed) {
+				return;
+			}
+			if (pending.size() >= maxPendingEvents) {
+				close(new IllegalStateException("座位推播待送事件過多"));
+				return;
+			}
+			pending.addLast(event);
+			if (started) {
+				scheduleDrain();
+			}
+		}
+
+		boolean isStalled(long sendTimeoutNanos) {
+			long startedAt = sendStartedAt;
+			return startedAt != 0 && System.nanoTime() - startedAt > sendTimeoutNanos;
+		}
+
+		/**
+		 * 關閉連線並移除訂閱。正在寫入時交給寫入的執行緒結束連線，呼叫端不必等待 SseEmitter 的鎖
+		 */
+		void close(Throwable cause) {
+			boolean completeNow;
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+				closed = true;
+				pending.clear();
+				completeNow = !draining;
+				if (!completeNow) {
+					closeCause = cause;
+				}
+			}
+			unsubscribe(sessionId, this);
+			if (completeNow) {
+				emitter.completeWithError(cause);
+			}
+		}
+
+		/**
+		 * 移除訂閱，不再送出任何事件 (連線已由 Spring MVC 結束時呼叫)
+		 */
+		void discard() {
+			synchronized (this) {
+				closed = true;
+				pending.clear();
+			}
+			unsubscribe(sessionId, this);
+		}
+
+		private void scheduleDrain() {
+			if (draining) {
+				return;
+			}
+			draining = true;
+			try {
+				pushExecutor.execute(this::drain);
+			} catch (RejectedExecutionException e) {
+				draining = false;
+				close(e);
+			}
+		}
+
+		/**
+		 * 在推播執行緒上依序寫入待送的事件，寫入期間不持有鎖，不影響其他執行緒排入事件
+		 */
+		private void drain() {
+			while (true) {
+				SseEmitter.SseEventBuilder event;
+				Throwable cause;
+				synchronized (this) {
+					event = closed ? null : pending.pollFirst();
+					cause = closeCause;
+					if (event == null) {
+						draining = false;
+						closeCause = null;
+					}
+				}
+				if (event == null) {
+					if (cause != null) {
+						emitter.completeWithError(cause);
+					}
+					return;
+				}
+				sendStartedAt = System.nanoTime();
+				try {
+					emitter.send(event);
+				} catch (IOException | IllegalStateException e) {
+					synchronized (this) {
+						draining = false;
+					}
+					close(e);
+					return;
+				} finally {
+					sendStartedAt = 0;
+				}
+			}
+		}
+	}
+}
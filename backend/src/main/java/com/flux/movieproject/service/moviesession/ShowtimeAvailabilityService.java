@@ -0,0 +1,177 @@
+package com.flux.movieproject.service.moviesession;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.flux.movieproject.repository.moviesession.MovieSessionRepository;
+import com.flux.movieproject.repository.ticket.SessionSeatRepository;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 維護每個場次的座位統計 (movie_session.sellable_seats / available_seats)。
+ * 座位被預訂或釋放時，交易提交後才將增減數累加到記憶體中 (依場次分開累加)，定期合併寫回，
+ * 訂位交易不會因更新同一列 movie_session 而互相等待；
+ * 定時任務再依 session_seat 的實際狀態重新計算，校正任何誤差；寫回與重新計算互斥，同一筆增減數不會被計入兩次。
+ * 場次列表因此只需讀取場次本身，不必載入任何座位。
+ */
+@Service
+@Transactional
+public class ShowtimeAvailabilityService {
+
+	/**
+	 * 不計入可售座位的座位類型
+	 */
+	public static final String ACCESSIBLE_SEAT_TYPE = "友善座位";
+
+	@Autowired
+	private MovieSessionRepository movieSessionRepo;
+	@Autowired
+	private SessionSeatRepository sessionSeatRepo;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	// 場次 ID -> 尚未寫回的可購買座位增減數；重新計算時整份替換
+	private volatile Map<Integer, Integer> pendingDeltas = new ConcurrentHashMap<>();
+	// 寫回與重新計算互斥，持有到交易結束
+	private final Object counterLock = new Object();
+	private TransactionTemplate transaction;
+
+	@PostConstruct
+	public void init() {
+		transaction = new TransactionTemplate(transactionManager);
+	}
+
+	/**
+	 * 座位由 AVAILABLE 變為已預訂時呼叫
+	 *
+	 * @param sessionSeatIds 被預訂的 SessionSeat ID
+	 */
+	public void onSeatsReserved(List<Integer> sessionSeatIds) {
+		adjust(sessionSeatIds, -1);
+	}
+
+	/**
+	 * 座位被釋放回 AVAILABLE 時呼叫
+	 *
+	 * @param sessionSeatIds 被釋放的 SessionSeat ID
+	 */
+	public void onSeatsReleased(List<Integer> sessionSeatIds) {
+		adjust(sessionSeatIds, 1);
+	}
+
+	/**
+	 * 為新建立的場次計算座位統計
+	 *
+	 * @param sessionIds 場次 ID 列表
+	 */
+	public void initializeCounters(List<Integer> sessionIds) {
+		if (!sessionIds.isEmpty()) {
+			movieSessionRepo.reconcileSeatCountersForSessions(sessionIds, ACCESSIBLE_SEAT_TYPE);
+		}
+	}
+
+	/**
+	 * 定時校正尚未結束場次的座位統計。 應用程式啟動後會立即執行一次，順便補齊新增欄位前就存在的場次。
+	 */
+	@Scheduled(fixedRate = 600000) // 每 10 分鐘執行一次
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public void reconcileUpcomingSessions() {
+		synchronized (counterLock) {
+			// 增減數在座位異動提交後才累加，替換前累加的都已提交，會被重新計算包含，可以捨棄；
+			// 替換後才累加的留給下次寫回
+			Map<Integer, Integer> recorded = pendingDeltas;
+			pendingDeltas = new ConcurrentHashMap<>();
+			try {
+				transaction.executeWithoutResult(status -> movieSessionRepo
+						.reconcileSeatCountersEndingAfter(LocalDateTime.now(), ACCESSIBLE_SEAT_TYPE));
+			} catch (RuntimeException e) {
+				// 沒有重新計算，捨棄的增減數放回
+				recorded.forEach(this::addPending);
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * 定期將累加的增減數寫回，每個場次一個 UPDATE。寫回失敗時增減數放回，下次再寫
+	 */
+	@Scheduled(fixedDelayString = "${showtime.availability.flush-interval-ms:1000}")
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public void flushPendingDeltas() {
+		synchronized (counterLock) {
+			Map<Integer, Integer> current = pendingDeltas;
+			Map<Integer, Integer> drained = new HashMap<>();
+			for (Integer sessionId : current.keySet()) {
+				Integer delta = current.remove(sessionId);
+				if (delta != null) {
+					drained.put(sessionId, delta);
+				}
+			}
+			if (drained.isEmpty()) {
+				return;
+			}
+			try {
+				transaction.executeWithoutResult(status -> drained.forEach(movieSessionRepo::adjustAvailableSeats));
+			} catch (RuntimeException e) {
+				drained.forEach(this::addPending);
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * 直接以彙總查詢計算尚未建立計數器的場次 (唯讀，不寫回資料庫)
+	 *
+	 * @param sessionIds 場次 ID 列表
+	 * @return key 為場次 ID，value 為 [可售座位總數, 可購買座位數]
+	 */
+	@Transactional(readOnly = true)
+	public Map<Integer, long[]> countSeats(List<Integer> sessionIds) {
+		Map<Integer, long[]> counts = new HashMap<>();
+		if (sessionIds.isEmpty()) {
+			return counts;
+		}
+		for (Object[] row : movieSessionRepo.countSeatsBySessionIds(sessionIds, ACCESSIBLE_SEAT_TYPE)) {
+			counts.put((Integer) row[0], new long[] { ((Number) row[1]).longValue(), ((Number) row[2]).longValue() });
+		}
+		return counts;
+	}
+
+	private void adjust(List<Integer> sessionSeatIds, int sign) {
+		if (sessionSeatIds == null || sessionSeatIds.isEmpty()) {
+			return;
+		}
+		Map<Integer, Integer> deltas = new HashMap<>();
+		for (Object[] row : sessionSeatRepo.countSellableSeatsBySession(sessionSeatIds, ACCESSIBLE_SEAT_TYPE)) {
+			deltas.put((Integer) row[0], sign * ((Number) row[1]).intValue());
+		}
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			deltas.forEach(this::addPending);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				deltas.forEach(ShowtimeAvailabilityService.this::addPending);
+			}
+		});
+	}
+
+	private void addPending(Integer sessionId, Integer delta) {
+		pendingDeltas.merge(sessionId, delta, (current, added) -> current + added == 0 ? null : current + added);
+	}
+}
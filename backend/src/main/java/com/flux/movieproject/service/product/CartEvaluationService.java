@@ -0,0 +1,137 @@
+package com.flux.movieproject.service.product;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.flux.movieproject.model.dto.product.cart.CartCouponEvaluationDTO;
+import com.flux.movieproject.model.dto.product.cart.CartEvaluationDTO;
+import com.flux.movieproject.model.dto.product.cart.CartEvaluationRequestDTO;
+import com.flux.movieproject.model.dto.product.cart.CartLineEvaluationDTO;
+import com.flux.movieproject.model.dto.product.cart.CartOptionDTO;
+import com.flux.movieproject.model.entity.event.Coupon;
+import com.flux.movieproject.model.entity.member.MemberCoupon;
+import com.flux.movieproject.model.entity.product.Product;
+import com.flux.movieproject.model.entity.product.ProductOptionalPrice;
+import com.flux.movieproject.repository.member.MemberCouponRepository;
+import com.flux.movieproject.repository.product.ProductOptionalPriceRepository;
+import com.flux.movieproject.repository.product.ProductRepository;
+
+/**
+ * 結帳頁的購物車試算：一次回傳各商品的小計、加價選項、庫存是否足夠、會員可用的優惠券與應付金額。
+ * 購物車取自 CartStore，商品、加價選項與會員的優惠券各以一個查詢取得，不逐筆延遲載入；
+ * 金額的計算方式與 ProductOrderService.createOrder 相同 (以商品目前的售價計算)，試算結果即為下單時的金額。
+ * 試算不會預留庫存，下單時仍以 ProductStockService 扣除庫存為準。
+ */
+@Service
+public class CartEvaluationService {
+
+	@Autowired
+	private CartStore cartStore;
+	@Autowired
+	private ProductRepository productRepository;
+	@Autowired
+	private ProductOptionalPriceRepository optionalPriceRepository;
+	@Autowired
+	private MemberCouponRepository memberCouponRepository;
+
+	/**
+	 * 試算會員目前的購物車
+	 *
+	 * @param request 選擇的加價選項與優惠券，可為 null
+	 */
+	@Transactional(readOnly = true)
+	public CartEvaluationDTO evaluate(int memberId, CartEvaluationRequestDTO request) {
+		Map<Integer, Integer> selectedOptions = request != null && request.options() != null
+				? request.options() : Map.of();
+		Integer requestedCouponId = request != null ? request.couponId() : null;
+
+		CartStore.Snapshot cart = cartStore.get(memberId);
+		Set<Integer> productIds = cart.items().stream()
+				.map(CartStore.Item::productId)
+				.collect(Collectors.toSet());
+
+		Map<Integer, Product> products = productIds.isEmpty() ? Map.of()
+				: productRepository.findAllById(productIds).stream()
+						.collect(Collectors.toMap(Product::getProductId, Function.identity()));
+		Map<Integer, List<ProductOptionalPrice>> optionsByProduct = productIds.isEmpty() ? Map.of()
+				: optionalPriceRepository.findByProductIdIn(productIds).stream()
+						.collect(Collectors.groupingBy(ProductOptionalPrice::getProductId));
+
+		List<CartLineEvaluationDTO> lines = new ArrayList<>(cart.items().size());
+		int orderAmount = 0;
+		boolean stockSufficient = true;
+		for (CartStore.Item item : cart.items()) {
+			Product product = products.get(item.productId());
+			// 商品已刪除時，資料庫中的購物車項目已一併刪除
+			if (product == null) {
+				continue;
+			}
+			List<ProductOptionalPrice> options = optionsByProduct.getOrDefault(item.productId(), List.of());
+			Integer optionId = selectedOptions.get(item.cartItemId());
+			ProductOptionalPrice option = options.stream()
+					.filter(candidate -> candidate.getOptionId().equals(optionId))
+					.findFirst()
+					.orElse(null);
+
+			int extraPrice = option != null ? option.getExtraPrice() * item.quantity() : 0;
+			int subtotal = product.getPrice() * item.quantity() + extraPrice;
+			boolean sufficient = Boolean.TRUE.equals(product.getIsAvailable())
+					&& product.getStock() != null && product.getStock() >= item.quantity();
+
+			orderAmount += subtotal;
+			stockSufficient &= sufficient;
+			lines.add(new CartLineEvaluationDTO(item.cartItemId(), product.getProductId(), product.getProductName(),
+					product.getImageUrl(), item.quantity(), product.getPrice(),
+					option != null ? option.getOptionId() : null, extraPrice, subtotal,
+					Boolean.TRUE.equals(product.getIsAvailable()), product.getStock(), sufficient,
+					options.stream()
+							.map(o -> new CartOptionDTO(o.getOptionId(), o.getSize(), o.getTopping(), o.getExtraPrice()))
+							.toList()));
+		}
+
+		List<CartCouponEvaluationDTO> coupons = evaluateCoupons(
+				memberCouponRepository.findUnusedWithCouponByMemberId(memberId), orderAmount);
+		CartCouponEvaluationDTO applied = coupons.stream()
+				.filter(coupon -> coupon.applicable() && coupon.couponId().equals(requestedCouponId))
+				.findFirst()
+				.orElse(null);
+		int discountAmount = applied != null ? applied.discountAmount() : 0;
+
+		return new CartEvaluationDTO(cart.cartId(), lines, orderAmount, coupons,
+				applied != null ? applied.couponId() : null, discountAmount, orderAmount - discountAmount,
+				!lines.isEmpty() && stockSufficient);
+	}
+
+	/**
+	 * 會員持有的每一種優惠券套用在購物車金額上的結果，同一種優惠券持有多張時只列一次
+	 */
+	private List<CartCouponEvaluationDTO> evaluateCoupons(Collection<MemberCoupon> memberCoupons, int orderAmount) {
+		Map<Integer, Coupon> distinct = new LinkedHashMap<>();
+		memberCoupons.stream()
+				.map(MemberCoupon::getCoupon)
+				.filter(Objects::nonNull)
+				.forEach(coupon -> distinct.putIfAbsent(coupon.getCouponId(), coupon));
+
+		return distinct.values().stream()
+				.map(coupon -> {
+					int minimumSpend = coupon.getMinimumSpend() != null ? coupon.getMinimumSpend() : 0;
+					boolean applicable = orderAmount > 0 && orderAmount >= minimumSpend
+							&& coupon.getDiscountType() != null && coupon.getDiscountAmount() != null;
+					return new CartCouponEvaluationDTO(coupon.getCouponId(), coupon.getCouponName(),
+							coupon.getDiscountType(), coupon.getDiscountAmount(), coupon.getMinimumSpend(), applicable,
+							applicable ? ProductOrderService.calculateDiscount(coupon, orderAmount) : 0);
+				})
+				.toList();
+	}
+}
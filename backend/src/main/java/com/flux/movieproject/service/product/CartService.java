@@ -4,88 +4,51 @@ import com.flux.movieproject.model.dto.product.cart.CartDTO;
 import com.flux.movieproject.model.dto.product.cart.CartItemDTO;
 import com.flux.movieproject.model.entity.product.Cart;
 import com.flux.movieproject.model.entity.product.CartItem;
-import com.flux.movieproject.model.entity.product.CustomUserDetails;
 import com.flux.movieproject.model.entity.product.Product;
-import com.flux.movieproject.repository.member.MemberRepository;
-import com.flux.movieproject.repository.product.CartItemRepository;
-import com.flux.movieproject.repository.product.CartRepository;
 import com.flux.movieproject.repository.product.ProductRepository;
-import com.github.houbb.heaven.annotation.env.Prod;
 import jakarta.persistence.EntityNotFoundException;
-import jakarta.persistence.Table;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.access.AccessDeniedException;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.time.Instant;
-import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class CartService {
 
-    private CartRepository cartRepository;
     private ProductRepository productRepository;
-    private CartItemRepository cartItemRepository;
-    private MemberRepository memberRepository;
+    private CartStore cartStore;
 
     @Autowired
     private HttpServletRequest request;
     @Autowired
-    public CartService(CartRepository cartRepository, ProductRepository productRepository,
-                       CartItemRepository cartItemRepository, MemberRepository memberRepository) {
-        this.cartRepository = cartRepository;
+    public CartService(ProductRepository productRepository, CartStore cartStore) {
         this.productRepository = productRepository;
-        this.cartItemRepository = cartItemRepository;
-        this.memberRepository = memberRepository;
+        this.cartStore = cartStore;
     }
 
-    @Transactional
     public CartItem addToCart(Integer memberId, Integer productId, Integer quantity) {
 
         if (memberId == null) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not logged in");
         }
 
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new EntityNotFoundException("Product not found with id: " + productId));
-
-        Cart userCart = cartRepository.findByMemberId(memberId).orElseGet(() -> createCart(memberId));
-
-        Optional<CartItem> existingItem = cartItemRepository.findByCartAndProductProductId(userCart, productId);
-
-        CartItem cartItem;
-        if (existingItem.isPresent()) {
-            cartItem = existingItem.get();
-            cartItem.setQuantity(cartItem.getQuantity() + quantity);
-        } else {
-            cartItem = new CartItem();
-            cartItem.setCart(userCart);
-            cartItem.setProduct(product);
-            cartItem.setProductPrice(product.getPrice());
-            cartItem.setQuantity(quantity);
-        }
-
-        return cartItemRepository.save(cartItem);
-    }
+        Product product = findProduct(productId);
 
-    private Cart createCart(Integer memberId) {
-        Cart newCart = new Cart();
-        newCart.setCreatedAt(Instant.now());
-        newCart.setUpdatedAt(Instant.now());
-        newCart.setMemberId(memberId);
-        return cartRepository.save(newCart);
+        return cartStore.modify(memberId, cart -> {
+            CartStore.Item item = cart.findByProductId(productId)
+                    .map(existing -> cart.setQuantity(existing.cartItemId(), existing.quantity() + quantity))
+                    .orElseGet(() -> cart.insert(productId, quantity, product.getPrice()));
+            return toCartItem(memberId, cart.cartId(), item, product);
+        });
     }
 
-
     private Integer getCurrentUserId(HttpServletRequest request) {
         Object memberIdObj = request.getAttribute("memberId");
         if (memberIdObj instanceof Integer) {
@@ -94,157 +57,162 @@ public class CartService {
         return null; // 未登入
     }
 
-    @Transactional
-    public CartItem minusToCart(Integer productId, Integer quantity) {
-        Integer currentUserId = getCurrentUserId(request);
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new EntityNotFoundException("Product not found with id: " + productId));
-
-        Cart userCart = cartRepository.findByMemberId(currentUserId).orElseGet(() -> createCart(currentUserId));
-
-        Optional<CartItem> existingItem = cartItemRepository.findByCartAndProductProductId(userCart,productId);
+    private int requireCurrentUserId() {
+        Integer memberId = getCurrentUserId(request);
+        if (memberId == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not logged in");
+        }
+        return memberId;
+    }
 
-        CartItem cartItem;
-        if (existingItem.isPresent()) {
-            cartItem = existingItem.get();
-            if(cartItem.getQuantity() <= quantity){
-                cartItemRepository.deleteByCartAndProductProductId(userCart,productId);
+    public CartItem minusToCart(Integer productId, Integer quantity) {
+        int currentUserId = requireCurrentUserId();
+        Product product = findProduct(productId);
+
+        return cartStore.modify(currentUserId, cart -> {
+            CartStore.Item existing = cart.findByProductId(productId)
+                    .orElseThrow(() -> new IllegalArgumentException("Product with id " + productId + " is not in the cart."));
+            if (existing.quantity() <= quantity) {
+                cart.remove(existing.cartItemId());
                 return null;
-            }else{
-                cartItem.setQuantity(cartItem.getQuantity() - quantity);
-                return cartItemRepository.save(cartItem);
             }
-        }else{
-            throw new IllegalArgumentException("Product with id " + productId + " is not in the cart.");
-        }
+            CartStore.Item item = cart.setQuantity(existing.cartItemId(), existing.quantity() - quantity);
+            return toCartItem(currentUserId, cart.cartId(), item, product);
+        });
     }
 
-    @Transactional
     public void removeProductFromCart(Integer cartItemid) {
-        Integer currentUserId = getCurrentUserId(request);
-        Cart userCart = cartRepository.findByMemberId(currentUserId)
-                .orElseThrow(() -> new EntityNotFoundException("購物車不存在"));
+        int currentUserId = requireCurrentUserId();
 
-        Optional<CartItem> existingItem = cartItemRepository.findByCartAndCartItemId(userCart, cartItemid);
-        if (existingItem.isPresent()) {
-            cartItemRepository.delete(existingItem.get());
-        } else {
-
-            throw new CartItemNotFoundException("產品ID " + cartItemid + " 不存在於購物車中。");
-        }
+        cartStore.modify(currentUserId, cart -> {
+            CartStore.Item existing = cart.findByCartItemId(cartItemid)
+                    .orElseThrow(() -> new CartItemNotFoundException("產品ID " + cartItemid + " 不存在於購物車中。"));
+            cart.remove(existing.cartItemId());
+            return null;
+        });
     }
 
-    @Transactional
     public void clearCart() {
-        Integer currentUserId = getCurrentUserId(request);
-        Cart userCart = cartRepository.findByMemberId(currentUserId)
-                .orElse(null); // 如果購物車不存在，則不需要做任何事
+        int currentUserId = requireCurrentUserId();
 
-        if (userCart != null) {
-            cartItemRepository.deleteAllByCart(userCart);
-        }
+        cartStore.modify(currentUserId, cart -> {
+            cart.clear();
+            return null;
+        });
     }
 
-    @Transactional
     public CartItem updateProductQuantity(Integer productId, Integer newQuantity) {
         if (newQuantity < 0) {
             throw new IllegalArgumentException("數量不能為負數。");
         }
-        Integer currentUserId = getCurrentUserId(request);
-        Cart userCart = cartRepository.findByMemberId(currentUserId)
-                .orElseThrow(() -> new EntityNotFoundException("購物車不存在"));
-
-        CartItem cartItem = cartItemRepository.findByCartAndProductProductId(userCart, productId)
-                .orElseThrow(() -> new EntityNotFoundException("產品ID " + productId + " 不存在於購物車中。"));
-
-        if (newQuantity == 0) {
-
-            cartItemRepository.delete(cartItem);
-            return null;
-        } else {
-            cartItem.setQuantity(newQuantity);
-            return cartItemRepository.save(cartItem);
-        }
+        int currentUserId = requireCurrentUserId();
+        Product product = findProduct(productId);
+
+        return cartStore.modify(currentUserId, cart -> {
+            CartStore.Item existing = cart.findByProductId(productId)
+                    .orElseThrow(() -> new EntityNotFoundException("產品ID " + productId + " 不存在於購物車中。"));
+            if (newQuantity == 0) {
+                cart.remove(existing.cartItemId());
+                return null;
+            }
+            CartStore.Item item = cart.setQuantity(existing.cartItemId(), newQuantity);
+            return toCartItem(currentUserId, cart.cartId(), item, product);
+        });
     }
 
 
-    @Transactional
     public CartItem updateProductQuantityByUserIdAndProductId(Integer cartItemId, Integer newQuantity) {
 
         if (newQuantity <= 0) {
-            System.out.println("錯誤：數量不能小於或等於零，輸入數量 = " + newQuantity);
             throw new IllegalArgumentException("數量必須大於零");
         }
 
         // 取得當前使用者 ID
-        Integer userId = getCurrentUserId(request);
-        System.out.println("當前使用者 ID = " + userId);
-
-        // 查詢使用者購物車
-        Cart userCart = cartRepository.findByMemberId(userId)
-                .orElseThrow(() -> {
-                    return new EntityNotFoundException("找不到使用者購物車，使用者 ID: " + userId);
-                });
-
-        // 查詢購物車裡的指定商品
-        Optional<CartItem> existingItem = cartItemRepository.findById(cartItemId);
-
-        if (existingItem.isPresent()) {
-            CartItem cartItem = existingItem.get();
-            Product product = existingItem.get().getProduct();
-
-            if(product.getStock() < newQuantity){
-                throw new InsufficientStockException(
-                        "庫存不足" + "，可用庫存=" + product.getStock()
-                );
+        int userId = requireCurrentUserId();
 
-            }
-            //TODO 更新的邏輯
-
-            // 更新數量
-
-            cartItem.setQuantity(newQuantity);
-            CartItem savedItem = cartItemRepository.save(cartItem);
+        // 查詢使用者購物車裡的指定商品
+        CartStore.Item existing = cartStore.modify(userId, cart -> cart.findByCartItemId(cartItemId))
+                .orElseThrow(() -> new IllegalArgumentException("購物車中沒有此商品，商品 ID: " + cartItemId));
 
-            System.out.println("🔹 更新後 CartItem = " + savedItem);
-            return savedItem;
+        Product product = findProduct(existing.productId());
 
-        } else {
-            System.out.println("❌ 購物車中找不到商品，userId = " + userId + ", productId = " + cartItemId);
-            throw new IllegalArgumentException("購物車中沒有此商品，商品 ID: " + cartItemId);
+        if (product.getStock() < newQuantity) {
+            throw new InsufficientStockException(
+                    "庫存不足" + "，可用庫存=" + product.getStock()
+            );
         }
+
+        // 更新數量
+        return cartStore.modify(userId, cart -> {
+            cart.findByCartItemId(cartItemId)
+                    .orElseThrow(() -> new IllegalArgumentException("購物車中沒有此商品，商品 ID: " + cartItemId));
+            CartStore.Item item = cart.setQuantity(cartItemId, newQuantity);
+            return toCartItem(userId, cart.cartId(), item, product);
+        });
     }
 
 
     public CartDTO getCartDetails() {
-        Integer currentUserId = getCurrentUserId(request);
-        Cart userCart = cartRepository.findByMemberId(currentUserId)
-                .orElseGet(() -> createCart(currentUserId));
+        int currentUserId = requireCurrentUserId();
+        CartStore.Snapshot userCart = cartStore.get(currentUserId);
+
+        // 一次查出購物車中所有商品，不逐筆延遲載入
+        Map<Integer, Product> products = productRepository.findAllById(userCart.items().stream()
+                        .map(CartStore.Item::productId)
+                        .toList())
+                .stream()
+                .collect(Collectors.toMap(Product::getProductId, Function.identity()));
 
-        List<CartItemDTO> items = cartItemRepository.findByCart(userCart)
+        List<CartItemDTO> items = userCart.items()
                 .stream()
-                .map(item -> new CartItemDTO(
-                        item.getCartItemId(),
-                        item.getProduct().getProductId(),
-                        item.getProduct().getProductName(),
-                        item.getQuantity(),
-                        item.getProductPrice(),
-                        item.getProduct().getImageUrl(),
-                        item.getProduct().getIsAvailable(),
-                        item.getProduct().getStock()
-
-                ))
+                // 商品已刪除時，資料庫中的購物車項目已一併刪除
+                .filter(item -> products.containsKey(item.productId()))
+                .map(item -> {
+                    Product product = products.get(item.productId());
+                    return new CartItemDTO(
+                            item.cartItemId(),
+                            product.getProductId(),
+                            product.getProductName(),
+                            item.quantity(),
+                            item.productPrice(),
+                            product.getImageUrl(),
+                            product.getIsAvailable(),
+                            product.getStock()
+                    );
+                })
                 .toList();
 
         return new CartDTO(
-                userCart.getCartId(),
-                userCart.getMemberId(),
-                userCart.getCreatedAt(),
-                userCart.getUpdatedAt(),
+                userCart.cartId(),
+                userCart.memberId(),
+                userCart.createdAt(),
+                userCart.updatedAt(),
                 items
         );
     }
 
+    private Product findProduct(Integer productId) {
+        return productRepository.findById(productId)
+                .orElseThrow(() -> new EntityNotFoundException("Product not found with id: " + productId));
+    }
+
+    /**
+     * 購物車暫存中的商品轉換成回應用的 CartItem (含商品資料，與 getCartDetails 的項目一致)
+     */
+    private CartItem toCartItem(int memberId, int cartId, CartStore.Item item, Product product) {
+        Cart cart = new Cart();
+        cart.setCartId(cartId);
+        cart.setMemberId(memberId);
+
+        CartItem cartItem = new CartItem();
+        cartItem.setCartItemId(item.cartItemId());
+        cartItem.setQuantity(item.quantity());
+        cartItem.setProductPrice(item.productPrice());
+        cartItem.setCart(cart);
+        cartItem.setProduct(product);
+        return cartItem;
+    }
+
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public static class CartItemNotFoundException extends RuntimeException {
         public CartItemNotFoundException(String message) {
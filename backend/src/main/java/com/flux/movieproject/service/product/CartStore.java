@@ -0,0 +1,420 @@
+package com.flux.movieproject.service.product;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.flux.movieproject.repository.product.CartJdbcRepository;
+import com.flux.movieproject.repository.product.CartJdbcRepository.CartRow;
+import com.flux.movieproject.repository.product.CartJdbcRepository.ItemRow;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 活躍會員的購物車暫存 (write-behind)。
+ * 1. 會員的購物車第一次使用時從資料庫載入，之後的查詢與修改都在記憶體中進行，不再每次查詢 cart / cart_item
+ * 2. 修改數量與刪除只記錄在記憶體中，同一商品連續的修改合併成一次，定期以批次 UPDATE / DELETE 寫回；
+ * 新加入的商品立即寫入以取得 cart_item_id，前端以此 ID 修改與刪除
+ * 3. 結帳時先寫回該會員的購物車；暫存的會員數超過上限時，最久未使用的購物車寫回後移出；應用程式關閉前全部寫回
+ * 每個會員的購物車各自加鎖，不同會員之間不互相等待。
+ * 購物車以這個暫存為準，只適用於單一應用程式實例；其他程式直接修改 cart_item 的結果，要等該會員的購物車移出後才會看到。
+ */
+@Service
+public class CartStore {
+
+	/**
+	 * 購物車中的一個商品
+	 */
+	public record Item(int cartItemId, int productId, int quantity, int productPrice) {
+	}
+
+	/**
+	 * 某個時間點的購物車內容，商品依加入的順序排列
+	 */
+	public record Snapshot(int cartId, int memberId, Instant createdAt, Instant updatedAt, List<Item> items) {
+	}
+
+	/**
+	 * 購物車暫存的統計數據
+	 *
+	 * @param hits          直接使用暫存的次數
+	 * @param loads         從資料庫載入購物車的次數
+	 * @param flushes       寫回資料庫的次數
+	 * @param failedFlushes 寫回失敗的次數 (異動保留在暫存中，下次再寫回)
+	 * @param evictions     超過上限而移出的購物車數
+	 * @param cachedMembers 目前暫存的會員數
+	 */
+	public record Stats(long hits, long loads, long flushes, long failedFlushes, long evictions, int cachedMembers) {
+	}
+
+	/**
+	 * 修改購物車的操作，只在 {@link #modify} 中使用，執行期間持有該會員購物車的鎖
+	 */
+	public interface Editor {
+
+		int cartId();
+
+		Optional<Item> findByProductId(int productId);
+
+		Optional<Item> findByCartItemId(int cartItemId);
+
+		/**
+		 * 加入新的商品，立即寫入資料庫
+		 */
+		Item insert(int productId, int quantity, int productPrice);
+
+		/**
+		 * 修改數量，稍後寫回
+		 */
+		Item setQuantity(int cartItemId, int quantity);
+
+		/**
+		 * 刪除商品，稍後寫回
+		 */
+		void remove(int cartItemId);
+
+		/**
+		 * 清空購物車，稍後寫回
+		 */
+		void clear();
+	}
+
+	/**
+	 * 一個會員的購物車，所有欄位都在持有此物件的鎖時存取
+	 */
+	private final class MemberCart implements Editor {
+		private final int cartId;
+		private final int memberId;
+		private final Instant createdAt;
+		private Instant updatedAt;
+		// cart_item_id -> 商品，依加入的順序
+		private final Map<Integer, Item> items = new LinkedHashMap<>();
+		// 尚未寫回的數量修改與刪除
+		private final Set<Integer> modifiedItemIds = new LinkedHashSet<>();
+		private final Set<Integer> removedItemIds = new LinkedHashSet<>();
+		private boolean dirty;
+		// 已移出暫存並寫回，不可再修改
+		private boolean detached;
+
+		private MemberCart(CartRow row) {
+			this.cartId = row.cartId();
+			this.memberId = row.memberId();
+			this.createdAt = row.createdAt();
+			this.updatedAt = row.updatedAt();
+		}
+
+		@Override
+		public int cartId() {
+			return cartId;
+		}
+
+		@Override
+		public Optional<Item> findByProductId(int productId) {
+			return items.values().stream().filter(item -> item.productId() == productId).findFirst();
+		}
+
+		@Override
+		public Optional<Item> findByCartItemId(int cartItemId) {
+			return Optional.ofNullable(items.get(cartItemId));
+		}
+
+		@Override
+		public Item insert(int productId, int quantity, int productPrice) {
+			int cartItemId = cartRepo.insertItem(cartId, productId, quantity, productPrice);
+			Item item = new Item(cartItemId, productId, quantity, productPrice);
+			items.put(cartItemId, item);
+			touch();
+			return item;
+		}
+
+		@Override
+		public Item setQuantity(int cartItemId, int quantity) {
+			Item current = items.get(cartItemId);
+			if (current == null) {
+				throw new IllegalArgumentException("購物車中沒有此商品，購物車項目ID: " + cartItemId);
+			}
+			Item item = new Item(cartItemId, current.productId(), quantity, current.productPrice());
+			items.put(cartItemId, item);
+			modifiedItemIds.add(cartItemId);
+			touch();
+			return item;
+		}
+
+		@Override
+		public void remove(int cartItemId) {
+			if (items.remove(cartItemId) != null) {
+				modifiedItemIds.remove(cartItemId);
+				removedItemIds.add(cartItemId);
+				touch();
+			}
+		}
+
+		@Override
+		public void clear() {
+			if (!items.isEmpty()) {
+				removedItemIds.addAll(items.keySet());
+				items.clear();
+				modifiedItemIds.clear();
+				touch();
+			}
+		}
+
+		private void touch() {
+			updatedAt = Instant.now();
+			dirty = true;
+		}
+
+		private Snapshot snapshot() {
+			return new Snapshot(cartId, memberId, createdAt, updatedAt, List.copyOf(items.values()));
+		}
+	}
+
+	@Autowired
+	private CartJdbcRepository cartRepo;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	// 最多暫存的會員數
+	@Value("${cart.store.max-members:10000}")
+	private int maxMembers;
+
+	// 寫回在獨立的交易中執行，不受呼叫端 (例如建立訂單) 的交易回滾影響
+	private TransactionTemplate transaction;
+
+	// 會員 ID -> 購物車，依最近使用的順序；以 carts 本身的鎖保護
+	private final LinkedHashMap<Integer, MemberCart> carts = new LinkedHashMap<>(16, 0.75f, true);
+	// 已移出但尚未寫回的購物車；寫回前同一會員再次使用時放回 carts，不從資料庫載入舊的內容
+	private final Map<Integer, MemberCart> evicting = new ConcurrentHashMap<>();
+	// 移出購物車的次數，載入期間有購物車移出時重新載入；以 carts 的鎖保護
+	private long evictionEpoch;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder loads = new LongAdder();
+	private final LongAdder flushes = new LongAdder();
+	private final LongAdder failedFlushes = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	@PostConstruct
+	public void init() {
+		transaction = new TransactionTemplate(transactionManager);
+		transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+	}
+
+	/**
+	 * 會員目前的購物車，沒有購物車時建立一個
+	 */
+	public Snapshot get(int memberId) {
+		return modify(memberId, editor -> ((MemberCart) editor).snapshot());
+	}
+
+	/**
+	 * 在持有會員購物車的鎖時修改購物車，同一會員的修改依序執行
+	 *
+	 * @param action 修改的操作，拋出例外時已完成的修改仍會保留
+	 */
+	public <T> T modify(int memberId, Function<Editor, T> action) {
+		while (true) {
+			MemberCart cart = acquire(memberId);
+			synchronized (cart) {
+				if (!cart.detached) {
+					return action.apply(cart);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 將會員的購物車寫回資料庫，結帳前呼叫
+	 */
+	public void flush(int memberId) {
+		MemberCart cart;
+		synchronized (carts) {
+			cart = carts.get(memberId);
+		}
+		if (cart == null) {
+			cart = evicting.get(memberId);
+		}
+		if (cart != null) {
+			synchronized (cart) {
+				write(cart);
+			}
+		}
+	}
+
+	/**
+	 * 定期寫回所有有異動的購物車，並完成寫回失敗而仍在等待的移出
+	 */
+	@Scheduled(fixedDelayString = "${cart.store.flush-interval-ms:2000}",
+			initialDelayString = "${cart.store.flush-interval-ms:2000}")
+	public void flushDirty() {
+		List<MemberCart> cached;
+		synchronized (carts) {
+			cached = new ArrayList<>(carts.values());
+		}
+		for (MemberCart cart : cached) {
+			synchronized (cart) {
+				write(cart);
+			}
+		}
+		completeEvictions();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		flushDirty();
+	}
+
+	public Stats getStats() {
+		int cachedMembers;
+		synchronized (carts) {
+			cachedMembers = carts.size();
+		}
+		return new Stats(hits.sum(), loads.sum(), flushes.sum(), failedFlushes.sum(), evictions.sum(),
+				cachedMembers);
+	}
+
+	/**
+	 * 取得會員的購物車，不在暫存中時從資料庫載入
+	 */
+	private MemberCart acquire(int memberId) {
+		while (true) {
+			long epoch;
+			synchronized (carts) {
+				MemberCart cart = carts.get(memberId);
+				if (cart == null) {
+					cart = evicting.remove(memberId);
+					if (cart != null) {
+						carts.put(memberId, cart);
+					}
+				}
+				if (cart != null && !cart.detached) {
+					hits.increment();
+					return cart;
+				}
+				if (cart != null) {
+					carts.remove(memberId);
+				}
+				epoch = evictionEpoch;
+			}
+
+			// 在鎖外讀取資料庫，不阻擋其他會員
+			MemberCart loaded = load(memberId);
+			boolean evicted;
+			synchronized (carts) {
+				MemberCart existing = carts.get(memberId);
+				if (existing != null && !existing.detached) {
+					return existing;
+				}
+				// 載入期間有購物車移出，載入的內容可能早於移出前的寫回，重新載入
+				if (evictionEpoch != epoch) {
+					continue;
+				}
+				carts.put(memberId, loaded);
+				evicted = evictOverflow();
+			}
+			loads.increment();
+			if (evicted) {
+				completeEvictions();
+			}
+			return loaded;
+		}
+	}
+
+	private MemberCart load(int memberId) {
+		CartRow row = cartRepo.findCart(memberId).orElseGet(() -> {
+			Instant now = Instant.now();
+			return new CartRow(cartRepo.insertCart(memberId, now), memberId, now, now);
+		});
+		MemberCart cart = new MemberCart(row);
+		for (ItemRow item : cartRepo.findItems(row.cartId())) {
+			cart.items.put(item.cartItemId(),
+					new Item(item.cartItemId(), item.productId(), item.quantity(), item.productPrice()));
+		}
+		return cart;
+	}
+
+	/**
+	 * 移出超過上限的購物車，呼叫時必須持有 carts 的鎖
+	 *
+	 * @return 是否有購物車移出
+	 */
+	private boolean evictOverflow() {
+		boolean evicted = false;
+		Iterator<Map.Entry<Integer, MemberCart>> eldest = carts.entrySet().iterator();
+		while (carts.size() > maxMembers && eldest.hasNext()) {
+			Map.Entry<Integer, MemberCart> entry = eldest.next();
+			eldest.remove();
+			evicting.put(entry.getKey(), entry.getValue());
+			evictionEpoch++;
+			evictions.increment();
+			evicted = true;
+		}
+		return evicted;
+	}
+
+	/**
+	 * 寫回已移出的購物車；寫回成功後標記為不可修改，失敗的留待下次重試
+	 */
+	private void completeEvictions() {
+		for (Map.Entry<Integer, MemberCart> entry : evicting.entrySet()) {
+			MemberCart cart = entry.getValue();
+			synchronized (cart) {
+				if (write(cart)) {
+					cart.detached = true;
+					evicting.remove(entry.getKey(), cart);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 寫回一個購物車的異動，呼叫時必須持有該購物車的鎖
+	 *
+	 * @return 是否已沒有未寫回的異動
+	 */
+	private boolean write(MemberCart cart) {
+		if (!cart.dirty) {
+			return true;
+		}
+		Map<Integer, Integer> quantities = new LinkedHashMap<>();
+		for (Integer cartItemId : cart.modifiedItemIds) {
+			quantities.put(cartItemId, cart.items.get(cartItemId).quantity());
+		}
+		Collection<Integer> removed = List.copyOf(cart.removedItemIds);
+		try {
+			transaction.executeWithoutResult(status -> {
+				cartRepo.updateQuantities(cart.cartId, quantities);
+				cartRepo.deleteItems(cart.cartId, removed);
+				cartRepo.touchCart(cart.cartId, cart.updatedAt);
+			});
+		} catch (RuntimeException e) {
+			failedFlushes.increment();
+			System.err.println("購物車暫存: 會員 " + cart.memberId + " 的購物車寫回失敗，稍後重試: " + e.getMessage());
+			return false;
+		}
+		cart.modifiedItemIds.clear();
+		cart.removedItemIds.clear();
+		cart.dirty = false;
+		flushes.increment();
+		return true;
+	}
+}
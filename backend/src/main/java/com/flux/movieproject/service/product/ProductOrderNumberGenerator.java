@@ -0,0 +1,40 @@
+package com.flux.movieproject.service.product;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.flux.movieproject.repository.product.ProductOrderNumberJdbcRepository;
+
+/**
+ * 產生商品訂單編號 (ORD-yyyyMMdd-nnnn)，在新增訂單之前就能取得，不必先寫入訂單取得 ID 後再更新一次。
+ * 流水號來自資料庫序列，每次向序列保留一段編號後在記憶體中依序發放，平均每筆訂單不需要額外查詢資料庫。
+ * 應用程式重新啟動時未發放完的編號會被略過，流水號可能不連續，但不會重複。
+ */
+@Service
+public class ProductOrderNumberGenerator {
+
+	@Autowired
+	private ProductOrderNumberJdbcRepository orderNumberRepo;
+
+	// 下一個要發放的流水號，與目前區段的結尾 (不含)
+	private long next;
+	private long blockEnd;
+
+	/**
+	 * 取得一個新的訂單編號
+	 */
+	public String nextOrderNumber() {
+		return String.format("ORD-%s-%04d", LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE), nextSerial());
+	}
+
+	private synchronized long nextSerial() {
+		if (next >= blockEnd) {
+			next = orderNumberRepo.nextBlockStart();
+			blockEnd = next + ProductOrderNumberJdbcRepository.BLOCK_SIZE;
+		}
+		return next++;
+	}
+}
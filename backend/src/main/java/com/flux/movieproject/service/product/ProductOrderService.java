@@ -1,13 +1,16 @@
 package com.flux.movieproject.service.product;
 
 import java.time.Instant;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import com.flux.movieproject.enums.CouponStatus;
@@ -19,6 +22,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import com.flux.movieproject.model.dto.product.order.CreateOrderDTO;
 import com.flux.movieproject.model.dto.product.order.CreateOrderResponseDTO;
+import com.flux.movieproject.model.dto.product.order.CreateProductOrderDetailDTO;
 import com.flux.movieproject.model.dto.product.order.ProductInfoDTO;
 import com.flux.movieproject.model.dto.product.order.ProductOrderDTO;
 import com.flux.movieproject.model.dto.product.order.ProductOrderDetailDTO;
@@ -30,13 +34,17 @@ import com.flux.movieproject.model.entity.member.MemberCoupon;
 import com.flux.movieproject.model.entity.product.OrderStatus;
 import com.flux.movieproject.model.entity.product.PaymentMethod;
 import com.flux.movieproject.model.entity.product.Product;
+import com.flux.movieproject.model.entity.product.ProductOptionalPrice;
 import com.flux.movieproject.model.entity.product.ProductOrder;
 import com.flux.movieproject.model.entity.product.ProductOrderDetail;
 import com.flux.movieproject.repository.event.CouponRepository;
 import com.flux.movieproject.repository.member.MemberCouponRepository;
 import com.flux.movieproject.repository.member.MemberRepository;
+import com.flux.movieproject.repository.product.ProductOptionalPriceRepository;
 import com.flux.movieproject.repository.product.ProductOrderRepository;
 import com.flux.movieproject.repository.product.ProductRepository;
+import com.flux.movieproject.service.member.MemberSpendingLedger;
+import com.flux.movieproject.service.product.ProductStockService.InsufficientStockException;
 
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -54,6 +62,16 @@ public class ProductOrderService {
 	private HttpServletRequest request;
 	@Autowired
 	private NotificationService notificationService;
+	@Autowired
+	private MemberSpendingLedger memberSpendingLedger;
+	@Autowired
+	private ProductStockService productStockService;
+	@Autowired
+	private ProductOrderNumberGenerator orderNumberGenerator;
+	@Autowired
+	private CartStore cartStore;
+	@Autowired
+	private ProductOptionalPriceRepository optionalPriceRepository;
 
 	public record UpdateProductResponseDTO(ProductDTO product, String message) {
 	}
@@ -75,62 +93,73 @@ public class ProductOrderService {
 	@Transactional
 	public CreateOrderResponseDTO createOrder(CreateOrderDTO createOrderDTO) {
 
-		// Todo 樂觀鎖or悲觀鎖
-
 		ProductOrder newOrder = new ProductOrder();
 
 		Member member = memberRepository.findById(createOrderDTO.memberId())
 				.orElseThrow(() -> new IllegalArgumentException("此ID沒有會員" + createOrderDTO.memberId()));
 
-		Integer orderAmount = calculateOrderAmount(createOrderDTO);
+		// 結帳前先將暫存中的購物車寫回資料庫
+		cartStore.flush(member.getMemberId());
+
+		// 以一個 IN 查詢取得訂單中所有商品，一次走訪同時建立明細、計算金額與各商品的購買數量
+		Map<Integer, Product> products = productRepository.findAllById(createOrderDTO.orderDetails().stream()
+				.map(CreateProductOrderDetailDTO::productId).collect(Collectors.toSet())).stream()
+				.collect(Collectors.toMap(Product::getProductId, Function.identity()));
+		// 加價金額依選擇的選項計算，與 CartEvaluationService 的試算相同，不採用前端傳來的金額
+		Map<Integer, ProductOptionalPrice> options = products.isEmpty() ? Map.of()
+				: optionalPriceRepository.findByProductIdIn(products.keySet()).stream()
+						.collect(Collectors.toMap(ProductOptionalPrice::getOptionId, Function.identity()));
+
+		int orderAmount = 0;
+		List<ProductOrderDetail> orderDetails = new ArrayList<>(createOrderDTO.orderDetails().size());
+		Map<Integer, Integer> quantities = new HashMap<>();
+		for (CreateProductOrderDetailDTO detailDTO : createOrderDTO.orderDetails()) {
+			Product product = products.get(detailDTO.productId());
+			if (product == null) {
+				throw new IllegalArgumentException("無效的商品ID: " + detailDTO.productId());
+			}
 
-		List<ProductOrderDetail> orderDetails = createOrderDTO.orderDetails().stream().map(detailDTO -> {
-			Product product = productRepository.findById(detailDTO.productId())
-					.orElseThrow(() -> new IllegalArgumentException("無效的商品ID: " + detailDTO.productId()));
+			int extraPrice = 0;
+			if (detailDTO.optionId() != null) {
+				ProductOptionalPrice option = options.get(detailDTO.optionId());
+				if (option == null || !option.getProductId().equals(product.getProductId())) {
+					throw new IllegalArgumentException("無效的加價選項ID: " + detailDTO.optionId());
+				}
+				extraPrice = option.getExtraPrice() * detailDTO.quantity();
+			}
 
-			int subtotal = product.getPrice() * detailDTO.quantity() + detailDTO.extraPrice();
+			int subtotal = product.getPrice() * detailDTO.quantity() + extraPrice;
+			orderAmount += subtotal;
 
 			ProductOrderDetail detail = new ProductOrderDetail();
 			detail.setProduct(product);
-			if (detailDTO.quantity() > product.getStock()) {
-				throw new IllegalArgumentException(
-						"商品 ：" + product.getProductName() + " 庫存不足。 " + "，但目前只有 " + product.getStock() + "。");
-			}
 			detail.setQuantity(detailDTO.quantity());
-			detail.setExtraPrice(detailDTO.extraPrice());
+			detail.setExtraPrice(extraPrice);
 
 			detail.setUnitPrice(product.getPrice());
 			detail.setSubtotal(subtotal);
 			detail.setProductName(product.getProductName());
 
 			detail.setProductOrder(newOrder);
-			return detail;
-		}).collect(Collectors.toList());
+			orderDetails.add(detail);
+			quantities.merge(product.getProductId(), detailDTO.quantity(), Integer::sum);
+		}
 
-		for (ProductOrderDetail orderProducts : orderDetails) {
-			Integer orderCount = orderProducts.getQuantity();
-			Integer currentStock = orderProducts.getProduct().getStock();
-			Integer newStock = currentStock - orderCount;
-			Product p = orderProducts.getProduct();
-			p.setStock(newStock);
+		// 以帶條件的 UPDATE 扣除庫存，不足時整筆訂單回滾
+		try {
+			productStockService.reserve(quantities);
+		} catch (InsufficientStockException e) {
+			throw new IllegalArgumentException("商品 ：" + products.get(e.getProductId()).getProductName() + " 庫存不足。");
 		}
+
 		int discountAmount = 0;
 		int finalPaymentAmount = orderAmount;
 		if (createOrderDTO.couponId() != null) {
 			Coupon coupon = couponRepository.findByCouponId((createOrderDTO.couponId()));
 			if (orderAmount >= coupon.getMinimumSpend()) {
 
-				switch (coupon.getDiscountType()) {
-				case FIXED -> {
-					finalPaymentAmount -= coupon.getDiscountAmount();
-					discountAmount = coupon.getDiscountAmount();
-				}
-				case PERCENTAGE -> {
-					double percent = coupon.getDiscountAmount() / 100.0;
-					discountAmount = (int) Math.round(orderAmount * (1-percent));
-					finalPaymentAmount -= discountAmount;
-				}
-				}
+				discountAmount = calculateDiscount(coupon, orderAmount);
+				finalPaymentAmount -= discountAmount;
 				newOrder.setCouponId(createOrderDTO.couponId());
 				List<MemberCoupon> memberCoupon = memberCouponRepository.findByMemberIdAndCouponId(member.getMemberId(),coupon.getCouponId());
 				MemberCoupon couponToUse = memberCoupon.stream()
@@ -151,35 +180,34 @@ public class ProductOrderService {
 
 		newOrder.setPaymentMethod(paymentMethod);
 		newOrder.setOrderTime(Instant.now());
-		if (paymentMethod == PaymentMethod.CASH) {
-			newOrder.setOrderStatus(OrderStatus.PENDING);
-		} else {
-			newOrder.setOrderStatus(OrderStatus.PROCESSING);
-		}
+		// 現金在櫃台付款；線上付款的訂單等待付款完成，逾時未付款由 ProductStockService 取消並回補庫存
+		changeStatus(newOrder, paymentMethod == PaymentMethod.CASH ? OrderStatus.PENDING : OrderStatus.AWAITING_PAYMENT);
 		newOrder.setOrderAmount(orderAmount);
 
 		newOrder.setDiscountAmount(discountAmount);
 		newOrder.setFinalPaymentAmount(finalPaymentAmount);
 		newOrder.setCustomerEmail(createOrderDTO.email());
 
+		// 訂單編號在新增前產生，訂單只需寫入一次
+		newOrder.setOrderNumber(orderNumberGenerator.nextOrderNumber());
 		newOrder.setProductOrderDetails(orderDetails);
-		productOrderRepository.saveAndFlush(newOrder);
-		String orderNumber = String.format("ORD-%s-%04d", LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE),
-				newOrder.getOrderId());
-		newOrder.setOrderNumber(orderNumber);
 		productOrderRepository.save(newOrder);
 
 		return new CreateOrderResponseDTO(newOrder.getOrderId(), newOrder.getOrderNumber(), newOrder.getOrderTime(),
 				"訂單創建成功！");
 	}
 
-	private Integer calculateOrderAmount(CreateOrderDTO createOrderDTO) {
-		return createOrderDTO.orderDetails().stream().mapToInt(detailDTO -> {
-			Product product = productRepository.findById(detailDTO.productId())
-					.orElseThrow(() -> new IllegalArgumentException("無效的商品ID: " + detailDTO.productId()));
-
-			return product.getPrice() * detailDTO.quantity() + detailDTO.extraPrice();
-		}).sum();
+	/**
+	 * 優惠券的折抵金額，建立訂單與結帳頁試算共用，已達最低消費時才呼叫
+	 */
+	static int calculateDiscount(Coupon coupon, int orderAmount) {
+		return switch (coupon.getDiscountType()) {
+		case FIXED -> coupon.getDiscountAmount();
+		case PERCENTAGE -> {
+			double percent = coupon.getDiscountAmount() / 100.0;
+			yield (int) Math.round(orderAmount * (1 - percent));
+		}
+		};
 	}
 
 	public ProductOrderDTO findByOrderId(Integer orderId) {
@@ -216,19 +244,12 @@ public class ProductOrderService {
 		// TODO 部分邏輯未完成
 		switch (statusDto.newStatus()) {
 		case CANCELLED -> {
-			if (order.getOrderStatus() != OrderStatus.PREPARED) {
+			// 改為已取消並回補庫存，同時有其他請求取消時只有一個會成功
+			if (order.getOrderStatus() != OrderStatus.PREPARED
+					|| !productStockService.cancelAndRestock(orderId, EnumSet.of(OrderStatus.PREPARED))) {
 				throw new IllegalStateException("訂單狀態為 " + order.getOrderStatus() + "，無法取消。只有準備中的訂單才能取消。");
 			}
-			// 回補庫存數量
-			List<ProductOrderDetail> details = order.getProductOrderDetails();
-			if (details != null && !details.isEmpty()) {
-				for (ProductOrderDetail detail : details) {
-					Product product = detail.getProduct();
-					int currentStock = product.getStock();
-					product.setStock(currentStock + detail.getQuantity());
-				}
-			}
-			order.setOrderStatus(OrderStatus.CANCELLED);
+			changeStatus(order, OrderStatus.CANCELLED);
 		}
 		case PENDING -> {
 			throw new IllegalStateException("不允許將訂單狀態改回待處理。");
@@ -236,7 +257,7 @@ public class ProductOrderService {
 
 		case COMPLETED -> {
 
-			order.setOrderStatus(OrderStatus.COMPLETED);
+			changeStatus(order, OrderStatus.COMPLETED);
 		}
 
 		case PROCESSING -> {
@@ -244,8 +265,9 @@ public class ProductOrderService {
 
 		}
 
-		// 儲存變更並回傳更新後的完整訂單 DTO
-		ProductOrder updatedOrder = productOrderRepository.save(order);
+		// 儲存變更並回傳更新後的完整訂單 DTO，已完成的訂單計入會員消費
+		ProductOrder updatedOrder = productOrderRepository.saveAndFlush(order);
+		memberSpendingLedger.syncProductOrder(orderId);
 		return convertToDto(updatedOrder);
 	}
 
@@ -260,20 +282,14 @@ public class ProductOrderService {
 			throw new IllegalStateException("unknow");
 		}
 
-		// 如果是取消訂單，要恢復庫存
+		// 如果是取消訂單，要恢復庫存 (已取消的訂單不會重複回補)
 		if (newStatus == OrderStatus.CANCELLED) { // 使用 newStatus 而不是 statusDto.newStatus
-			List<ProductOrderDetail> details = order.getProductOrderDetails();
-			if (details != null && !details.isEmpty()) {
-				for (ProductOrderDetail detail : details) {
-					Product product = detail.getProduct();
-					int currentStock = product.getStock();
-					product.setStock(currentStock + detail.getQuantity());
-				}
-			}
+			productStockService.cancelAndRestock(orderId, EnumSet.complementOf(EnumSet.of(OrderStatus.CANCELLED)));
 		}
 
-		order.setOrderStatus(newStatus);
-		ProductOrder updatedOrder = productOrderRepository.save(order);
+		changeStatus(order, newStatus);
+		ProductOrder updatedOrder = productOrderRepository.saveAndFlush(order);
+		memberSpendingLedger.syncProductOrder(orderId);
 
 		switch (statusDto.newStatus()) {
 		case CANCELLED -> notificationService.sendEmailAsync(order.getCustomerEmail(), "訂單狀態更新",
@@ -293,6 +309,16 @@ public class ProductOrderService {
 		return convertToDto(updatedOrder);
 	}
 
+	/**
+	 * 變更訂單狀態並記錄進入新狀態的時間
+	 */
+	private static void changeStatus(ProductOrder order, OrderStatus status) {
+		if (order.getOrderStatus() != status) {
+			order.setOrderStatus(status);
+			order.setStatusTime(Instant.now());
+		}
+	}
+
 	// Todo productOrderDetailRepository用途?實
 	// TODO 修改訂單方法
 	private ProductOrderDTO convertToDto(ProductOrder order) {
@@ -338,6 +364,24 @@ public class ProductOrderService {
 		productOrderRepository.delete(order);
 	}
 
+	/**
+	 * 會員完成線上付款：等待線上付款的訂單改為處理中。
+	 * 與逾時取消以帶條件的 UPDATE 競爭，已逾時取消的訂單無法再付款
+	 */
+	@Transactional
+	public ProductOrderDTO payMemberOrder(Integer orderId, Integer memberId) {
+		ProductOrder order = productOrderRepository.findById(orderId)
+				.orElseThrow(() -> new EntityNotFoundException("找不到訂單 ID: " + orderId));
+		if (!order.getMember().getMemberId().equals(memberId)) {
+			throw new SecurityException("您沒有權限支付此訂單");
+		}
+		if (order.getOrderStatus() != OrderStatus.AWAITING_PAYMENT || !productStockService.markPaid(orderId)) {
+			throw new IllegalStateException("訂單狀態為 " + order.getOrderStatus().name() + "，無法付款。");
+		}
+		changeStatus(order, OrderStatus.PROCESSING);
+		return convertToDto(order);
+	}
+
 	@Transactional
 	public ProductOrderDTO cancelMemberOrder(Integer orderId, Integer memberId) {
 		ProductOrder order = productOrderRepository.findById(orderId)
@@ -349,23 +393,20 @@ public class ProductOrderService {
 		}
 
 		// 檢查是否可取消
-		if (order.getOrderStatus() != OrderStatus.PENDING && order.getOrderStatus() != OrderStatus.PROCESSING
-				&& order.getOrderStatus() != OrderStatus.PREPARED) {
+		if (order.getOrderStatus() != OrderStatus.PENDING && order.getOrderStatus() != OrderStatus.AWAITING_PAYMENT
+				&& order.getOrderStatus() != OrderStatus.PROCESSING && order.getOrderStatus() != OrderStatus.PREPARED) {
 			throw new IllegalStateException("訂單狀態為 " + order.getOrderStatus().name() + "，無法取消。");
 		}
 
 		// 取消訂單或退貨時，要把商品數量加回庫存
-		List<ProductOrderDetail> details = order.getProductOrderDetails();
-		if (details != null && !details.isEmpty()) {
-			for (ProductOrderDetail detail : details) {
-				Product product = detail.getProduct();
-				int currentStock = product.getStock();
-				product.setStock(currentStock + detail.getQuantity());
-			}
+		if (!productStockService.cancelAndRestock(orderId,
+				EnumSet.of(OrderStatus.PENDING, OrderStatus.AWAITING_PAYMENT, OrderStatus.PROCESSING,
+						OrderStatus.PREPARED))) {
+			throw new IllegalStateException("訂單狀態已變更，無法取消。");
 		}
 
 		// 更新訂單狀態
-		order.setOrderStatus(OrderStatus.CANCELLED);
+		changeStatus(order, OrderStatus.CANCELLED);
 		ProductOrder updatedOrder = productOrderRepository.save(order);
 
 		// 發送通知（異步 + 容錯）
@@ -0,0 +1,109 @@
+package com.flux.movieproject.service.product;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 商品搜尋的斷詞。
+ * 1. 中日韓文字: 不以空白分詞，連續的文字切成單字與相鄰兩字 (bigram)，例如「爆米花」-> 爆、米、花、爆米、米花
+ * 2. 其他文字: 以非字母數字的字元分詞，轉成小寫，例如「Coca-Cola 330ml」-> coca、cola、330ml
+ * 查詢時中日韓文字只取 bigram (只有一個字時取單字)，全部都要符合才算命中，效果接近原本的 LIKE '%關鍵字%'；
+ * 其他文字以前綴比對，輸入到一半的單字也能找到商品；也比對單字的中間部分，例如 corn 可找到 popcorn。
+ */
+final class ProductSearchAnalyzer {
+
+	/**
+	 * 查詢的詞
+	 *
+	 * @param text   詞
+	 * @param prefix 是否以前綴比對
+	 */
+	record QueryTerm(String text, boolean prefix) {
+	}
+
+	// 比對單字中間部分的最短長度，太短的後綴 (例如 a、co) 幾乎每個單字都有
+	static final int MIN_INFIX_LENGTH = 3;
+
+	private ProductSearchAnalyzer() {
+	}
+
+	/**
+	 * 索引用的斷詞，回傳每個詞出現的次數
+	 */
+	static void analyze(String text, Map<String, Integer> frequencies) {
+		tokenize(text, true, term -> frequencies.merge(term, 1, Integer::sum));
+	}
+
+	/**
+	 * 查詢用的斷詞，重複的詞只保留一個
+	 */
+	static List<QueryTerm> analyzeQuery(String text) {
+		Set<QueryTerm> terms = new LinkedHashSet<>();
+		tokenize(text, false, term -> terms.add(new QueryTerm(term, !isCjk(term.codePointAt(0)))));
+		return new ArrayList<>(terms);
+	}
+
+	/**
+	 * 英數字詞的後綴 (不含詞本身，至少 MIN_INFIX_LENGTH 個字元)，用於比對單字的中間部分，
+	 * 例如 popcorn -> opcorn、pcorn、corn、orn；中日韓文字的詞已切成單字與 bigram，不需要
+	 */
+	static List<String> suffixes(String term) {
+		if (isCjk(term.codePointAt(0))) {
+			return List.of();
+		}
+		List<String> suffixes = new ArrayList<>();
+		for (int i = term.offsetByCodePoints(0, 1); term.codePointCount(i, term.length()) >= MIN_INFIX_LENGTH;
+				i = term.offsetByCodePoints(i, 1)) {
+			suffixes.add(term.substring(i));
+		}
+		return suffixes;
+	}
+
+	private static void tokenize(String text, boolean forIndex, Consumer<String> sink) {
+		if (text == null || text.isBlank()) {
+			return;
+		}
+		String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+		int[] codePoints = normalized.codePoints().toArray();
+		int i = 0;
+		while (i < codePoints.length) {
+			int start = i;
+			if (isCjk(codePoints[i])) {
+				while (i < codePoints.length && isCjk(codePoints[i])) {
+					i++;
+				}
+				emitCjk(codePoints, start, i, forIndex, sink);
+			} else if (Character.isLetterOrDigit(codePoints[i])) {
+				while (i < codePoints.length && Character.isLetterOrDigit(codePoints[i]) && !isCjk(codePoints[i])) {
+					i++;
+				}
+				sink.accept(new String(codePoints, start, i - start));
+			} else {
+				i++;
+			}
+		}
+	}
+
+	private static void emitCjk(int[] codePoints, int start, int end, boolean forIndex, Consumer<String> sink) {
+		if (forIndex || end - start == 1) {
+			for (int i = start; i < end; i++) {
+				sink.accept(new String(codePoints, i, 1));
+			}
+		}
+		for (int i = start; i + 1 < end; i++) {
+			sink.accept(new String(codePoints, i, 2));
+		}
+	}
+
+	private static boolean isCjk(int codePoint) {
+		Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+		return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+				|| script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+	}
+}
@@ -0,0 +1,444 @@
+package com.flux.movieproject.service.product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.flux.movieproject.repository.product.ProductSearchJdbcRepository;
+import com.flux.movieproject.repository.product.ProductSearchJdbcRepository.SearchRow;
+import com.flux.movieproject.repository.product.ProductStockJdbcRepository.StockLevel;
+import com.flux.movieproject.service.cache.RefreshableSnapshot;
+import com.flux.movieproject.service.product.ProductSearchAnalyzer.QueryTerm;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 商品搜尋的倒排索引，放在記憶體中，查詢時不必掃描 product 資料表。
+ * 1. 索引: 商品名稱、類別名稱與描述經 ProductSearchAnalyzer 斷詞後，記錄每個詞出現在哪些商品 (名稱的權重最高)
+ * 2. 查詢: 關鍵字的每個詞都要命中，依 BM25 的方式計分排序 (越少商品出現的詞分數越高)，再套用上架、類別與價格條件
+ * 3. 分面: 同時統計各類別與各價格區間的商品數；類別的數量不套用類別條件、價格的數量不套用價格條件，切換條件時可直接顯示
+ * 商品異動時只更新該商品，並以商品的 row_version 判斷新舊，較舊的資料不會蓋過較新的庫存。
+ */
+@Service
+public class ProductSearchIndex {
+
+	// 可排序的欄位 (與 Product 的屬性名稱相同)
+	private static final List<String> SORTABLE = List.of("productId", "productName", "price", "stock", "creationTime");
+
+	private static final float NAME_WEIGHT = 3f;
+	private static final float CATEGORY_WEIGHT = 2f;
+	private static final float DESCRIPTION_WEIGHT = 1f;
+	// BM25 的詞頻飽和與長度正規化參數 (內容越長的商品，單一詞的分數越低)
+	private static final float K1 = 1.2f;
+	private static final float B = 0.75f;
+	// 前綴比對 (輸入到一半的單字) 與中間比對 (單字的一部分) 的分數折扣
+	private static final float PREFIX_FACTOR = 0.8f;
+	private static final float INFIX_FACTOR = 0.6f;
+
+	/**
+	 * 要搜尋的商品範圍
+	 */
+	public enum Visibility {
+		// 已上架 (後台)
+		AVAILABLE,
+		// 已上架且有庫存 (前台)
+		IN_STOCK
+	}
+
+	/**
+	 * 搜尋條件
+	 *
+	 * @param keyword    關鍵字，可為 null
+	 * @param categoryId 類別 ID，可為 null
+	 * @param minPrice   最低價格，可為 null
+	 * @param maxPrice   最高價格，可為 null
+	 * @param visibility 商品範圍
+	 * @param sortBy     排序欄位，為 null 時有關鍵字依相關度、沒有關鍵字依商品 ID 排序
+	 * @param descending 是否由大到小排序
+	 * @param page       頁碼 (從 0 開始)
+	 * @param size       每頁筆數
+	 */
+	public record Criteria(String keyword, Integer categoryId, Integer minPrice, Integer maxPrice,
+			Visibility visibility, String sortBy, boolean descending, int page, int size) {
+	}
+
+	/**
+	 * 類別分面
+	 */
+	public record CategoryFacet(Integer categoryId, String categoryName, int count) {
+	}
+
+	/**
+	 * 價格分面
+	 *
+	 * @param from  最低價格 (含)
+	 * @param to    最高價格 (不含)，最後一個區間為 null
+	 * @param count 商品數
+	 */
+	public record PriceFacet(int from, Integer to, int count) {
+	}
+
+	/**
+	 * 搜尋結果
+	 *
+	 * @param productIds 這一頁的商品 ID (已排序)
+	 * @param total      符合條件的商品總數
+	 * @param categories 類別分面
+	 * @param prices     價格分面
+	 */
+	public record Result(List<Integer> productIds, long total, List<CategoryFacet> categories,
+			List<PriceFacet> prices) {
+	}
+
+	/**
+	 * 一個已索引的商品
+	 *
+	 * @param row     商品資料
+	 * @param weights 詞 -> 加權後的詞頻
+	 * @param length  加權後的詞頻總和
+	 */
+	private record Doc(SearchRow row, Map<String, Float> weights, float length) {
+	}
+
+	/**
+	 * 一個命中的商品
+	 */
+	private record Hit(Doc doc, float score) {
+	}
+
+	/**
+	 * 索引的內容。重新建立時整份替換；單一商品的異動持有寫入鎖就地更新，查詢持有讀取鎖
+	 */
+	private static final class Index {
+		private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+		private final Map<Integer, Doc> docs = new HashMap<>();
+		// 詞 -> (商品 ID -> 加權後的詞頻)；依詞排序以支援前綴查詢
+		private final NavigableMap<String, Map<Integer, Float>> postings = new TreeMap<>();
+		// 英數字詞的後綴 -> 有此後綴的詞；依後綴排序，以前綴查詢後綴即可找到中間包含查詢詞的詞
+		private final NavigableMap<String, Set<String>> suffixes = new TreeMap<>();
+		// 所有商品的 Doc.length 總和，用於計算平均長度
+		private float totalLength;
+	}
+
+	@Autowired
+	private ProductSearchJdbcRepository productSearchRepo;
+
+	// 價格分面的區間邊界
+	@Value("${product.search.price-buckets:50,100,200}")
+	private int[] priceBuckets;
+
+	private RefreshableSnapshot<Index> snapshot;
+
+	@PostConstruct
+	public void init() {
+		Arrays.sort(priceBuckets);
+		snapshot = new RefreshableSnapshot<>("商品搜尋", previous -> build());
+		snapshot.reload();
+	}
+
+	/**
+	 * 定期重新建立索引，讓其他應用程式實例的異動也能生效
+	 */
+	@Scheduled(fixedDelayString = "${product.search.refresh-interval-ms:300000}",
+			initialDelayString = "${product.search.refresh-interval-ms:300000}")
+	public void refresh() {
+		snapshot.refresh();
+	}
+
+	/**
+	 * 在目前交易提交後重新索引一個商品 (商品新增、修改或刪除時呼叫)；不在交易中時立即重新索引
+	 */
+	public void reindexAfterCommit(Integer productId) {
+		snapshot.updateAfterCommit(index -> reindex(index, productId));
+	}
+
+	/**
+	 * 在目前交易提交後更新商品的庫存 (訂單扣除或回補庫存時呼叫)
+	 *
+	 * @param stocks 商品 ID -> 更新後的庫存
+	 */
+	public void updateStockAfterCommit(Map<Integer, StockLevel> stocks) {
+		if (stocks.isEmpty()) {
+			return;
+		}
+		Map<Integer, StockLevel> copy = Map.copyOf(stocks);
+		snapshot.updateAfterCommit(index -> updateStock(index, copy));
+	}
+
+	/**
+	 * 搜尋商品
+	 *
+	 * @throws IllegalArgumentException 不支援的排序欄位
+	 */
+	public Result search(Criteria criteria) {
+		Comparator<Hit> order = comparator(criteria);
+		List<QueryTerm> terms = ProductSearchAnalyzer.analyzeQuery(criteria.keyword());
+
+		Index index = snapshot.get();
+		index.lock.readLock().lock();
+		try {
+			List<Hit> matched = new ArrayList<>();
+			for (Hit hit : match(index, terms)) {
+				if (isVisible(hit.doc().row(), criteria.visibility())) {
+					matched.add(hit);
+				}
+			}
+
+			Map<Integer, CategoryFacet> categories = new LinkedHashMap<>();
+			int[] priceCounts = new int[priceBuckets.length + 1];
+			List<Hit> results = new ArrayList<>();
+			for (Hit hit : matched) {
+				SearchRow row = hit.doc().row();
+				boolean categoryMatched = criteria.categoryId() == null || criteria.categoryId().equals(row.categoryId());
+				boolean priceMatched = (criteria.minPrice() == null || row.price() >= criteria.minPrice())
+						&& (criteria.maxPrice() == null || row.price() <= criteria.maxPrice());
+				if (priceMatched && row.categoryId() != null) {
+					categories.merge(row.categoryId(), new CategoryFacet(row.categoryId(), row.categoryName(), 1),
+							(a, b) -> new CategoryFacet(a.categoryId(), a.categoryName(), a.count() + 1));
+				}
+				if (categoryMatched) {
+					priceCounts[bucketOf(row.price())]++;
+				}
+				if (categoryMatched && priceMatched) {
+					results.add(hit);
+				}
+			}
+
+			results.sort(order);
+			int from = Math.min(criteria.page() * criteria.size(), results.size());
+			int to = Math.min(from + criteria.size(), results.size());
+			List<Integer> productIds = results.subList(from, to).stream().map(hit -> hit.doc().row().productId())
+					.toList();
+
+			List<CategoryFacet> categoryFacets = new ArrayList<>(categories.values());
+			categoryFacets.sort(Comparator.comparing(CategoryFacet::categoryId));
+			List<PriceFacet> priceFacets = new ArrayList<>(priceCounts.length);
+			for (int i = 0; i < priceCounts.length; i++) {
+				priceFacets.add(new PriceFacet(i == 0 ? 0 : priceBuckets[i - 1],
+						i < priceBuckets.length ? priceBuckets[i] : null, priceCounts[i]));
+			}
+			return new Result(productIds, results.size(), categoryFacets, priceFacets);
+		} finally {
+			index.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 找出命中所有詞的商品並計分；沒有任何詞時回傳所有商品
+	 */
+	private static List<Hit> match(Index index, List<QueryTerm> terms) {
+		if (terms.isEmpty()) {
+			return index.docs.values().stream().map(doc -> new Hit(doc, 0f)).toList();
+		}
+		Map<Integer, Float> scores = null;
+		for (QueryTerm term : terms) {
+			Map<Integer, Float> termScores = score(index, term);
+			if (scores == null) {
+				scores = termScores;
+			} else {
+				Map<Integer, Float> intersected = new HashMap<>();
+				for (Map.Entry<Integer, Float> entry : scores.entrySet()) {
+					Float termScore = termScores.get(entry.getKey());
+					if (termScore != null) {
+						intersected.put(entry.getKey(), entry.getValue() + termScore);
+					}
+				}
+				scores = intersected;
+			}
+			if (scores.isEmpty()) {
+				return List.of();
+			}
+		}
+		List<Hit> hits = new ArrayList<>(scores.size());
+		scores.forEach((productId, score) -> hits.add(new Hit(index.docs.get(productId), score)));
+		return hits;
+	}
+
+	/**
+	 * 一個查詢詞在各商品的分數；前綴或中間比對時取分數最高的詞
+	 */
+	private static Map<Integer, Float> score(Index index, QueryTerm term) {
+		Map<Integer, Float> scores = new HashMap<>();
+		if (!term.prefix()) {
+			accumulate(index, index.postings.get(term.text()), 1f, scores);
+			return scores;
+		}
+		for (Map.Entry<String, Map<Integer, Float>> entry : index.postings
+				.subMap(term.text(), true, term.text() + Character.MAX_VALUE, false).entrySet()) {
+			accumulate(index, entry.getValue(), entry.getKey().equals(term.text()) ? 1f : PREFIX_FACTOR, scores);
+		}
+		// 詞的中間部分，例如 corn 比對 popcorn
+		if (term.text().codePointCount(0, term.text().length()) < ProductSearchAnalyzer.MIN_INFIX_LENGTH) {
+			return scores;
+		}
+		Set<String> infixTerms = new HashSet<>();
+		index.suffixes.subMap(term.text(), true, term.text() + Character.MAX_VALUE, false).values()
+				.forEach(infixTerms::addAll);
+		for (String infixTerm : infixTerms) {
+			accumulate(index, index.postings.get(infixTerm), INFIX_FACTOR, scores);
+		}
+		return scores;
+	}
+
+	/**
+	 * 以 BM25 計算一個詞在各商品的分數，與已有的分數取最大值
+	 */
+	private static void accumulate(Index index, Map<Integer, Float> posting, float factor, Map<Integer, Float> scores) {
+		if (posting == null) {
+			return;
+		}
+		int docCount = index.docs.size();
+		float averageLength = docCount == 0 ? 1f : index.totalLength / docCount;
+		float idf = (float) Math.log(1 + (docCount - posting.size() + 0.5) / (posting.size() + 0.5));
+		for (Map.Entry<Integer, Float> docEntry : posting.entrySet()) {
+			float weight = docEntry.getValue();
+			float norm = 1 - B + B * index.docs.get(docEntry.getKey()).length() / averageLength;
+			float score = idf * factor * weight * (K1 + 1) / (weight + K1 * norm);
+			scores.merge(docEntry.getKey(), score, Math::max);
+		}
+	}
+
+	private Comparator<Hit> comparator(Criteria criteria) {
+		Comparator<Hit> byId = Comparator.comparingInt(hit -> hit.doc().row().productId());
+		if (criteria.sortBy() == null || criteria.sortBy().isEmpty()) {
+			return criteria.keyword() == null || criteria.keyword().isBlank() ? byId
+					: Comparator.comparing(Hit::score).reversed().thenComparing(byId);
+		}
+		Comparator<Hit> comparator = switch (criteria.sortBy()) {
+		case "productId" -> byId;
+		case "productName" -> Comparator.comparing(hit -> hit.doc().row().productName());
+		case "price" -> Comparator.comparingInt(hit -> hit.doc().row().price());
+		case "stock" -> Comparator.comparingInt(hit -> hit.doc().row().stock());
+		case "creationTime" -> Comparator.comparingLong(hit -> hit.doc().row().creationTime());
+		default -> throw new IllegalArgumentException("不支援的排序欄位: " + criteria.sortBy() + "，可用的欄位: " + SORTABLE);
+		};
+		return (criteria.descending() ? comparator.reversed() : comparator).thenComparing(byId);
+	}
+
+	/**
+	 * 從資料庫重新建立整份索引
+	 */
+	private Index build() {
+		Index index = new Index();
+		for (SearchRow row : productSearchRepo.findAll()) {
+			add(index, row);
+		}
+		return index;
+	}
+
+	private void reindex(Index index, Integer productId) {
+		SearchRow row = productSearchRepo.findById(productId).orElse(null);
+		index.lock.writeLock().lock();
+		try {
+			Doc doc = index.docs.get(productId);
+			if (row != null && doc != null && doc.row().version() > row.version()) {
+				return;
+			}
+			remove(index, productId);
+			if (row != null) {
+				add(index, row);
+			}
+		} finally {
+			index.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 更新庫存；不同交易的更新不一定依提交的順序到達，只套用比索引中的資料新的庫存
+	 */
+	private static void updateStock(Index index, Map<Integer, StockLevel> stocks) {
+		index.lock.writeLock().lock();
+		try {
+			stocks.forEach((productId, level) -> {
+				Doc doc = index.docs.get(productId);
+				if (doc != null && level.version() > doc.row().version()) {
+					SearchRow r = doc.row();
+					index.docs.put(productId, new Doc(new SearchRow(r.productId(), r.productName(), r.description(),
+							r.categoryId(), r.categoryName(), r.price(), level.stock(), r.available(), r.creationTime(),
+							level.version()), doc.weights(), doc.length()));
+				}
+			});
+		} finally {
+			index.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 加入一個商品 (呼叫端需持有寫入鎖，或索引尚未公開)
+	 */
+	private static void add(Index index, SearchRow row) {
+		Map<String, Float> weights = new HashMap<>();
+		addField(row.productName(), NAME_WEIGHT, weights);
+		addField(row.categoryName(), CATEGORY_WEIGHT, weights);
+		addField(row.description(), DESCRIPTION_WEIGHT, weights);
+		float length = 0;
+		for (float weight : weights.values()) {
+			length += weight;
+		}
+		index.docs.put(row.productId(), new Doc(row, weights, length));
+		index.totalLength += length;
+		weights.forEach((term, weight) -> index.postings.computeIfAbsent(term, key -> {
+			for (String suffix : ProductSearchAnalyzer.suffixes(term)) {
+				index.suffixes.computeIfAbsent(suffix, k -> new HashSet<>()).add(term);
+			}
+			return new HashMap<>();
+		}).put(row.productId(), weight));
+	}
+
+	/**
+	 * 移除一個商品 (呼叫端需持有寫入鎖)
+	 */
+	private static void remove(Index index, Integer productId) {
+		Doc doc = index.docs.remove(productId);
+		if (doc == null) {
+			return;
+		}
+		index.totalLength -= doc.length();
+		for (String term : doc.weights().keySet()) {
+			Map<Integer, Float> posting = index.postings.get(term);
+			posting.remove(productId);
+			if (posting.isEmpty()) {
+				index.postings.remove(term);
+				for (String suffix : ProductSearchAnalyzer.suffixes(term)) {
+					Set<String> terms = index.suffixes.get(suffix);
+					terms.remove(term);
+					if (terms.isEmpty()) {
+						index.suffixes.remove(suffix);
+					}
+				}
+			}
+		}
+	}
+
+	private static void addField(String text, float fieldWeight, Map<String, Float> weights) {
+		Map<String, Integer> frequencies = new HashMap<>();
+		ProductSearchAnalyzer.analyze(text, frequencies);
+		frequencies.forEach((term, count) -> weights.merge(term, fieldWeight * count, Float::sum));
+	}
+
+	private static boolean isVisible(SearchRow row, Visibility visibility) {
+		return row.available() && (visibility != Visibility.IN_STOCK || row.stock() > 0);
+	}
+
+	private int bucketOf(int price) {
+		int bucket = 0;
+		while (bucket < priceBuckets.length && price >= priceBuckets[bucket]) {
+			bucket++;
+		}
+		return bucket;
+	}
+}
@@ -5,34 +5,43 @@ import com.flux.movieproject.model.entity.product.Product;
 import com.flux.movieproject.model.entity.product.ProductCategory;
 import com.flux.movieproject.repository.product.ProductCategoryRepository;
 import com.flux.movieproject.repository.product.ProductRepository;
+import com.flux.movieproject.service.product.ProductSearchIndex.Visibility;
+import com.flux.movieproject.utils.PictureConverter;
 import jakarta.persistence.EntityNotFoundException;
-import jakarta.persistence.criteria.Predicate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
-import org.springframework.data.jpa.domain.Specification;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class ProductService {
 
+    // 前台商品列表使用的縮圖寬度
+    private static final int LIST_IMAGE_WIDTH = 480;
+
     private final ProductRepository productRepository;
     private final ProductCategoryRepository productCategoryRepository;
+    private final ProductSearchIndex productSearchIndex;
 
     @Autowired
     public ProductService(ProductRepository productRepository,
-                          ProductCategoryRepository productCategoryRepository) {
+                          ProductCategoryRepository productCategoryRepository,
+                          ProductSearchIndex productSearchIndex) {
         this.productRepository = productRepository;
         this.productCategoryRepository = productCategoryRepository;
+        this.productSearchIndex = productSearchIndex;
     }
 
     @Transactional(readOnly = true) // 確保在交易中執行
@@ -40,13 +49,13 @@ public class ProductService {
         // 查詢會回傳包含代理物件的 Product 列表
         List<Product> products = productRepository.findByCategoryCategoryId(categoryId);
 
-        // 在交易內，將 Product 轉換為 DTO
+        // 在交易內，將 Product 轉換為 DTO (前台列表使用縮圖網址)
         return products.stream()
                 .map(p -> new ProductWithCategoryNameDTO(
                         p.getProductId(),
                         p.getProductName(),
                         p.getPrice(),
-                        p.getImageUrl(),
+                        PictureConverter.toCloudinaryThumbnail(p.getImageUrl(), LIST_IMAGE_WIDTH),
                         p.getDescription(),
                         p.getCategory().getCategoryName() // 這裡會觸發懶加載並獲取名稱
                 ))
@@ -113,7 +122,9 @@ public class ProductService {
         newProduct.setIsAvailable(true);
         newProduct.setCreationTime(Instant.now());
 
-        return productRepository.save(newProduct);
+        Product savedProduct = productRepository.save(newProduct);
+        productSearchIndex.reindexAfterCommit(savedProduct.getProductId());
+        return savedProduct;
 
 
     }
@@ -141,6 +152,7 @@ public class ProductService {
             throw new RuntimeException("此ID沒有產品，產品ID = " + productId);
         }
         productRepository.deleteById(productId);
+        productSearchIndex.reindexAfterCommit(productId);
     }
 
 
@@ -213,6 +225,7 @@ public class ProductService {
 
         // 儲存更新後的產品實體
         Product updatedProduct = productRepository.save(existingProduct);
+        productSearchIndex.reindexAfterCommit(productId);
 
 
         ProductDTO productDto = new ProductDTO(
@@ -252,10 +265,10 @@ public class ProductService {
 
 
     /**
-     * 一個通用的分頁與排序方法
+     * 一個通用的分頁與排序方法 (後台：只看上架產品)
      * @param page 頁碼 (從 0 開始)
      * @param size 每頁筆數
-     * @param sortBy 排序欄位 (例如 "price", "name")，可為 null
+     * @param sortBy 排序欄位 (例如 "price", "productName")，可為 null，有關鍵字時預設依相關度排序
      * @param direction 排序方向 ("asc" 或 "desc")，可為 null
      * @param keyword 搜尋的關鍵字
      */
@@ -268,44 +281,10 @@ public class ProductService {
             @Nullable Integer minPrice,
             @Nullable Integer maxPrice
     ) {
-        // 建立 Pageable 物件，處理分頁和排序
-        Pageable pageable = createPageable(page, size, sortBy, direction);
-
-        // 建立 Specification 物件，處理篩選邏輯
-        Specification<Product> specification = (root, query, criteriaBuilder) -> {
-            List<Predicate> predicates = new ArrayList<>();
-
-            //只看上架產品
-            predicates.add(criteriaBuilder.isTrue(root.get("isAvailable")));
-            // 關鍵字篩選條件
-            if (keyword != null && !keyword.isEmpty()) {
-                predicates.add(criteriaBuilder.like(
-                        criteriaBuilder.lower(root.get("productName")),
-                        "%" + keyword.toLowerCase() + "%"
-                ));
-            }
-
-            // 最低價格篩選條件
-            if (minPrice != null) {
-                predicates.add(criteriaBuilder.greaterThanOrEqualTo(root.get("price"), minPrice));
-            }
-
-            // 最高價格篩選條件
-            if (maxPrice != null) {
-                predicates.add(criteriaBuilder.lessThanOrEqualTo(root.get("price"), maxPrice));
-            }
-
-            // 如果沒有任何篩選條件，回傳一個永遠為 true 的條件
-            if (predicates.isEmpty()) {
-                return criteriaBuilder.isTrue(criteriaBuilder.literal(true));
-            }
-
-            // 將所有條件用 AND 連結起來
-            return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
-        };
-
-        // 執行最終查詢
-        return productRepository.findAll(specification, pageable);
+        // 從記憶體中的搜尋索引取得這一頁的商品 ID，再以主鍵載入商品
+        ProductSearchIndex.Result result = productSearchIndex.search(new ProductSearchIndex.Criteria(keyword, null,
+                minPrice, maxPrice, Visibility.AVAILABLE, sortBy, "desc".equalsIgnoreCase(direction), page, size));
+        return toPage(result, page, size, sortBy, direction);
     }
 
     // 給使用者看的方法：只回傳已上架且有庫存的產品
@@ -320,49 +299,46 @@ public class ProductService {
             @Nullable Integer categoryId
 
     ) {
-        // 建立 Pageable 物件，處理分頁和排序
-        Pageable pageable = createPageable(page, size, sortBy, direction);
-
-        // 使用 Specification 構建動態查詢條件
-        Specification<Product> specification = (root, query, criteriaBuilder) -> {
-            // 建立條件列表，用於存放所有篩選條件
-            List<Predicate> predicates = new ArrayList<>();
-
-            // 1. 預設條件：isAvailable 為 true 且 stock 大於 0
-            predicates.add(criteriaBuilder.isTrue(root.get("isAvailable")));
-            predicates.add(criteriaBuilder.greaterThan(root.get("stock"), 0));
-
-            // 2. 關鍵字篩選條件
-            if (keyword != null && !keyword.isEmpty()) {
-                predicates.add(criteriaBuilder.like(criteriaBuilder.lower(root.get("productName")), "%" + keyword.toLowerCase() + "%"));
-            }
-
-            // 3. 價格範圍篩選條件
-            if (minPrice != null) {
-                predicates.add(criteriaBuilder.greaterThanOrEqualTo(root.get("price"), minPrice));
-            }
-            if (maxPrice != null) {
-                predicates.add(criteriaBuilder.lessThanOrEqualTo(root.get("price"), maxPrice));
-            }
-
-            if (categoryId != null) {
-                // 如果是 @ManyToOne 關聯，使用 category.categoryId
-                predicates.add(criteriaBuilder.equal(
-                        root.get("category").get("categoryId"),
-                        categoryId
-                ));
+        return toPage(searchVisible(page, size, sortBy, direction, keyword, minPrice, maxPrice, categoryId),
+                page, size, sortBy, direction);
+    }
 
-                // 或者如果資料庫欄位名稱是 category_id，可以使用 Join
-                // Join<Product, Category> categoryJoin = root.join("category", JoinType.LEFT);
-                // predicates.add(criteriaBuilder.equal(categoryJoin.get("categoryId"), categoryId));
-            }
+    // 給使用者看的搜尋：除了商品之外，一併回傳各類別與各價格區間的商品數
+    public ProductSearchResultDTO searchVisibleProducts(
+            int page,
+            int size,
+            @Nullable String sortBy,
+            @Nullable String direction,
+            @Nullable String keyword,
+            @Nullable Integer minPrice,
+            @Nullable Integer maxPrice,
+            @Nullable Integer categoryId
+    ) {
+        ProductSearchIndex.Result result = searchVisible(page, size, sortBy, direction, keyword, minPrice, maxPrice,
+                categoryId);
+        Page<ProductResponseDTO> products = toPage(result, page, size, sortBy, direction).map(ProductResponseDTO::new);
+        return new ProductSearchResultDTO(products, result.categories(), result.prices());
+    }
 
-            // 將所有條件用 AND 連結起來
-            return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
-        };
+    private ProductSearchIndex.Result searchVisible(int page, int size, @Nullable String sortBy,
+            @Nullable String direction, @Nullable String keyword, @Nullable Integer minPrice,
+            @Nullable Integer maxPrice, @Nullable Integer categoryId) {
+        return productSearchIndex.search(new ProductSearchIndex.Criteria(keyword, categoryId, minPrice, maxPrice,
+                Visibility.IN_STOCK, sortBy, "desc".equalsIgnoreCase(direction), page, size));
+    }
 
-        // 執行最終查詢
-        return productRepository.findAll(specification, pageable);
+    /**
+     * 依搜尋結果的順序載入這一頁的商品 (一個主鍵 IN 查詢)
+     */
+    private Page<Product> toPage(ProductSearchIndex.Result result, int page, int size, @Nullable String sortBy,
+            @Nullable String direction) {
+        Map<Integer, Product> products = productRepository.findAllById(result.productIds()).stream()
+                .collect(Collectors.toMap(Product::getProductId, Function.identity()));
+        List<Product> content = result.productIds().stream()
+                .map(products::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return new PageImpl<>(content, createPageable(page, size, sortBy, direction), result.total());
     }
 
 
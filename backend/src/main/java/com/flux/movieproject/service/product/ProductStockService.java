@@ -0,0 +1,196 @@
+package com.flux.movieproject.service.product;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.flux.movieproject.model.entity.product.OrderStatus;
+import com.flux.movieproject.repository.product.ProductOrderRepository;
+import com.flux.movieproject.repository.product.ProductStockJdbcRepository;
+import com.flux.movieproject.repository.product.ProductStockJdbcRepository.OrderLine;
+import com.flux.movieproject.repository.product.ProductStockJdbcRepository.StockLevel;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 商品庫存的預留與回補。
+ * 1. 預留: 建立訂單時，每個商品以一個帶條件的 UPDATE 扣除庫存，依商品 ID 由小到大扣除，
+ * 同時購買相同商品的訂單會以相同順序取得列鎖，不會互相死結；任一商品不足時整筆訂單的交易回滾，已扣除的庫存一併還原
+ * 2. 回補: 取消訂單時先以帶條件的 UPDATE 將訂單改為已取消，成功的才回補庫存並歸還使用的優惠券，重複取消不會重複回補
+ * 3. 逾時: 線上付款的訂單建立時為等待線上付款 (AWAITING_PAYMENT)，停留超過保留時間仍未付款，定期自動取消、
+ * 回補庫存並通知顧客；付款與逾時取消都是帶條件的 UPDATE，只有一個會成功。現金 (臨櫃付款) 的訂單為 PENDING，不會逾時
+ */
+@Service
+public class ProductStockService {
+
+	/**
+	 * 庫存不足的例外，由呼叫端轉換成包含商品名稱的訊息
+	 */
+	public static class InsufficientStockException extends IllegalArgumentException {
+		private final int productId;
+
+		public InsufficientStockException(int productId) {
+			super("商品庫存不足，商品ID: " + productId);
+			this.productId = productId;
+		}
+
+		public int getProductId() {
+			return productId;
+		}
+	}
+
+	/**
+	 * 庫存預留的統計數據
+	 *
+	 * @param reservedOrders  成功預留庫存的訂單數
+	 * @param rejectedOrders  因庫存不足而拒絕的訂單數
+	 * @param restockedOrders 取消並回補庫存的訂單數
+	 * @param expiredOrders   逾時未付款而自動取消的訂單數
+	 */
+	public record Stats(long reservedOrders, long rejectedOrders, long restockedOrders, long expiredOrders) {
+	}
+
+	@Autowired
+	private ProductStockJdbcRepository productStockRepo;
+	@Autowired
+	private ProductOrderRepository productOrderRepository;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	@Autowired
+	private ProductSearchIndex productSearchIndex;
+	@Autowired
+	private NotificationService notificationService;
+
+	// 待付款訂單的庫存保留時間
+	@Value("${product-order.reservation-timeout-minutes:30}")
+	private long reservationTimeoutMinutes;
+	// 每次逾時檢查最多處理的訂單數
+	@Value("${product-order.expiry-batch-size:200}")
+	private int expiryBatchSize;
+
+	private TransactionTemplate transaction;
+
+	private final LongAdder reservedOrders = new LongAdder();
+	private final LongAdder rejectedOrders = new LongAdder();
+	private final LongAdder restockedOrders = new LongAdder();
+	private final LongAdder expiredOrders = new LongAdder();
+
+	@PostConstruct
+	public void init() {
+		transaction = new TransactionTemplate(transactionManager);
+	}
+
+	/**
+	 * 在目前交易中預留一筆訂單的庫存。庫存不足時拋出例外，由交易回滾還原已扣除的商品
+	 *
+	 * @param quantities 商品 ID 對應購買數量 (同一商品可出現在多筆明細中，已由呼叫端合計)
+	 * @throws InsufficientStockException 任一商品庫存不足
+	 */
+	@Transactional(propagation = Propagation.MANDATORY)
+	public void reserve(Map<Integer, Integer> quantities) {
+		SortedMap<Integer, Integer> ordered = new TreeMap<>(quantities);
+		Map<Integer, StockLevel> stocks = new HashMap<>();
+		for (Map.Entry<Integer, Integer> entry : ordered.entrySet()) {
+			if (entry.getValue() <= 0) {
+				throw new IllegalArgumentException("購買數量必須大於 0，商品ID: " + entry.getKey());
+			}
+			StockLevel stock = productStockRepo.reserve(entry.getKey(), entry.getValue());
+			if (stock == null) {
+				rejectedOrders.increment();
+				throw new InsufficientStockException(entry.getKey());
+			}
+			stocks.put(entry.getKey(), stock);
+		}
+		productSearchIndex.updateStockAfterCommit(stocks);
+		reservedOrders.increment();
+	}
+
+	/**
+	 * 在目前交易中取消訂單、回補庫存並歸還使用的優惠券
+	 *
+	 * @param orderId      訂單 ID
+	 * @param fromStatuses 允許取消的目前狀態
+	 * @return 是否確實取消了訂單 (訂單已不在允許的狀態時為 false，庫存不變)
+	 */
+	@Transactional(propagation = Propagation.MANDATORY)
+	public boolean cancelAndRestock(Integer orderId, Collection<OrderStatus> fromStatuses) {
+		Set<String> statuses = fromStatuses.stream().map(OrderStatus::name).collect(Collectors.toSet());
+		if (!productStockRepo.markCancelled(orderId, statuses)) {
+			return false;
+		}
+		Map<Integer, StockLevel> stocks = new HashMap<>();
+		for (OrderLine line : productStockRepo.findOrderLines(orderId)) {
+			StockLevel stock = productStockRepo.restock(line.productId(), line.quantity());
+			if (stock != null) {
+				stocks.put(line.productId(), stock);
+			}
+		}
+		productStockRepo.returnCoupon(orderId);
+		productSearchIndex.updateStockAfterCommit(stocks);
+		restockedOrders.increment();
+		return true;
+	}
+
+	/**
+	 * 在目前交易中將等待線上付款的訂單標記為已付款
+	 *
+	 * @return 是否確實標記 (訂單已逾時取消或已付款時為 false)
+	 */
+	@Transactional(propagation = Propagation.MANDATORY)
+	public boolean markPaid(Integer orderId) {
+		return productStockRepo.markPaid(orderId);
+	}
+
+	/**
+	 * 定期取消逾時未付款的線上付款訂單，每筆訂單各自在一個交易中處理，取消後通知顧客
+	 */
+	@Scheduled(fixedDelayString = "${product-order.expiry-interval-ms:60000}",
+			initialDelayString = "${product-order.expiry-interval-ms:60000}")
+	public void expireUnpaidOrders() {
+		Instant cutoff = Instant.now().minus(reservationTimeoutMinutes, ChronoUnit.MINUTES);
+		List<Integer> orderIds = productOrderRepository.findIdsByOrderStatusAndStatusTimeBefore(
+				OrderStatus.AWAITING_PAYMENT, cutoff, PageRequest.of(0, expiryBatchSize));
+		int expired = 0;
+		for (Integer orderId : orderIds) {
+			try {
+				Boolean cancelled = transaction
+						.execute(status -> cancelAndRestock(orderId, EnumSet.of(OrderStatus.AWAITING_PAYMENT)));
+				if (Boolean.TRUE.equals(cancelled)) {
+					expired++;
+					productOrderRepository.findById(orderId)
+							.ifPresent(order -> notificationService.sendEmailAsync(order.getCustomerEmail(), "訂單已取消通知",
+									"您的訂單 " + order.getOrderNumber() + " 超過付款期限未完成付款，已自動取消。"));
+				}
+			} catch (RuntimeException e) {
+				System.err.println("商品訂單: 取消逾時訂單 " + orderId + " 失敗：" + e.getMessage());
+			}
+		}
+		if (expired > 0) {
+			expiredOrders.add(expired);
+			System.out.println("商品訂單: 已取消 " + expired + " 筆逾時未付款的訂單並回補庫存。");
+		}
+	}
+
+	public Stats stats() {
+		return new Stats(reservedOrders.sum(), rejectedOrders.sum(), restockedOrders.sum(), expiredOrders.sum());
+	}
+}
@@ -1,5 +1,6 @@
 package com.flux.movieproject.service.theater;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -11,6 +12,7 @@ import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.flux.movieproject.exception.TheaterTypeCommitException;
@@ -29,8 +31,15 @@ import com.flux.movieproject.model.entity.theater.Theater;
 import com.flux.movieproject.model.entity.theater.TheaterType;
 import com.flux.movieproject.repository.theater.TheaterRepository;
 import com.flux.movieproject.repository.theater.TheaterTypeRepository;
+import com.flux.movieproject.service.cache.CatalogCacheManager;
+import com.flux.movieproject.service.cache.ReadThroughCache;
+import com.flux.movieproject.service.image.ImageService;
+import com.flux.movieproject.service.image.ImageType;
+import com.flux.movieproject.service.ticket.TicketPricingEngine;
 import com.flux.movieproject.utils.PictureConverter;
 
+import jakarta.annotation.PostConstruct;
+
 @Service
 @Transactional(readOnly = true) // 避免fetch lazy時沒有載入到TheaterType
 public class TheaterService {
@@ -39,13 +48,34 @@ public class TheaterService {
 	TheaterRepository theaterRepo;
 	@Autowired
 	TheaterTypeRepository theaterTypeRepo;
+	@Autowired
+	ImageService imageService;
+	@Autowired
+	CatalogCacheManager cacheManager;
+	@Autowired
+	TicketPricingEngine pricingEngine;
+
+	// 影廳與影廳類型列表的快取 (後台異動時清除)
+	private ReadThroughCache<String, List<ShowTheatersResponseDTO>> theatersCache;
+	private ReadThroughCache<String, List<ShowTheaterTypesResponseDTO>> theaterTypesCache;
+
+	@PostConstruct
+	public void initCaches() {
+		theatersCache = cacheManager.getCache(CatalogCacheManager.THEATERS, Duration.ofMinutes(30), 1);
+		theaterTypesCache = cacheManager.getCache(CatalogCacheManager.THEATER_TYPES, Duration.ofMinutes(30), 1);
+	}
 
 	/**
 	 * 取得所有影廳資料
 	 * 
 	 * @return
 	 */
+	@Transactional(propagation = Propagation.SUPPORTS) // 快取命中時不必開啟交易，未命中時由快取在唯讀交易中讀取
 	public List<ShowTheatersResponseDTO> getAllTheaters() {
+		return theatersCache.get(CatalogCacheManager.THEATERS, () -> List.copyOf(loadAllTheaters()));
+	}
+
+	private List<ShowTheatersResponseDTO> loadAllTheaters() {
 		// 創建影廳列表展示物件
 		List<ShowTheatersResponseDTO> theaterList = new ArrayList<>();
 		// 透過dao擷取全部影廳資料
@@ -122,7 +152,12 @@ public class TheaterService {
 	 * 
 	 * @return
 	 */
+	@Transactional(propagation = Propagation.SUPPORTS)
 	public List<ShowTheaterTypesResponseDTO> getAllTheaterTypes() {
+		return theaterTypesCache.get(CatalogCacheManager.THEATER_TYPES, () -> List.copyOf(loadAllTheaterTypes()));
+	}
+
+	private List<ShowTheaterTypesResponseDTO> loadAllTheaterTypes() {
 		List<TheaterType> theaters = theaterTypeRepo.findAll();
 		List<ShowTheaterTypesResponseDTO> dtos = new ArrayList<>();
 
@@ -146,6 +181,7 @@ public class TheaterService {
 	 */
 	@Transactional
 	public UpdateTheaterResponseDTO createTheater(CreateTheaterRequestDTO request) {
+		cacheManager.invalidateAfterCommit(CatalogCacheManager.THEATERS);
 		// 取得影廳類別實體
 		TheaterType theaterType = theaterTypeRepo.findById(request.getTheaterTypeId()).get();
 
@@ -188,6 +224,7 @@ public class TheaterService {
 	 */
 	@Transactional
 	public UpdateTheaterResponseDTO updateTheater(UpdateTheaterRequestDTO request, Integer theaterId) {
+		cacheManager.invalidateAfterCommit(CatalogCacheManager.THEATERS);
 
 		// 0. 建立要回應的DTO
 		UpdateTheaterResponseDTO response = new UpdateTheaterResponseDTO();
@@ -220,6 +257,7 @@ public class TheaterService {
 		// 3-3 處理影廳圖片
 		byte[] photoBytes = PictureConverter.convertBase64ToBytes(request.getTheaterPhoto());
 		theater.setTheaterPhoto(photoBytes);
+		imageService.invalidate(ImageType.THEATER_PHOTO, theater.getTheaterId());
 
 		// 3-4 操作電影座位
 
@@ -290,6 +328,7 @@ public class TheaterService {
 	 */
 	@Transactional
 	public UpdateTheaterResponseDTO deleteTheater(Integer theaterId) {
+		cacheManager.invalidateAfterCommit(CatalogCacheManager.THEATERS);
 		UpdateTheaterResponseDTO response = new UpdateTheaterResponseDTO();
 
 		Optional<Theater> theaterOptional = theaterRepo.findById(theaterId);
@@ -300,6 +339,7 @@ public class TheaterService {
 		}
 
 		theaterRepo.deleteById(theaterId);
+		imageService.invalidate(ImageType.THEATER_PHOTO, theaterId);
 		response.setMessage("刪除影廳：" + theaterOptional.get().getTheaterName() + ", 成功");
 		response.setSuccess(true);
 		return response;
@@ -313,6 +353,9 @@ public class TheaterService {
 	 */
 	@Transactional
 	public UpdateTheaterResponseDTO processTheaterTypeChanges(TheaterTypeChangesRequest request) {
+		// 影廳列表含類型名稱，刪除影廳類型時也會一併刪除其票價規則
+		cacheManager.invalidateAfterCommit(CatalogCacheManager.THEATERS, CatalogCacheManager.THEATER_TYPES);
+		pricingEngine.reloadAfterCommit();
 		// 處理刪除
 		List<Integer> deletedIdList = request.getDeleted();
 		if (deletedIdList != null && !deletedIdList.isEmpty()) {
@@ -0,0 +1,202 @@
+package com.flux.movieproject.service.ticket;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+import org.springframework.dao.DataAccessException;
+
+import com.flux.movieproject.repository.ticket.WorkQueueJdbcRepository;
+import com.flux.movieproject.repository.ticket.WorkQueueJdbcRepository.DeadLetterRow;
+import com.flux.movieproject.repository.ticket.WorkQueueJdbcRepository.WorkItem;
+import com.flux.movieproject.repository.ticket.WorkQueueJdbcRepository.WorkQueueTable;
+
+/**
+ * 以資料表記錄的工作佇列，供綠界付款通知與訂單事件 outbox 共用。
+ * 工作先寫入資料表，再排入有上限的佇列由固定數量的工作執行緒處理；失敗時依次數延後重試，
+ * 超過 maxAttempts 次移到死信。沒排進佇列或處理到一半中斷的工作由 sweep 從資料庫補處理。
+ */
+public class DurableWorkQueue<T extends WorkItem> {
+
+	/**
+	 * 處理一筆工作
+	 */
+	@FunctionalInterface
+	public interface Handler<T> {
+
+		/**
+		 * @param markDone 標記完成；需要與處理結果一起提交時，在處理的交易中呼叫
+		 * @return markDone 的結果
+		 */
+		boolean handle(T item, BooleanSupplier markDone) throws Exception;
+	}
+
+	/**
+	 * @param workers          工作執行緒數
+	 * @param queueCapacity    佇列上限
+	 * @param maxAttempts      最多處理次數
+	 * @param retryBaseSeconds 第 n 次失敗後等待 retryBaseSeconds * 2^(n-1) 秒再重試
+	 */
+	public record Settings(int workers, int queueCapacity, int maxAttempts, long retryBaseSeconds) {
+	}
+
+	/**
+	 * 佇列的統計數據
+	 *
+	 * @param queued       佇列中等待處理的筆數
+	 * @param processed    處理成功的筆數
+	 * @param retried      處理失敗而排定重試的次數
+	 * @param deadLettered 重試次數用盡的筆數
+	 */
+	public record Stats(int queued, long processed, long retried, long deadLettered) {
+	}
+
+	// 建立後超過此時間仍未處理 (沒排進佇列)，或處理中超過此時間 (處理到一半中斷)，由 sweep 補處理
+	private static final long STALE_SECONDS = 60;
+	private static final int SWEEP_BATCH_SIZE = 200;
+
+	private final String name;
+	private final WorkQueueJdbcRepository workQueueRepo;
+	private final WorkQueueTable<T> table;
+	private final Settings settings;
+	private final Handler<T> handler;
+	private final ThreadPoolExecutor executor;
+
+	private final LongAdder processed = new LongAdder();
+	private final LongAdder retried = new LongAdder();
+	private final LongAdder deadLettered = new LongAdder();
+
+	/**
+	 * @param name         佇列名稱，用於記錄
+	 * @param threadPrefix 工作執行緒的名稱前綴
+	 */
+	public DurableWorkQueue(String name, String threadPrefix, WorkQueueJdbcRepository workQueueRepo,
+			WorkQueueTable<T> table, Settings settings, Handler<T> handler) {
+		this.name = name;
+		this.workQueueRepo = workQueueRepo;
+		this.table = table;
+		this.settings = settings;
+		this.handler = handler;
+		AtomicInteger threadCount = new AtomicInteger();
+		// 佇列滿時直接拒絕 (AbortPolicy)，不讓寫入工作的執行緒代為處理
+		this.executor = new ThreadPoolExecutor(settings.workers(), settings.workers(), 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(settings.queueCapacity()), runnable -> {
+					Thread thread = new Thread(runnable, threadPrefix + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	/**
+	 * 停止工作執行緒；還沒處理的工作已經記錄在資料庫中，重啟後由 sweep 補處理
+	 */
+	public void shutdown() throws InterruptedException {
+		executor.shutdown();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * 排入已寫入資料表的工作；佇列已滿時略過，由 sweep 補處理
+	 */
+	public void dispatch(T item) {
+		try {
+			executor.execute(() -> process(item));
+		} catch (RejectedExecutionException e) {
+			// 佇列已滿：工作已記錄在資料庫中，由 sweep 補處理
+		}
+	}
+
+	/**
+	 * 補處理到了重試時間、沒排進佇列，或處理到一半中斷的工作
+	 */
+	public void sweep() {
+		LocalDateTime now = LocalDateTime.now();
+		try {
+			int reset = workQueueRepo.resetStuck(table, now.minusSeconds(STALE_SECONDS), now);
+			if (reset > 0) {
+				System.out.println(name + ": " + reset + " 筆處理中斷的工作將重新處理。");
+			}
+			int capacity = Math.min(SWEEP_BATCH_SIZE, executor.getQueue().remainingCapacity());
+			if (capacity == 0) {
+				return;
+			}
+			for (T item : workQueueRepo.findDue(table, now, now.minusSeconds(STALE_SECONDS), capacity)) {
+				dispatch(item);
+			}
+		} catch (DataAccessException e) {
+			System.err.println(name + "補處理失敗：" + e.getMessage());
+		}
+	}
+
+	/**
+	 * 清除已完成超過 retentionDays 天的工作
+	 */
+	public void purgeDone(int retentionDays) {
+		int purged = workQueueRepo.purgeDone(table, LocalDateTime.now().minusDays(retentionDays));
+		if (purged > 0) {
+			System.out.println(name + ": 已清除 " + purged + " 筆已完成的工作。");
+		}
+	}
+
+	/**
+	 * 重試次數用盡的工作
+	 */
+	public List<DeadLetterRow<T>> findDeadLetters() {
+		return workQueueRepo.findDeadLetters(table);
+	}
+
+	/**
+	 * 將死信重新排入處理
+	 *
+	 * @return 是否找到該筆死信
+	 */
+	public boolean retryDeadLetter(long id) {
+		Optional<T> item = workQueueRepo.requeueDeadLetter(table, id, LocalDateTime.now());
+		item.ifPresent(this::dispatch);
+		return item.isPresent();
+	}
+
+	public Stats stats() {
+		return new Stats(executor.getQueue().size(), processed.sum(), retried.sum(), deadLettered.sum());
+	}
+
+	/**
+	 * 處理一筆工作。先取得處理權，同一筆工作不會被兩個執行緒同時處理
+	 */
+	private void process(T item) {
+		if (!workQueueRepo.markProcessing(table, item.id(), LocalDateTime.now())) {
+			return;
+		}
+		int attempt = item.attempts() + 1;
+		try {
+			if (handler.handle(item, () -> workQueueRepo.markDone(table, item.id(), LocalDateTime.now()))) {
+				processed.increment();
+			}
+		} catch (Exception e) {
+			String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+			try {
+				if (attempt >= settings.maxAttempts()) {
+					workQueueRepo.markDead(table, item.id(), error, LocalDateTime.now());
+					deadLettered.increment();
+					System.err.println(name + " #" + item.id() + " 處理失敗 " + attempt + " 次，已移到死信：" + error);
+				} else {
+					long delaySeconds = settings.retryBaseSeconds() << (attempt - 1);
+					workQueueRepo.markRetry(table, item.id(), error, LocalDateTime.now().plusSeconds(delaySeconds),
+							LocalDateTime.now());
+					retried.increment();
+					System.err.println(name + " #" + item.id() + " 處理失敗，" + delaySeconds + " 秒後重試：" + error);
+				}
+			} catch (DataAccessException updateError) {
+				// 狀態停在 PROCESSING，由 sweep 在逾時後重新處理
+				System.err.println("更新" + name + "狀態失敗：" + updateError.getMessage());
+			}
+		}
+	}
+}
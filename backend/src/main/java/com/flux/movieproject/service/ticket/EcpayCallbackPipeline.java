@@ -0,0 +1,185 @@
+package com.flux.movieproject.service.ticket;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import com.flux.movieproject.repository.ticket.PaymentCallbackJdbcRepository;
+import com.flux.movieproject.repository.ticket.PaymentCallbackJdbcRepository.CallbackRow;
+import com.flux.movieproject.repository.ticket.WorkQueueJdbcRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 綠界付款通知的接收與處理流程。
+ * 1. 接收: 驗證 CheckMacValue 後把通知記錄到 payment_callback (每筆交易只記錄一次)，立即回覆綠界，
+ * 綠界重送的通知若最近處理過，連 CheckMacValue 都不必重新計算。
+ * 2. 處理: 由 DurableWorkQueue 的工作執行緒呼叫 TicketOrderService 更新訂單，
+ * 開演前的通知尖峰只會讓佇列變長，不會佔住處理 HTTP 請求的執行緒；失敗的通知依次數延後重試。
+ */
+@Service
+public class EcpayCallbackPipeline {
+
+	/**
+	 * 接收結果
+	 */
+	public enum Ack {
+		// 已記錄，稍後處理
+		ACCEPTED,
+		// 重送的通知，已經記錄過
+		DUPLICATE,
+		// 缺少必要欄位或 CheckMacValue 驗證失敗
+		INVALID,
+		// 無法記錄 (資料庫錯誤)，需要綠界重送
+		UNAVAILABLE
+	}
+
+	/**
+	 * 流程的統計數據
+	 *
+	 * @param accepted   接收的通知數
+	 * @param duplicates 重送而略過的通知數
+	 * @param invalid    驗證失敗的通知數
+	 * @param queue      處理佇列的統計
+	 */
+	public record Stats(long accepted, long duplicates, long invalid, DurableWorkQueue.Stats queue) {
+	}
+
+	@Autowired
+	private EcpayService ecpayService;
+	@Autowired
+	private TicketOrderService ticketOrderService;
+	@Autowired
+	private PaymentCallbackJdbcRepository paymentCallbackRepo;
+	@Autowired
+	private WorkQueueJdbcRepository workQueueRepo;
+
+	@Value("${ecpay.callback.workers:4}")
+	private int workers;
+	@Value("${ecpay.callback.queue-capacity:1000}")
+	private int queueCapacity;
+	@Value("${ecpay.callback.max-attempts:5}")
+	private int maxAttempts;
+	@Value("${ecpay.callback.retry-base-seconds:10}")
+	private long retryBaseSeconds;
+	// 記在記憶體中的最近交易數，用來在不查資料庫的情況下略過重送的通知
+	@Value("${ecpay.callback.recent-keys:10000}")
+	private int recentKeyCapacity;
+
+	private DurableWorkQueue<CallbackRow> queue;
+	private Map<String, Boolean> recentKeys;
+
+	private final LongAdder accepted = new LongAdder();
+	private final LongAdder duplicates = new LongAdder();
+	private final LongAdder invalid = new LongAdder();
+
+	@PostConstruct
+	public void init() {
+		queue = new DurableWorkQueue<>("綠界通知", "ecpay-callback-", workQueueRepo, PaymentCallbackJdbcRepository.TABLE,
+				new DurableWorkQueue.Settings(workers, queueCapacity, maxAttempts, retryBaseSeconds), this::process);
+		recentKeys = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+				return size() > recentKeyCapacity;
+			}
+		};
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		queue.shutdown();
+	}
+
+	/**
+	 * 接收一筆綠界付款通知
+	 *
+	 * @param callbackData 綠界回傳的參數
+	 * @return 接收結果；ACCEPTED 與 DUPLICATE 都應回覆綠界 "1|OK"
+	 */
+	public Ack receive(Map<String, String> callbackData) {
+		String merchantTradeNo = callbackData.get("MerchantTradeNo");
+		String tradeNo = callbackData.get("TradeNo");
+		String rtnCode = callbackData.get("RtnCode");
+		if (!StringUtils.hasText(merchantTradeNo) || !StringUtils.hasText(tradeNo) || !StringUtils.hasText(rtnCode)) {
+			invalid.increment();
+			return Ack.INVALID;
+		}
+
+		// 1. 最近處理過的交易：這筆交易已經以通過驗證的通知記錄過，重送的內容不會再被使用，不需要驗證
+		String key = merchantTradeNo + "|" + tradeNo;
+		synchronized (recentKeys) {
+			if (recentKeys.get(key) != null) {
+				duplicates.increment();
+				return Ack.DUPLICATE;
+			}
+		}
+
+		// 2. 驗證資料的 CheckMacValue，確保資料未被竄改
+		if (!ecpayService.isValidCheckMacValue(callbackData)) {
+			System.err.println("CheckMacValue 驗證失敗，回傳資料有誤！訂單：" + merchantTradeNo);
+			invalid.increment();
+			return Ack.INVALID;
+		}
+
+		// 3. 記錄通知 (唯一限制擋下重送)，記錄成功後才能回覆綠界
+		Optional<Long> callbackId;
+		try {
+			callbackId = paymentCallbackRepo.insertIfAbsent(merchantTradeNo, tradeNo, rtnCode,
+					callbackData.get("RtnMsg"), LocalDateTime.now());
+		} catch (DataAccessException e) {
+			System.err.println("記錄綠界通知失敗：" + e.getMessage());
+			return Ack.UNAVAILABLE;
+		}
+		synchronized (recentKeys) {
+			recentKeys.put(key, Boolean.TRUE);
+		}
+		if (callbackId.isEmpty()) {
+			duplicates.increment();
+			return Ack.DUPLICATE;
+		}
+
+		// 4. 排入佇列非同步處理
+		accepted.increment();
+		queue.dispatch(new CallbackRow(callbackId.get(), merchantTradeNo, tradeNo, rtnCode, 0));
+		return Ack.ACCEPTED;
+	}
+
+	/**
+	 * 補處理到了重試時間、沒排進佇列，或處理到一半中斷的通知
+	 */
+	@Scheduled(fixedDelayString = "${ecpay.callback.sweep-interval-ms:10000}")
+	public void sweep() {
+		queue.sweep();
+	}
+
+	public DurableWorkQueue<CallbackRow> getQueue() {
+		return queue;
+	}
+
+	public Stats stats() {
+		return new Stats(accepted.sum(), duplicates.sum(), invalid.sum(), queue.stats());
+	}
+
+	/**
+	 * 依綠界的回傳代碼更新訂單；回傳代碼 1 代表交易成功
+	 */
+	private boolean process(CallbackRow row, BooleanSupplier markDone) {
+		if ("1".equals(row.rtnCode())) {
+			ticketOrderService.handlePaymentSuccess(row.merchantTradeNo(), row.tradeNo());
+		} else {
+			ticketOrderService.handlePaymentFailure(row.merchantTradeNo());
+		}
+		return markDone.getAsBoolean();
+	}
+}
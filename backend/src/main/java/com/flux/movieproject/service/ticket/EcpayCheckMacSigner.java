@@ -0,0 +1,198 @@
+package com.flux.movieproject.service.ticket;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 綠界 CheckMacValue 的產生與驗證 (SHA256, EncryptType = 1)。
+ * 計算步驟與綠界規格相同：參數依名稱排序 (不分大小寫) 後以 & 串接，前後加上 HashKey 與 HashIV，
+ * 以 .NET 相容的 URL 編碼轉為小寫後做 SHA256，結果轉為大寫十六進位。
+ * 為了減少每次付款與通知的配置，URL 編碼在一次走訪中直接寫入可重複使用的位元組緩衝區，
+ * MessageDigest 與緩衝區以 ThreadLocal 保存，最後只產生結果字串；驗證時連結果字串也不產生。
+ * 本類別可以被多個執行緒共用。
+ */
+public final class EcpayCheckMacSigner {
+
+	public static final String CHECK_MAC_VALUE = "CheckMacValue";
+
+	private static final int HASH_LENGTH = 32;
+	private static final byte[] HEX_LOWER = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+	private static final char[] HEX_UPPER = "0123456789ABCDEF".toCharArray();
+
+	// .NET HttpUtility.UrlEncode 不編碼的字元 (綠界以此為準，Java URLEncoder 會另外編碼 ! ( ) 三個字元)
+	private static final boolean[] UNRESERVED = new boolean[128];
+	static {
+		for (char c = 'a'; c <= 'z'; c++) {
+			UNRESERVED[c] = true;
+		}
+		for (char c = 'A'; c <= 'Z'; c++) {
+			UNRESERVED[c] = true;
+		}
+		for (char c = '0'; c <= '9'; c++) {
+			UNRESERVED[c] = true;
+		}
+		for (char c : "-_.!*()".toCharArray()) {
+			UNRESERVED[c] = true;
+		}
+	}
+
+	private final String hashKey;
+	private final String hashIv;
+	private final ThreadLocal<SigningState> state = ThreadLocal.withInitial(SigningState::new);
+
+	/**
+	 * 每個執行緒各自重複使用的計算狀態
+	 */
+	private static final class SigningState {
+		private final MessageDigest digest;
+		private final byte[] hash = new byte[HASH_LENGTH];
+		private final char[] hex = new char[HASH_LENGTH * 2];
+		private byte[] buffer = new byte[1024];
+		private int length;
+		private String[] keys = new String[32];
+
+		private SigningState() {
+			try {
+				digest = MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException e) {
+				// 這個錯誤在現代 Java 版本中幾乎不可能發生
+				throw new IllegalStateException(e);
+			}
+		}
+
+		private void ensureCapacity(int additional) {
+			if (length + additional > buffer.length) {
+				buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + additional));
+			}
+		}
+
+		private void appendByte(int b) {
+			ensureCapacity(3);
+			if (b < 0x80 && UNRESERVED[b]) {
+				// 編碼後整個字串轉為小寫
+				buffer[length++] = (byte) (b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b);
+			} else if (b == ' ') {
+				buffer[length++] = '+';
+			} else {
+				buffer[length++] = '%';
+				buffer[length++] = HEX_LOWER[(b >> 4) & 0x0F];
+				buffer[length++] = HEX_LOWER[b & 0x0F];
+			}
+		}
+
+		/**
+		 * 將字串以 UTF-8 編碼後再做 URL 編碼，寫入緩衝區
+		 */
+		private void appendEncoded(String value) {
+			int size = value.length();
+			for (int i = 0; i < size; i++) {
+				char c = value.charAt(i);
+				if (c < 0x80) {
+					appendByte(c);
+				} else if (c < 0x800) {
+					appendByte(0xC0 | (c >> 6));
+					appendByte(0x80 | (c & 0x3F));
+				} else if (Character.isHighSurrogate(c) && i + 1 < size && Character.isLowSurrogate(value.charAt(i + 1))) {
+					int codePoint = Character.toCodePoint(c, value.charAt(++i));
+					appendByte(0xF0 | (codePoint >> 18));
+					appendByte(0x80 | ((codePoint >> 12) & 0x3F));
+					appendByte(0x80 | ((codePoint >> 6) & 0x3F));
+					appendByte(0x80 | (codePoint & 0x3F));
+				} else if (Character.isSurrogate(c)) {
+					// 不成對的代理字元，與 URLEncoder 相同以 ? 取代
+					appendByte('?');
+				} else {
+					appendByte(0xE0 | (c >> 12));
+					appendByte(0x80 | ((c >> 6) & 0x3F));
+					appendByte(0x80 | (c & 0x3F));
+				}
+			}
+		}
+	}
+
+	public EcpayCheckMacSigner(String hashKey, String hashIv) {
+		this.hashKey = hashKey;
+		this.hashIv = hashIv;
+	}
+
+	/**
+	 * 產生 CheckMacValue，參數中的 CheckMacValue 本身不參與計算
+	 *
+	 * @param params 交易參數
+	 * @return 大寫十六進位的 CheckMacValue
+	 */
+	public String sign(Map<String, String> params) {
+		SigningState s = computeHex(params);
+		return new String(s.hex);
+	}
+
+	/**
+	 * 驗證參數中的 CheckMacValue 是否正確 (以固定時間比較)
+	 *
+	 * @param params 綠界回傳的參數
+	 * @return 驗證通過時為 true
+	 */
+	public boolean verify(Map<String, String> params) {
+		String received = params.get(CHECK_MAC_VALUE);
+		if (received == null || received.length() != HASH_LENGTH * 2) {
+			return false;
+		}
+		char[] expected = computeHex(params).hex;
+		int diff = 0;
+		for (int i = 0; i < expected.length; i++) {
+			diff |= expected[i] ^ received.charAt(i);
+		}
+		return diff == 0;
+	}
+
+	private SigningState computeHex(Map<String, String> params) {
+		SigningState s = state.get();
+		s.length = 0;
+
+		// 1. 參數名稱依字母順序排序 (不分大小寫)，排除 CheckMacValue
+		if (s.keys.length < params.size()) {
+			s.keys = new String[Math.max(s.keys.length * 2, params.size())];
+		}
+		int count = 0;
+		for (String key : params.keySet()) {
+			if (!CHECK_MAC_VALUE.equals(key)) {
+				s.keys[count++] = key;
+			}
+		}
+		Arrays.sort(s.keys, 0, count, String.CASE_INSENSITIVE_ORDER);
+
+		// 2. HashKey=...&Key1=Value1&...&HashIV=... 整串進行 URL 編碼
+		s.appendEncoded("HashKey=");
+		s.appendEncoded(hashKey);
+		for (int i = 0; i < count; i++) {
+			String key = s.keys[i];
+			String value = params.get(key);
+			s.appendByte('&');
+			s.appendEncoded(key);
+			s.appendByte('=');
+			if (value != null) {
+				s.appendEncoded(value);
+			}
+			s.keys[i] = null;
+		}
+		s.appendEncoded("&HashIV=");
+		s.appendEncoded(hashIv);
+
+		// 3. SHA256 後轉為大寫十六進位
+		s.digest.update(s.buffer, 0, s.length);
+		try {
+			s.digest.digest(s.hash, 0, HASH_LENGTH);
+		} catch (DigestException e) {
+			throw new IllegalStateException(e);
+		}
+		for (int i = 0; i < HASH_LENGTH; i++) {
+			s.hex[i * 2] = HEX_UPPER[(s.hash[i] >> 4) & 0x0F];
+			s.hex[i * 2 + 1] = HEX_UPPER[s.hash[i] & 0x0F];
+		}
+		return s;
+	}
+}
@@ -1,19 +1,15 @@
 package com.flux.movieproject.service.ticket;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
+
 @Service
 public class EcpayService {
 	// 從 application.properties 讀取設定
@@ -32,6 +28,15 @@ public class EcpayService {
 	@Value("${ecpay.clientBackUrl}")
 	private String clientBackUrl;
 
+	private static final DateTimeFormatter TRADE_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
+
+	private EcpayCheckMacSigner checkMacSigner;
+
+	@PostConstruct
+	public void init() {
+		checkMacSigner = new EcpayCheckMacSigner(hashKey, hashIv);
+	}
+
 	public Map<String, String> createCreditCardOrder(String orderId, Integer amount, String itemName) {
 		// 1. 準備一個 TreeMap，它會自動按照 Key 的字母順序排序
 		Map<String, String> params = new TreeMap<>();
@@ -39,7 +44,7 @@ public class EcpayService {
 		// 2. 放入固定的交易參數
 		params.put("MerchantID", merchantId);
 		params.put("MerchantTradeNo", orderId); // 訂單編號，每次都必須是唯一的
-		params.put("MerchantTradeDate", LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss")));
+		params.put("MerchantTradeDate", LocalDateTime.now().format(TRADE_DATE_FORMAT));
 		params.put("PaymentType", "aio");
 		params.put("TotalAmount", String.valueOf(amount));
 		params.put("TradeDesc", "Flux電影院 - 電影票訂購");
@@ -69,47 +74,7 @@ public class EcpayService {
 	 * @return 加密後的 CheckMacValue 字串
 	 */
 	private String generateCheckMacValue(Map<String, String> params) {
-		// 1. 將參數依照 Key 的字母順序排序
-		// 因為我們一開始就使用 TreeMap，所以這一步已經自動完成了。
-
-		// 2. 將參數用 & 符號串接起來，格式為 Key1=Value1&Key2=Value2...
-		String paramString = params.entrySet().stream().map(entry -> entry.getKey() + "=" + entry.getValue())
-				.collect(Collectors.joining("&"));
-
-		// 3. 在字串前後加上 HashKey 和 HashIV
-		String fullString = "HashKey=" + hashKey + "&" + paramString + "&HashIV=" + hashIv;
-
-		// 4. 對整個字串進行 URL-Encode
-		String urlEncodedString;
-		try {
-			urlEncodedString = URLEncoder.encode(fullString, StandardCharsets.UTF_8.toString()).toLowerCase();
-		} catch (UnsupportedEncodingException e) {
-			// 這個錯誤在現代 Java 版本中幾乎不可能發生
-			throw new RuntimeException(e);
-		}
-
-		// 5. 使用 SHA256 進行加密
-		String hashedString;
-		try {
-			MessageDigest digest = MessageDigest.getInstance("SHA-256");
-			byte[] hash = digest.digest(urlEncodedString.getBytes(StandardCharsets.UTF_8));
-
-			// 6. 將 byte 陣列轉換為十六進位的字串
-			StringBuilder hexString = new StringBuilder();
-			for (byte b : hash) {
-				String hex = Integer.toHexString(0xff & b);
-				if (hex.length() == 1)
-					hexString.append('0');
-				hexString.append(hex);
-			}
-			hashedString = hexString.toString();
-		} catch (NoSuchAlgorithmException e) {
-			// 這個錯誤在現代 Java 版本中也幾乎不可能發生
-			throw new RuntimeException(e);
-		}
-
-		// 7. 將結果轉為大寫
-		return hashedString.toUpperCase();
+		return checkMacSigner.sign(params);
 	}
 
 	/**
@@ -119,18 +84,8 @@ public class EcpayService {
 	 * @return 如果驗證通過回傳 true，否則回傳 false
 	 */
 	public boolean isValidCheckMacValue(Map<String, String> callbackData) {
-		// 1. 取得綠界回傳的 CheckMacValue
-		String receivedCheckMacValue = callbackData.get("CheckMacValue");
-
-		// 2. 移除 CheckMacValue，因為它不參與驗證
-		Map<String, String> tempParams = new TreeMap<>(callbackData);
-		tempParams.remove("CheckMacValue");
-
-		// 3. 重新生成 CheckMacValue
-		String calculatedCheckMacValue = generateCheckMacValue(tempParams);
-
-		// 4. 比較兩者是否一致
-		return receivedCheckMacValue != null && receivedCheckMacValue.equals(calculatedCheckMacValue);
+		// 綠界回傳的 CheckMacValue 不參與計算，由 signer 直接略過，不需要複製整個 Map
+		return checkMacSigner.verify(callbackData);
 	}
 
 }
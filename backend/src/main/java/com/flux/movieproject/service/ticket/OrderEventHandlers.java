@@ -0,0 +1,63 @@
+package com.flux.movieproject.service.ticket;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.flux.movieproject.enums.OrderStatus;
+import com.flux.movieproject.model.entity.theater.TicketOrder;
+import com.flux.movieproject.repository.member.MemberCouponRepository;
+import com.flux.movieproject.repository.ticket.TicketOrderRepository;
+import com.flux.movieproject.service.member.MemberLevelService;
+import com.flux.movieproject.service.member.MemberSpendingLedger;
+
+/**
+ * 訂單事件的處理者，由 OrderEventOutbox 的工作執行緒呼叫。
+ * 同一筆事件可能因重試而被處理不只一次，每個處理都以訂單目前的狀態為準。
+ */
+@Component
+public class OrderEventHandlers {
+
+	@Autowired
+	private TicketOrderRepository ticketOrderRepo;
+	@Autowired
+	private MemberCouponRepository memberCouponRepo;
+	@Autowired
+	private MemberLevelService memberLevelService;
+	@Autowired
+	private MemberSpendingLedger memberSpendingLedger;
+
+	/**
+	 * 依訂單目前的狀態調整會員消費帳，再重新計算會員等級
+	 */
+	@Transactional(propagation = Propagation.MANDATORY)
+	public void updateMemberLevel(Integer ticketOrderId) {
+		memberSpendingLedger.syncTicketOrder(ticketOrderId);
+		memberLevelService.updateLevelOnPurchase(findOrder(ticketOrderId).getMember().getMemberId());
+	}
+
+	/**
+	 * 歸還取消訂單使用的優惠券，必須與事件的完成標記在同一個交易中呼叫，才不會重複歸還
+	 */
+	@Transactional(propagation = Propagation.MANDATORY)
+	public void returnCoupon(Integer ticketOrderId) {
+		TicketOrder order = findOrder(ticketOrderId);
+		if (order.getStatus() != OrderStatus.CANCELLED || order.getCoupon() == null) {
+			return;
+		}
+		memberCouponRepo.findFirstByMemberAndCouponAndStatus(order.getMember(), order.getCoupon(), "已使用")
+				.ifPresent(memberCoupon -> {
+					memberCoupon.setStatus("未使用"); // 將狀態設回「未使用」
+					memberCoupon.setUsageTime(null); // 清空使用時間
+					memberCouponRepo.save(memberCoupon);
+					System.out.println("訂單 " + ticketOrderId + " 已取消，優惠券 "
+							+ memberCoupon.getCoupon().getCouponName() + " 已歸還。");
+				});
+	}
+
+	private TicketOrder findOrder(Integer ticketOrderId) {
+		return ticketOrderRepo.findById(ticketOrderId)
+				.orElseThrow(() -> new IllegalStateException("訂單不存在，ID: " + ticketOrderId));
+	}
+}
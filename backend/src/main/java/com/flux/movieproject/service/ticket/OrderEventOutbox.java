@@ -0,0 +1,178 @@
+package com.flux.movieproject.service.ticket;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.flux.movieproject.repository.ticket.OrderOutboxJdbcRepository;
+import com.flux.movieproject.repository.ticket.OrderOutboxJdbcRepository.OutboxRow;
+import com.flux.movieproject.repository.ticket.WorkQueueJdbcRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 訂單事件的 transactional outbox。
+ * 1. 發布: 訂單付款、退款、取消時，在同一個交易中為事件的每個處理者寫入一筆 order_event_outbox，
+ * 訂位與付款的交易只多幾筆 INSERT，會員等級、優惠券歸還都不在交易中執行，不會延長訂單與座位的鎖定時間。
+ * 2. 處理: 交易提交後排入 DurableWorkQueue，失敗時依次數延後重試。
+ * 處理者與標記完成在同一個交易中，重試不會重複套用。
+ */
+@Service
+public class OrderEventOutbox {
+
+	/**
+	 * 事件的處理者
+	 */
+	public enum Handler {
+		// 重新計算會員等級
+		MEMBER_LEVEL,
+		// 歸還訂單使用的優惠券
+		COUPON_RETURN
+	}
+
+	/**
+	 * 訂單事件與各自的處理者
+	 */
+	public enum EventType {
+		ORDER_PAID(Handler.MEMBER_LEVEL),
+		ORDER_REFUNDED(Handler.MEMBER_LEVEL),
+		ORDER_CANCELLED(Handler.COUPON_RETURN);
+
+		private final List<Handler> handlers;
+
+		EventType(Handler... handlers) {
+			this.handlers = List.of(handlers);
+		}
+
+		public List<Handler> getHandlers() {
+			return handlers;
+		}
+	}
+
+	/**
+	 * outbox 的統計數據
+	 *
+	 * @param published 寫入的事件筆數 (每個處理者各算一筆)
+	 * @param queue     處理佇列的統計
+	 */
+	public record Stats(long published, DurableWorkQueue.Stats queue) {
+	}
+
+	@Autowired
+	private WorkQueueJdbcRepository workQueueRepo;
+	@Autowired
+	private OrderOutboxJdbcRepository outboxRepo;
+	@Autowired
+	private OrderEventHandlers orderEventHandlers;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Value("${order-outbox.workers:2}")
+	private int workers;
+	@Value("${order-outbox.queue-capacity:1000}")
+	private int queueCapacity;
+	@Value("${order-outbox.max-attempts:8}")
+	private int maxAttempts;
+	@Value("${order-outbox.retry-base-seconds:30}")
+	private long retryBaseSeconds;
+	// 已完成的事件保留天數
+	@Value("${order-outbox.retention-days:7}")
+	private int retentionDays;
+
+	private DurableWorkQueue<OutboxRow> queue;
+	private TransactionTemplate transactionTemplate;
+
+	private final LongAdder published = new LongAdder();
+
+	@PostConstruct
+	public void init() {
+		queue = new DurableWorkQueue<>("訂單事件", "order-outbox-", workQueueRepo, OrderOutboxJdbcRepository.TABLE,
+				new DurableWorkQueue.Settings(workers, queueCapacity, maxAttempts, retryBaseSeconds), this::process);
+		transactionTemplate = new TransactionTemplate(transactionManager);
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		queue.shutdown();
+	}
+
+	/**
+	 * 發布訂單事件，必須在改變訂單狀態的交易中呼叫；交易回滾時事件也一併取消
+	 *
+	 * @param eventType     事件類型
+	 * @param ticketOrderId 訂單 ID
+	 */
+	@Transactional(propagation = Propagation.MANDATORY)
+	public void publish(EventType eventType, Integer ticketOrderId) {
+		LocalDateTime now = LocalDateTime.now();
+		List<OutboxRow> rows = new ArrayList<>(eventType.getHandlers().size());
+		for (Handler handler : eventType.getHandlers()) {
+			rows.add(outboxRepo.insert(eventType.name(), handler.name(), ticketOrderId, now));
+		}
+		published.add(rows.size());
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				rows.forEach(queue::dispatch);
+			}
+		});
+	}
+
+	/**
+	 * 補處理到了重試時間、沒排進佇列，或處理到一半中斷的事件
+	 */
+	@Scheduled(fixedDelayString = "${order-outbox.sweep-interval-ms:10000}")
+	public void sweep() {
+		queue.sweep();
+	}
+
+	/**
+	 * 每天清除保留期限已過的已完成事件
+	 */
+	@Scheduled(cron = "0 30 4 * * *")
+	public void purgeDone() {
+		queue.purgeDone(retentionDays);
+	}
+
+	public DurableWorkQueue<OutboxRow> getQueue() {
+		return queue;
+	}
+
+	public Stats stats() {
+		return new Stats(published.sum(), queue.stats());
+	}
+
+	/**
+	 * 執行事件的處理者
+	 */
+	private boolean process(OutboxRow row, BooleanSupplier markDone) {
+		Handler handler = Handler.valueOf(row.handler());
+		// 處理結果與完成標記一起提交；處理權已被排程收回時回滾，交給重新處理的執行緒
+		return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+			if (handler == Handler.MEMBER_LEVEL) {
+				orderEventHandlers.updateMemberLevel(row.ticketOrderId());
+			} else {
+				orderEventHandlers.returnCoupon(row.ticketOrderId());
+			}
+			if (!markDone.getAsBoolean()) {
+				status.setRollbackOnly();
+				return false;
+			}
+			return true;
+		}));
+	}
+}
@@ -0,0 +1,132 @@
+package com.flux.movieproject.service.ticket;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.flux.movieproject.enums.OrderStatus;
+import com.flux.movieproject.model.entity.theater.TicketOrder;
+import com.flux.movieproject.repository.ticket.SessionSeatRepository;
+import com.flux.movieproject.repository.ticket.TicketOrderRepository;
+import com.flux.movieproject.service.moviesession.ShowtimeAvailabilityService;
+import com.flux.movieproject.service.ticket.OrderEventOutbox.EventType;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 臨時訂單到期管理。
+ * 建立臨時預訂時將訂單的到期時間 (SessionSeat.reservedExpiredDate) 放入時間輪，
+ * 由 TicketOrderService 每秒推進一次，只處理真正到期的訂單，不再每分鐘掃描所有 PENDING 訂單。
+ */
+@Service
+public class ReservationExpiryService {
+
+	// 取消到期訂單失敗 (例如死結、鎖等待逾時) 時，延後多久再重試
+	private static final long RETRY_DELAY_SECONDS = 30;
+
+	@Autowired
+	private TicketOrderRepository ticketOrderRepo;
+	@Autowired
+	private SessionSeatRepository sessionSeatRepo;
+	@Autowired
+	private SeatStateEngine seatStateEngine;
+	@Autowired
+	private ShowtimeAvailabilityService showtimeAvailabilityService;
+	@Autowired
+	private OrderEventOutbox orderEventOutbox;
+
+	private ReservationExpiryWheel wheel;
+	// 加入時間輪時就已經到期的訂單，等待下一次推進時一併處理
+	private final List<Integer> pendingDue = new ArrayList<>();
+
+	/**
+	 * 應用程式啟動時，從資料庫重建所有 PENDING 訂單的到期排程
+	 */
+	@PostConstruct
+	public void rebuildFromDatabase() {
+		List<Object[]> expiries = ticketOrderRepo.findReservationExpiriesByStatus(OrderStatus.PENDING);
+		synchronized (this) {
+			wheel = new ReservationExpiryWheel(toEpochSecond(LocalDateTime.now()));
+			for (Object[] row : expiries) {
+				wheel.add((Integer) row[0], toEpochSecond((LocalDateTime) row[1]), pendingDue);
+			}
+		}
+		System.out.println("到期排程: 已從資料庫重建 " + expiries.size() + " 筆臨時訂單的到期時間。");
+	}
+
+	/**
+	 * 將臨時訂單加入到期排程
+	 *
+	 * @param ticketOrderId 訂單 ID
+	 * @param expiryTime    座位保留到期時間
+	 */
+	public synchronized void schedule(Integer ticketOrderId, LocalDateTime expiryTime) {
+		wheel.add(ticketOrderId, toEpochSecond(expiryTime), pendingDue);
+	}
+
+	/**
+	 * 取消失敗的到期訂單重新排入時間輪，稍後重試
+	 */
+	public void retryLater(Integer ticketOrderId) {
+		schedule(ticketOrderId, LocalDateTime.now().plusSeconds(RETRY_DELAY_SECONDS));
+	}
+
+	/**
+	 * 將時間輪推進到目前時間，取出所有已到期的訂單 ID
+	 */
+	public synchronized List<Integer> pollExpired() {
+		List<Integer> due = new ArrayList<>(pendingDue);
+		pendingDue.clear();
+		due.addAll(wheel.advanceTo(toEpochSecond(LocalDateTime.now())));
+		return due;
+	}
+
+	/**
+	 * 取消一筆到期的臨時訂單，並以單一 UPDATE 語句釋放其所有座位。
+	 * 訂單已付款、已取消，或到期時間已被延後時不做任何事。
+	 *
+	 * @param ticketOrderId 到期的訂單 ID
+	 * @return 是否確實取消了訂單
+	 */
+	@Transactional
+	public boolean expireReservation(Integer ticketOrderId) {
+		TicketOrder order = ticketOrderRepo.findById(ticketOrderId).orElse(null);
+		if (order == null || order.getStatus() != OrderStatus.PENDING) {
+			return false;
+		}
+
+		LocalDateTime expiryTime = ticketOrderRepo.findReservationExpiryByOrderId(ticketOrderId);
+		if (expiryTime == null) {
+			return false; // 沒有任何座位，無需處理
+		}
+		if (expiryTime.isAfter(LocalDateTime.now())) {
+			// 到期時間已被延後，重新排程
+			schedule(ticketOrderId, expiryTime);
+			return false;
+		}
+
+		// 1. 先取得要釋放的座位 ID，再清空訂單明細 (orphanRemoval 會刪除明細)
+		List<Integer> sessionSeatIds = ticketOrderRepo.findSessionSeatIdsByOrderId(ticketOrderId);
+		order.getTicketOrderDetails().clear();
+		order.setStatus(OrderStatus.CANCELLED);
+		ticketOrderRepo.saveAndFlush(order);
+		orderEventOutbox.publish(EventType.ORDER_CANCELLED, ticketOrderId);
+
+		// 2. 使用單一 UPDATE 語句批次釋放座位，交易提交後同步記憶體中的座位狀態
+		if (!sessionSeatIds.isEmpty()) {
+			sessionSeatRepo.releaseSeats(sessionSeatIds);
+			seatStateEngine.releaseAfterCommit(sessionSeatIds);
+			showtimeAvailabilityService.onSeatsReleased(sessionSeatIds);
+		}
+		return true;
+	}
+
+	private static long toEpochSecond(LocalDateTime time) {
+		return time.atZone(ZoneId.systemDefault()).toEpochSecond();
+	}
+}
@@ -0,0 +1,99 @@
+package com.flux.movieproject.service.ticket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 階層式時間輪 (Hierarchical Timing Wheel)，以秒為最小刻度管理臨時訂單的到期時間。
+ * 四層時間輪分別為 秒(60格)、分(60格)、時(24格)、日(32格)，超過 32 天的項目暫存在溢位列表，
+ * 每跨過一天重新分配一次。新增與推進的成本與待處理訂單總數無關。
+ * 此類別本身不是執行緒安全的，由 ReservationExpiryService 負責同步。
+ */
+class ReservationExpiryWheel {
+
+	private static final int[] SLOTS = { 60, 60, 24, 32 };
+	private static final long[] TICK_SECONDS = { 1, 60, 3600, 86400 };
+
+	private record Entry(Integer orderId, long expireAtSecond) {
+	}
+
+	private final List<List<Entry>[]> levels = new ArrayList<>();
+	private final List<Entry> overflow = new ArrayList<>();
+	private long currentSecond;
+
+	@SuppressWarnings("unchecked")
+	ReservationExpiryWheel(long startSecond) {
+		this.currentSecond = startSecond;
+		for (int slots : SLOTS) {
+			List<Entry>[] buckets = new List[slots];
+			for (int i = 0; i < slots; i++) {
+				buckets[i] = new ArrayList<>();
+			}
+			levels.add(buckets);
+		}
+	}
+
+	/**
+	 * 加入一筆到期項目
+	 *
+	 * @param due 已經到期的項目會直接放入此列表
+	 */
+	void add(Integer orderId, long expireAtSecond, List<Integer> due) {
+		place(new Entry(orderId, expireAtSecond), due);
+	}
+
+	/**
+	 * 將時間輪推進到指定秒數，並回傳這段期間內到期的訂單 ID
+	 */
+	List<Integer> advanceTo(long targetSecond) {
+		List<Integer> due = new ArrayList<>();
+		while (currentSecond < targetSecond) {
+			currentSecond++;
+			// 先由高層往低層降級，再處理秒層的格子
+			for (int level = levels.size() - 1; level >= 1; level--) {
+				if (currentSecond % TICK_SECONDS[level] == 0) {
+					if (level == levels.size() - 1) {
+						cascade(overflow, due);
+					}
+					cascade(levels.get(level)[slotOf(level, currentSecond)], due);
+				}
+			}
+			List<Entry> bucket = levels.get(0)[slotOf(0, currentSecond)];
+			for (Entry entry : bucket) {
+				due.add(entry.orderId());
+			}
+			bucket.clear();
+		}
+		return due;
+	}
+
+	private void cascade(List<Entry> bucket, List<Integer> due) {
+		if (bucket.isEmpty()) {
+			return;
+		}
+		List<Entry> entries = new ArrayList<>(bucket);
+		bucket.clear();
+		for (Entry entry : entries) {
+			place(entry, due);
+		}
+	}
+
+	private void place(Entry entry, List<Integer> due) {
+		long delay = entry.expireAtSecond() - currentSecond;
+		if (delay <= 0) {
+			due.add(entry.orderId());
+			return;
+		}
+		for (int level = 0; level < levels.size(); level++) {
+			if (delay < TICK_SECONDS[level] * SLOTS[level]) {
+				levels.get(level)[slotOf(level, entry.expireAtSecond())].add(entry);
+				return;
+			}
+		}
+		overflow.add(entry);
+	}
+
+	private static int slotOf(int level, long second) {
+		return (int) ((second / TICK_SECONDS[level]) % SLOTS[level]);
+	}
+}
@@ -0,0 +1,120 @@
+package com.flux.movieproject.service.ticket;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.flux.movieproject.enums.SeatStatus;
+import com.flux.movieproject.model.entity.theater.SessionSeat;
+import com.flux.movieproject.repository.ticket.SeatClaimJdbcRepository;
+import com.flux.movieproject.repository.ticket.SessionSeatRepository;
+
+/**
+ * 訂位時在資料庫中搶下座位 (AVAILABLE -> RESERVED)，必須在訂位的交易中呼叫。
+ * 1. PESSIMISTIC: 以 SELECT ... 加悲觀寫鎖讀出座位 Entity，檢查狀態後再修改。
+ * 2. OPTIMISTIC: 以一個帶條件的 UPDATE 直接搶位，影響筆數與座位數相同即成功，不需要讀出座位 Entity；
+ * 只有在座位已被預訂 (影響筆數不足) 時才退回這次搶下的座位，改走悲觀鎖流程取得確切的錯誤原因。
+ * 訂位請求已先經過 SeatStateEngine 在記憶體中搶位，絕大多數請求在資料庫中不會衝突，適合使用樂觀模式。
+ * 預設模式以 ticket.reservation.seat-claim-mode 設定。
+ */
+@Component
+public class SeatClaimService {
+
+	public enum ClaimMode {
+		PESSIMISTIC, OPTIMISTIC
+	}
+
+	/**
+	 * 搶位次數統計
+	 *
+	 * @param mode              預設模式
+	 * @param optimisticClaims  樂觀模式一次成功的次數
+	 * @param fallbacks         樂觀模式因衝突改走悲觀鎖的次數
+	 * @param pessimisticClaims 以悲觀鎖搶位的次數 (含退回的)
+	 */
+	public record ClaimStats(ClaimMode mode, long optimisticClaims, long fallbacks, long pessimisticClaims) {
+	}
+
+	@Autowired
+	private SessionSeatRepository sessionSeatRepo;
+	@Autowired
+	private SeatClaimJdbcRepository seatClaimJdbcRepo;
+	@Autowired
+	private SeatStateEngine seatStateEngine;
+
+	@Value("${ticket.reservation.seat-claim-mode:PESSIMISTIC}")
+	private ClaimMode defaultMode;
+
+	private final LongAdder optimisticClaims = new LongAdder();
+	private final LongAdder fallbacks = new LongAdder();
+	private final LongAdder pessimisticClaims = new LongAdder();
+
+	/**
+	 * 以預設模式搶下座位
+	 *
+	 * @see #claim(Integer, List, LocalDateTime, ClaimMode)
+	 */
+	public List<SessionSeat> claim(Integer sessionId, List<Integer> sessionSeatIds, LocalDateTime expiryTime) {
+		return claim(sessionId, sessionSeatIds, expiryTime, defaultMode);
+	}
+
+	/**
+	 * 搶下座位並設定預訂到期時間
+	 *
+	 * @param sessionId      場次 ID
+	 * @param sessionSeatIds 要預訂的 SessionSeat ID
+	 * @param expiryTime     預訂到期時間
+	 * @param mode           搶位模式
+	 * @return 已預訂的座位，可直接用於建立訂單明細 (樂觀模式回傳的是未載入的參照)
+	 * @throws RuntimeException 部分座位不存在或已被預訂
+	 */
+	public List<SessionSeat> claim(Integer sessionId, List<Integer> sessionSeatIds, LocalDateTime expiryTime,
+			ClaimMode mode) {
+		if (mode == ClaimMode.OPTIMISTIC) {
+			List<Integer> claimedIds = seatClaimJdbcRepo.claimAvailableSeats(sessionId, sessionSeatIds, expiryTime);
+			if (claimedIds.size() == sessionSeatIds.size()) {
+				optimisticClaims.increment();
+				return sessionSeatIds.stream().map(sessionSeatRepo::getReferenceById).toList();
+			}
+			// 有座位已被預訂：退回這次搶下的座位 (仍由本交易鎖定，不會被其他交易看到)，再以悲觀鎖確認
+			if (!claimedIds.isEmpty()) {
+				seatClaimJdbcRepo.releaseClaimedSeats(claimedIds);
+			}
+			fallbacks.increment();
+		}
+		return claimWithLock(sessionId, sessionSeatIds, expiryTime);
+	}
+
+	public ClaimStats stats() {
+		return new ClaimStats(defaultMode, optimisticClaims.sum(), fallbacks.sum(), pessimisticClaims.sum());
+	}
+
+	private List<SessionSeat> claimWithLock(Integer sessionId, List<Integer> sessionSeatIds,
+			LocalDateTime expiryTime) {
+		pessimisticClaims.increment();
+		List<SessionSeat> lockedSeats = sessionSeatRepo.findAndLockBySessionSeatIdIn(sessionSeatIds);
+
+		// 驗證座位狀態與數量 (資料庫仍是唯一的真實來源)
+		if (lockedSeats.size() != sessionSeatIds.size()) {
+			throw new RuntimeException("部分座位不存在或已被搶訂");
+		}
+		for (SessionSeat seat : lockedSeats) {
+			if (seat.getStatus() != SeatStatus.AVAILABLE) {
+				// 記憶體與資料庫不一致，移除點陣圖讓下次請求重新從資料庫載入
+				seatStateEngine.evict(sessionId);
+				String seatInfo = seat.getSeat().getRowNumber() + "排" + seat.getSeat().getColumnNumber() + "號";
+				throw new RuntimeException("座位 " + seatInfo + " 已被預訂，請重新選擇。");
+			}
+		}
+
+		for (SessionSeat seat : lockedSeats) {
+			seat.setStatus(SeatStatus.RESERVED);
+			seat.setReservedExpiredDate(expiryTime);
+		}
+		return lockedSeats;
+	}
+}
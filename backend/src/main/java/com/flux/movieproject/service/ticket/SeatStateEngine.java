@@ -0,0 +1,195 @@
+package com.flux.movieproject.service.ticket;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.flux.movieproject.enums.SeatStatus;
+import com.flux.movieproject.exception.SeatTakenException;
+import com.flux.movieproject.repository.ticket.SessionSeatRepository;
+import com.flux.movieproject.service.moviesession.SeatStatusBroadcaster;
+
+/**
+ * 記憶體中的場次座位狀態引擎。
+ * 每個場次維護一份 SessionSeatBitmap，訂位請求先在記憶體中以 CAS 搶位，
+ * 搶位失敗的請求會立即收到 SeatTakenException，不會進到資料庫等待悲觀鎖。
+ * 資料庫 (session_seat) 仍是唯一的真實來源，點陣圖在第一次使用時才從資料庫載入。
+ */
+@Component
+public class SeatStateEngine {
+
+	@Autowired
+	private SessionSeatRepository sessionSeatRepo;
+	@Autowired
+	private SeatStatusBroadcaster seatStatusBroadcaster;
+
+	// 點陣圖閒置超過此時間便從記憶體移除，下次使用時再重新從資料庫載入
+	@Value("${seat.engine.idle-eviction-minutes:30}")
+	private long idleEvictionMinutes;
+
+	private final Map<Integer, SessionSeatBitmap> bitmaps = new ConcurrentHashMap<>();
+
+	/**
+	 * 在記憶體中搶下指定座位 (AVAILABLE -> RESERVED)。 只要有任一座位搶位失敗，已搶下的座位會全部退回，整個請求失敗。
+	 *
+	 * @param sessionId      場次 ID
+	 * @param sessionSeatIds 要預訂的 SessionSeat ID 列表
+	 * @throws SeatTakenException 任一座位已被他人預訂或不屬於該場次
+	 */
+	public void claim(Integer sessionId, List<Integer> sessionSeatIds) {
+		SessionSeatBitmap bitmap = getOrLoad(sessionId);
+
+		List<Integer> claimedIndexes = new ArrayList<>(sessionSeatIds.size());
+		List<Integer> conflicts = new ArrayList<>();
+		for (Integer sessionSeatId : sessionSeatIds) {
+			int index = bitmap.indexOf(sessionSeatId);
+			if (index < 0 || !bitmap.compareAndSet(index, SeatStatus.AVAILABLE, SeatStatus.RESERVED)) {
+				conflicts.add(sessionSeatId);
+				break;
+			}
+			claimedIndexes.add(index);
+		}
+
+		if (!conflicts.isEmpty()) {
+			// 退回這次請求已經搶下的座位
+			for (Integer index : claimedIndexes) {
+				bitmap.compareAndSet(index, SeatStatus.RESERVED, SeatStatus.AVAILABLE);
+			}
+			throw new SeatTakenException("您選擇的座位已被其他人預訂，請重新選擇。", conflicts);
+		}
+	}
+
+	/**
+	 * 搶位成功後呼叫，將搶位結果綁定到外層交易：
+	 * 交易提交後推播座位已被預訂；交易沒有提交 (例如寫入資料庫失敗) 則自動把座位退回 AVAILABLE。
+	 */
+	public void bindToTransaction(Integer sessionId, List<Integer> sessionSeatIds) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			seatStatusBroadcaster.publish(sessionId, sessionSeatIds, SeatStatus.RESERVED);
+			return;
+		}
+		// 記下搶位時的點陣圖，若期間點陣圖已被重新載入，就不再用舊的搶位結果覆寫
+		SessionSeatBitmap claimedBitmap = bitmaps.get(sessionId);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCompletion(int status) {
+				if (status == STATUS_COMMITTED) {
+					seatStatusBroadcaster.publish(sessionId, sessionSeatIds, SeatStatus.RESERVED);
+				} else if (claimedBitmap != null && bitmaps.get(sessionId) == claimedBitmap) {
+					release(sessionId, sessionSeatIds);
+				}
+			}
+		});
+	}
+
+	/**
+	 * 在交易提交後將座位釋放回 AVAILABLE；若目前不在交易中則立即釋放。
+	 * 不知道座位所屬場次時使用 (例如過期或取消的訂單只持有 SessionSeat ID)。
+	 */
+	public void releaseAfterCommit(Collection<Integer> sessionSeatIds) {
+		List<Integer> ids = List.copyOf(sessionSeatIds);
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			release(ids);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				release(ids);
+			}
+		});
+	}
+
+	/**
+	 * 將指定場次的座位釋放回 AVAILABLE
+	 */
+	public void release(Integer sessionId, Collection<Integer> sessionSeatIds) {
+		SessionSeatBitmap bitmap = bitmaps.get(sessionId);
+		if (bitmap == null) {
+			return; // 尚未載入，下次載入時會直接讀到資料庫的最新狀態
+		}
+		for (Integer sessionSeatId : sessionSeatIds) {
+			int index = bitmap.indexOf(sessionSeatId);
+			if (index >= 0) {
+				bitmap.forceSet(index, SeatStatus.AVAILABLE);
+			}
+		}
+	}
+
+	/**
+	 * 將座位釋放回 AVAILABLE (不指定場次，依 ID 範圍找出所屬的點陣圖)，並推播給正在看座位圖的使用者
+	 */
+	public void release(Collection<Integer> sessionSeatIds) {
+		for (SessionSeatBitmap bitmap : bitmaps.values()) {
+			List<Integer> released = new ArrayList<>();
+			for (Integer sessionSeatId : sessionSeatIds) {
+				if (!bitmap.covers(sessionSeatId)) {
+					continue;
+				}
+				int index = bitmap.indexOf(sessionSeatId);
+				if (index >= 0) {
+					bitmap.forceSet(index, SeatStatus.AVAILABLE);
+					released.add(sessionSeatId);
+				}
+			}
+			seatStatusBroadcaster.publish(bitmap.getSessionId(), released, SeatStatus.AVAILABLE);
+		}
+	}
+
+	/**
+	 * 確保場次的點陣圖已載入 (有人訂閱座位圖時呼叫，之後的釋放才能找到所屬場次並推播)
+	 */
+	public void track(Integer sessionId) {
+		getOrLoad(sessionId);
+	}
+
+	/**
+	 * 場次被刪除或座位重新生成時，移除記憶體中的點陣圖
+	 */
+	public void evict(Integer sessionId) {
+		bitmaps.remove(sessionId);
+		if (seatStatusBroadcaster.hasSubscribers(sessionId)) {
+			// 仍有人在看座位圖，立即重新載入，確保之後的異動能推播出去
+			track(sessionId);
+		}
+	}
+
+	/**
+	 * 定時清除閒置的點陣圖，避免已下檔或已結束的場次一直佔用記憶體
+	 */
+	@Scheduled(fixedRate = 600000) // 每 10 分鐘執行一次
+	public void evictIdleBitmaps() {
+		long threshold = System.currentTimeMillis() - idleEvictionMinutes * 60_000;
+		bitmaps.values().removeIf(bitmap -> bitmap.getLastAccessMillis() < threshold
+				&& !seatStatusBroadcaster.hasSubscribers(bitmap.getSessionId()));
+	}
+
+	private SessionSeatBitmap getOrLoad(Integer sessionId) {
+		SessionSeatBitmap bitmap = bitmaps.computeIfAbsent(sessionId, this::load);
+		bitmap.touch();
+		return bitmap;
+	}
+
+	/**
+	 * 從資料庫載入場次所有座位的 ID 與狀態 (只查兩個欄位，不建立 Entity)
+	 */
+	private SessionSeatBitmap load(Integer sessionId) {
+		List<Object[]> rows = sessionSeatRepo.findSeatStatesBySessionId(sessionId);
+		int[] ids = new int[rows.size()];
+		SeatStatus[] states = new SeatStatus[rows.size()];
+		for (int i = 0; i < rows.size(); i++) {
+			ids[i] = (Integer) rows.get(i)[0];
+			states[i] = (SeatStatus) rows.get(i)[1];
+		}
+		return new SessionSeatBitmap(sessionId, ids, states);
+	}
+}
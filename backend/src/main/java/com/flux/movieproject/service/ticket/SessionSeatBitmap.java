@@ -0,0 +1,115 @@
+package com.flux.movieproject.service.ticket;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.flux.movieproject.enums.SeatStatus;
+
+/**
+ * 單一場次的座位狀態點陣圖。
+ * 每個座位佔 2 個位元 (AVAILABLE / RESERVED / SOLD / UNAVAILABLE)，一個 long 可存放 32 個座位，
+ * 狀態轉換透過 compareAndSet 完成，不需要任何鎖。
+ */
+class SessionSeatBitmap {
+
+	private static final int BITS_PER_SEAT = 2;
+	private static final int SEATS_PER_WORD = Long.SIZE / BITS_PER_SEAT;
+	private static final long SEAT_MASK = (1L << BITS_PER_SEAT) - 1;
+
+	private static final SeatStatus[] STATES = SeatStatus.values();
+
+	private final Integer sessionId;
+	// 已排序的 SessionSeat ID，陣列索引即為點陣圖中的座位位置
+	private final int[] sessionSeatIds;
+	private final AtomicLongArray words;
+	private volatile long lastAccessMillis = System.currentTimeMillis();
+
+	SessionSeatBitmap(Integer sessionId, int[] sortedSessionSeatIds, SeatStatus[] initialStates) {
+		this.sessionId = sessionId;
+		this.sessionSeatIds = sortedSessionSeatIds;
+		this.words = new AtomicLongArray((sortedSessionSeatIds.length + SEATS_PER_WORD - 1) / SEATS_PER_WORD);
+		for (int i = 0; i < initialStates.length; i++) {
+			SeatStatus status = initialStates[i] == null ? SeatStatus.UNAVAILABLE : initialStates[i];
+			forceSet(i, status);
+		}
+	}
+
+	Integer getSessionId() {
+		return sessionId;
+	}
+
+	long getLastAccessMillis() {
+		return lastAccessMillis;
+	}
+
+	void touch() {
+		lastAccessMillis = System.currentTimeMillis();
+	}
+
+	/**
+	 * 判斷 SessionSeat ID 是否落在此場次的 ID 範圍內 (用於快速排除不相干的場次)
+	 */
+	boolean covers(int sessionSeatId) {
+		return sessionSeatIds.length > 0 && sessionSeatId >= sessionSeatIds[0]
+				&& sessionSeatId <= sessionSeatIds[sessionSeatIds.length - 1];
+	}
+
+	/**
+	 * @return 座位在點陣圖中的位置，不屬於此場次時回傳負數
+	 */
+	int indexOf(int sessionSeatId) {
+		return Arrays.binarySearch(sessionSeatIds, sessionSeatId);
+	}
+
+	int sessionSeatIdAt(int index) {
+		return sessionSeatIds[index];
+	}
+
+	int size() {
+		return sessionSeatIds.length;
+	}
+
+	SeatStatus get(int index) {
+		long word = words.get(index / SEATS_PER_WORD);
+		int shift = (index % SEATS_PER_WORD) * BITS_PER_SEAT;
+		return STATES[(int) ((word >>> shift) & SEAT_MASK)];
+	}
+
+	/**
+	 * 以 CAS 將座位狀態從 expect 改為 update
+	 *
+	 * @return 目前狀態不是 expect 時回傳 false
+	 */
+	boolean compareAndSet(int index, SeatStatus expect, SeatStatus update) {
+		int wordIndex = index / SEATS_PER_WORD;
+		int shift = (index % SEATS_PER_WORD) * BITS_PER_SEAT;
+		long mask = SEAT_MASK << shift;
+		while (true) {
+			long current = words.get(wordIndex);
+			if (((current & mask) >>> shift) != expect.ordinal()) {
+				return false;
+			}
+			long next = (current & ~mask) | ((long) update.ordinal() << shift);
+			if (words.compareAndSet(wordIndex, current, next)) {
+				return true;
+			}
+			// 同一個 word 內其他座位被修改，重試即可
+		}
+	}
+
+	/**
+	 * 不論目前狀態，直接覆寫座位狀態 (用於與資料庫重新同步)
+	 */
+	void forceSet(int index, SeatStatus update) {
+		int wordIndex = index / SEATS_PER_WORD;
+		int shift = (index % SEATS_PER_WORD) * BITS_PER_SEAT;
+		long mask = SEAT_MASK << shift;
+		while (true) {
+			long current = words.get(wordIndex);
+			long next = (current & ~mask) | ((long) update.ordinal() << shift);
+			if (words.compareAndSet(wordIndex, current, next)) {
+				return;
+			}
+		}
+	}
+}
@@ -1,28 +1,26 @@
 package com.flux.movieproject.service.ticket;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
-import org.springframework.data.jpa.domain.Specification;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
-import com.flux.movieproject.enums.DiscountType;
 import com.flux.movieproject.enums.OrderDetailStatus;
 import com.flux.movieproject.enums.OrderStatus;
 import com.flux.movieproject.enums.SeatStatus;
@@ -35,8 +33,8 @@ import com.flux.movieproject.model.dto.ticket.TicketItemDTO;
 import com.flux.movieproject.model.dto.ticket.TicketOrderDetailDTO;
 import com.flux.movieproject.model.dto.ticket.TicketOrderHistoryDTO;
 import com.flux.movieproject.model.dto.ticket.TicketOrderSearchRequestDTO;
+import com.flux.movieproject.model.dto.ticket.TicketOrderSearchResultDTO;
 import com.flux.movieproject.model.dto.ticket.TicketOrderSummaryDTO;
-import com.flux.movieproject.model.dto.ticket.TicketRequest;
 import com.flux.movieproject.model.dto.ticket.UpdateOrderResponse;
 import com.flux.movieproject.model.dto.ticket.UpdateTicketOrderResponseDTO;
 import com.flux.movieproject.model.entity.event.Coupon;
@@ -56,12 +54,20 @@ import com.flux.movieproject.repository.member.MemberRepository;
 import com.flux.movieproject.repository.moviesession.MovieSessionRepository;
 import com.flux.movieproject.repository.ticket.SessionSeatRepository;
 import com.flux.movieproject.repository.ticket.TicketOrderRepository;
+import com.flux.movieproject.repository.ticket.TicketOrderSearchJdbcRepository;
+import com.flux.movieproject.repository.ticket.TicketOrderSearchJdbcRepository.Cursor;
+import com.flux.movieproject.repository.ticket.TicketOrderSearchJdbcRepository.OrderHeaderRow;
+import com.flux.movieproject.repository.ticket.TicketOrderSearchJdbcRepository.OrderItemRow;
+import com.flux.movieproject.repository.ticket.TicketOrderSearchJdbcRepository.OrderRow;
+import com.flux.movieproject.repository.ticket.TicketOrderSearchJdbcRepository.SearchCriteria;
 import com.flux.movieproject.repository.ticket.TicketTypeRepository;
+import com.flux.movieproject.service.event.CouponEligibilityIndex;
+import com.flux.movieproject.service.moviesession.ShowtimeAvailabilityService;
+import com.flux.movieproject.service.ticket.OrderEventOutbox.EventType;
+import com.flux.movieproject.service.ticket.TicketPricingEngine.PricedLine;
+import com.flux.movieproject.service.ticket.TicketPricingEngine.Quote;
 import com.flux.movieproject.utils.OrderNumberUtils;
 
-import jakarta.persistence.criteria.Join;
-import jakarta.persistence.criteria.Predicate;
-
 @Service
 @Transactional(readOnly = true)
 public class TicketOrderService {
@@ -79,87 +85,73 @@ public class TicketOrderService {
 	private MemberCouponRepository memberCouponRepo;
 	@Autowired
 	private MemberLevelRecordRepository memberLevelRecordRepo;
+	@Autowired
+	private SeatStateEngine seatStateEngine;
+	@Autowired
+	private SeatClaimService seatClaimService;
+	@Autowired
+	private ReservationExpiryService reservationExpiryService;
+	@Autowired
+	private ShowtimeAvailabilityService showtimeAvailabilityService;
+	@Autowired
+	private TicketOrderSearchJdbcRepository ticketOrderSearchRepo;
+	@Autowired
+	private OrderEventOutbox orderEventOutbox;
+	@Autowired
+	private TicketPricingEngine pricingEngine;
+	@Autowired
+	private CouponEligibilityIndex couponEligibilityIndex;
 
-	public Page<TicketOrderSummaryDTO> findOrdersByCriteria(TicketOrderSearchRequestDTO searchDTO) {
-		/**
-		 * Specification<TicketOrder> spec = (root, query, cb) -> { ... };
-		 * 根據情況自由組合的「查詢規則」 root: 代表查詢的起始點，也就是 TicketOrder 這張表。 query: 代表整個查詢語句，可以用來設定
-		 * JOIN 等進階操作。 cb (CriteriaBuilder): 這是一個「規則產生器」，我們用它來建立各種查詢條件， 例如「等於
-		 * (equal)」、「相似 (like)」、「介於 (between)」。
-		 */
-		// Specification 讓我們可以用 Java 物件的方式來組合 SQL 的 WHERE 條件
-		Specification<TicketOrder> spec = (root, query, cb) -> {
-			List<Predicate> predicates = new ArrayList<>();
-
-			// 為了查詢會員資訊，需要 JOIN member 表
-			Join<TicketOrder, Member> memberJoin = root.join("member");
-
-			// 判斷傳入的是否為專業訂單編號 (例如 FX 開頭)
-			if (StringUtils.hasText(searchDTO.getOrderNumber()) && searchDTO.getOrderNumber().startsWith("FX")) {
-				try {
-					// 如果是，則先解碼回 ID
-					Integer decodedId = OrderNumberUtils.decode(searchDTO.getOrderNumber());
-					// 清空所有其他條件，只進行精確的 ID 查詢
-					predicates.clear();
-					predicates.add(cb.equal(root.get("ticketOrderId"), decodedId));
-					// 將所有條件用 AND 連接起來並返回，結束後續的條件判斷
-					return cb.and(predicates.toArray(new Predicate[0]));
-				} catch (IllegalArgumentException e) {
-					// 如果解碼失敗，代表格式錯誤，可以讓它查無結果
-					// 這裡我們加入一個永遠為 false 的條件
-					return cb.disjunction(); // or cb.equal(cb.literal(1), 0)
-				}
-			}
+	// 後台訂單查詢每頁筆數上限
+	private static final int MAX_SEARCH_PAGE_SIZE = 100;
 
-			// 根據 DTO 中的條件，動態增加查詢 Predicate
-			// StringUtils.hasText() 檢查傳來的字串是不是 null 或 空字串
-			if (StringUtils.hasText(searchDTO.getUsername())) {
-				predicates.add(cb.like(memberJoin.get("username"), "%" + searchDTO.getUsername() + "%"));
-			}
-			if (StringUtils.hasText(searchDTO.getEmail())) {
-				predicates.add(cb.like(memberJoin.get("email"), "%" + searchDTO.getEmail() + "%"));
-			}
-			if (StringUtils.hasText(searchDTO.getPhone())) {
-				predicates.add(cb.like(memberJoin.get("phone"), "%" + searchDTO.getPhone() + "%"));
-			}
-			if (StringUtils.hasText(searchDTO.getStatus())) {
-				try {
-					// 【修改】將傳入的狀態字串轉換為 Enum
-					OrderStatus statusEnum = OrderStatus.valueOf(searchDTO.getStatus().toUpperCase());
-					predicates.add(cb.equal(root.get("status"), statusEnum));
-				} catch (IllegalArgumentException e) {
-					// 如果傳入無效的狀態字串，讓查詢查無結果
-					predicates.add(cb.disjunction());
-				}
-			}
-			if (StringUtils.hasText(searchDTO.getPaymentType())) {
-				predicates.add(cb.equal(root.get("paymentType"), searchDTO.getPaymentType()));
-			}
-			if (searchDTO.getStartDate() != null && searchDTO.getEndDate() != null) {
-				// 情況一：起始和結束日期都有 -> 使用 between
-				predicates.add(cb.between(root.get("createdTime"), searchDTO.getStartDate().atStartOfDay(),
-						searchDTO.getEndDate().plusDays(1).atStartOfDay()));
-			} else if (searchDTO.getStartDate() != null) {
-				// 情況二：只有起始日期 -> 查詢大於等於該日期的所有訂單
-				predicates
-						.add(cb.greaterThanOrEqualTo(root.get("createdTime"), searchDTO.getStartDate().atStartOfDay()));
-			} else if (searchDTO.getEndDate() != null) {
-				// 情況三：只有結束日期 -> 查詢小於等於該日期（的結束時間）的所有訂單
-				predicates.add(cb.lessThan(root.get("createdTime"), searchDTO.getEndDate().plusDays(1).atStartOfDay()));
-			}
+	// 有查詢條件時，總筆數最多數到幾筆
+	@Value("${ticket-order.search.count-cap:10000}")
+	private int searchCountCap;
 
-			// 將所有條件用 AND 連接起來
-			return cb.and(predicates.toArray(new Predicate[0]));
-		};
-		// 建立分頁請求物件，page 從 0 開始，所以要 -1。並設定預設按訂購時間倒序排列。
-		Pageable pageable = PageRequest.of(searchDTO.getPage() - 1, searchDTO.getPageSize(),
-				Sort.by("createdTime").descending());
+	/**
+	 * 後台訂單查詢。依建立時間倒序以游標分頁：帶入上一頁的 nextCursor 時直接從游標之後查詢，
+	 * 沒有游標 (第一頁或直接跳頁) 時才以 page 計算略過的筆數。
+	 * 總筆數不做完整的 COUNT：沒有條件時取資料表統計資訊的估計值，有條件時最多數到 ticket-order.search.count-cap 筆。
+	 *
+	 * @param searchDTO 查詢條件與分頁參數
+	 * @return 一頁訂單摘要與下一頁的游標
+	 */
+	public TicketOrderSearchResultDTO findOrdersByCriteria(TicketOrderSearchRequestDTO searchDTO) {
+		int page = Math.max(1, searchDTO.getPage());
+		int pageSize = Math.max(1, Math.min(searchDTO.getPageSize(), MAX_SEARCH_PAGE_SIZE));
+
+		SearchCriteria criteria = toSearchCriteria(searchDTO);
+		if (criteria == null) {
+			// 訂單編號或狀態格式錯誤，不可能有符合的訂單
+			return new TicketOrderSearchResultDTO(List.of(), 0, true, page, pageSize, false, null);
+		}
 
-		// 使用findAll(Specification, Pageable) 進行查詢
-		Page<TicketOrder> orderPage = ticketOrderRepo.findAll(spec, pageable);
+		// 多查一筆，用來判斷是否還有下一頁
+		Cursor cursor = decodeSearchCursor(searchDTO.getCursor());
+		List<OrderRow> rows = ticketOrderSearchRepo.findPage(criteria, cursor, (page - 1) * pageSize, pageSize + 1);
+		boolean hasNext = rows.size() > pageSize;
+		if (hasNext) {
+			rows = rows.subList(0, pageSize);
+		}
+		String nextCursor = hasNext ? encodeSearchCursor(rows.get(rows.size() - 1)) : null;
+
+		long total;
+		boolean totalExact;
+		Optional<Long> estimate = criteria.isUnfiltered() ? ticketOrderSearchRepo.estimateTotalOrders()
+				: Optional.empty();
+		if (estimate.isPresent()) {
+			total = estimate.get();
+			totalExact = false;
+		} else {
+			total = ticketOrderSearchRepo.countUpTo(criteria, searchCountCap);
+			totalExact = total < searchCountCap;
+		}
+		// 統計資訊可能落後於實際資料，至少要涵蓋已經看到的筆數
+		total = Math.max(total, (long) (page - 1) * pageSize + rows.size() + (hasNext ? 1 : 0));
 
-		// 將查詢結果的 Page<TicketOrder> 轉換為 Page<OrderSummaryDTO>
-		return orderPage.map(this::convertToSummaryDTO);
+		List<TicketOrderSummaryDTO> content = rows.stream().map(this::convertToSummaryDTO).toList();
+		return new TicketOrderSearchResultDTO(content, total, totalExact, page, pageSize, hasNext, nextCursor);
 	}
 
 	/**
@@ -169,9 +161,64 @@ public class TicketOrderService {
 	 * @return 包含完整巢狀資訊的 DTO
 	 */
 	public TicketOrderDetailDTO findOrderDetailById(Integer orderId) {
-		TicketOrder order = ticketOrderRepo.findById(orderId)
+		// 訂單主體與票券明細各以一次 JOIN 查詢取得，不逐筆延遲載入場次、座位與票種
+		OrderHeaderRow header = ticketOrderSearchRepo.findOrderHeader(orderId)
 				.orElseThrow(() -> new RuntimeException("訂單不存在，ID: " + orderId));
-		return convertToDetailDTO(order);
+		return convertToDetailDTO(header, ticketOrderSearchRepo.findOrderItems(orderId));
+	}
+
+	/**
+	 * 將前端的查詢條件轉換為 SearchCriteria；條件本身不可能有結果時回傳 null
+	 */
+	private SearchCriteria toSearchCriteria(TicketOrderSearchRequestDTO searchDTO) {
+		// 判斷傳入的是否為專業訂單編號 (例如 FX 開頭)，是的話只進行精確的 ID 查詢
+		if (StringUtils.hasText(searchDTO.getOrderNumber()) && searchDTO.getOrderNumber().startsWith("FX")) {
+			try {
+				Integer decodedId = OrderNumberUtils.decode(searchDTO.getOrderNumber());
+				return new SearchCriteria(decodedId, null, null, null, null, null, null, null);
+			} catch (IllegalArgumentException e) {
+				return null;
+			}
+		}
+
+		String status = null;
+		if (StringUtils.hasText(searchDTO.getStatus())) {
+			try {
+				status = OrderStatus.valueOf(searchDTO.getStatus().toUpperCase()).name();
+			} catch (IllegalArgumentException e) {
+				return null;
+			}
+		}
+		String paymentType = StringUtils.hasText(searchDTO.getPaymentType()) ? searchDTO.getPaymentType() : null;
+		LocalDateTime createdFrom = searchDTO.getStartDate() != null ? searchDTO.getStartDate().atStartOfDay() : null;
+		// 結束日期包含當天
+		LocalDateTime createdBefore = searchDTO.getEndDate() != null
+				? searchDTO.getEndDate().plusDays(1).atStartOfDay()
+				: null;
+		return new SearchCriteria(null, searchDTO.getUsername(), searchDTO.getEmail(), searchDTO.getPhone(), status,
+				paymentType, createdFrom, createdBefore);
+	}
+
+	/**
+	 * 游標為最後一筆訂單的「建立時間|ID」，以 Base64 (URL safe) 編碼
+	 */
+	private static String encodeSearchCursor(OrderRow last) {
+		String raw = last.createdTime() + "|" + last.ticketOrderId();
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static Cursor decodeSearchCursor(String cursor) {
+		if (!StringUtils.hasText(cursor)) {
+			return null;
+		}
+		try {
+			String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			int separator = raw.lastIndexOf('|');
+			return new Cursor(LocalDateTime.parse(raw.substring(0, separator)),
+					Integer.parseInt(raw.substring(separator + 1)));
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("無效的分頁游標", e);
+		}
 	}
 
 	/**
@@ -195,6 +242,7 @@ public class TicketOrderService {
 		order.setPaymentTransactionId("MANUAL-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase());
 
 		ticketOrderRepo.save(order);
+		orderEventOutbox.publish(EventType.ORDER_PAID, orderId);
 
 		UpdateTicketOrderResponseDTO response = new UpdateTicketOrderResponseDTO();
 		response.setSuccess(true);
@@ -223,6 +271,7 @@ public class TicketOrderService {
 		if (order.getTicketOrderDetails().isEmpty()) {
 			order.setStatus(OrderStatus.CANCELLED);
 			ticketOrderRepo.save(order);
+			orderEventOutbox.publish(EventType.ORDER_CANCELLED, orderId);
 			UpdateTicketOrderResponseDTO response = new UpdateTicketOrderResponseDTO();
 			response.setSuccess(true);
 			response.setMessage("訂單已退款");
@@ -240,6 +289,7 @@ public class TicketOrderService {
 		}
 
 		// 釋出座位
+		List<Integer> releasedSeatIds = new ArrayList<>();
 		for (TicketOrderDetail detail : order.getTicketOrderDetails()) {
 			// 1. 將訂單明細的狀態更新為「已退款」
 			detail.setStatus(OrderDetailStatus.REFUNDED);
@@ -249,8 +299,12 @@ public class TicketOrderService {
 			if (sessionSeat != null) {
 				sessionSeat.setStatus(SeatStatus.AVAILABLE);
 				// 我們不再需要手動解除關聯，狀態的改變已經代表了一切
+				releasedSeatIds.add(sessionSeat.getSessionSeatId());
 			}
 		}
+		// 交易提交後同步釋放記憶體中的座位狀態，並更新場次的可購買座位數
+		seatStateEngine.releaseAfterCommit(releasedSeatIds);
+		showtimeAvailabilityService.onSeatsReleased(releasedSeatIds);
 
 		// 更新訂單狀態
 		order.setStatus(OrderStatus.REFUNDED);
@@ -259,6 +313,7 @@ public class TicketOrderService {
 		order.setPaymentTransactionId(null);
 
 		ticketOrderRepo.save(order);
+		orderEventOutbox.publish(EventType.ORDER_REFUNDED, orderId);
 
 		UpdateTicketOrderResponseDTO response = new UpdateTicketOrderResponseDTO();
 		response.setSuccess(true);
@@ -277,21 +332,12 @@ public class TicketOrderService {
 	 */
 	@Transactional
 	public ReservationResponse createReservation(ReservationRequest request, Integer memberId) {
-		// 1. 獲取並以悲觀鎖鎖定請求的座位
-		List<SessionSeat> lockedSeats = sessionSeatRepo.findAndLockBySessionSeatIdIn(request.getSeatIds());
-
-		// 2. 驗證座位狀態與數量
-		if (lockedSeats.size() != request.getSeatIds().size()) {
-			throw new RuntimeException("部分座位不存在或已被搶訂");
-		}
-		for (SessionSeat seat : lockedSeats) {
-			if (seat.getStatus() != SeatStatus.AVAILABLE) {
-				String seatInfo = seat.getSeat().getRowNumber() + "排" + seat.getSeat().getColumnNumber() + "號";
-				throw new RuntimeException("座位 " + seatInfo + " 已被預訂，請重新選擇。");
-			}
-		}
+		// 1. 先在記憶體中以 CAS 搶位，座位衝突時立即拋出 SeatTakenException，不會進到資料庫等待鎖
+		seatStateEngine.claim(request.getSessionId(), request.getSeatIds());
+		// 交易提交後推播座位異動；之後任何步驟失敗導致交易回滾時，自動退回記憶體中的座位
+		seatStateEngine.bindToTransaction(request.getSessionId(), request.getSeatIds());
 
-		// 3. 根據支付方式計算到期時間
+		// 2. 根據支付方式計算到期時間
 		MovieSession session = movieSessionRepo.findById(request.getSessionId())
 				.orElseThrow(() -> new RuntimeException("場次不存在"));
 
@@ -304,6 +350,21 @@ public class TicketOrderService {
 			throw new IllegalArgumentException("無效的支付方式");
 		}
 
+		// 以後端價目表計價 (不查詢資料庫)；前端顯示的單價與後端不同時 (例如票價剛調整) 請使用者重新選擇，不以前端的單價收費
+		Integer theaterTypeId = session.getTheater().getTheaterType().getTheaterTypeId();
+		Quote quote = pricingEngine.quote(theaterTypeId, request.getTickets(), null);
+		for (int i = 0; i < quote.lines().size(); i++) {
+			Integer clientPrice = request.getTickets().get(i).getUnitPrice();
+			if (clientPrice != null && clientPrice != quote.lines().get(i).unitPrice()) {
+				throw new IllegalStateException("票價已更新，請重新選擇票種。");
+			}
+		}
+
+		// 3. 搶位成功後才在資料庫中預訂座位，此時已不會與其他訂位請求競爭同一批資料列
+		// (依 ticket.reservation.seat-claim-mode 以悲觀鎖或帶條件的 UPDATE 預訂，資料庫仍是唯一的真實來源)
+		List<SessionSeat> reservedSeats = seatClaimService.claim(request.getSessionId(), request.getSeatIds(),
+				expiryTime);
+
 		// 4. 查找會員並建立 TicketOrder
 		Member currentMember = memberRepo.findById(memberId).orElseThrow(() -> new RuntimeException("會員不存在"));
 
@@ -311,46 +372,45 @@ public class TicketOrderService {
 		order.setMember(currentMember);
 		order.setStatus(OrderStatus.PENDING);
 
-		// 5. 建立訂單明細(TicketOrderDetail)並更新座位(SessionSeat)狀態
+		// 5. 建立訂單明細(TicketOrderDetail)
 		int totalTickets = request.getTickets().stream().mapToInt(req -> req.getQuantity()).sum();
-		if (totalTickets != lockedSeats.size()) {
+		if (totalTickets != reservedSeats.size()) {
 			throw new RuntimeException("票券總數與座位數不符");
 		}
 
-		int totalAmount = 0;
 		int seatIndex = 0;
-		for (TicketRequest ticketReq : request.getTickets()) {
-			TicketType ticketType = ticketTypeRepo.findById(ticketReq.getTicketTypeId())
-					.orElseThrow(() -> new RuntimeException("票種不存在"));
-
-			for (int i = 0; i < ticketReq.getQuantity(); i++) {
-				SessionSeat currentSeat = lockedSeats.get(seatIndex++);
+		for (PricedLine line : quote.lines()) {
+			// 票種已在計價時確認存在且啟用，只需要參照，不必逐一查詢
+			TicketType ticketType = ticketTypeRepo.getReferenceById(line.ticketTypeId());
 
-				// 更新座位狀態和到期時間
-				currentSeat.setStatus(SeatStatus.RESERVED);
-				currentSeat.setReservedExpiredDate(expiryTime);
+			for (int i = 0; i < line.quantity(); i++) {
+				SessionSeat currentSeat = reservedSeats.get(seatIndex++);
 
-				// 建立訂單明細
+				// 建立訂單明細 (座位狀態與到期時間已在搶位時更新)
 				TicketOrderDetail detail = new TicketOrderDetail();
 				detail.setTicketOrder(order);
 				detail.setSessionSeat(currentSeat);
 				detail.setTicketType(ticketType);
-				detail.setUnitPrice(ticketReq.getUnitPrice()); // 這裡可以用後端價格再驗證一次
+				detail.setUnitPrice(line.unitPrice());
 
 				detail.setStatus(OrderDetailStatus.ACTIVE);
 
 				order.getTicketOrderDetails().add(detail);
-				totalAmount += ticketReq.getUnitPrice();
 			}
 		}
-		order.setTotalAmount(totalAmount);
-		order.setTotalTicketAmount(totalAmount);
-		order.setTotalDiscount(0);
+		order.setTotalAmount(quote.total());
+		order.setTotalTicketAmount(quote.subtotal());
+		order.setTotalDiscount(quote.discount());
 
 		// 6. 保存訂單。由於 TicketOrder 中的 `cascade = CascadeType.ALL`，訂單明細會被一併保存。
-		// 同時，被修改的 SessionSeat 實體也會在交易提交時一併更新到資料庫。
+		// 悲觀模式下被修改的 SessionSeat 實體也會在交易提交時一併更新到資料庫。
 		TicketOrder savedOrder = ticketOrderRepo.save(order);
 
+		// 將訂單加入到期排程，到期後由時間輪準時釋放座位
+		reservationExpiryService.schedule(savedOrder.getTicketOrderId(), expiryTime);
+		// 更新場次的可購買座位數
+		showtimeAvailabilityService.onSeatsReserved(request.getSeatIds());
+
 		// 7. 返回成功結果
 		return new ReservationResponse(savedOrder.getTicketOrderId(), expiryTime);
 	}
@@ -395,10 +455,13 @@ public class TicketOrderService {
 		if (!sessionSeatIdsToRelease.isEmpty()) {
 			// 4. 【核心】使用單一 UPDATE 語句，批次釋放所有座位
 			sessionSeatRepo.releaseSeats(sessionSeatIdsToRelease);
+			seatStateEngine.releaseAfterCommit(sessionSeatIdsToRelease);
+			showtimeAvailabilityService.onSeatsReleased(sessionSeatIdsToRelease);
 		}
 
-		// 5. 更新訂單狀態為 CANCELLED
+		// 5. 更新訂單狀態為 CANCELLED，交易提交後歸還訂單使用的優惠券
 		order.setStatus(OrderStatus.CANCELLED);
+		orderEventOutbox.publish(EventType.ORDER_CANCELLED, orderId);
 
 		// 6. 由於整個方法在 @Transactional 管理下，所有變更(order狀態)會在方法結束時自動保存。
 		// ticketOrderRepo.save(order); // 這一行是非必要的
@@ -406,51 +469,28 @@ public class TicketOrderService {
 		System.out.println("訂單 " + orderId + " 已成功取消，相關座位已釋放。");
 	}
 
-	// 一個專門的方法來處理定時任務
-	@Scheduled(fixedRate = 60000) // 每分鐘執行一次
-	@Transactional
+	/**
+	 * 定時任務：每秒推進一次到期時間輪，只處理真正到期的臨時訂單。
+	 * 每筆訂單在各自的交易中取消，單筆失敗不會影響其他訂單，失敗的訂單稍後重試。
+	 */
+	@Scheduled(fixedRate = 1000) // 每秒執行一次
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
 	public void checkAndCancelExpiredReservations() {
-		LocalDateTime now = LocalDateTime.now();
-		// 1. 查詢所有狀態為 PENDING 的訂單，因為過期時間在明細裡，所以無法在查詢時判斷
-		List<TicketOrder> pendingOrders = ticketOrderRepo.findByStatus(OrderStatus.PENDING);
+		List<Integer> expiredOrderIds = reservationExpiryService.pollExpired();
+		if (expiredOrderIds.isEmpty()) {
+			return;
+		}
 
 		int cancelledCount = 0;
-		for (TicketOrder order : pendingOrders) {
-			// 2. 檢查此訂單的第一個座位是否過期
-			// 這裡假設一個訂單的所有座位有相同的過期時間，這是合理的設計
-			if (!order.getTicketOrderDetails().isEmpty()) {
-				TicketOrderDetail firstDetail = order.getTicketOrderDetails().get(0);
-				SessionSeat firstSeat = firstDetail.getSessionSeat();
-				// 只有當座位確實存在且過期時間已到，才進行取消
-				if (firstSeat != null && firstSeat.getReservedExpiredDate() != null
-						&& now.isAfter(firstSeat.getReservedExpiredDate())) {
-					System.out.println("定時任務: 偵測到過期訂單 ID: " + order.getTicketOrderId() + "，正在處理...");
-
-					// 3. 釋放座位並解除關聯
-					for (TicketOrderDetail detail : order.getTicketOrderDetails()) {
-						// 1. 將訂單明細的狀態更新為「已取消」
-						detail.setStatus(OrderDetailStatus.CANCELLED);
-
-						// 2. 釋放對應的座位
-						SessionSeat sessionSeat = detail.getSessionSeat();
-						if (sessionSeat != null) {
-							sessionSeat.setStatus(SeatStatus.AVAILABLE);
-							sessionSeat.setReservedExpiredDate(null);
-						}
-					}
-
-					// 使用 saveAll 批次更新座位狀態
-					sessionSeatRepo.saveAll(
-							order.getTicketOrderDetails().stream().map(TicketOrderDetail::getSessionSeat).toList());
-
-					// 4. 更新訂單狀態為 CANCELLED
-					order.setStatus(OrderStatus.CANCELLED);
-					// 由於設置了 orphanRemoval = true，清空列表會自動刪除 TicketOrderDetail
-					order.getTicketOrderDetails().clear();
-					ticketOrderRepo.save(order);
-
+		for (Integer orderId : expiredOrderIds) {
+			try {
+				if (reservationExpiryService.expireReservation(orderId)) {
 					cancelledCount++;
 				}
+			} catch (Exception e) {
+				// 訂單已從時間輪取出，重新排入才會再處理；座位在此之前仍保持預訂
+				reservationExpiryService.retryLater(orderId);
+				System.err.println("定時任務: 取消過期訂單 ID: " + orderId + " 時發生錯誤，稍後重試：" + e.getMessage());
 			}
 		}
 
@@ -460,53 +500,51 @@ public class TicketOrderService {
 	}
 
 	/**
-	 * 輔助方法：將 TicketOrder Entity 轉換為包含完整明細的 TicketOrderDetailDTO
+	 * 輔助方法：將訂單主體與票券明細轉換為包含完整明細的 TicketOrderDetailDTO
 	 */
-	private TicketOrderDetailDTO convertToDetailDTO(TicketOrder order) {
+	private TicketOrderDetailDTO convertToDetailDTO(OrderHeaderRow order, List<OrderItemRow> items) {
 		TicketOrderDetailDTO dto = new TicketOrderDetailDTO();
 
 		// 1. 在回傳給前端前，將資料庫 ID 加密成專業訂單編號
-		dto.setOrderNumber(OrderNumberUtils.encode(order.getTicketOrderId()));
+		dto.setOrderNumber(OrderNumberUtils.encode(order.ticketOrderId()));
 
 		// 2. 映射會員資訊
 		MemberInfoForTicketDTO memberDTO = new MemberInfoForTicketDTO();
-		if (order.getMember() != null) {
-			memberDTO.setMemberId(order.getMember().getMemberId());
-			memberDTO.setUsername(order.getMember().getUsername());
-			memberDTO.setEmail(order.getMember().getEmail());
-			memberDTO.setPhone(order.getMember().getPhone());
+		if (order.memberId() != null) {
+			memberDTO.setMemberId(order.memberId());
+			memberDTO.setUsername(order.username());
+			memberDTO.setEmail(order.email());
+			memberDTO.setPhone(order.phone());
 		}
 		dto.setMember(memberDTO);
 
 		// 3. 映射優惠券資訊
-		if (order.getCoupon() != null) {
+		if (order.couponId() != null) {
 			CouponInfoForTicketDTO couponDTO = new CouponInfoForTicketDTO();
-			couponDTO.setCouponId(order.getCoupon().getCouponId());
-			couponDTO.setCouponName(order.getCoupon().getCouponName());
+			couponDTO.setCouponId(order.couponId());
+			couponDTO.setCouponName(order.couponName());
 			dto.setCoupon(couponDTO);
 		}
 
 		// 4. 映射訂單主體資訊
-		dto.setTotalAmount(order.getTotalAmount());
-		dto.setTotalTicketAmount(order.getTotalTicketAmount());
-		dto.setTotalDiscount(order.getTotalDiscount());
-		dto.setStatus(order.getStatus().name());
-		dto.setPaymentType(order.getPaymentType());
-		dto.setCreatedTime(order.getCreatedTime());
-		dto.setPaymentTime(order.getPaymentTime());
+		dto.setTotalAmount(order.totalAmount());
+		dto.setTotalTicketAmount(order.totalTicketAmount());
+		dto.setTotalDiscount(order.totalDiscount());
+		dto.setStatus(order.status());
+		dto.setPaymentType(order.paymentType());
+		dto.setCreatedTime(order.createdTime());
+		dto.setPaymentTime(order.paymentTime());
 
 		// 5. 映射訂單明細列表
 		List<TicketItemDTO> ticketItems = new ArrayList<>();
-		for (TicketOrderDetail detail : order.getTicketOrderDetails()) {
+		for (OrderItemRow item : items) {
 			TicketItemDTO itemDTO = new TicketItemDTO();
-			SessionSeat ss = detail.getSessionSeat();
-
-			itemDTO.setMovieTitle(ss.getMovieSession().getMovie().getTitleLocal());
-			itemDTO.setStartTime(ss.getMovieSession().getStartTime());
-			itemDTO.setTheaterName(ss.getMovieSession().getTheater().getTheaterName());
-			itemDTO.setSeatPosition(ss.getSeat().getRowNumber() + ss.getSeat().getColumnNumber());
-			itemDTO.setTicketTypeName(detail.getTicketType().getTicketTypeName());
-			itemDTO.setUnitPrice(detail.getUnitPrice());
+			itemDTO.setMovieTitle(item.movieTitle());
+			itemDTO.setStartTime(item.startTime());
+			itemDTO.setTheaterName(item.theaterName());
+			itemDTO.setSeatPosition(item.rowNumber() + item.columnNumber());
+			itemDTO.setTicketTypeName(item.ticketTypeName());
+			itemDTO.setUnitPrice(item.unitPrice());
 
 			ticketItems.add(itemDTO);
 		}
@@ -516,18 +554,18 @@ public class TicketOrderService {
 	}
 
 	/**
-	 * 輔助方法：將 TicketOrder Entity 轉換為 TicketOrderSummaryDTO
+	 * 輔助方法：將查詢結果的一筆訂單轉換為 TicketOrderSummaryDTO
 	 */
-	private TicketOrderSummaryDTO convertToSummaryDTO(TicketOrder order) {
-		MemberInfoForTicketDTO memberDTO = new MemberInfoForTicketDTO(order.getMember().getMemberId(),
-				order.getMember().getUsername(), order.getMember().getEmail(), order.getMember().getPhone());
+	private TicketOrderSummaryDTO convertToSummaryDTO(OrderRow order) {
+		MemberInfoForTicketDTO memberDTO = new MemberInfoForTicketDTO(order.memberId(), order.username(),
+				order.email(), order.phone());
 
 		// 加密訂單 ID
 		// 在轉換 DTO 時，呼叫 encode 方法將 Integer ID 轉換為訂單編號
-		String orderNumber = OrderNumberUtils.encode(order.getTicketOrderId());
+		String orderNumber = OrderNumberUtils.encode(order.ticketOrderId());
 
-		return new TicketOrderSummaryDTO(orderNumber, memberDTO, order.getCreatedTime(), order.getTotalAmount(),
-				order.getStatus().name(), order.getPaymentType());
+		return new TicketOrderSummaryDTO(orderNumber, memberDTO, order.createdTime(), order.totalAmount(),
+				order.status(), order.paymentType());
 	}
 
 	/**
@@ -576,31 +614,13 @@ public class TicketOrderService {
 			
 			Coupon coupon = memberCoupon.getCoupon();
 
-			// D. 驗證優惠券是否符合使用條件 (最低消費)
-			if (finalAmount.compareTo(BigDecimal.valueOf(coupon.getMinimumSpend())) < 0) {
+			// D. 驗證優惠券是否符合使用條件 (最低消費)，並以與 findApplicableCoupons 相同的計價邏輯計算折扣
+			Quote quote = pricingEngine.applyCoupon(order.getTotalTicketAmount(), coupon);
+			if (!quote.couponUsable()) {
 				throw new IllegalStateException("此訂單金額不符優惠券使用條件。");
 			}
-
-			// E. 【同步計算邏輯】複製 findApplicableCoupons 中的動態折扣計算邏輯
-			DiscountType discountType = coupon.getDiscountType();
-			switch (discountType) {
-				case FIXED:
-					totalDiscount = BigDecimal.valueOf(coupon.getDiscountAmount());
-					break;
-				case PERCENTAGE:
-					BigDecimal discountPercent = new BigDecimal("100").subtract(BigDecimal.valueOf(coupon.getDiscountAmount()));
-					totalDiscount = finalAmount.multiply(discountPercent.divide(new BigDecimal("100")))
-											 .setScale(0, RoundingMode.HALF_UP); // 四捨五入到整數
-					break;
-				default:
-					// 正常情況下不應發生，但作為防禦性程式設計
-					throw new IllegalStateException("未知的折扣類型: " + discountType);
-			}
-			
-			finalAmount = finalAmount.subtract(totalDiscount);
-			if (finalAmount.compareTo(BigDecimal.ZERO) < 0) {
-				finalAmount = BigDecimal.ZERO;
-			}
+			totalDiscount = BigDecimal.valueOf(quote.discount());
+			finalAmount = BigDecimal.valueOf(quote.total());
 
 			// F. 更新 MemberCoupon 狀態為「已使用」，並記錄使用時間
 			memberCoupon.setStatus("已使用");
@@ -663,6 +683,8 @@ public class TicketOrderService {
 			order.setPaymentTime(LocalDateTime.now());
 			order.setPaymentTransactionId(transactionId);
 			ticketOrderRepo.save(order);
+			// 會員等級在交易提交後處理
+			orderEventOutbox.publish(EventType.ORDER_PAID, orderId);
 		}
 	}
 
@@ -679,25 +701,12 @@ public class TicketOrderService {
 		// 只有當訂單處於「待付款」狀態時才需要處理失敗邏輯
 		// 避免重複處理或處理已付款的訂單
 		if (order.getStatus() == OrderStatus.PENDING) {
-			// 1. 【新增】歸還已使用的優惠券
-			if (order.getCoupon() != null) {
-				// 找到與訂單關聯的 MemberCoupon
-				Optional<MemberCoupon> memberCouponOpt = memberCouponRepo
-						.findFirstByMemberAndCouponAndStatus(order.getMember(), order.getCoupon(), "已使用");
-
-				if (memberCouponOpt.isPresent()) {
-					MemberCoupon memberCoupon = memberCouponOpt.get();
-					memberCoupon.setStatus("未使用"); // 將狀態設回「未使用」
-					memberCoupon.setUsageTime(null); // 清空使用時間
-					memberCouponRepo.save(memberCoupon);
-					System.out.println(
-							"訂單 " + orderNumber + " 付款失敗，優惠券 " + memberCoupon.getCoupon().getCouponName() + " 已歸還。");
-				}
-			}
-
-			// 2. 將訂單狀態更新為取消
+			// 1. 將訂單狀態更新為取消
 			order.setStatus(OrderStatus.CANCELLED);
 			ticketOrderRepo.save(order);
+
+			// 2. 已使用的優惠券在交易提交後歸還
+			orderEventOutbox.publish(EventType.ORDER_CANCELLED, orderId);
 		}
 	}
 
@@ -735,16 +744,25 @@ public class TicketOrderService {
 				.map(MemberLevelRecord::getMemberLevelId) // 直接從 record 物件獲取 memberLevelId
 				.orElse(1); // 如果找不到任何紀錄，預設等級為 1
 
-		// 2. 撈出會員所有「未使用」的優惠券
-		List<MemberCoupon> unusedCoupons = memberCouponRepo.findByMemberAndStatus(currentMember, "未使用");
+		// 2. 撈出會員所有「未使用」的優惠券 (一併載入優惠券本身，計算折扣時不必逐張查詢)
+		List<MemberCoupon> unusedCoupons = memberCouponRepo.findByMemberAndStatusWithCoupon(currentMember);
+
+		// 3. 以適用條件索引取交集，找出上下文相符的券（電影、場次、會員等級）
+		Set<Integer> applicableCouponIds = couponEligibilityIndex.findApplicable(
+				unusedCoupons.stream().map(memberCoupon -> memberCoupon.getCoupon().getCouponId()).toList(), movieId,
+				sessionId, currentMemberLevelId);
 
 		LocalDate today = LocalDate.now();
 
-		// 3. 在記憶體中進行過濾
 		return unusedCoupons.stream()
-				// 階段一：過濾掉上下文不符的券（電影、場次、會員等級...）
-				.filter(memberCoupon -> isCouponContextuallyValid(memberCoupon.getCoupon(), movieId, sessionId,
-						currentMemberLevelId, today))
+				// 階段一：過濾掉上下文不符的券；尚未進入索引的券 (例如其他實例剛新增) 才逐張檢查適用條件
+				.filter(memberCoupon -> {
+					Coupon coupon = memberCoupon.getCoupon();
+					if (couponEligibilityIndex.isIndexed(coupon.getCouponId())) {
+						return applicableCouponIds.contains(coupon.getCouponId());
+					}
+					return isCouponContextuallyValid(coupon, movieId, sessionId, currentMemberLevelId, today);
+				})
 				// 階段二：將剩下的券轉換為 DTO，並在其中計算「可用性」與「實際折扣金額」
 				.map(memberCoupon -> buildApplicableDto(memberCoupon, subtotal)).collect(Collectors.toList());
 	}
@@ -798,32 +816,9 @@ public class TicketOrderService {
 		// 1. 判斷是否滿足低消 (isUsable)
 		boolean isUsable = subtotal.compareTo(BigDecimal.valueOf(coupon.getMinimumSpend())) >= 0;
 
-		// 2. 根據 discountType 計算實際折扣金額
-		BigDecimal calculatedDiscountAmount;
-
-		// 如果優惠券當前不可用（未滿足低消），則無論是什麼類型，折扣金額都應為 0。
-		if (!isUsable) {
-			calculatedDiscountAmount = BigDecimal.ZERO;
-		} else {
-			// 如果優惠券可用，再根據其類型進行計算
-			DiscountType discountType = coupon.getDiscountType();
-			switch (discountType) {
-			case FIXED:
-				// 定額：在滿足低消的前提下，直接使用 discountAmount 的值
-				calculatedDiscountAmount = BigDecimal.valueOf(coupon.getDiscountAmount());
-				break;
-
-			case PERCENTAGE:
-				// 比例：在滿足低消的前提下，計算 subtotal * (discountAmount / 100)
-				BigDecimal discountPercent = new BigDecimal("100").subtract(BigDecimal.valueOf(coupon.getDiscountAmount()));
-				calculatedDiscountAmount = subtotal.multiply(discountPercent.divide(new BigDecimal("100"))).setScale(0,
-						RoundingMode.HALF_UP); // 四捨五入到整數
-				break;
-
-			default:
-				throw new IllegalStateException("未知的折扣類型: " + discountType);
-			}
-		}
+		// 2. 計算實際折扣金額 (與付款時使用同一套計價邏輯)；未滿足低消時，無論是什麼類型，折扣金額都應為 0
+		BigDecimal calculatedDiscountAmount = isUsable ? pricingEngine.couponDiscount(coupon, subtotal)
+				: BigDecimal.ZERO;
 
 		// 3. 建立並回傳最終的 DTO
 		return new TicketOrderApplicableCouponDTO(memberCoupon.getMemberCouponId(), coupon.getCouponName(),
@@ -873,28 +868,12 @@ public class TicketOrderService {
             
             Coupon coupon = memberCoupon.getCoupon();
 
-            if (finalAmount.compareTo(BigDecimal.valueOf(coupon.getMinimumSpend())) < 0) {
+            Quote quote = pricingEngine.applyCoupon(order.getTotalTicketAmount(), coupon);
+            if (!quote.couponUsable()) {
                 throw new IllegalStateException("此訂單金額不符優惠券使用條件。");
             }
-
-            DiscountType discountType = coupon.getDiscountType();
-            switch (discountType) {
-                case FIXED:
-                    totalDiscount = BigDecimal.valueOf(coupon.getDiscountAmount());
-                    break;
-                case PERCENTAGE:
-                	BigDecimal discountPercent = new BigDecimal("100").subtract(BigDecimal.valueOf(coupon.getDiscountAmount()));
-                    totalDiscount = finalAmount.multiply(discountPercent.divide(new BigDecimal("100")))
-                                             .setScale(0, RoundingMode.HALF_UP);
-                    break;
-                default:
-                    throw new IllegalStateException("未知的折扣類型: " + discountType);
-            }
-            
-            finalAmount = finalAmount.subtract(totalDiscount);
-            if (finalAmount.compareTo(BigDecimal.ZERO) < 0) {
-                finalAmount = BigDecimal.ZERO;
-            }
+            totalDiscount = BigDecimal.valueOf(quote.discount());
+            finalAmount = BigDecimal.valueOf(quote.total());
 
             // 將優惠券標記為「已使用」
             memberCoupon.setStatus("已使用");
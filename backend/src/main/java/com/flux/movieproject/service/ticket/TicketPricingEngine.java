@@ -0,0 +1,231 @@
+package com.flux.movieproject.service.ticket;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.flux.movieproject.enums.DiscountType;
+import com.flux.movieproject.model.dto.ticket.TicketRequest;
+import com.flux.movieproject.model.entity.event.Coupon;
+import com.flux.movieproject.model.entity.theater.TicketPriceRule;
+import com.flux.movieproject.model.entity.theater.TicketType;
+import com.flux.movieproject.repository.ticket.TicketPriceRuleRepository;
+import com.flux.movieproject.repository.ticket.TicketTypeRepository;
+import com.flux.movieproject.service.cache.RefreshableSnapshot;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 票價計算。訂位的金額一律以後端的票價規則為準，不採用前端傳入的單價。
+ * 票價規則預先編譯成記憶體中的價目表 (RefreshableSnapshot)，計價只需查表，不必查詢資料庫。
+ */
+@Service
+public class TicketPricingEngine {
+
+	// 基礎票價 (影廳類型的全票價格) 對應的票種名稱
+	public static final String BASE_TICKET_TYPE_NAME = "全票";
+
+	/**
+	 * 一個票種的計價結果
+	 *
+	 * @param ticketTypeId 票種 ID
+	 * @param quantity     張數
+	 * @param unitPrice    單價
+	 */
+	public record PricedLine(Integer ticketTypeId, int quantity, int unitPrice) {
+	}
+
+	/**
+	 * 計價結果
+	 *
+	 * @param lines        各票種的單價 (依傳入順序)
+	 * @param subtotal     票價小計
+	 * @param discount     優惠券折扣金額 (沒有使用優惠券或未達低消時為 0)
+	 * @param total        應付金額 (不小於 0)
+	 * @param couponUsable 優惠券是否達到最低消費 (沒有使用優惠券時為 false)
+	 */
+	public record Quote(List<PricedLine> lines, int subtotal, int discount, int total, boolean couponUsable) {
+	}
+
+	/**
+	 * 編譯後的價目表，建立後不再修改
+	 */
+	private static final class PriceTable {
+		// (影廳類型 ID << 32 | 票種 ID) -> 票價
+		private final Map<Long, Integer> prices;
+		private final Set<Integer> enabledTicketTypeIds;
+		private final Map<Integer, Integer> basePrices;
+
+		private PriceTable(Map<Long, Integer> prices, Set<Integer> enabledTicketTypeIds,
+				Map<Integer, Integer> basePrices) {
+			this.prices = Map.copyOf(prices);
+			this.enabledTicketTypeIds = Set.copyOf(enabledTicketTypeIds);
+			this.basePrices = Collections.unmodifiableMap(new HashMap<>(basePrices));
+		}
+	}
+
+	@Autowired
+	private TicketPriceRuleRepository ticketPriceRuleRepo;
+	@Autowired
+	private TicketTypeRepository ticketTypeRepo;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private TransactionTemplate readOnlyTransaction;
+	private RefreshableSnapshot<PriceTable> table;
+
+	@PostConstruct
+	public void init() {
+		readOnlyTransaction = new TransactionTemplate(transactionManager);
+		readOnlyTransaction.setReadOnly(true);
+		table = new RefreshableSnapshot<>("票價", previous -> readOnlyTransaction.execute(status -> compile()));
+		table.reload();
+	}
+
+	/**
+	 * 在目前交易提交後重新編譯價目表 (後台異動票種、票價規則或影廳類型時呼叫)
+	 */
+	public void reloadAfterCommit() {
+		table.reloadAfterCommit();
+	}
+
+	/**
+	 * 定期重新編譯，讓其他應用程式實例的異動也能生效
+	 */
+	@Scheduled(fixedDelayString = "${ticket.pricing.refresh-interval-ms:300000}",
+			initialDelayString = "${ticket.pricing.refresh-interval-ms:300000}")
+	public void refresh() {
+		table.refresh();
+	}
+
+	/**
+	 * 各影廳類型的基礎票價 (全票價格)
+	 *
+	 * @return 影廳類型 ID 比對價格的鍵值對 (不可修改)
+	 */
+	public Map<Integer, Integer> basePrices() {
+		return table.get().basePrices;
+	}
+
+	/**
+	 * 計算一筆訂位的金額
+	 *
+	 * @param theaterTypeId 場次所在影廳的類型 ID
+	 * @param tickets       各票種的張數
+	 * @param coupon        使用的優惠券，沒有時為 null
+	 * @return 計價結果
+	 * @throws IllegalArgumentException 票種不存在、已停用，或此影廳類型沒有該票種的票價
+	 */
+	public Quote quote(Integer theaterTypeId, List<TicketRequest> tickets, Coupon coupon) {
+		if (theaterTypeId == null) {
+			throw new IllegalArgumentException("場次未設定影廳類型");
+		}
+		PriceTable current = table.get();
+		List<PricedLine> lines = new ArrayList<>(tickets.size());
+		int subtotal = 0;
+		for (TicketRequest ticket : tickets) {
+			Integer ticketTypeId = ticket.getTicketTypeId();
+			if (ticketTypeId == null || !current.enabledTicketTypeIds.contains(ticketTypeId)) {
+				throw new IllegalArgumentException("票種不存在或已停用");
+			}
+			Integer unitPrice = current.prices.get(key(theaterTypeId, ticketTypeId));
+			if (unitPrice == null) {
+				throw new IllegalArgumentException("此影廳未設定該票種的票價");
+			}
+			int quantity = ticket.getQuantity() == null ? 0 : ticket.getQuantity();
+			lines.add(new PricedLine(ticketTypeId, quantity, unitPrice));
+			subtotal += unitPrice * quantity;
+		}
+		Quote discounted = applyCoupon(subtotal, coupon);
+		return new Quote(List.copyOf(lines), subtotal, discounted.discount(), discounted.total(),
+				discounted.couponUsable());
+	}
+
+	/**
+	 * 以已計價的票價小計套用優惠券
+	 *
+	 * @param subtotal 票價小計
+	 * @param coupon   使用的優惠券，沒有時為 null
+	 * @return 計價結果 (不含各票種的單價)
+	 */
+	public Quote applyCoupon(int subtotal, Coupon coupon) {
+		if (coupon == null) {
+			return new Quote(List.of(), subtotal, 0, subtotal, false);
+		}
+		BigDecimal discount = couponDiscount(coupon, BigDecimal.valueOf(subtotal));
+		boolean usable = discount != null;
+		int discountAmount = usable ? discount.intValue() : 0;
+		return new Quote(List.of(), subtotal, discountAmount, Math.max(0, subtotal - discountAmount), usable);
+	}
+
+	/**
+	 * 優惠券在指定小計下的折扣金額
+	 * 1. FIXED: 折抵 discountAmount 元
+	 * 2. PERCENTAGE: discountAmount 為折數 (例如 85 代表 85 折)，折扣金額為小計 * (100 - discountAmount)%，四捨五入到整數
+	 *
+	 * @param coupon   優惠券
+	 * @param subtotal 小計
+	 * @return 折扣金額；未達最低消費時為 null
+	 */
+	public BigDecimal couponDiscount(Coupon coupon, BigDecimal subtotal) {
+		if (subtotal.compareTo(BigDecimal.valueOf(coupon.getMinimumSpend())) < 0) {
+			return null;
+		}
+		DiscountType discountType = coupon.getDiscountType();
+		switch (discountType) {
+		case FIXED:
+			return BigDecimal.valueOf(coupon.getDiscountAmount());
+		case PERCENTAGE:
+			BigDecimal discountPercent = new BigDecimal("100").subtract(BigDecimal.valueOf(coupon.getDiscountAmount()));
+			return subtotal.multiply(discountPercent.divide(new BigDecimal("100"))).setScale(0, RoundingMode.HALF_UP);
+		default:
+			throw new IllegalStateException("未知的折扣類型: " + discountType);
+		}
+	}
+
+	private PriceTable compile() {
+		List<TicketType> ticketTypes = ticketTypeRepo.findAll();
+		Set<Integer> enabledTicketTypeIds = new HashSet<>();
+		Set<Integer> baseTicketTypeIds = new HashSet<>();
+		for (TicketType ticketType : ticketTypes) {
+			if (Boolean.TRUE.equals(ticketType.getIsEnabled())) {
+				enabledTicketTypeIds.add(ticketType.getTicketTypeId());
+			}
+			if (BASE_TICKET_TYPE_NAME.equals(ticketType.getTicketTypeName())) {
+				baseTicketTypeIds.add(ticketType.getTicketTypeId());
+			}
+		}
+
+		// 票價規則的複合主鍵已包含兩個 ID，不需要載入關聯的影廳類型與票種
+		Map<Long, Integer> prices = new HashMap<>();
+		Map<Integer, Integer> basePrices = new HashMap<>();
+		for (TicketPriceRule rule : ticketPriceRuleRepo.findAll()) {
+			Integer theaterTypeId = rule.getTicketPriceId().getTheaterTypeId();
+			Integer ticketTypeId = rule.getTicketPriceId().getTicketTypeId();
+			if (rule.getPrice() == null) {
+				continue;
+			}
+			prices.put(key(theaterTypeId, ticketTypeId), rule.getPrice());
+			if (baseTicketTypeIds.contains(ticketTypeId)) {
+				basePrices.put(theaterTypeId, rule.getPrice());
+			}
+		}
+		return new PriceTable(prices, enabledTicketTypeIds, basePrices);
+	}
+
+	private static long key(Integer theaterTypeId, Integer ticketTypeId) {
+		return ((long) theaterTypeId << 32) | (ticketTypeId & 0xFFFFFFFFL);
+	}
+}
@@ -2,6 +2,7 @@ package com.flux.movieproject.service.ticket;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
@@ -10,9 +11,11 @@ import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.flux.movieproject.model.dto.ticket.PriceRuleUpdateDTO;
+import com.flux.movieproject.model.dto.ticket.TicketTypeDTO;
 import com.flux.movieproject.model.dto.ticket.TicketTypeResponseDTO;
 import com.flux.movieproject.model.dto.ticket.UpdateTicketTypeDTO;
 import com.flux.movieproject.model.entity.theater.TheaterType;
@@ -22,6 +25,10 @@ import com.flux.movieproject.model.entity.theater.TicketType;
 import com.flux.movieproject.repository.theater.TheaterTypeRepository;
 import com.flux.movieproject.repository.ticket.TicketPriceRuleRepository;
 import com.flux.movieproject.repository.ticket.TicketTypeRepository;
+import com.flux.movieproject.service.cache.CatalogCacheManager;
+import com.flux.movieproject.service.cache.ReadThroughCache;
+
+import jakarta.annotation.PostConstruct;
 
 @Service
 @Transactional(readOnly = true)
@@ -33,14 +40,28 @@ public class TicketService {
 	private TicketPriceRuleRepository ticketPriceRuleRepo;
 	@Autowired
 	private TheaterTypeRepository theaterTypeRepo;
+	@Autowired
+	private CatalogCacheManager cacheManager;
+	@Autowired
+	private TicketPricingEngine pricingEngine;
+
+	// 票種的快取 (後台異動時清除)，存放不可變的 DTO，不共用受管理的實體；基礎票價由 TicketPricingEngine 的價目表提供
+	private ReadThroughCache<String, List<TicketTypeDTO>> ticketTypesCache;
+
+	@PostConstruct
+	public void initCaches() {
+		ticketTypesCache = cacheManager.getCache(CatalogCacheManager.TICKET_TYPES, Duration.ofMinutes(30), 1);
+	}
 
 	/**
 	 * 取得全部票種資料
 	 * 
 	 * @return
 	 */
-	public List<TicketType> findAllTicketTypes() {
-		return ticketTypeRepo.findAll();
+	@Transactional(propagation = Propagation.SUPPORTS) // 快取命中時不必開啟交易
+	public List<TicketTypeDTO> findAllTicketTypes() {
+		return ticketTypesCache.get(CatalogCacheManager.TICKET_TYPES,
+				() -> ticketTypeRepo.findAll().stream().map(TicketTypeDTO::from).toList());
 	}
 
 	/**
@@ -51,6 +72,8 @@ public class TicketService {
 	 */
 	@Transactional
 	public TicketTypeResponseDTO createTicketType(UpdateTicketTypeDTO ticketTypeDTO) {
+		cacheManager.invalidateAfterCommit(CatalogCacheManager.TICKET_TYPES);
+		pricingEngine.reloadAfterCommit();
 		// 1. 將傳入的 AddTicketTypeDTO 轉換為資料庫實體 TicketType
 		TicketType newTicketType = new TicketType();
 		newTicketType.setTicketTypeName(ticketTypeDTO.getTicketTypeName());
@@ -68,7 +91,7 @@ public class TicketService {
 		
 		// 取得所有影廳類型，為這個新票種建立對應的票價規則
         List<TheaterType> allTheaterTypes = theaterTypeRepo.findAll();
-        Map<Integer, Integer> basePrices = findBasePrices();
+        Map<Integer, Integer> basePrices = loadBasePrices();
 
         for (TheaterType theaterType : allTheaterTypes) {
             Integer basePrice = basePrices.getOrDefault(theaterType.getTheaterTypeId(), 0);
@@ -88,6 +111,8 @@ public class TicketService {
 	 */
 	@Transactional
 	public TicketTypeResponseDTO updateTicketType(Integer ticketTypeId, UpdateTicketTypeDTO dto) {
+		cacheManager.invalidateAfterCommit(CatalogCacheManager.TICKET_TYPES);
+		pricingEngine.reloadAfterCommit();
 		// 1. 根據 ID 從資料庫尋找，回傳一個 Optional 物件
 		Optional<TicketType> optionalTicketType = ticketTypeRepo.findById(ticketTypeId);
 
@@ -115,7 +140,7 @@ public class TicketService {
 		TicketType savedTicketType = ticketTypeRepo.save(existingTicketType);
 		
 		List<TheaterType> allTheaterTypes = theaterTypeRepo.findAll();
-        Map<Integer, Integer> basePrices = findBasePrices();
+        Map<Integer, Integer> basePrices = loadBasePrices();
 
         for (TheaterType theaterType : allTheaterTypes) {
             Integer basePrice = basePrices.getOrDefault(theaterType.getTheaterTypeId(), 0);
@@ -133,6 +158,8 @@ public class TicketService {
 	 */
 	@Transactional
 	public TicketTypeResponseDTO deleteTicketType(Integer ticketTypeId) {
+		cacheManager.invalidateAfterCommit(CatalogCacheManager.TICKET_TYPES);
+		pricingEngine.reloadAfterCommit();
 		if (!ticketTypeRepo.existsById(ticketTypeId)) {
 			throw new RuntimeException("找不到 ID 為 " + ticketTypeId + " 的票種，無法刪除");
 		}
@@ -147,9 +174,16 @@ public class TicketService {
 	 * 
 	 * @return 影廳類別ID比對價格的鍵值對
 	 */
+	@Transactional(propagation = Propagation.SUPPORTS)
 	public Map<Integer, Integer> findBasePrices() {
+		return pricingEngine.basePrices();
+	}
+
+	// 從資料庫查詢基礎票價 (後台計算票價時直接查詢，不使用快取)
+	private Map<Integer, Integer> loadBasePrices() {
 		// 1. 使用 Repository 查詢所有票種名稱為 "全票" 的票價規則
-		List<TicketPriceRule> fullPriceRules = ticketPriceRuleRepo.findByTicketTypeTicketTypeName("全票");
+		List<TicketPriceRule> fullPriceRules = ticketPriceRuleRepo
+				.findByTicketTypeTicketTypeName(TicketPricingEngine.BASE_TICKET_TYPE_NAME);
 
 		// 2. 建立一個新的 HashMap 來存放結果
 		Map<Integer, Integer> basePrices = new HashMap<>();
@@ -172,6 +206,8 @@ public class TicketService {
 	 */
 	@Transactional
 	public TicketTypeResponseDTO batchUpdatePriceRules(List<PriceRuleUpdateDTO> dtoList) {
+		cacheManager.invalidateAfterCommit(CatalogCacheManager.TICKET_TYPES);
+		pricingEngine.reloadAfterCommit();
 		// 使用 for 迴圈遍歷前端傳來的每一筆資料
 		for (PriceRuleUpdateDTO dto : dtoList) {
 			// 1. 根據 dto 的 theaterTypeId 和 ticketTypeId 組合出複合主鍵
@@ -1,11 +1,8 @@
 package com.flux.movieproject.utils;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -15,11 +12,13 @@ import java.util.Map;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.config.ConnectionConfig;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
-import org.apache.hc.core5.http.ClassicHttpResponse;
-import org.apache.hc.core5.http.HttpException;
-import org.apache.hc.core5.http.io.HttpClientResponseHandler;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -43,53 +42,57 @@ public class FetchTMDBDataUtil {
 	private final static String BASE_URL = "https://api.themoviedb.org/3";
 	private final static String IMAGE_BASE_URL = "https://image.tmdb.org/t/p/w500";
 
-	public List<TMDBMoviePojo> fetchMovies(LocalDate startDate, LocalDate endDate) {
+	// TMDB discover 最多只能翻到第 500 頁
+	private final static int MAX_DISCOVER_PAGES = 500;
+	private final static int MAX_RETRIES = 3;
+
+	private final static ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+	// 所有請求共用同一個連線池，不再每個請求建立一個 HttpClient
+	private final static CloseableHttpClient HTTP_CLIENT = HttpClients.custom()
+			.setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+					.setMaxConnTotal(64)
+					.setMaxConnPerRoute(32)
+					.setDefaultConnectionConfig(ConnectionConfig.custom()
+							.setConnectTimeout(Timeout.ofSeconds(5))
+							.setSocketTimeout(Timeout.ofSeconds(15))
+							.build())
+					.build())
+			.build();
+
+	@Autowired
+	private TmdbRateLimiter rateLimiter;
+
+	/**
+	 * discover 查詢的一頁結果
+	 *
+	 * @param totalPages 查詢的總頁數 (已套用 TMDB 最多 500 頁的限制)
+	 * @param movies     本頁通過基本條件 (中文片名、簡介、海報) 的電影
+	 */
+	public record DiscoverPage(int totalPages, List<TMDBMoviePojo> movies) {
+	}
+
+	/**
+	 * 取得台灣院線電影 discover 查詢的某一頁
+	 *
+	 * @param startDate 上映起始日期
+	 * @param endDate   上映結束日期
+	 * @param page      頁碼 (從 1 開始)
+	 * @return 該頁結果；請求失敗時回傳 null
+	 */
+	public DiscoverPage fetchDiscoverPage(LocalDate startDate, LocalDate endDate, int page) {
 		String searchUrl = String.format(
-				"%s/discover/movie?api_key=%s&language=zh-TW&region=TW&primary_release_date.gte=%s&primary_release_date.lte=%s&sort_by=primary_release_date.asc&with_release_type=3",
-				BASE_URL, API_KEY, startDate.toString(), endDate.toString());
+				"%s/discover/movie?api_key=%s&language=zh-TW&region=TW&primary_release_date.gte=%s&primary_release_date.lte=%s&sort_by=primary_release_date.asc&with_release_type=3&page=%d",
+				BASE_URL, API_KEY, startDate.toString(), endDate.toString(), page);
 
 		JsonNode root = getResourceFromApiUrl(searchUrl);
-		if (root == null || root.get("total_pages") == null)
-			return new ArrayList<>();
-
-		int totalPages = root.get("total_pages").asInt(0);
-		if (totalPages == 0)
-			return new ArrayList<>();
-		if (totalPages > 500)
-			totalPages = 500;
-		System.out.printf("(Util) 找到 %d 頁資料，開始快速掃描電影基本列表...\n", totalPages);
+		if (root == null)
+			return null;
 
-		// --- 第一階段：快速掃描 ---
+		int totalPages = root.has("total_pages") ? root.get("total_pages").asInt(0) : 0;
 		List<TMDBMoviePojo> movieList = new ArrayList<>();
-		for (int i = 1; i <= totalPages; i++) {
-			System.out.printf("\r(Util) 正在快速掃描第 %d / %d 頁...", i, totalPages);
-			JsonNode pageRoot = getResourceFromApiUrl(searchUrl + "&page=" + i);
-			if (pageRoot != null) {
-				parseMoviesFromPage_Fast(pageRoot, movieList);
-			}
-		}
-		System.out.println("\n(Util) 電影基本列表掃描完成！共篩選出 " + movieList.size() + " 部符合基本條件的電影。");
-		System.out.println("(Util) 現在開始為這 " + movieList.size() + " 部電影補全詳細資訊並下載海報...");
-
-		// --- 第二階段：補全詳情與下載 ---
-		int movieCount = 0;
-		for (TMDBMoviePojo movie : movieList) {
-			movieCount++;
-			System.out.printf("(Util) [%d/%d] 正在處理電影 ID: %d (%s)\n", movieCount, movieList.size(),
-					movie.getTmdbMovieId(), movie.getTitleLocal());
-
-			getMovieDetailsAndDownloadPoster(movie);
-
-			try {
-				Thread.sleep(150);
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
-				System.err.println("執行緒被中斷");
-			}
-		}
-
-		System.out.println("\n(Util) 所有電影詳細資訊處理完畢！");
-		return movieList;
+		parseMoviesFromPage_Fast(root, movieList);
+		return new DiscoverPage(Math.min(totalPages, MAX_DISCOVER_PAGES), movieList);
 	}
 
 	private static void parseMoviesFromPage_Fast(JsonNode root, List<TMDBMoviePojo> movieList) {
@@ -139,28 +142,109 @@ public class FetchTMDBDataUtil {
 		}
 	}
 
-	private static void getMovieDetailsAndDownloadPoster(TMDBMoviePojo movie) {
-		// 1. 下載海報
-		if (movie.getPosterPath() != null) {
-			try {
-				movie.setPosterImage(downloadImageAsBytes(IMAGE_BASE_URL + movie.getPosterPath()));
-			} catch (Exception e) {
-				System.err.println(" -> 下載海報失敗 ID: " + movie.getTmdbMovieId());
+	/**
+	 * 補全片長、台灣上映日期與分級、預告片、導演與演員。
+	 * 以 append_to_response 一次取得 release_dates、videos 與 credits，原本每部電影要 4 個請求，現在只要 1 個。
+	 *
+	 * @param movie 掃描階段建立的電影 (會直接修改其欄位)
+	 * @return 請求成功時回傳 true
+	 */
+	public boolean fetchMovieDetails(TMDBMoviePojo movie) {
+		JsonNode movieRoot = getResourceFromApiUrl(movieDetailsUrl(movie.getTmdbMovieId()));
+		if (movieRoot == null)
+			return false;
+		applyMovieDetails(movie, movieRoot);
+		return true;
+	}
+
+	/**
+	 * 依 ID 重新取得一部電影的完整資料 (基本欄位、類型、片長、台灣上映日期與分級、預告片、導演與演員)，
+	 * 供增量同步使用，同樣只需要 1 個請求。海報不在此下載。
+	 *
+	 * @param tmdbMovieId TMDB 電影 ID
+	 * @return 電影資料；請求失敗時回傳 null
+	 */
+	public TMDBMoviePojo fetchMovie(int tmdbMovieId) {
+		JsonNode movieRoot = getResourceFromApiUrl(movieDetailsUrl(tmdbMovieId));
+		if (movieRoot == null)
+			return null;
+
+		TMDBMoviePojo m = new TMDBMoviePojo();
+		m.setTmdbMovieId(tmdbMovieId);
+		m.setTitleLocal(ZhConverterUtil.toTraditional(movieRoot.path("title").asText("")));
+		m.setTitleEnglish(ZhConverterUtil.toTraditional(movieRoot.path("original_title").asText("")));
+		m.setOverview(ZhConverterUtil.toTraditional(movieRoot.path("overview").asText("")));
+		m.setPosterPath(movieRoot.hasNonNull("poster_path") ? movieRoot.get("poster_path").asText() : null);
+		m.setOriginalLanguage(movieRoot.path("original_language").asText(null));
+		m.setPopularity(BigDecimal.valueOf(movieRoot.path("popularity").asDouble()));
+		m.setVoteAverage(BigDecimal.valueOf(movieRoot.path("vote_average").asDouble()));
+		m.setVoteCount(movieRoot.path("vote_count").asInt());
+
+		String releaseDateStr = movieRoot.path("release_date").asText(null);
+		if (!StringUtils.isBlank(releaseDateStr)) {
+			m.setReleaseDate(LocalDate.parse(releaseDateStr));
+		}
+
+		// 詳細資料回傳的是 genres 物件陣列，而不是 discover 的 genre_ids
+		List<Integer> genreIds = new ArrayList<>();
+		JsonNode genresNode = movieRoot.get("genres");
+		if (genresNode != null && genresNode.isArray()) {
+			for (JsonNode genre : genresNode)
+				genreIds.add(genre.get("id").asInt());
+		}
+		m.setGenreIds(genreIds);
+
+		applyMovieDetails(m, movieRoot);
+		return m;
+	}
+
+	/**
+	 * /movie/changes 的一頁結果
+	 *
+	 * @param totalPages 總頁數
+	 * @param movieIds   本頁中資料有變動的電影 ID
+	 */
+	public record ChangesPage(int totalPages, List<Integer> movieIds) {
+	}
+
+	/**
+	 * 取得某段期間內 TMDB 上資料有變動的電影 (TMDB 限制查詢區間最多 14 天)
+	 *
+	 * @param startDate 起始日期
+	 * @param endDate   結束日期
+	 * @param page      頁碼 (從 1 開始)
+	 * @return 該頁結果；請求失敗時回傳 null
+	 */
+	public ChangesPage fetchChangesPage(LocalDate startDate, LocalDate endDate, int page) {
+		String changesUrl = String.format("%s/movie/changes?api_key=%s&start_date=%s&end_date=%s&page=%d", BASE_URL,
+				API_KEY, startDate.toString(), endDate.toString(), page);
+		JsonNode root = getResourceFromApiUrl(changesUrl);
+		if (root == null)
+			return null;
+
+		List<Integer> movieIds = new ArrayList<>();
+		JsonNode results = root.get("results");
+		if (results != null && results.isArray()) {
+			for (JsonNode result : results) {
+				movieIds.add(result.get("id").asInt());
 			}
 		}
+		return new ChangesPage(root.path("total_pages").asInt(0), movieIds);
+	}
+
+	private static String movieDetailsUrl(int tmdbMovieId) {
+		return String.format("%s/movie/%d?api_key=%s&language=zh-TW&append_to_response=release_dates,videos,credits",
+				BASE_URL, tmdbMovieId, API_KEY);
+	}
 
-		// 2. 獲取片長
-		String movieUrl = String.format("%s/movie/%d?api_key=%s&language=zh-TW", BASE_URL, movie.getTmdbMovieId(),
-				API_KEY);
-		JsonNode movieRoot = getResourceFromApiUrl(movieUrl);
-		if (movieRoot != null && movieRoot.has("runtime") && !movieRoot.get("runtime").isNull()) {
+	private static void applyMovieDetails(TMDBMoviePojo movie, JsonNode movieRoot) {
+		// 1. 片長
+		if (movieRoot.has("runtime") && !movieRoot.get("runtime").isNull()) {
 			movie.setDurationMinutes(movieRoot.get("runtime").asInt());
 		}
 
-		// 3. 獲取台灣專屬上映日期與分級 (這會覆寫掉第一階段獲取的全球日期)
-		String releaseDateUrl = String.format("%s/movie/%d/release_dates?api_key=%s", BASE_URL, movie.getTmdbMovieId(),
-				API_KEY);
-		JsonNode releaseRoot = getResourceFromApiUrl(releaseDateUrl);
+		// 2. 台灣專屬上映日期與分級 (這會覆寫掉掃描階段獲取的全球日期)
+		JsonNode releaseRoot = movieRoot.get("release_dates");
 		if (releaseRoot != null && releaseRoot.has("results")) {
 			for (JsonNode country : releaseRoot.get("results")) {
 				if ("TW".equals(country.get("iso_3166_1").asText())) {
@@ -182,10 +266,8 @@ public class FetchTMDBDataUtil {
 			}
 		}
 
-		// 4. 獲取預告片
-		String videoUrl = String.format("%s/movie/%d/videos?api_key=%s&language=zh-TW", BASE_URL,
-				movie.getTmdbMovieId(), API_KEY);
-		JsonNode videoRoot = getResourceFromApiUrl(videoUrl);
+		// 3. 預告片
+		JsonNode videoRoot = movieRoot.get("videos");
 		if (videoRoot != null && videoRoot.has("results")) {
 			for (JsonNode video : videoRoot.get("results")) {
 				if ("YouTube".equals(video.get("site").asText(""))
@@ -196,10 +278,8 @@ public class FetchTMDBDataUtil {
 			}
 		}
 
-		// 5. 獲取演員與導演
-		String creditsUrl = String.format("%s/movie/%d/credits?api_key=%s&language=zh-TW", BASE_URL,
-				movie.getTmdbMovieId(), API_KEY);
-		JsonNode creditsRoot = getResourceFromApiUrl(creditsUrl);
+		// 4. 演員與導演
+		JsonNode creditsRoot = movieRoot.get("credits");
 		if (creditsRoot == null)
 			return;
 
@@ -230,46 +310,69 @@ public class FetchTMDBDataUtil {
 		movie.setActors(actors);
 	}
 
-	private static byte[] downloadImageAsBytes(String imageUrl) throws IOException {
-		URL url = new URL(imageUrl);
-		HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-		conn.setRequestMethod("GET");
-		conn.setConnectTimeout(5000);
-		conn.setReadTimeout(15000);
-		try (InputStream in = conn.getInputStream(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-			byte[] buffer = new byte[8192];
-			int bytesRead;
-			while ((bytesRead = in.read(buffer)) != -1) {
-				out.write(buffer, 0, bytesRead);
-			}
-			return out.toByteArray();
+	/**
+	 * 下載海報 (image.tmdb.org 不在 API 配額內，由呼叫端自行限制同時下載數)
+	 *
+	 * @param posterPath TMDB 的海報路徑
+	 * @return 圖片內容；下載失敗時回傳 null
+	 */
+	public byte[] downloadPoster(String posterPath) {
+		HttpGet request = new HttpGet(IMAGE_BASE_URL + posterPath);
+		try {
+			return HTTP_CLIENT.execute(request, response -> {
+				int status = response.getCode();
+				if (status >= 200 && status < 300 && response.getEntity() != null) {
+					return EntityUtils.toByteArray(response.getEntity());
+				}
+				throw new IOException("Unexpected response status: " + status);
+			});
+		} catch (IOException e) {
+			System.err.println(" -> 下載海報失敗: " + posterPath + " (" + e.getMessage() + ")");
+			return null;
 		}
 	}
 
-	private static JsonNode getResourceFromApiUrl(String searchUrl) {
-		try (CloseableHttpClient client = HttpClients.createDefault()) {
-			HttpGet request = new HttpGet(searchUrl);
-			HttpClientResponseHandler<String> responseHandler = new HttpClientResponseHandler<>() {
-				@Override
-				public String handleResponse(ClassicHttpResponse response) throws IOException, HttpException {
-					int status = response.getCode();
-					if (status >= 200 && status < 300) {
-						return EntityUtils.toString(response.getEntity(), "UTF-8");
-					} else {
-						throw new IOException("Unexpected response status: " + status);
-					}
+	/**
+	 * 在配額內送出 API 請求。回應 429 時依 Retry-After 暫停所有請求後重試，最多重試 MAX_RETRIES 次。
+	 */
+	private JsonNode getResourceFromApiUrl(String searchUrl) {
+		try {
+			for (int attempt = 0;; attempt++) {
+				ApiResponse response = rateLimiter.call(() -> execute(searchUrl));
+				if (response.status() >= 200 && response.status() < 300) {
+					return OBJECT_MAPPER.readTree(response.body());
+				}
+				if (response.status() != 429 || attempt >= MAX_RETRIES) {
+					throw new IOException("Unexpected response status: " + response.status());
 				}
-			};
-			String responseBody = client.execute(request, responseHandler);
-			return new ObjectMapper().readTree(responseBody);
+				rateLimiter.pause(response.retryAfterSeconds());
+			}
 		} catch (Exception e) {
-			System.err.println("從 TMDB API 獲取資源時失敗: " + searchUrl);
+			System.err.println("從 TMDB API 獲取資源時失敗: " + (API_KEY != null ? searchUrl.replace(API_KEY, "***") : searchUrl));
 			System.err.println(" -> 錯誤訊息: " + e.getMessage());
 			return null;
 		}
 	}
 
-	public static Map<Integer, String> fetchGenresMap() {
+	private record ApiResponse(int status, String body, long retryAfterSeconds) {
+	}
+
+	private static ApiResponse execute(String url) {
+		try {
+			return HTTP_CLIENT.execute(new HttpGet(url), response -> {
+				Header retryAfter = response.getFirstHeader("Retry-After");
+				long retryAfterSeconds = retryAfter != null && StringUtils.isNumeric(retryAfter.getValue())
+						? Long.parseLong(retryAfter.getValue())
+						: 1;
+				String body = response.getEntity() != null ? EntityUtils.toString(response.getEntity(), "UTF-8") : null;
+				return new ApiResponse(response.getCode(), body, retryAfterSeconds);
+			});
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public Map<Integer, String> fetchGenresMap() {
 		String genresUrl = BASE_URL + "/genre/movie/list?api_key=" + API_KEY + "&language=zh-TW";
 		JsonNode root = getResourceFromApiUrl(genresUrl);
 		Map<Integer, String> genresMap = new HashMap<>();
@@ -21,4 +21,25 @@ public class PictureConverter {
             return null;
         }
 	}
+
+	/**
+	 * 輔助工具：將 Cloudinary 圖片網址轉為縮圖網址 (商品圖片存放在 Cloudinary，由 Cloudinary 產生並快取縮圖)。
+	 * 加上 w_{寬度},c_limit (等比例縮小、不放大)、f_auto (依瀏覽器自動選擇 AVIF / WebP) 與 q_auto。
+	 * @param url   原圖網址
+	 * @param width 縮圖寬度
+	 * @return 縮圖網址；不是 Cloudinary 網址或已經帶有轉換參數時原樣回傳
+	 */
+	public static String toCloudinaryThumbnail(String url, int width) {
+		String marker = "/image/upload/";
+		if (url == null || !url.contains("res.cloudinary.com") || !url.contains(marker)) {
+			return url;
+		}
+		int index = url.indexOf(marker) + marker.length();
+		String rest = url.substring(index);
+		// 轉換參數之後接的是版本 (v123...) 或檔案路徑；已經有轉換參數 (如 w_320,...) 就不再加
+		if (rest.matches("^[a-z]{1,3}_[^/]*/.*")) {
+			return url;
+		}
+		return url.substring(0, index) + "w_" + width + ",c_limit,f_auto,q_auto/" + rest;
+	}
 }
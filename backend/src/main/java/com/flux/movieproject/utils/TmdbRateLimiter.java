@@ -0,0 +1,117 @@
+package com.flux.movieproject.utils;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * TMDB API 的流量控制 (Token Bucket)。
+ * 所有呼叫 api.themoviedb.org 的請求都要先取得一個 token，token 以固定速率補充，最多累積 burst 個；
+ * 另外限制同時進行中的連線數。收到 429 時呼叫 pause，所有等待中的請求都會一起暫停到 Retry-After 之後。
+ * 使用 ReentrantLock 而不是 synchronized，虛擬執行緒等待時不會卡住載體執行緒。
+ */
+@Component
+public class TmdbRateLimiter {
+
+	// TMDB 的上限約為每秒 50 個請求、每個 IP 20 條連線，預設值保留一些餘裕
+	@Value("${tmdb.rate-limit.requests-per-second:40}")
+	private double requestsPerSecond;
+
+	@Value("${tmdb.rate-limit.burst:20}")
+	private int burst;
+
+	@Value("${tmdb.rate-limit.max-connections:16}")
+	private int maxConnections;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private double tokens;
+	private long lastRefillNanos;
+	private long pausedUntilNanos;
+	private Semaphore connections;
+
+	@PostConstruct
+	public void init() {
+		tokens = burst;
+		lastRefillNanos = System.nanoTime();
+		pausedUntilNanos = lastRefillNanos;
+		connections = new Semaphore(maxConnections, true);
+	}
+
+	/**
+	 * 在配額內執行一次請求 (取得 token 與連線名額，結束後歸還連線名額)
+	 *
+	 * @param request 實際發送請求的程式
+	 * @return 請求結果
+	 */
+	public <T> T call(Supplier<T> request) {
+		acquire();
+		try {
+			connections.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("等待 TMDB 連線名額時被中斷", e);
+		}
+		try {
+			return request.get();
+		} finally {
+			connections.release();
+		}
+	}
+
+	/**
+	 * 取得一個 token，沒有 token 或暫停中時等待
+	 */
+	public void acquire() {
+		while (true) {
+			long waitNanos;
+			lock.lock();
+			try {
+				long now = System.nanoTime();
+				refill(now);
+				if (now >= pausedUntilNanos && tokens >= 1) {
+					tokens -= 1;
+					return;
+				}
+				long refillWait = (long) ((1 - tokens) / requestsPerSecond * 1_000_000_000L);
+				waitNanos = Math.max(pausedUntilNanos - now, refillWait);
+			} finally {
+				lock.unlock();
+			}
+			try {
+				TimeUnit.NANOSECONDS.sleep(Math.max(waitNanos, 1_000_000L));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("等待 TMDB 配額時被中斷", e);
+			}
+		}
+	}
+
+	/**
+	 * 收到 429 (Too Many Requests) 時呼叫，暫停所有請求並清空累積的 token
+	 *
+	 * @param seconds Retry-After 秒數
+	 */
+	public void pause(long seconds) {
+		lock.lock();
+		try {
+			long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.max(1, seconds));
+			pausedUntilNanos = Math.max(pausedUntilNanos, until);
+			tokens = 0;
+		} finally {
+			lock.unlock();
+		}
+		System.err.println("TMDB 回應 429，暫停 " + seconds + " 秒後再送出請求");
+	}
+
+	private void refill(long now) {
+		double elapsedSeconds = (now - lastRefillNanos) / 1_000_000_000.0;
+		tokens = Math.min(burst, tokens + elapsedSeconds * requestsPerSecond);
+		lastRefillNanos = now;
+	}
+}
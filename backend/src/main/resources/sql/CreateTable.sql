@@ -281,6 +281,9 @@ CREATE TABLE tmdb_movie (
     popularity DECIMAL(6,2), -- TMDB 提供的熱門度評分
     vote_average DECIMAL(3,1), -- TMDB 提供的平均投票分數
     vote_count INT, -- TMDB 提供的投票總數
+    poster_path NVARCHAR(200), -- TMDB 的海報路徑 (路徑不變代表海報沒有更換，不必重新下載)
+    content_hash CHAR(64), -- 電影資料與演職員的內容雜湊 (SHA-256)，同步時用來判斷是否需要寫入
+    last_sync_time DATETIME, -- 最後一次與 TMDB 同步的時間
     create_time DATETIME DEFAULT GETDATE(), -- 紀錄資料建立時間，預設為當前時間
     update_time DATETIME -- 紀錄資料最後更新時間
 );
@@ -435,7 +438,8 @@ CREATE TABLE product (
     image_url NVARCHAR(MAX), -- 商品圖片的url地址
     stock INT NOT NULL, -- 商品庫存量，不可為空
 	is_available BIT NOT NULL, -- 商品狀態 (0: 不可購買, 1: 可購買)
-    creation_time DATETIME NOT NULL -- 商品創建時間
+    creation_time DATETIME NOT NULL, -- 商品創建時間
+    row_version ROWVERSION -- 每次更新時自動遞增，商品搜尋索引以此判斷資料的新舊
 );
 
 -- 1. 創建 Cart (購物車主表)
@@ -502,6 +506,7 @@ CREATE TABLE product_order (
     coupon_id INT, -- 使用的優惠券ID (若未使用則為 NULL)
     payment_method NVARCHAR(20), -- 支付方式 (例如 '信用卡', 'LINE Pay')
     order_status NVARCHAR(20),-- 訂單狀態 (例如 '待付款', '已完成', '已取消')
+    status_time DATETIME, -- 進入目前訂單狀態的時間，由 ProductOrderService 變更狀態時記錄 (等待線上付款的訂單以此判斷是否逾時)
           --shipping_address NVARCHAR(50),  --寄送地址
         --shipping_method NVARCHAR(20),-- 寄送方式 超商 or 宅配
         customer_email NVARCHAR(255)--訂單Email
@@ -600,7 +605,9 @@ CREATE TABLE movie_session (
     theater_id INT NOT NULL, -- 關聯的影廳ID
     movie_id INT NOT NULL, -- 關聯的電影ID
     start_time DATETIME NOT NULL, -- 場次開始時間
-    end_time DATETIME NOT NULL -- 場次結束時間
+    end_time DATETIME NOT NULL, -- 場次結束時間
+    sellable_seats INT, -- 可售座位總數 (不含友善座位)
+    available_seats INT -- 目前可購買座位數 (不含友善座位)
 );
 
 CREATE INDEX idx_moviesession_movie_id ON movie_session(movie_id);
@@ -647,4 +654,190 @@ CREATE TABLE ticket_order_detail (
 	ticket_type_id INT NOT NULL, -- 關聯的票種ID
     unit_price INT NOT NULL, -- 此票券的單價
 	status NVARCHAR(20)
-);
\ No newline at end of file
+);
+
+-- 後台訂單查詢依建立時間倒序分頁 (keyset)，以 (created_time, ticket_order_id) 作為游標
+CREATE INDEX idx_ticketorder_created_time ON ticket_order(created_time DESC, ticket_order_id DESC)
+    INCLUDE (member_id, status, total_amount, payment_type);
+CREATE INDEX idx_ticketorder_member_created ON ticket_order(member_id, created_time DESC, ticket_order_id DESC);
+CREATE INDEX idx_ticketorder_status_created ON ticket_order(status, created_time DESC, ticket_order_id DESC);
+CREATE INDEX idx_ticketorderdetail_order_id ON ticket_order_detail(ticket_order_id);
+
+-- 會員帳號、信箱、電話的三字元片段 (trigram) 索引，後台以部分字串查詢會員訂單時使用，避免 LIKE '%x%' 掃描整張會員表
+-- field: 1 帳號, 2 信箱, 3 電話；gram 一律轉為小寫；由 member 的觸發程序維護
+DROP TABLE IF EXISTS member_search_gram;
+CREATE TABLE member_search_gram (
+    field TINYINT NOT NULL, -- 欄位代碼
+    gram NVARCHAR(3) NOT NULL, -- 三字元片段
+    member_id INT NOT NULL, -- 會員ID
+    PRIMARY KEY (field, gram, member_id)
+);
+GO
+
+CREATE OR ALTER TRIGGER trg_member_search_gram ON member
+AFTER INSERT, UPDATE, DELETE
+AS
+BEGIN
+    SET NOCOUNT ON;
+    -- 更新時沒有異動帳號、信箱、電話就不需要重建
+    IF EXISTS (SELECT 1 FROM inserted) AND EXISTS (SELECT 1 FROM deleted)
+        AND NOT (UPDATE(username) OR UPDATE(email) OR UPDATE(phone))
+        RETURN;
+
+    DELETE FROM member_search_gram
+    WHERE member_id IN (SELECT member_id FROM deleted UNION SELECT member_id FROM inserted);
+
+    INSERT INTO member_search_gram (field, gram, member_id)
+    SELECT DISTINCT f.field, LOWER(SUBSTRING(f.value, n.n, 3)), i.member_id
+    FROM inserted i
+    CROSS APPLY (VALUES (1, i.username), (2, i.email), (3, i.phone)) AS f(field, value)
+    JOIN (SELECT TOP (100) ROW_NUMBER() OVER (ORDER BY (SELECT NULL)) AS n FROM sys.all_objects) n
+        ON n.n <= LEN(f.value) - 2;
+END
+GO
+
+-- 既有會員的片段索引
+INSERT INTO member_search_gram (field, gram, member_id)
+SELECT DISTINCT f.field, LOWER(SUBSTRING(f.value, n.n, 3)), m.member_id
+FROM member m
+CROSS APPLY (VALUES (1, m.username), (2, m.email), (3, m.phone)) AS f(field, value)
+JOIN (SELECT TOP (100) ROW_NUMBER() OVER (ORDER BY (SELECT NULL)) AS n FROM sys.all_objects) n
+    ON n.n <= LEN(f.value) - 2;
+
+-- 綠界付款通知紀錄：每筆 (MerchantTradeNo, TradeNo) 只記錄一次，綠界重送的通知直接回覆，不重複處理
+-- status: RECEIVED 已接收, PROCESSING 處理中, RETRY 等待重試, DONE 已完成, DEAD 重試次數用盡 (需人工處理)
+DROP TABLE IF EXISTS payment_callback;
+CREATE TABLE payment_callback (
+    callback_id BIGINT IDENTITY(1,1) PRIMARY KEY, -- 通知紀錄ID
+    merchant_trade_no NVARCHAR(20) NOT NULL, -- 特店交易編號 (訂單編號)
+    trade_no NVARCHAR(20) NOT NULL, -- 綠界交易編號
+    rtn_code NVARCHAR(10) NOT NULL, -- 交易狀態代碼 (1 為成功)
+    rtn_msg NVARCHAR(200), -- 交易訊息
+    status NVARCHAR(20) NOT NULL, -- 處理狀態
+    attempts INT NOT NULL DEFAULT 0, -- 已處理次數
+    last_error NVARCHAR(500), -- 最後一次處理失敗的原因
+    received_time DATETIME NOT NULL, -- 接收時間
+    updated_time DATETIME NOT NULL, -- 最後更新時間
+    next_attempt_time DATETIME, -- 下次重試時間
+    CONSTRAINT uq_payment_callback_trade UNIQUE (merchant_trade_no, trade_no)
+);
+
+CREATE INDEX idx_paymentcallback_status ON payment_callback(status, next_attempt_time);
+
+-- 訂單事件 outbox：訂單付款、退款、取消時在同一個交易中寫入，提交後由背景工作處理會員等級與優惠券歸還
+-- 每個事件的每個處理者 (handler) 各一筆，彼此獨立重試
+-- status: PENDING 待處理, PROCESSING 處理中, RETRY 等待重試, DONE 已完成, DEAD 重試次數用盡 (需人工處理)
+DROP TABLE IF EXISTS order_event_outbox;
+CREATE TABLE order_event_outbox (
+    outbox_id BIGINT IDENTITY(1,1) PRIMARY KEY, -- 事件ID
+    event_type NVARCHAR(30) NOT NULL, -- 事件類型 (ORDER_PAID, ORDER_REFUNDED, ORDER_CANCELLED)
+    handler NVARCHAR(30) NOT NULL, -- 處理者 (MEMBER_LEVEL, COUPON_RETURN)
+    ticket_order_id INT NOT NULL, -- 訂單ID
+    status NVARCHAR(20) NOT NULL, -- 處理狀態
+    attempts INT NOT NULL DEFAULT 0, -- 已處理次數
+    last_error NVARCHAR(500), -- 最後一次處理失敗的原因
+    created_time DATETIME NOT NULL, -- 建立時間
+    updated_time DATETIME NOT NULL, -- 最後更新時間
+    next_attempt_time DATETIME -- 下次重試時間
+);
+
+CREATE INDEX idx_ordereventoutbox_status ON order_event_outbox(status, next_attempt_time);
+
+-- 會員消費帳明細：每筆計入消費的訂單一筆，訂單付款、完成或退款時逐筆調整
+-- 票券訂單以場次開始時間為生效時間，生效後由排程累加到 member_spending (applied = 1)
+DROP TABLE IF EXISTS member_spending_entry;
+CREATE TABLE member_spending_entry (
+    source_type NVARCHAR(10) NOT NULL, -- 訂單來源 (TICKET 票券訂單, PRODUCT 商品訂單)
+    source_id INT NOT NULL, -- 訂單ID
+    member_id INT NOT NULL, -- 會員ID
+    amount INT NOT NULL, -- 計入的消費金額
+    effective_time DATETIME NOT NULL, -- 計入消費的時間
+    applied BIT NOT NULL DEFAULT 0, -- 是否已累加到 member_spending
+    updated_time DATETIME NOT NULL, -- 最後更新時間
+    CONSTRAINT pk_member_spending_entry PRIMARY KEY (source_type, source_id)
+);
+
+CREATE INDEX idx_memberspendingentry_due ON member_spending_entry(applied, effective_time);
+CREATE INDEX idx_memberspendingentry_member ON member_spending_entry(member_id, applied, effective_time) INCLUDE (amount);
+
+-- 會員累計消費：已生效明細的彙總，計算會員等級與升級進度時讀取
+DROP TABLE IF EXISTS member_spending;
+CREATE TABLE member_spending (
+    member_id INT PRIMARY KEY NOT NULL, -- 會員ID
+    total_spent BIGINT NOT NULL DEFAULT 0, -- 累計消費金額
+    updated_time DATETIME NOT NULL -- 最後更新時間
+);
+
+-- 既有訂單的消費明細與彙總
+INSERT INTO member_spending_entry (source_type, source_id, member_id, amount, effective_time, applied, updated_time)
+SELECT s.source_type, s.source_id, s.member_id, s.amount, s.effective_time,
+    CASE WHEN s.effective_time <= GETDATE() THEN 1 ELSE 0 END, GETDATE()
+FROM (
+    SELECT 'TICKET' AS source_type, o.ticket_order_id AS source_id, o.member_id, o.total_amount AS amount,
+        MIN(CASE WHEN o.status = 'COMPLETED' THEN o.created_time ELSE ms.start_time END) AS effective_time
+    FROM ticket_order o
+    JOIN ticket_order_detail d ON d.ticket_order_id = o.ticket_order_id
+    JOIN session_seat ss ON ss.session_seat_id = d.session_seat_id
+    JOIN movie_session ms ON ms.session_id = ss.session_id
+    WHERE o.status IN ('PAID', 'COMPLETED')
+    GROUP BY o.ticket_order_id, o.member_id, o.total_amount
+    UNION ALL
+    SELECT 'PRODUCT', p.order_id, p.member_id, p.final_payment_amount, p.order_time
+    FROM product_order p WHERE p.order_status = 'COMPLETED'
+) s;
+
+INSERT INTO member_spending (member_id, total_spent, updated_time)
+SELECT member_id, SUM(CAST(amount AS BIGINT)), GETDATE()
+FROM member_spending_entry WHERE applied = 1 GROUP BY member_id;
+
+-- 會員等級批次重新評估：等級門檻變更時重新評估全體會員
+-- status: RUNNING 進行中, DONE 已完成, SUPERSEDED 被較新的評估取代
+DROP TABLE IF EXISTS member_level_evaluation_job;
+CREATE TABLE member_level_evaluation_job (
+    job_id BIGINT IDENTITY(1,1) PRIMARY KEY, -- 評估ID
+    status NVARCHAR(20) NOT NULL, -- 評估狀態
+    reason NVARCHAR(100), -- 評估原因
+    total_chunks INT NOT NULL, -- 區段數
+    members_changed INT NOT NULL DEFAULT 0, -- 變更等級的會員數 (完成時統計)
+    created_time DATETIME NOT NULL, -- 建立時間
+    finished_time DATETIME -- 完成或被取代的時間
+);
+
+-- 評估的會員 ID 區段，各區段由工作執行緒分別取得處理權，中斷後只需重做未完成的區段
+-- status: PENDING 待處理, PROCESSING 處理中, DONE 已完成
+DROP TABLE IF EXISTS member_level_evaluation_chunk;
+CREATE TABLE member_level_evaluation_chunk (
+    job_id BIGINT NOT NULL, -- 評估ID
+    chunk_no INT NOT NULL, -- 區段序號
+    from_member_id INT NOT NULL, -- 區段第一個會員ID
+    to_member_id INT NOT NULL, -- 區段最後一個會員ID
+    status NVARCHAR(20) NOT NULL, -- 處理狀態
+    members_changed INT NOT NULL DEFAULT 0, -- 區段中變更等級的會員數
+    updated_time DATETIME NOT NULL, -- 最後更新時間
+    CONSTRAINT pk_member_level_evaluation_chunk PRIMARY KEY (job_id, chunk_no)
+);
+
+CREATE INDEX idx_memberlevelevaluationchunk_status ON member_level_evaluation_chunk(status, job_id);
+CREATE INDEX idx_memberlevelrecord_member_current ON member_level_record(member_id, end_date) INCLUDE (member_level_id);
+
+-- 會員領取優惠券的次數：領取時以帶條件的 MERGE 累加，檢查每人限領次數不必 COUNT member_coupon
+DROP TABLE IF EXISTS member_coupon_claim_count;
+CREATE TABLE member_coupon_claim_count (
+    member_id INT NOT NULL, -- 會員ID
+    coupon_id INT NOT NULL, -- 優惠券ID
+    claimed_count INT NOT NULL, -- 已領取次數
+    CONSTRAINT pk_member_coupon_claim_count PRIMARY KEY (member_id, coupon_id)
+);
+
+INSERT INTO member_coupon_claim_count (member_id, coupon_id, claimed_count)
+SELECT member_id, coupon_id, COUNT(*)
+FROM member_coupon WHERE member_id IS NOT NULL AND coupon_id IS NOT NULL GROUP BY member_id, coupon_id;
+
+-- 定期取消逾時未付款的線上付款商品訂單
+CREATE INDEX idx_productorder_status_time ON product_order(order_status, status_time);
+
+-- 商品訂單編號的流水號：應用程式每次保留 50 個編號 (ProductOrderNumberJdbcRepository.BLOCK_SIZE)
+DROP SEQUENCE IF EXISTS product_order_number_seq;
+CREATE SEQUENCE product_order_number_seq AS BIGINT START WITH 1 INCREMENT BY 50;
+
+CREATE UNIQUE INDEX uq_productorder_ordernumber ON product_order(order_number) WHERE order_number IS NOT NULL;
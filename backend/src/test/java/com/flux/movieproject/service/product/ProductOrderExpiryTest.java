@@ -0,0 +1,121 @@
+package com.flux.movieproject.service.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+/**
+ * 驗證逾時未付款的線上付款訂單會被取消並回補庫存，而現金訂單與還在付款期限內的訂單不受影響。
+ * 測試新增自己的商品與訂單，結束後刪除。訂單的狀態時間與期限相差一天以上，不受時區設定影響。
+ */
+@SpringBootTest
+class ProductOrderExpiryTest {
+
+	private static final int STOCK = 10;
+	private static final int QUANTITY = 3;
+
+	@Autowired
+	private ProductStockService productStockService;
+	@Autowired
+	private NamedParameterJdbcTemplate jdbc;
+
+	private final List<Integer> createdProductIds = new ArrayList<>();
+	private final List<Integer> createdOrderIds = new ArrayList<>();
+
+	@AfterEach
+	void deleteTestData() {
+		if (!createdOrderIds.isEmpty()) {
+			Map<String, Object> orderIds = Map.of("orderIds", createdOrderIds);
+			jdbc.update("DELETE FROM product_order_detail WHERE order_id IN (:orderIds)", orderIds);
+			jdbc.update("DELETE FROM product_order WHERE order_id IN (:orderIds)", orderIds);
+			createdOrderIds.clear();
+		}
+		if (!createdProductIds.isEmpty()) {
+			jdbc.update("DELETE FROM product WHERE product_id IN (:productIds)", Map.of("productIds", createdProductIds));
+			createdProductIds.clear();
+		}
+	}
+
+	@Test
+	void expiresOnlyOverdueOnlineOrders() {
+		List<Integer> memberIds = jdbc.queryForList("SELECT TOP 1 member_id FROM member ORDER BY member_id", Map.of(),
+				Integer.class);
+		assumeTrue(!memberIds.isEmpty(), "資料庫中沒有會員");
+		int memberId = memberIds.get(0);
+
+		// 三筆訂單各保留 QUANTITY 個，商品的庫存已扣除
+		int productId = createProduct(STOCK - 3 * QUANTITY);
+		LocalDateTime overdue = LocalDateTime.now().minusDays(2);
+		int expired = createOrder(memberId, productId, "CREDIT_CARD", "AWAITING_PAYMENT", overdue);
+		int cash = createOrder(memberId, productId, "CASH", "PENDING", overdue);
+		int recent = createOrder(memberId, productId, "CREDIT_CARD", "AWAITING_PAYMENT", LocalDateTime.now().plusDays(1));
+
+		productStockService.expireUnpaidOrders();
+
+		assertEquals("CANCELLED", statusOf(expired));
+		assertEquals("PENDING", statusOf(cash));
+		assertEquals("AWAITING_PAYMENT", statusOf(recent));
+		assertEquals(STOCK - 2 * QUANTITY, stockOf(productId));
+
+		// 再次執行不會重複回補
+		productStockService.expireUnpaidOrders();
+		assertEquals(STOCK - 2 * QUANTITY, stockOf(productId));
+	}
+
+	private int createProduct(int stock) {
+		KeyHolder keyHolder = new GeneratedKeyHolder();
+		jdbc.update("INSERT INTO product (product_name, category_id, price, stock, is_available, creation_time) "
+				+ "VALUES (N'逾時取消測試', 0, 50, :stock, 0, :now)",
+				new MapSqlParameterSource()
+						.addValue("stock", stock)
+						.addValue("now", Timestamp.valueOf(LocalDateTime.now())),
+				keyHolder, new String[] { "product_id" });
+		int productId = keyHolder.getKey().intValue();
+		createdProductIds.add(productId);
+		return productId;
+	}
+
+	private int createOrder(int memberId, int productId, String paymentMethod, String status, LocalDateTime statusTime) {
+		KeyHolder keyHolder = new GeneratedKeyHolder();
+		jdbc.update("INSERT INTO product_order (member_id, order_time, order_amount, discount_amount, "
+				+ "final_payment_amount, payment_method, order_status, status_time) "
+				+ "VALUES (:memberId, :statusTime, :amount, 0, :amount, :paymentMethod, :status, :statusTime)",
+				new MapSqlParameterSource()
+						.addValue("memberId", memberId)
+						.addValue("statusTime", Timestamp.valueOf(statusTime))
+						.addValue("amount", 50 * QUANTITY)
+						.addValue("paymentMethod", paymentMethod)
+						.addValue("status", status),
+				keyHolder, new String[] { "order_id" });
+		int orderId = keyHolder.getKey().intValue();
+		createdOrderIds.add(orderId);
+		jdbc.update("INSERT INTO product_order_detail (order_id, product_id, quantity, unit_price, subtotal, extra_price, "
+				+ "product_name) VALUES (:orderId, :productId, :quantity, 50, :subtotal, 0, N'逾時取消測試')",
+				Map.of("orderId", orderId, "productId", productId, "quantity", QUANTITY, "subtotal", 50 * QUANTITY));
+		return orderId;
+	}
+
+	private String statusOf(int orderId) {
+		return jdbc.queryForObject("SELECT order_status FROM product_order WHERE order_id = :orderId",
+				Map.of("orderId", orderId), String.class);
+	}
+
+	private int stockOf(int productId) {
+		return jdbc.queryForObject("SELECT stock FROM product WHERE product_id = :productId",
+				Map.of("productId", productId), Integer.class);
+	}
+}
@@ -0,0 +1,59 @@
+package com.flux.movieproject.service.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.flux.movieproject.service.product.ProductSearchAnalyzer.QueryTerm;
+
+/**
+ * ProductSearchAnalyzer 的斷詞測試：中文的單字與 bigram、英數字的分詞與前綴查詢、中間比對用的後綴，以及全形字元的正規化。
+ */
+class ProductSearchAnalyzerTest {
+
+	@Test
+	void indexesCjkUnigramsAndBigrams() {
+		Map<String, Integer> frequencies = new HashMap<>();
+		ProductSearchAnalyzer.analyze("巧克力爆米花", frequencies);
+		assertEquals(11, frequencies.size());
+		assertTrue(frequencies.keySet().containsAll(List.of("巧", "花", "巧克", "力爆", "米花")));
+	}
+
+	@Test
+	void countsRepeatedTerms() {
+		Map<String, Integer> frequencies = new HashMap<>();
+		ProductSearchAnalyzer.analyze("爆米花 + 爆米花", frequencies);
+		assertEquals(2, frequencies.get("爆米"));
+		assertEquals(2, frequencies.get("爆"));
+	}
+
+	@Test
+	void queriesCjkByBigramsAndWordsByPrefix() {
+		assertEquals(List.of(new QueryTerm("爆米", false), new QueryTerm("米花", false), new QueryTerm("coca", true),
+				new QueryTerm("cola", true), new QueryTerm("330ml", true)), ProductSearchAnalyzer.analyzeQuery("爆米花 Coca-Cola 330ml"));
+	}
+
+	@Test
+	void queriesSingleCjkCharacterAsUnigram() {
+		assertEquals(List.of(new QueryTerm("茶", false)), ProductSearchAnalyzer.analyzeQuery("茶"));
+	}
+
+	@Test
+	void suffixesOfWordsForInfixMatching() {
+		assertEquals(List.of("opcorn", "pcorn", "corn", "orn"), ProductSearchAnalyzer.suffixes("popcorn"));
+		assertEquals(List.of(), ProductSearchAnalyzer.suffixes("col"));
+		assertEquals(List.of(), ProductSearchAnalyzer.suffixes("米花"));
+	}
+
+	@Test
+	void normalizesFullWidthCharacters() {
+		assertEquals(List.of(new QueryTerm("cola", true)), ProductSearchAnalyzer.analyzeQuery("ＣＯＬＡ"));
+		assertEquals(List.of(), ProductSearchAnalyzer.analyzeQuery("  "));
+		assertEquals(List.of(), ProductSearchAnalyzer.analyzeQuery(null));
+	}
+}
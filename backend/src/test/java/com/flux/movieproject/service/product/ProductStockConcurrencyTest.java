@@ -0,0 +1,160 @@
+package com.flux.movieproject.service.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.flux.movieproject.service.product.ProductStockService.InsufficientStockException;
+
+/**
+ * 驗證大量並行下單時庫存不會超賣。
+ * 每個測試新增自己的測試商品 (不可購買，不會出現在前台)，結束後刪除，不會修改既有商品的庫存。
+ * 每個請求成功時記下各商品扣除的數量，最後每個商品的庫存都必須剛好等於原本的庫存減去成功扣除的總數。
+ * 1. 單一商品：所有請求搶同一個商品，成功的請求數與扣除的總數必須剛好等於庫存
+ * 2. 多個商品：部分請求同時購買兩個商品，彼此不會死結，兩個商品都不會超賣
+ */
+@SpringBootTest
+class ProductStockConcurrencyTest {
+
+	private static final int THREADS = 64;
+	private static final int REQUESTS = 2000;
+	private static final int STOCK = 300;
+	private static final int SECOND_STOCK = 100;
+	private static final int QUANTITY_PER_ORDER = 2;
+
+	@Autowired
+	private ProductStockService productStockService;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	@Autowired
+	private NamedParameterJdbcTemplate jdbc;
+
+	private final List<Integer> createdProductIds = new ArrayList<>();
+
+	/**
+	 * @param succeeded 成功預留的請求數
+	 * @param sold      各商品成功扣除的總數
+	 */
+	private record Outcome(int succeeded, Map<Integer, Integer> sold) {
+		int soldOf(int productId) {
+			return sold.getOrDefault(productId, 0);
+		}
+	}
+
+	@AfterEach
+	void deleteProducts() {
+		if (!createdProductIds.isEmpty()) {
+			jdbc.update("DELETE FROM product WHERE product_id IN (:productIds)", Map.of("productIds", createdProductIds));
+			createdProductIds.clear();
+		}
+	}
+
+	@Test
+	void singleProductNeverOversells() throws Exception {
+		int productId = createProduct(STOCK);
+
+		Outcome outcome = runConcurrently(i -> Map.of(productId, QUANTITY_PER_ORDER));
+
+		assertEquals(STOCK / QUANTITY_PER_ORDER, outcome.succeeded());
+		assertEquals(STOCK, outcome.soldOf(productId));
+		assertEquals(0, stockOf(productId));
+	}
+
+	@Test
+	void multipleProductsNeverOversellOrDeadlock() throws Exception {
+		int first = createProduct(STOCK);
+		int second = createProduct(SECOND_STOCK);
+
+		// 單數請求只買第一個商品，雙數請求兩個都買；每個成功的請求都扣除第一個商品 1 個。
+		// 單數請求就足以買完第一個商品，所以成功的請求數剛好等於第一個商品的庫存
+		Outcome outcome = runConcurrently(i -> i % 2 == 0 ? Map.of(second, 1, first, 1) : Map.of(first, 1));
+
+		assertEquals(STOCK, outcome.succeeded());
+		assertEquals(STOCK, outcome.soldOf(first));
+		assertEquals(0, stockOf(first));
+		assertEquals(SECOND_STOCK - outcome.soldOf(second), stockOf(second));
+	}
+
+	private interface OrderFactory {
+		Map<Integer, Integer> order(int index);
+	}
+
+	/**
+	 * 同時送出 REQUESTS 個預留請求，每個請求在獨立交易中執行
+	 */
+	private Outcome runConcurrently(OrderFactory orders) throws Exception {
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		AtomicInteger succeeded = new AtomicInteger();
+		Map<Integer, Integer> sold = new ConcurrentHashMap<>();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<?>> futures = new ArrayList<>(REQUESTS);
+			for (int i = 0; i < REQUESTS; i++) {
+				Map<Integer, Integer> order = orders.order(i);
+				futures.add(executor.submit(() -> {
+					start.await();
+					try {
+						transaction.executeWithoutResult(status -> productStockService.reserve(order));
+					} catch (InsufficientStockException e) {
+						// 庫存不足，交易已回滾
+						return null;
+					}
+					succeeded.incrementAndGet();
+					order.forEach((productId, quantity) -> sold.merge(productId, quantity, Integer::sum));
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return new Outcome(succeeded.get(), sold);
+	}
+
+	/**
+	 * 新增一個不可購買的測試商品，測試結束後刪除
+	 */
+	private int createProduct(int stock) {
+		KeyHolder keyHolder = new GeneratedKeyHolder();
+		jdbc.update("INSERT INTO product (product_name, category_id, price, stock, is_available, creation_time) "
+				+ "VALUES (:productName, 0, 1, :stock, 0, :now)",
+				new MapSqlParameterSource()
+						.addValue("productName", "庫存並行測試 " + (createdProductIds.size() + 1))
+						.addValue("stock", stock)
+						.addValue("now", Timestamp.valueOf(LocalDateTime.now())),
+				keyHolder, new String[] { "product_id" });
+		int productId = keyHolder.getKey().intValue();
+		createdProductIds.add(productId);
+		return productId;
+	}
+
+	private int stockOf(int productId) {
+		return jdbc.queryForObject("SELECT stock FROM product WHERE product_id = :productId",
+				Map.of("productId", productId), Integer.class);
+	}
+}
@@ -0,0 +1,81 @@
+package com.flux.movieproject.service.ticket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * 比較 EcpayCheckMacSigner 與原本實作的每次耗時與記憶體配置量。
+ * 預設不執行，以 -Decpay.signer.benchmark=true 開啟；與 SeatClaimConcurrencyTest 相同以暖機後的多輪平均為結果。
+ */
+@EnabledIfSystemProperty(named = "ecpay.signer.benchmark", matches = "true")
+class EcpayCheckMacSignerBenchmark {
+
+	private static final String HASH_KEY = "pwFHCqoQZGmho4w6";
+	private static final String HASH_IV = "EkRm7iFT261dpevs";
+	// 第一輪為暖機，不列入結果
+	private static final int ROUNDS = 6;
+	private static final int OPERATIONS = 200_000;
+
+	// 避免 JIT 把沒有使用的結果整個消除
+	private static volatile int sink;
+
+	@Test
+	void compareWithLegacyImplementation() {
+		EcpayCheckMacSigner signer = new EcpayCheckMacSigner(HASH_KEY, HASH_IV);
+		Map<String, String> callback = callbackParams();
+		assertEquals(LegacyCheckMacValue.generate(callback, HASH_KEY, HASH_IV), signer.sign(callback));
+
+		System.out.printf("CheckMacValue 比較 (%d 個欄位的付款通知)\n", callback.size());
+		report("原本實作", params -> LegacyCheckMacValue.generate(params, HASH_KEY, HASH_IV), callback);
+		report("signer.sign", signer::sign, callback);
+		callback.put(EcpayCheckMacSigner.CHECK_MAC_VALUE, signer.sign(callback));
+		report("signer.verify", params -> signer.verify(params) ? "1" : "0", callback);
+	}
+
+	private static void report(String name, Function<Map<String, String>, String> target, Map<String, String> params) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		double totalNanos = 0;
+		double totalBytes = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+			long start = System.nanoTime();
+			for (int i = 0; i < OPERATIONS; i++) {
+				sink += target.apply(params).length();
+			}
+			long elapsed = System.nanoTime() - start;
+			long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+			if (round > 0) {
+				totalNanos += (double) elapsed / OPERATIONS;
+				totalBytes += (double) allocated / OPERATIONS;
+			}
+		}
+		System.out.printf("%-14s %8.0f ns/次 %8.0f bytes/次\n", name, totalNanos / (ROUNDS - 1),
+				totalBytes / (ROUNDS - 1));
+	}
+
+	private static Map<String, String> callbackParams() {
+		Map<String, String> callback = new LinkedHashMap<>();
+		callback.put("MerchantID", "3002607");
+		callback.put("MerchantTradeNo", "FX2508260001");
+		callback.put("RtnCode", "1");
+		callback.put("RtnMsg", "交易成功");
+		callback.put("TradeNo", "2508261158401234");
+		callback.put("TradeAmt", "560");
+		callback.put("PaymentDate", "2025/08/26 12:00:05");
+		callback.put("PaymentType", "Credit_CreditCard");
+		callback.put("PaymentTypeChargeFee", "15");
+		callback.put("TradeDate", "2025/08/26 11:58:40");
+		callback.put("SimulatePaid", "0");
+		callback.put("CustomField1", "");
+		return callback;
+	}
+}
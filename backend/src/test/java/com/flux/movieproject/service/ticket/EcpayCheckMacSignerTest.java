@@ -0,0 +1,142 @@
+package com.flux.movieproject.service.ticket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * EcpayCheckMacSigner 的固定向量測試。
+ * 前兩組為綠界文件 (CheckMacValue 檢查碼機制) 公布的範例；其餘依相同規則計算，涵蓋付款通知的欄位、
+ * .NET 編碼與 Java URLEncoder 不同的字元 (! ( )) 以及四位元組的 UTF-8 字元。
+ */
+class EcpayCheckMacSignerTest {
+
+	private static final String HASH_KEY = "pwFHCqoQZGmho4w6";
+	private static final String HASH_IV = "EkRm7iFT261dpevs";
+
+	private final EcpayCheckMacSigner signer = new EcpayCheckMacSigner(HASH_KEY, HASH_IV);
+
+	@Test
+	void publishedExample() {
+		Map<String, String> params = new HashMap<>();
+		params.put("ChoosePayment", "ALL");
+		params.put("EncryptType", "1");
+		params.put("ItemName", "Apple iphone 15");
+		params.put("MerchantID", "3002607");
+		params.put("MerchantTradeDate", "2023/03/12 15:30:23");
+		params.put("MerchantTradeNo", "ecpay20230312153023");
+		params.put("PaymentType", "aio");
+		params.put("ReturnURL", "https://www.ecpay.com.tw/receive.php");
+		params.put("TotalAmount", "30000");
+		params.put("TradeDesc", "促銷方案");
+
+		assertEquals("6C51C9E6888DE861FD62FB1DD17029FC742634498FD813DC43D4243B5685B840", signer.sign(params));
+	}
+
+	@Test
+	void publishedLegacyExample() {
+		Map<String, String> params = new HashMap<>();
+		params.put("ChoosePayment", "ALL");
+		params.put("EncryptType", "1");
+		params.put("ItemName", "Apple iphone 7 手機殼");
+		params.put("MerchantID", "2000132");
+		params.put("MerchantTradeDate", "2013/03/12 15:30:23");
+		params.put("MerchantTradeNo", "ecpay20130312153023");
+		params.put("PaymentType", "aio");
+		params.put("ReturnURL", "https://www.ecpay.com.tw/receive.php");
+		params.put("TotalAmount", "1000");
+		params.put("TradeDesc", "促銷方案");
+
+		EcpayCheckMacSigner legacySigner = new EcpayCheckMacSigner("5294y06JbISpM5x9", "v77hoKGq4kWxNNIS");
+		assertEquals("CFA9BDE377361FBDD8F160274930E815D1A8A2E3E80CE7D404C45FC9A0A1E407",
+				legacySigner.sign(params));
+	}
+
+	@Test
+	void paymentCallback() {
+		Map<String, String> callback = callbackParams();
+		assertEquals("9BDA6789DA8AA0C79FACB987E7B81E013EB34C53088B481D9CD9F67DC9B9F18B", signer.sign(callback));
+
+		// 回傳的 CheckMacValue 不參與計算
+		callback.put(EcpayCheckMacSigner.CHECK_MAC_VALUE, "9BDA6789DA8AA0C79FACB987E7B81E013EB34C53088B481D9CD9F67DC9B9F18B");
+		assertEquals("9BDA6789DA8AA0C79FACB987E7B81E013EB34C53088B481D9CD9F67DC9B9F18B", signer.sign(callback));
+		assertTrue(signer.verify(callback));
+	}
+
+	@Test
+	void verifyRejectsTamperedData() {
+		Map<String, String> callback = callbackParams();
+		callback.put(EcpayCheckMacSigner.CHECK_MAC_VALUE, signer.sign(callback));
+		callback.put("TradeAmt", "1");
+		assertFalse(signer.verify(callback));
+
+		Map<String, String> missing = callbackParams();
+		assertFalse(signer.verify(missing));
+
+		Map<String, String> lowerCase = callbackParams();
+		lowerCase.put(EcpayCheckMacSigner.CHECK_MAC_VALUE, signer.sign(lowerCase).toLowerCase());
+		assertFalse(signer.verify(lowerCase));
+	}
+
+	@Test
+	void dotNetUnreservedCharactersAndSupplementaryCharacters() {
+		Map<String, String> params = new TreeMap<>();
+		params.put("ItemName", "爆米花 (大) x 1#可樂! x 2");
+		params.put("MerchantTradeNo", "FX2508260002");
+		params.put("TotalAmount", "180");
+		params.put("TradeDesc", "Flux電影院 - 電影票訂購 😀");
+
+		assertEquals("2FDEFD3F1445B869082AFBA96AD455C3249C9EF869328ED7489B391A0DDDCF1E", signer.sign(params));
+		// 原本的實作以 URLEncoder 編碼 ! ( )，與綠界的計算結果不同
+		assertNotEquals(signer.sign(params), LegacyCheckMacValue.generate(params, HASH_KEY, HASH_IV));
+	}
+
+	@Test
+	void matchesLegacyImplementationWithoutDotNetSpecificCharacters() {
+		Random random = new Random(20250826);
+		String alphabet = "abcXYZ019 -_.*&=/:?#%+電影票😀";
+		for (int round = 0; round < 500; round++) {
+			Map<String, String> params = new LinkedHashMap<>();
+			int fields = 1 + random.nextInt(20);
+			for (int i = 0; i < fields; i++) {
+				StringBuilder value = new StringBuilder();
+				int length = random.nextInt(40);
+				for (int j = 0; j < length; j++) {
+					int index = random.nextInt(alphabet.length());
+					value.append(alphabet.charAt(index));
+					if (Character.isHighSurrogate(alphabet.charAt(index))) {
+						value.append(alphabet.charAt(index + 1));
+					}
+				}
+				params.put("Field" + (char) ('A' + i), value.toString());
+			}
+			assertEquals(LegacyCheckMacValue.generate(params, HASH_KEY, HASH_IV), signer.sign(params));
+		}
+	}
+
+	private static Map<String, String> callbackParams() {
+		Map<String, String> callback = new LinkedHashMap<>();
+		callback.put("MerchantID", "3002607");
+		callback.put("MerchantTradeNo", "FX2508260001");
+		callback.put("RtnCode", "1");
+		callback.put("RtnMsg", "交易成功");
+		callback.put("TradeNo", "2508261158401234");
+		callback.put("TradeAmt", "560");
+		callback.put("PaymentDate", "2025/08/26 12:00:05");
+		callback.put("PaymentType", "Credit_CreditCard");
+		callback.put("PaymentTypeChargeFee", "15");
+		callback.put("TradeDate", "2025/08/26 11:58:40");
+		callback.put("SimulatePaid", "0");
+		callback.put("CustomField1", "");
+		return callback;
+	}
+}
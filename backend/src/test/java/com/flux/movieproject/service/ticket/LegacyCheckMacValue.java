@@ -0,0 +1,42 @@
+package com.flux.movieproject.service.ticket;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * 原本 EcpayService.generateCheckMacValue 的實作 (串接字串、URLEncoder、每次取得 MessageDigest)，
+ * 作為 EcpayCheckMacSigner 的比對與效能基準
+ */
+final class LegacyCheckMacValue {
+
+	private LegacyCheckMacValue() {
+	}
+
+	static String generate(Map<String, String> params, String hashKey, String hashIv) {
+		Map<String, String> sorted = new TreeMap<>(params);
+		sorted.remove(EcpayCheckMacSigner.CHECK_MAC_VALUE);
+		String paramString = sorted.entrySet().stream().map(entry -> entry.getKey() + "=" + entry.getValue())
+				.collect(Collectors.joining("&"));
+		String fullString = "HashKey=" + hashKey + "&" + paramString + "&HashIV=" + hashIv;
+		String urlEncodedString = URLEncoder.encode(fullString, StandardCharsets.UTF_8).toLowerCase();
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] hash = digest.digest(urlEncodedString.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hexString = new StringBuilder();
+			for (byte b : hash) {
+				String hex = Integer.toHexString(0xff & b);
+				if (hex.length() == 1)
+					hexString.append('0');
+				hexString.append(hex);
+			}
+			return hexString.toString().toUpperCase();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.flux.movieproject.service.ticket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.flux.movieproject.service.ticket.SeatClaimService.ClaimMode;
+import com.flux.movieproject.service.ticket.SeatClaimService.ClaimStats;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * 以兩種搶位模式並行搶位，驗證每次搶位都成功、走的是預期的流程，並比較吞吐量 (每秒完成的搶位次數)。
+ * 使用資料庫中可用座位最多的場次；每次搶位都在獨立交易中執行並回滾，結束後檢查座位狀態沒有改變。
+ * 只測試資料庫搶位的部分，不經過 SeatStateEngine 的記憶體搶位。
+ * 1. 無衝突：每個請求預訂不同的座位 (一般訂位情境)
+ * 2. 高衝突：所有請求都預訂同一組座位，彼此必須排隊等待；前一個交易回滾後座位又是可用的，每次都要成功
+ */
+@SpringBootTest
+class SeatClaimConcurrencyTest {
+
+	private static final int THREADS = 16;
+	private static final int SEATS_PER_RESERVATION = 2;
+	// 第一輪為暖機，不列入吞吐量
+	private static final int ROUNDS = 3;
+	private static final int CONTENDED_RESERVATIONS = 200;
+
+	@Autowired
+	private SeatClaimService seatClaimService;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	@Autowired
+	private NamedParameterJdbcTemplate jdbc;
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Test
+	void everyRolledBackClaimSucceedsInBothModes() throws Exception {
+		// 挑選可用座位最多的場次
+		List<Integer> sessionIds = jdbc.queryForList("SELECT TOP 1 session_id FROM session_seat "
+				+ "WHERE status = 'AVAILABLE' GROUP BY session_id ORDER BY COUNT(*) DESC", Map.of(), Integer.class);
+		assumeTrue(!sessionIds.isEmpty(), "資料庫中沒有可預訂的座位");
+		Integer sessionId = sessionIds.get(0);
+		List<Integer> seatIds = availableSeats(sessionId);
+
+		List<List<Integer>> disjoint = new ArrayList<>();
+		for (int from = 0; from + SEATS_PER_RESERVATION <= seatIds.size(); from += SEATS_PER_RESERVATION) {
+			disjoint.add(seatIds.subList(from, from + SEATS_PER_RESERVATION));
+		}
+		assumeTrue(!disjoint.isEmpty(), "場次的可用座位不足");
+		List<List<Integer>> contended = Collections.nCopies(CONTENDED_RESERVATIONS, disjoint.get(0));
+
+		System.out.printf("搶位模式比較：場次 %d，%d 個執行緒，每次預訂 %d 個座位\n", sessionId, THREADS,
+				SEATS_PER_RESERVATION);
+		for (ClaimMode mode : ClaimMode.values()) {
+			ClaimStats before = seatClaimService.stats();
+			double disjointThroughput = measure(mode, sessionId, disjoint);
+			double contendedThroughput = measure(mode, sessionId, contended);
+			ClaimStats after = seatClaimService.stats();
+			System.out.printf("%-12s 無衝突 (%d 次/輪)：%.0f 次/秒，高衝突 (%d 次/輪)：%.0f 次/秒\n", mode,
+					disjoint.size(), disjointThroughput, contended.size(), contendedThroughput);
+
+			// 前一個交易回滾後座位就可用，樂觀模式的 UPDATE 等到鎖後一定成功，不會改走悲觀鎖
+			long claims = (long) ROUNDS * (disjoint.size() + contended.size());
+			if (mode == ClaimMode.OPTIMISTIC) {
+				assertEquals(claims, after.optimisticClaims() - before.optimisticClaims());
+				assertEquals(0, after.fallbacks() - before.fallbacks());
+				assertEquals(0, after.pessimisticClaims() - before.pessimisticClaims());
+			} else {
+				assertEquals(0, after.optimisticClaims() - before.optimisticClaims());
+				assertEquals(claims, after.pessimisticClaims() - before.pessimisticClaims());
+			}
+		}
+		assertEquals(seatIds, availableSeats(sessionId));
+	}
+
+	/**
+	 * 執行多輪搶位，回傳暖機後各輪的平均吞吐量 (次/秒)
+	 */
+	private double measure(ClaimMode mode, Integer sessionId, List<List<Integer>> reservations) throws Exception {
+		double total = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			double throughput = runRound(mode, sessionId, reservations);
+			if (round > 0) {
+				total += throughput;
+			}
+		}
+		return total / (ROUNDS - 1);
+	}
+
+	/**
+	 * 並行執行一輪搶位，每次搶位都必須成功
+	 */
+	private double runRound(ClaimMode mode, Integer sessionId, List<List<Integer>> reservations) throws Exception {
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		LocalDateTime expiryTime = LocalDateTime.now().plusMinutes(15);
+		AtomicInteger claimed = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			long start = System.nanoTime();
+			List<Future<?>> futures = new ArrayList<>(reservations.size());
+			for (List<Integer> seats : reservations) {
+				futures.add(executor.submit(() -> transaction.executeWithoutResult(status -> {
+					if (seatClaimService.claim(sessionId, seats, expiryTime, mode).size() == seats.size()) {
+						claimed.incrementAndGet();
+					}
+					// 悲觀模式的座位異動要 flush 才會寫入，與樂觀模式的 UPDATE 公平比較
+					entityManager.flush();
+					status.setRollbackOnly();
+				})));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+			double throughput = reservations.size() / ((System.nanoTime() - start) / 1_000_000_000.0);
+			assertEquals(reservations.size(), claimed.get());
+			return throughput;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private List<Integer> availableSeats(Integer sessionId) {
+		return jdbc.queryForList("SELECT session_seat_id FROM session_seat "
+				+ "WHERE session_id = :sessionId AND status = 'AVAILABLE' ORDER BY session_seat_id",
+				Map.of("sessionId", sessionId), Integer.class);
+	}
+}
@@ -34,7 +34,7 @@ export const usePublicCouponListStore = defineStore('couponMarket', {
 
       if (idx >= 0) this.list[idx].status = '已領取' // 樂觀更新
       try {
-        await http.post(`/coupons/${couponId}/claim`)
+        return await http.post(`/coupons/${couponId}/claim`)
         // if (options && options.redirectToMemberCenter) {
         //   router.push({ name: 'MemberProfile', query: { view: 'coupon', from: 'claim', couponId } })
         // }
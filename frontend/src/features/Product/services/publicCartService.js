@@ -92,11 +92,27 @@ async function minusFromCart(productId, quantity) {
         throw error;
     }
 }
+/**
+ * 結帳頁試算購物車：商品小計、加價選項、庫存、可用優惠券與應付金額。
+ * @param {Object} options - 購物車項目ID 對應選擇的加價選項ID。
+ * @param {number|null} couponId - 要使用的優惠券ID。
+ * @returns {Promise<Object>} 購物車的試算結果。
+ */
+async function evaluateCart(options = {}, couponId = null) {
+    try {
+        const response = await httpClient.post('/public/cart/evaluate', { options, couponId });
+        return response;
+    } catch (error) {
+        console.error('購物車試算失敗:', error);
+        throw error;
+    }
+}
 export {
     getCartItems,
     addToCart,
     updateCartItem,
     removeCartItem,
     clearCart,
-    minusFromCart
+    minusFromCart,
+    evaluateCart
 };
\ No newline at end of file
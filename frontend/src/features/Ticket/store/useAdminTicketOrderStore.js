@@ -10,6 +10,8 @@ export const useAdminTicketOrderStore = defineStore('adminTicketOrder', () => {
     const orders = ref([]); // 儲存當前頁的訂單列表
     const totalOrders = ref(0); // 總訂單筆數
     const isLoading = ref(false);
+    // 上一次查詢的條件、頁碼與下一頁游標；依序翻到下一頁時帶入游標，後端不需要略過前面的資料
+    let lastQuery = { filterKey: null, page: 0, nextCursor: null };
 
     const selectedOrderDetails = reactive({
         data: null,
@@ -27,14 +29,23 @@ export const useAdminTicketOrderStore = defineStore('adminTicketOrder', () => {
     const fetchOrders = async (searchParams) => {
         isLoading.value = true;
         try {
-            const responsePage = await AdminTicketOrderService.fetchOrders(searchParams);
-            // 從後端回傳的 Page 物件中，更新狀態
+            const { page, cursor, ...filters } = searchParams;
+            const filterKey = JSON.stringify(filters);
+            const params = { ...searchParams };
+            delete params.cursor;
+            if (lastQuery.nextCursor && lastQuery.filterKey === filterKey && page === lastQuery.page + 1) {
+                params.cursor = lastQuery.nextCursor;
+            }
+            const responsePage = await AdminTicketOrderService.fetchOrders(params);
+            // 從後端回傳的分頁結果中，更新狀態
             orders.value = responsePage.content;
             totalOrders.value = responsePage.totalElements;
+            lastQuery = { filterKey, page, nextCursor: responsePage.nextCursor };
         } catch (error) {
             console.error("Store 中獲取訂單列表失敗:", error);
             orders.value = [];
             totalOrders.value = 0;
+            lastQuery = { filterKey: null, page: 0, nextCursor: null };
         } finally {
             isLoading.value = false;
         }